@@ -0,0 +1,58 @@
+package org.taboola.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.BlockResult;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to run whole blocks, evaluated line by line or through the parallel block executor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlockBenchmark {
+
+    @Param({"1000", "100000"})
+    int lines;
+
+    @Param({"8"})
+    int terms;
+
+    @Param({"4", "26"})
+    int variables;
+
+    private ExpressionCalculator calculator;
+    private List<String> block;
+
+    @Setup
+    public void setUp() {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        calculator = new ExpressionCalculator(planCache, new ParallelBlockExecutor(ForkJoinPool.commonPool(), 0));
+        block = new ExpressionGenerator(42).block(lines, terms, variables);
+    }
+
+    @Benchmark
+    public String sequential() {
+        for (String line : block) {
+            calculator.calculate(line);
+        }
+        String variables = calculator.getVariablesAsString();
+        calculator.reset();
+        return variables;
+    }
+
+    @Benchmark
+    public BlockResult parallel() {
+        BlockResult result = calculator.calculateBlock(block);
+        calculator.reset();
+        return result;
+    }
+}
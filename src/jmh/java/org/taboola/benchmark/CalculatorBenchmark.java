@@ -0,0 +1,74 @@
+package org.taboola.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.taboola.CalculationResult;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ExpressionCalculator#calculate(String)} end to end: cold, when every call
+ * validates and parses its expression, and warm, when the plan comes from the plan cache.
+ * Also measures rejected lines, through the throwing and the result API.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CalculatorBenchmark {
+
+    @Param({"4", "32", "256"})
+    int terms;
+
+    @Param({"4", "26"})
+    int variables;
+
+    private ExpressionPlanCache planCache;
+    private ExpressionCalculator calculator;
+    private String expression;
+    private String invalidExpression;
+    private ExpressionCalculator undefinedCalculator;
+
+    @Setup
+    public void setUp() {
+        planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        calculator = new ExpressionCalculator(planCache);
+        ExpressionGenerator.definitions(variables).forEach(calculator::calculate);
+        expression = new ExpressionGenerator(42).wide(terms, variables);
+        invalidExpression = expression + " +";
+        undefinedCalculator = new ExpressionCalculator(planCache);
+    }
+
+    @Benchmark
+    public int cold() {
+        planCache.invalidateAll();
+        return calculator.calculate(expression);
+    }
+
+    @Benchmark
+    public int warm() {
+        return calculator.calculate(expression);
+    }
+
+    @Benchmark
+    public int invalidThrowing() {
+        try {
+            return calculator.calculate(invalidExpression);
+        } catch (InvalidExpression e) {
+            return e.getPosition();
+        }
+    }
+
+    @Benchmark
+    public CalculationResult invalidResult() {
+        return calculator.tryCalculate(invalidExpression);
+    }
+
+    @Benchmark
+    public CalculationResult undefinedResult() {
+        return undefinedCalculator.tryCalculate(expression);
+    }
+}
@@ -0,0 +1,79 @@
+package org.taboola.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.taboola.ExpressionValidator;
+import org.taboola.columnar.ColumnBatch;
+import org.taboola.columnar.ColumnarEvaluator;
+import org.taboola.compiler.PostfixCompiler;
+import org.taboola.compiler.PostfixProgram;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.ArrayVariableStore;
+import org.taboola.store.VariableStore;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one expression evaluated over many rows of bindings: row by row through
+ * {@link ExpressionPlan#eval(VariableStore)}, and column-wise with the {@link ColumnarEvaluator}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColumnarBenchmark {
+
+    @Param({"1000000"})
+    int rows;
+
+    @Param({"r = a * b + c - 3 * a", "r = (a + 1) * (b - 2) * (c + 3) + a * b * c - 7"})
+    String expression;
+
+    private final ColumnarEvaluator evaluator = new ColumnarEvaluator();
+    private final VariableStore store = new ArrayVariableStore();
+    private ExpressionPlan plan;
+    private PostfixProgram program;
+    private int[] a;
+    private int[] b;
+    private int[] c;
+    private int[] result;
+
+    @Setup
+    public void setUp() {
+        plan = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties()).getPlan(expression);
+        program = new PostfixCompiler().compile(plan.getRoot());
+        Random random = new Random(42);
+        a = random.ints(rows).toArray();
+        b = random.ints(rows).toArray();
+        c = random.ints(rows).toArray();
+        result = new int[rows];
+    }
+
+    @Benchmark
+    public int[] rowByRowTree() {
+        for (int row = 0; row < rows; row++) {
+            store.set(0, a[row]);
+            store.set(1, b[row]);
+            store.set(2, c[row]);
+            result[row] = plan.eval(store);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int[] rowByRowPostfix() {
+        for (int row = 0; row < rows; row++) {
+            store.set(0, a[row]);
+            store.set(1, b[row]);
+            store.set(2, c[row]);
+            result[row] = program.eval(store);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int[] columnar() {
+        return evaluator.evaluate(program, new ColumnBatch(rows).set('a', a).set('b', b).set('c', c));
+    }
+}
@@ -0,0 +1,73 @@
+package org.taboola.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.BlockResult;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures blocks whose lines repeat a subexpression of {@code size} operators, evaluated line by line
+ * or as a block computing the subexpression once per write of its variables, every {@code period} lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommonSubexpressionBenchmark {
+
+    @Param({"1000"})
+    int lines;
+
+    @Param({"2", "8", "32", "128"})
+    int size;
+
+    @Param({"4"})
+    int period;
+
+    private ExpressionCalculator calculator;
+    private List<String> block;
+
+    @Setup
+    public void setUp() {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        calculator = new ExpressionCalculator(planCache, new ParallelBlockExecutor(ForkJoinPool.commonPool(), Integer.MAX_VALUE));
+
+        StringBuilder subexpression = new StringBuilder("a");
+        for (int i = 0; i < size; i++) {
+            subexpression.append(i % 2 == 0 ? " * " : " + ").append((char) ('b' + i % 4));
+        }
+        block = new ArrayList<>();
+        block.add("a = 3");
+        block.add("b = 5");
+        block.add("c = 7");
+        block.add("d = 11");
+        block.add("e = 13");
+        for (int line = 0; line < lines; line++) {
+            block.add(line % period == 0 ? "a++" : (char) ('f' + line % 20) + " = " + subexpression + " - " + line);
+        }
+    }
+
+    @Benchmark
+    public String lineByLine() {
+        for (String line : block) {
+            calculator.calculate(line);
+        }
+        String variables = calculator.getVariablesAsString();
+        calculator.reset();
+        return variables;
+    }
+
+    @Benchmark
+    public BlockResult block() {
+        BlockResult result = calculator.calculateBlock(block);
+        calculator.reset();
+        return result;
+    }
+}
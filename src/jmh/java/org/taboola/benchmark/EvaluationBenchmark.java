@@ -0,0 +1,61 @@
+package org.taboola.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.taboola.ExpressionValidator;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.ExecutionMode;
+import org.taboola.evaluator.Evaluable;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.ArrayVariableStore;
+import org.taboola.store.VariableStore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Evaluable#eval(VariableStore)} alone on deep (nested) and wide (flat) trees,
+ * in each execution mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EvaluationBenchmark {
+
+    @Param({"8", "64"})
+    int size;
+
+    @Param({"26"})
+    int variables;
+
+    @Param({"TREE", "POSTFIX", "BYTECODE"})
+    ExecutionMode mode;
+
+    private final VariableStore store = new ArrayVariableStore();
+    private ExpressionPlan deep;
+    private ExpressionPlan wide;
+
+    @Setup
+    public void setUp() {
+        CalculatorProperties properties = new CalculatorProperties();
+        properties.setExecutionMode(mode);
+        properties.setCompileThreshold(1);
+        properties.setOptimize(false);
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), properties);
+
+        ExpressionGenerator.definitions(variables).forEach(line -> planCache.getPlan(line).eval(store));
+
+        ExpressionGenerator generator = new ExpressionGenerator(42);
+        deep = planCache.getPlan(generator.deep(size, variables));
+        wide = planCache.getPlan(generator.wide(size, variables));
+    }
+
+    @Benchmark
+    public int deepTree() {
+        return deep.eval(store);
+    }
+
+    @Benchmark
+    public int wideTree() {
+        return wide.eval(store);
+    }
+}
@@ -0,0 +1,83 @@
+package org.taboola.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the expressions measured by the benchmarks, deterministically for a given seed.
+ */
+final class ExpressionGenerator {
+
+    //region Members
+    private static final String[] OPERATORS = {"+", "-", "*"};
+
+    private final Random random;
+    //endregion
+
+    //region Constructors
+    ExpressionGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+    //endregion
+
+    //region Methods
+    /**
+     * Returns the assignments defining the first {@code variables} variables, so the generated expressions can read them.
+     */
+    static List<String> definitions(int variables) {
+        List<String> lines = new ArrayList<>(variables);
+        for (int i = 0; i < variables; i++) {
+            lines.add(variable(i) + " = " + (i + 1));
+        }
+        return lines;
+    }
+
+    /**
+     * Returns a flat assignment of {@code terms} operands, e.g. {@code a = b + 3 * c - 7}.
+     */
+    String wide(int terms, int variables) {
+        StringBuilder expression = new StringBuilder(variable(random.nextInt(variables))).append(" = ").append(operand(variables));
+        for (int i = 1; i < terms; i++) {
+            expression.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ').append(operand(variables));
+        }
+        return expression.toString();
+    }
+
+    /**
+     * Returns an assignment nested {@code depth} parentheses deep, e.g. {@code a = ((b + 1) * c - 2)}.
+     */
+    String deep(int depth, int variables) {
+        StringBuilder expression = new StringBuilder(variable(random.nextInt(variables))).append(" = ");
+        expression.append("(".repeat(depth)).append(operand(variables));
+        for (int i = 0; i < depth; i++) {
+            expression.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ').append(operand(variables)).append(')');
+        }
+        return expression.toString();
+    }
+
+    /**
+     * Returns a block of {@code lines} assignments mixing increments and compound assignments,
+     * preceded by the definitions of its variables.
+     */
+    List<String> block(int lines, int terms, int variables) {
+        List<String> block = definitions(variables);
+        for (int i = 0; i < lines; i++) {
+            block.add(switch (random.nextInt(4)) {
+                case 0 -> variable(random.nextInt(variables)) + "++";
+                case 1 -> variable(random.nextInt(variables)) + " += " + operand(variables);
+                default -> wide(terms, variables);
+            });
+        }
+        return block;
+    }
+
+    private String operand(int variables) {
+        return random.nextBoolean() ? variable(random.nextInt(variables)) : String.valueOf(random.nextInt(100));
+    }
+
+    static String variable(int index) {
+        return String.valueOf((char) ('a' + index));
+    }
+    //endregion
+}
@@ -0,0 +1,56 @@
+package org.taboola.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.taboola.ExpressionUtils;
+import org.taboola.ExpressionValidator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the validation of whole expressions and the classification of single tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValidatorBenchmark {
+
+    @Param({"4", "32", "256"})
+    int terms;
+
+    @Param({"26"})
+    int variables;
+
+    private final ExpressionValidator validator = new ExpressionValidator();
+    private String valid;
+    private String invalid;
+
+    @Setup
+    public void setUp() {
+        ExpressionGenerator generator = new ExpressionGenerator(42);
+        valid = generator.wide(terms, variables);
+        invalid = valid + " +";
+    }
+
+    @Benchmark
+    public boolean validExpression() {
+        return validator.isValidExpression(valid);
+    }
+
+    @Benchmark
+    public boolean invalidExpression() {
+        return validator.isValidExpression(invalid);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public int classifyTokens() {
+        int operands = 0;
+        if (ExpressionUtils.isNumber("12345")) operands++;
+        if (ExpressionUtils.isVariable("x")) operands++;
+        if (ExpressionUtils.isPreIncrement("++x")) operands++;
+        if (ExpressionUtils.isPostIncrement("x++")) operands++;
+        if (ExpressionUtils.isOperator("+=")) operands++;
+        if (ExpressionUtils.isOperand("(")) operands++;
+        return operands;
+    }
+}
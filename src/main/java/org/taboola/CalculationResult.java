@@ -0,0 +1,169 @@
+package org.taboola;
+
+import org.taboola.enums.CalculationError;
+import org.taboola.enums.InvalidExpressionReason;
+
+/**
+ * The outcome of {@link ExpressionCalculator#tryCalculate(String)}: either the value of the
+ * expression, or the error that prevented its calculation with its details.
+ *
+ * Results are immutable. Successful results for small values are shared, so the common
+ * case does not allocate.
+ */
+public final class CalculationResult {
+
+    //region Members
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+
+    /**
+     * Shared successful results for the values between {@code CACHE_LOW} and {@code CACHE_HIGH}.
+     */
+    private static final CalculationResult[] CACHE = new CalculationResult[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new CalculationResult(i + CACHE_LOW, null, null, -1, (char) 0);
+        }
+    }
+
+    /**
+     * The shared result of an overflow, which carries no details.
+     */
+    private static final CalculationResult OVERFLOW =
+            new CalculationResult(0, CalculationError.OVERFLOW, null, -1, (char) 0);
+
+    private final int value;
+    private final CalculationError error;
+    private final InvalidExpressionReason reason;
+    private final int position;
+    private final char variable;
+    //endregion
+
+    //region Constructors
+    private CalculationResult(int value, CalculationError error, InvalidExpressionReason reason,
+                              int position, char variable) {
+        this.value = value;
+        this.error = error;
+        this.reason = reason;
+        this.position = position;
+        this.variable = variable;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the result of an expression calculated successfully.
+     *
+     * @param value the value of the expression
+     * @return the result
+     */
+    public static CalculationResult success(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[value - CACHE_LOW];
+        }
+        return new CalculationResult(value, null, null, -1, (char) 0);
+    }
+
+    /**
+     * Returns the result of an invalid expression.
+     *
+     * @param reason   the reason the expression was rejected, or {@code null} if unknown
+     * @param position the character offset of the problem, or -1 if unknown
+     * @return the result
+     */
+    public static CalculationResult invalid(InvalidExpressionReason reason, int position) {
+        return new CalculationResult(0, CalculationError.INVALID_EXPRESSION, reason, position, (char) 0);
+    }
+
+    /**
+     * Returns the result of an expression reading an undefined variable.
+     *
+     * @param variable the name of the undefined variable, or {@code 0} if unknown
+     * @return the result
+     */
+    public static CalculationResult undefined(char variable) {
+        return new CalculationResult(0, CalculationError.UNDEFINED_VARIABLE, null, -1, variable);
+    }
+
+    /**
+     * Returns the result of an expression whose value overflows the range of the numeric mode.
+     *
+     * @return the result
+     */
+    public static CalculationResult overflow() {
+        return OVERFLOW;
+    }
+
+    /**
+     * Checks whether the expression was calculated.
+     *
+     * @return true if the result holds a value, otherwise false
+     */
+    public boolean isSuccess() {
+        return this.error == null;
+    }
+
+    /**
+     * Returns the value of the expression.
+     *
+     * @return the value
+     * @throws IllegalStateException if the calculation failed
+     */
+    public int getValue() {
+        if (this.error != null) {
+            throw new IllegalStateException("The calculation failed: " + this.error);
+        }
+        return this.value;
+    }
+
+    /**
+     * Returns why the calculation failed.
+     *
+     * @return the error, or {@code null} if the calculation succeeded
+     */
+    public CalculationError getError() {
+        return this.error;
+    }
+
+    /**
+     * Returns the reason an invalid expression was rejected.
+     *
+     * @return the reason, or {@code null} if the expression was not invalid or the reason is unknown
+     */
+    public InvalidExpressionReason getReason() {
+        return this.reason;
+    }
+
+    /**
+     * Returns the character offset at which an invalid expression was rejected.
+     *
+     * @return the position, or -1 if unknown or not applicable
+     */
+    public int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Returns the name of the undefined variable the expression read.
+     *
+     * @return the variable name, or {@code 0} if unknown or not applicable
+     */
+    public char getVariable() {
+        return this.variable;
+    }
+
+    @Override
+    public String toString() {
+        if (this.error == null) {
+            return "CalculationResult(value=" + this.value + ")";
+        }
+        return switch (this.error) {
+            case INVALID_EXPRESSION -> "CalculationResult(error=" + this.error + ", reason=" + this.reason
+                    + ", position=" + this.position + ")";
+            case UNDEFINED_VARIABLE -> "CalculationResult(error=" + this.error + ", variable=" + this.variable + ")";
+            case OVERFLOW -> "CalculationResult(error=" + this.error + ")";
+        };
+    }
+    //endregion
+}
@@ -0,0 +1,206 @@
+package org.taboola;
+
+import org.taboola.config.CalculatorProperties;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.io.MappedScriptRunner;
+import org.taboola.io.ParallelBlockRunner;
+import org.taboola.io.PipelinedLineRunner;
+import org.taboola.logging.ExpressionErrorLogger;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the calculator on the command line without Spring, for short scripted invocations where
+ * starting the application context would take far longer than evaluating the expressions.
+ *
+ * {@link #main(String[])} wires the validator and the plan cache by hand, with the default
+ * {@link CalculatorProperties}, and reports errors to the standard error through a minimal logging
+ * configuration. The {@link ExpressionCalculatorApplication} runs its command line through the same
+ * launcher, so both read the same flags and write the same output.
+ */
+public final class CliLauncher {
+
+    //region Members
+    /**
+     * Command-line flag evaluating independent blocks concurrently, with the results written in input order.
+     */
+    static final String BATCH_FLAG = "--batch";
+
+    /**
+     * Command-line option naming a script file to run instead of reading the standard input.
+     */
+    static final String FILE_OPTION = "--file=";
+
+    /**
+     * Maximum number of standard input lines read ahead of the evaluation.
+     */
+    static final int PIPELINE_CAPACITY = 1024;
+
+    /**
+     * Logging configuration of the launcher, a classpath resource.
+     */
+    private static final String LOGGING_CONFIGURATION = "cli-logback.xml";
+
+    /**
+     * Creates the calculators evaluating the lines, all on the same plan cache.
+     */
+    private final Supplier<ExpressionCalculator> calculators;
+
+    /**
+     * Receives each line that could not be evaluated, with its error.
+     */
+    private final BiConsumer<String, ExpressionCalculatorException> errorHandler;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code CliLauncher} evaluating the lines with plain calculators.
+     *
+     * @param planCache    the cache of parsed expression plans
+     * @param errorHandler receives each line that could not be evaluated, with its error
+     */
+    public CliLauncher(ExpressionPlanCache planCache, BiConsumer<String, ExpressionCalculatorException> errorHandler) {
+        this(() -> new ExpressionCalculator(planCache), errorHandler);
+    }
+
+    /**
+     * Constructs a new {@code CliLauncher}.
+     *
+     * @param calculators  creates the calculators evaluating the lines, all on the same plan cache
+     * @param errorHandler receives each line that could not be evaluated, with its error
+     */
+    public CliLauncher(Supplier<ExpressionCalculator> calculators,
+                       BiConsumer<String, ExpressionCalculatorException> errorHandler) {
+        this.calculators = calculators;
+        this.errorHandler = errorHandler;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Runs the standard input, or the script file given with {@code --file=<path>}, with the default settings.
+     *
+     * @param args {@code --file=<path>} and {@code --batch}, as for the application
+     * @throws IOException if the input cannot be read or the results cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (System.getProperty("logback.configurationFile") == null) {
+            System.setProperty("logback.configurationFile", LOGGING_CONFIGURATION);
+        }
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        new CliLauncher(planCache, new ExpressionErrorLogger())
+                .run(args, new BufferedReader(new InputStreamReader(System.in)));
+    }
+
+    /**
+     * Runs the command line and writes the variables of each block to the standard output.
+     *
+     * With {@code --file=<path>}, the script file is run, see {@link #runFile(Path)}. With {@code --batch},
+     * the input, or the script file, is run block by block on all cores, see {@link #runBatch(BufferedReader)}.
+     * Otherwise the input is run through a pipeline, see {@link #runPipelined(BufferedReader)}.
+     *
+     * @param args  the command-line arguments
+     * @param input the standard input
+     * @throws IOException if the input cannot be read or the results cannot be written
+     */
+    public void run(String[] args, BufferedReader input) throws IOException {
+        boolean batch = isBatch(args);
+        Path file = scriptFile(args);
+        if (file == null) {
+            if (batch) {
+                runBatch(input);
+            } else {
+                runPipelined(input);
+            }
+        } else if (batch) {
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                runBatch(reader);
+            }
+        } else {
+            runFile(file);
+        }
+    }
+
+    /**
+     * Returns the script file named on the command line.
+     *
+     * @param args the command-line arguments
+     * @return the script file, or {@code null} if the standard input is run
+     */
+    public static Path scriptFile(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith(FILE_OPTION)) {
+                return Path.of(arg.substring(FILE_OPTION.length()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the command line runs blocks concurrently with {@code --batch}.
+     *
+     * @param args the command-line arguments
+     * @return true if {@code --batch} is given, otherwise false
+     */
+    public static boolean isBatch(String[] args) {
+        return Arrays.asList(args).contains(BATCH_FLAG);
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Runs a script file through a memory-mapped scan and writes the variables of each block
+     * to the standard output.
+     *
+     * @param file the script file
+     * @throws IOException if the file cannot be read or the results cannot be written
+     */
+    private void runFile(Path file) throws IOException {
+        MappedScriptRunner runner = new MappedScriptRunner(this.calculators.get(), MappedScriptRunner.DEFAULT_WINDOW_SIZE, this.errorHandler);
+        FileChannel stdout = new FileOutputStream(FileDescriptor.out).getChannel();
+        runner.run(file, stdout);
+    }
+
+    /**
+     * Runs blocks concurrently on the common pool, each on its own variables, and writes
+     * the variables of each block to the standard output in input order.
+     *
+     * @param input the lines of the blocks
+     * @throws IOException if the input cannot be read or the results cannot be written
+     */
+    private void runBatch(BufferedReader input) throws IOException {
+        int maxPendingBlocks = 4 * ForkJoinPool.getCommonPoolParallelism();
+        ParallelBlockRunner runner = new ParallelBlockRunner(this.calculators, ForkJoinPool.commonPool(), maxPendingBlocks, this.errorHandler);
+        runner.run(input, new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Runs the lines through a {@link PipelinedLineRunner}: a reader thread, parser threads on the
+     * remaining cores and the evaluation on this thread. The variables of each block are written
+     * to the standard output.
+     *
+     * @param input the lines of the blocks
+     * @throws IOException if the input cannot be read or the results cannot be written
+     */
+    private void runPipelined(BufferedReader input) throws IOException {
+        int parsers = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+        PipelinedLineRunner runner = new PipelinedLineRunner(this.calculators, parsers, PIPELINE_CAPACITY, this.errorHandler);
+        runner.run(input, new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII)));
+    }
+    //endregion
+}
@@ -1,23 +1,63 @@
 package org.taboola;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
-import org.taboola.enums.Operator;
-import org.taboola.evaluator.*;
+import org.taboola.block.BlockResult;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.NumericMode;
+import org.taboola.evaluator.WideEvaluator;
+import org.taboola.exceptions.ArithmeticOverflowException;
+import org.taboola.exceptions.CyclicFormulaException;
+import org.taboola.exceptions.ExpressionCalculatorException;
 import org.taboola.exceptions.InvalidExpression;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.formula.FormulaGraph;
+import org.taboola.metrics.CalculatorMetrics;
+import org.taboola.parser.ExpressionLexer;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.ArrayVariableStore;
+import org.taboola.store.HeapSize;
+import org.taboola.store.VariableSlots;
+import org.taboola.store.VariableSnapshot;
+import org.taboola.store.VariableStore;
+import org.taboola.store.WideVariableStore;
 
-import java.util.HashMap;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Calculator class that parses, validates, and evaluates numeric expressions.
  *
  * Supports variables, assignments, pre/post increments, and basic arithmetic operators.
- * Maintains a map of variable names to their current integer values.
+ * Maintains a slot-indexed store of variable names to their current integer values.
+ *
+ * The arithmetic follows the {@link NumericMode} of the plan cache. In the default {@code INT}
+ * mode values are {@code int}s that wrap on overflow; the other modes keep their variables in a
+ * {@link WideVariableStore} and evaluate plans with a {@link WideEvaluator}, and their results
+ * are best read with {@link #calculateNumber(String)}.
+ *
+ * Variables can also be bound to live formulas with {@link #bind(String)}, which are
+ * recalculated incrementally whenever the variables they read change.
+ *
+ * The variable store is committed after every calculation, block and reset. Each commit publishes
+ * an immutable {@link VariableSnapshot} that other threads read through {@link #getSnapshot()}
+ * without blocking calculations, and makes the changes durable when the calculator runs on a
+ * {@link org.taboola.persistence.DurableVariableStore}.
+ *
+ * A calculator is not thread-safe: each user gets its own, usually through a
+ * {@link org.taboola.session.SessionManager} session. The exception is a calculator in {@code INT}
+ * mode on a {@link VariableStore#isConcurrent() concurrent} store, such as an
+ * {@link org.taboola.store.AtomicVariableStore}: any number of threads may then call
+ * {@link #calculate(String)}, {@link #calculateNumber(String)}, {@link #tryCalculate(String)} and
+ * {@link #calculateBlock(List)} on it at once. Each increment and each {@code x += e} whose
+ * right-hand side does not write {@code x} is applied atomically, so concurrent updates of a
+ * variable are never lost; an expression as a whole is not isolated from the others, though, and
+ * may see the writes of expressions running alongside it. Formulas are not available on such a calculator.
  */
-@Component
 public class ExpressionCalculator {
 
     //region Members
@@ -25,25 +65,106 @@ public class ExpressionCalculator {
     /**
      * Stores variable names and their corresponding integer values.
      */
-    private final Map<Character, Integer> variableToNumber;
+    private final VariableStore variableStore;
+
+    /**
+     * Stores the variables in the wide numeric modes, or {@code null} in {@code INT} mode.
+     */
+    private final WideVariableStore wideStore;
+
+    /**
+     * Evaluates plans in the wide numeric modes, or {@code null} in {@code INT} mode.
+     */
+    private final WideEvaluator wideEvaluator;
+
+    /**
+     * The live formulas bound to variables.
+     */
+    private final FormulaGraph formulas = new FormulaGraph();
 
     /**
-     * Validator instance used to verify the correctness of expressions before evaluation.
+     * Evaluates the formulas recalculated by the graph.
      */
-    @Autowired
-    private final ExpressionValidator validator;
+    private final Consumer<ExpressionPlan> formulaEvaluator = this::evaluateFormula;
+
+    /**
+     * Cache of validated and parsed expression plans, shared between calculators.
+     */
+    private final ExpressionPlanCache planCache;
+
+    /**
+     * Evaluates whole blocks of expressions, running their independent lines in parallel.
+     */
+    private final ParallelBlockExecutor blockExecutor;
+
+    /**
+     * Records the evaluation latency and the undefined variable failures.
+     */
+    private final CalculatorMetrics metrics;
     //endregion
 
     //region Constructors
 
     /**
-     * Constructs a new {@code ExpressionCalculator} with the provided expression validator.
+     * Constructs a new {@code ExpressionCalculator} with the provided expression validator
+     * and a private plan cache using the default settings.
      *
      * @param validator the expression validator to validate expressions before evaluation
      */
     public ExpressionCalculator(ExpressionValidator validator) {
-        this.validator = validator;
-        this.variableToNumber = new HashMap<>();
+        this(new ExpressionPlanCache(validator, new CalculatorProperties()));
+    }
+
+    /**
+     * Constructs a new {@code ExpressionCalculator} using the provided plan cache
+     * and a block executor with the default settings.
+     *
+     * @param planCache the cache of parsed expression plans
+     */
+    public ExpressionCalculator(ExpressionPlanCache planCache) {
+        this(planCache, new ParallelBlockExecutor(new CalculatorProperties()));
+    }
+
+    /**
+     * Constructs a new {@code ExpressionCalculator} using the provided plan cache and block executor.
+     *
+     * @param planCache     the cache of parsed expression plans
+     * @param blockExecutor the executor evaluating whole blocks of expressions
+     */
+    public ExpressionCalculator(ExpressionPlanCache planCache, ParallelBlockExecutor blockExecutor) {
+        this(planCache, blockExecutor, CalculatorMetrics.NOOP);
+    }
+
+    /**
+     * Constructs a new {@code ExpressionCalculator} recording its activity.
+     *
+     * @param planCache     the cache of parsed expression plans
+     * @param blockExecutor the executor evaluating whole blocks of expressions
+     * @param metrics       records the evaluation latency and the undefined variable failures
+     */
+    public ExpressionCalculator(ExpressionPlanCache planCache, ParallelBlockExecutor blockExecutor,
+                                CalculatorMetrics metrics) {
+        this(planCache, blockExecutor, metrics, new ArrayVariableStore());
+    }
+
+    /**
+     * Constructs a new {@code ExpressionCalculator} keeping its variables in the given store.
+     * The store is committed at the end of every calculation, block and reset.
+     *
+     * @param planCache     the cache of parsed expression plans
+     * @param blockExecutor the executor evaluating whole blocks of expressions
+     * @param metrics       records the evaluation latency and the undefined variable failures
+     * @param variableStore the store of the variables in {@code INT} mode
+     */
+    public ExpressionCalculator(ExpressionPlanCache planCache, ParallelBlockExecutor blockExecutor,
+                                CalculatorMetrics metrics, VariableStore variableStore) {
+        this.planCache = planCache;
+        this.blockExecutor = blockExecutor;
+        this.metrics = metrics;
+        this.variableStore = variableStore;
+        NumericMode mode = planCache.getNumericMode();
+        this.wideStore = mode != NumericMode.INT ? new WideVariableStore() : null;
+        this.wideEvaluator = mode != NumericMode.INT ? new WideEvaluator(mode) : null;
     }
     //endregion
 
@@ -52,31 +173,246 @@ public class ExpressionCalculator {
     /**
      * Calculates the result of the given numeric expression string.
      *
-     * This method validates the expression, parses it into an evaluable structure,
-     * and then computes the result.
+     * This method looks up the parsed plan of the expression in the plan cache,
+     * validating and parsing it on first use, and then evaluates it against
+     * this calculator's variable store.
      *
      * @param expression the expression string to evaluate
      * @return the integer result of evaluating the expression
      * @throws InvalidExpression if the expression is invalid according to the validator
+     * @throws ArithmeticOverflowException if a wide numeric mode result does not fit in an {@code int};
+     * the variables are updated nonetheless
      */
     public int calculate(String expression) {
-        if (!validator.isValidExpression(expression)) {
-            throw new InvalidExpression();
+        if (this.wideEvaluator != null) {
+            return toInt(calculateNumber(expression));
+        }
+        ExpressionPlan plan = planCache.getPlan(expression);
+        try {
+            return calculateInt(plan);
+        } finally {
+            // A failing plan may have written variables before failing
+            this.variableStore.commit();
         }
+    }
 
-        expression = expression.replace("(", " ( ").replace(")", " ) ");
-        Scanner scanner = new Scanner(expression);
-        Evaluable expressionEvaluation = buildExpression(scanner);
-        return expressionEvaluation.eval();
+    /**
+     * Calculates the result of the given expression in the numeric mode of the calculator.
+     *
+     * @param expression the expression string to evaluate
+     * @return the result: an {@link Integer} in the {@code int} modes, otherwise a {@link Long}
+     * or, in {@code BIG_INTEGER} mode, a {@link BigInteger} if it does not fit in a {@code long}
+     * @throws InvalidExpression if the expression is invalid according to the validator
+     * @throws ArithmeticOverflowException if a result overflows the range of a checked numeric mode
+     */
+    public Number calculateNumber(String expression) {
+        if (this.wideEvaluator == null) {
+            return calculate(expression);
+        }
+        ExpressionPlan plan = planCache.getPlan(expression);
+        try {
+            return calculateWide(plan);
+        } finally {
+            this.wideStore.commit();
+        }
+    }
+
+    /**
+     * Calculates an expression already parsed by the plan cache of the calculator, like
+     * {@link #calculateNumber(String)}, but without committing the variables.
+     *
+     * Meant for the runners that parse lines ahead of their evaluation: they calculate every line of a
+     * block with this method, then commit once at the end of the block with {@link #endBlock()}.
+     *
+     * @param plan the plan of the expression, from {@link #getPlanCache()}
+     * @return the result, as for {@link #calculateNumber(String)}
+     * @throws ArithmeticOverflowException if a result overflows the range of a checked numeric mode
+     */
+    public Number calculatePlan(ExpressionPlan plan) {
+        return this.wideEvaluator != null ? calculateWide(plan) : calculateInt(plan);
+    }
+
+    /**
+     * Ends a block as the interactive loop does: commits the variables, then resets the calculator.
+     *
+     * @return the variables at the end of the block, formatted as {@code (a=1,b=2)}
+     */
+    public String endBlock() {
+        commit();
+        String variables = getVariablesAsString();
+        reset();
+        return variables;
+    }
+
+    /**
+     * Binds the target variable of an assignment to it as a live formula, and calculates it.
+     *
+     * From then on, whenever a variable the formula reads changes, directly or through another
+     * formula, the formula is calculated again: {@code b = a + 2} keeps {@code b} two more than
+     * {@code a}. Formulas depending on other formulas are recalculated after them, and only the
+     * formulas affected by a change are recalculated. Assigning or incrementing the variable
+     * of a formula removes the formula, and the variable keeps the value it is given; a calculation
+     * failing before it changes the variable keeps the formula.
+     * A formula that fails while being recalculated, for instance on overflow in a checked
+     * numeric mode, fails the calculation that changed its inputs.
+     *
+     * @param expression the formula, a plain assignment of an expression without increments or nested assignments
+     * @return the value of the variable
+     * @throws InvalidExpression      if the expression is invalid or is not a formula
+     * @throws CyclicFormulaException if the variable would depend on itself
+     * @throws ExpressionCalculatorException if the formula cannot be calculated, in which case the variable is left without formula
+     * @throws UnsupportedOperationException if the calculator runs on a concurrent store
+     */
+    public Number bind(String expression) {
+        if (this.variableStore.isConcurrent()) {
+            throw new UnsupportedOperationException("Formulas are not supported on a concurrent calculator");
+        }
+        ExpressionPlan plan = planCache.getPlan(expression);
+        int slot = this.formulas.bind(plan);
+        try {
+            Number value;
+            try {
+                value = evaluateFormula(plan);
+            } catch (ExpressionCalculatorException e) {
+                this.formulas.unbind(slot);
+                throw e;
+            }
+            this.formulas.recompute(1 << slot, this.formulaEvaluator);
+            return value;
+        } finally {
+            commit();
+        }
+    }
+
+    /**
+     * Removes the formula of a variable; the variable keeps its current value.
+     *
+     * @param variable the variable name
+     * @return true if the variable was bound to a formula, otherwise false
+     */
+    public boolean unbind(char variable) {
+        return ExpressionLexer.isVariableName(variable) && this.formulas.unbind(VariableSlots.slotOf(variable));
+    }
+
+    /**
+     * Returns the live formulas, by variable name.
+     *
+     * @return a new map of the formula expressions, sorted by variable name
+     */
+    public Map<Character, String> getFormulas() {
+        return this.formulas.getFormulas();
+    }
+
+    /**
+     * Calculates the given expression like {@link #calculate(String)}, but reports a failure
+     * as a result instead of throwing it.
+     *
+     * @param expression the expression string to evaluate
+     * @return the value of the expression, or the reason it could not be calculated
+     */
+    public CalculationResult tryCalculate(String expression) {
+        try {
+            return CalculationResult.success(calculate(expression));
+        } catch (InvalidExpression e) {
+            return CalculationResult.invalid(e.getReason(), e.getPosition());
+        } catch (UndefinedVariableException e) {
+            return CalculationResult.undefined(e.getVariable());
+        } catch (ArithmeticOverflowException e) {
+            return CalculationResult.overflow();
+        }
     }
 
     /**
-     * Returns a copy of the current map of variables and their values.
+     * Calculates a whole block of expressions, as if {@link #calculate(String)} was called on each line in order.
      *
-     * @return a new map containing all variable names and their corresponding values
+     * Lines that do not read or write a common variable are evaluated in parallel; the
+     * result of each line and the final variable values are the same as in a sequential run.
+     * A failing line does not stop the block: its error is reported in the returned result.
+     *
+     * In the wide numeric modes, and while formulas are bound, the lines are evaluated sequentially.
+     *
+     * @param lines the expressions of the block, in order
+     * @return the result or error of each line
      */
+    public BlockResult calculateBlock(List<String> lines) {
+        if (this.wideEvaluator != null || !this.formulas.isEmpty()) {
+            return calculateSequentially(lines);
+        }
+        if (!metrics.isEnabled()) {
+            BlockResult result = blockExecutor.execute(lines, planCache, this.variableStore);
+            this.variableStore.commit();
+            return result;
+        }
+
+        long start = System.nanoTime();
+        BlockResult result = blockExecutor.execute(lines, planCache, this.variableStore);
+        this.variableStore.commit();
+        metrics.recordBlock(System.nanoTime() - start);
+        for (int line = 0; line < result.size(); line++) {
+            if (result.getError(line) instanceof UndefinedVariableException) {
+                metrics.recordUndefinedVariable();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cache the calculator parses its expressions with.
+     *
+     * @return the plan cache
+     */
+    public ExpressionPlanCache getPlanCache() {
+        return this.planCache;
+    }
+
+    /**
+     * Returns an immutable snapshot of the variables as of the end of the last calculation.
+     *
+     * Unlike the other methods of the calculator, this one may be called from any thread: it never
+     * waits for a calculation in progress, and never delays it. Between two changes of the variables,
+     * it keeps returning the same snapshot.
+     *
+     * @return the snapshot of the variables
+     */
+    public VariableSnapshot getSnapshot() {
+        return this.wideStore != null ? this.wideStore.snapshot() : this.variableStore.snapshot();
+    }
+
+    /**
+     * Returns the current variables and their {@code int} values.
+     *
+     * @return an unmodifiable map of the variables sorted by name, with their values
+     * @throws ArithmeticOverflowException if, in a wide numeric mode, a value does not fit in an {@code int}
+     */
+    @SuppressWarnings("unchecked")
     public Map<Character, Integer> getVariables() {
-        return new HashMap<>(this.variableToNumber);
+        Map<Character, Number> variables = getNumericVariables();
+        if (this.wideStore == null) {
+            // Every value of an INT mode store is an Integer
+            return (Map<Character, Integer>) (Map<Character, ?>) variables;
+        }
+        Map<Character, Integer> converted = new LinkedHashMap<>();
+        variables.forEach((name, value) -> converted.put(name, toInt(value)));
+        return Collections.unmodifiableMap(converted);
+    }
+
+    /**
+     * Returns the current variables and their values in the numeric mode of the calculator.
+     *
+     * @return an unmodifiable map of the variables sorted by name, with their values:
+     * {@link Integer}s in {@code INT} mode, otherwise {@link Long}s or {@link BigInteger}s
+     */
+    public Map<Character, Number> getNumericVariables() {
+        return getSnapshot().toMap();
+    }
+
+    /**
+     * Returns the number of defined variables.
+     *
+     * @return the variable count
+     */
+    public int getVariableCount() {
+        return getSnapshot().size();
     }
 
     /**
@@ -86,97 +422,268 @@ public class ExpressionCalculator {
      * @return a formatted string of variables and their values
      */
     public String getVariablesAsString() {
-        return this.variableToNumber.entrySet()
-                .stream()
-                .sorted(Map.Entry.comparingByKey())
-                .map(e -> e.getKey() + "=" + e.getValue())
-                .collect(Collectors.joining(",", "(", ")"));
+        return getSnapshot().format();
+    }
+
+    /**
+     * Checks whether any number of threads may calculate with this calculator at once,
+     * which is the case in {@code INT} mode on a concurrent variable store.
+     *
+     * @return true if the calculator may be used concurrently, otherwise false
+     */
+    public boolean isConcurrent() {
+        return this.wideEvaluator == null && this.variableStore.isConcurrent();
     }
 
     /**
-     * Clears all variables and their values from the internal state.
+     * Clears all variables and their values, and the formulas, from the internal state.
      */
     public void reset() {
-        this.variableToNumber.clear();
+        this.formulas.clear();
+        this.variableStore.clear();
+        if (this.wideStore != null) {
+            this.wideStore.clear();
+        }
+        commit();
+    }
+
+    /**
+     * Converts a result to an {@code int}.
+     *
+     * @param value the result, an {@link Integer}, {@link Long} or {@link BigInteger}
+     * @return the result as an {@code int}
+     * @throws ArithmeticOverflowException if the result does not fit in an {@code int}
+     */
+    public static int toInt(Number value) {
+        if (value instanceof Integer i) {
+            return i;
+        }
+        if (value instanceof Long l && (int) (long) l == l) {
+            return (int) (long) l;
+        }
+        throw new ArithmeticOverflowException(NumericMode.INT);
+    }
+
+    /**
+     * Estimates the heap footprint of the calculator, in bytes: its variable stores and their snapshots,
+     * its wide evaluator and its formulas; see {@link HeapSize}. The plans are shared with the plan cache,
+     * and are not counted. May be called from any thread, and is only approximate during a calculation.
+     *
+     * @return the estimated size of the calculator
+     */
+    public long estimateSize() {
+        // The calculator, its formula evaluator and its formulas
+        long size = HeapSize.object(8 * HeapSize.REFERENCE) + HeapSize.object(HeapSize.REFERENCE)
+                + this.formulas.estimateSize() + this.variableStore.estimateSize();
+        if (this.wideStore != null) {
+            size += this.wideStore.estimateSize() + this.wideEvaluator.estimateSize();
+        }
+        return size;
     }
     //endregion
 
     //region Private Methods
+    /**
+     * Commits the store of the variables at the end of a calculation.
+     */
+    private void commit() {
+        if (this.wideStore != null) {
+            this.wideStore.commit();
+        } else {
+            this.variableStore.commit();
+        }
+    }
 
     /**
-     * Builds an {@link Evaluable} expression tree from the tokens provided by the scanner.
+     * Calculates a plan on the {@code int} store, recalculating the formulas depending on what it writes.
      *
-     * @param scanner the scanner that provides tokens of the expression
-     * @return an evaluable expression representing the parsed expression
+     * @param plan the plan to calculate
+     * @return the result of the plan
      */
-    private Evaluable buildExpression(Scanner scanner) {
-        Evaluable left = getEvaluator(scanner);
-        return parseOperation(left, scanner);
+    private int calculateInt(ExpressionPlan plan) {
+        if (this.formulas.isEmpty()) {
+            return evaluate(plan);
+        }
+
+        int overwritten = plan.getWriteMask() & this.formulas.boundMask();
+        Number[] previous = valuesOf(overwritten);
+        int value;
+        try {
+            value = evaluate(plan);
+        } catch (RuntimeException e) {
+            overwrite(overwritten, previous);
+            propagate(plan);
+            throw e;
+        }
+        overwrite(overwritten, null);
+        propagate(plan);
+        return value;
     }
 
     /**
-     * Parses an operation (e.g., +, -, *, =) with the given left operand and remaining tokens.
-     * Recursively builds and returns the combined evaluable expression.
+     * Calculates a plan on the wide store, recalculating the formulas depending on what it writes.
      *
-     * @param left    the left operand expression
-     * @param scanner the scanner that provides tokens of the expression
-     * @return the combined evaluable expression after parsing the operator and right operand
+     * @param plan the plan to calculate
+     * @return the result of the plan
      */
-    private Evaluable parseOperation(Evaluable left, Scanner scanner) {
-        if (scanner.hasNext()) {
-            String token = scanner.next();
+    private Number calculateWide(ExpressionPlan plan) {
+        if (this.formulas.isEmpty()) {
+            return evaluateWide(plan);
+        }
 
-            Operator operator = Operator.fromValue(token);
-            switch (operator) {
-                case ADD, SUB:
-                    return new Expression(left, operator, buildExpression(scanner));
-                case MULTIPLE:
-                    Evaluable innerExpr = new Expression(left, operator, getEvaluator(scanner));
-                    if (scanner.hasNext()) {
-                        return parseOperation(innerExpr, scanner);
-                    }
-                    return innerExpr;
-                case ASSIGN:
-                    return new AssignmentExpression((VariableExpression) left, buildExpression(scanner), this.variableToNumber);
-                case ADD_ASSIGN:
-                    VariableExpression LeftAsVariable = (VariableExpression) left;
-                    Expression addToVarExpression = new Expression(LeftAsVariable, Operator.ADD, buildExpression(scanner));
-                    return new AssignmentExpression(LeftAsVariable, addToVarExpression, this.variableToNumber);
-            }
+        int overwritten = plan.getWriteMask() & this.formulas.boundMask();
+        Number[] previous = valuesOf(overwritten);
+        Number value;
+        try {
+            value = evaluateWide(plan);
+        } catch (RuntimeException e) {
+            overwrite(overwritten, previous);
+            propagate(plan);
+            throw e;
+        }
+        overwrite(overwritten, null);
+        propagate(plan);
+        return value;
+    }
+
+    /**
+     * Evaluates a plan on the {@code int} store, recording its latency.
+     *
+     * @param plan the plan to evaluate
+     * @return the result of the plan
+     */
+    private int evaluate(ExpressionPlan plan) {
+        if (!metrics.isEnabled()) {
+            return plan.eval(this.variableStore);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return plan.eval(this.variableStore);
+        } catch (UndefinedVariableException e) {
+            metrics.recordUndefinedVariable();
+            throw e;
+        } finally {
+            metrics.recordEvaluation(System.nanoTime() - start);
         }
-        return left;
     }
 
     /**
-     * Returns an {@link Evaluable} representing the next token from the scanner.
+     * Evaluates a plan on the wide store, recording its latency.
      *
-     * Recognizes numbers, variables, pre/post increment expressions, and parentheses.
+     * @param plan the plan to evaluate
+     * @return the result of the plan
+     */
+    private Number evaluateWide(ExpressionPlan plan) {
+        if (!metrics.isEnabled()) {
+            return this.wideEvaluator.evaluate(plan.getRoot(), this.wideStore);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return this.wideEvaluator.evaluate(plan.getRoot(), this.wideStore);
+        } catch (UndefinedVariableException e) {
+            metrics.recordUndefinedVariable();
+            throw e;
+        } finally {
+            metrics.recordEvaluation(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Evaluates a formula in the numeric mode of the calculator.
      *
-     * @param scanner the scanner that provides tokens of the expression
-     * @return an evaluable expression for the next token or {@code null} if unrecognized
+     * @param plan the plan of the formula
+     * @return the value of the formula
      */
-    private Evaluable getEvaluator(Scanner scanner) {
-        String token = scanner.next();
+    private Number evaluateFormula(ExpressionPlan plan) {
+        if (this.wideEvaluator != null) {
+            return this.wideEvaluator.evaluate(plan.getRoot(), this.wideStore);
+        }
+        return plan.eval(this.variableStore);
+    }
 
-        if (ExpressionUtils.isNumber(token))
-            return new NumberExpression(Integer.parseInt(token));
+    /**
+     * Returns the values of variables bound to formulas, which are always defined, before a plan overwrites them.
+     *
+     * @param slots the bitmask of the variables
+     * @return the value of each variable by slot, or {@code null} if there is none
+     */
+    private Number[] valuesOf(int slots) {
+        if (slots == 0) {
+            return null;
+        }
+        Number[] values = new Number[VariableSlots.SLOT_COUNT];
+        for (int mask = slots; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            values[slot] = valueOf(slot);
+        }
+        return values;
+    }
 
-        if (ExpressionUtils.isVariable(token))
-            return new VariableExpression(token.charAt(0), this.variableToNumber);
+    /**
+     * Returns the value of a defined variable in the numeric mode of the calculator.
+     *
+     * @param slot the variable slot
+     * @return the value of the variable
+     */
+    private Number valueOf(int slot) {
+        if (this.wideStore == null) {
+            return this.variableStore.get(slot);
+        }
+        BigInteger wide = this.wideStore.getWide(slot);
+        return wide != null ? wide : (Number) this.wideStore.get(slot);
+    }
 
-        if (ExpressionUtils.isPostIncrement(token))
-            return new PostIncrementVariableExpression(token.charAt(0), this.variableToNumber);
+    /**
+     * Removes the formulas of the variables a plan wrote, once it was evaluated. A plan that failed
+     * may have written none of them, or only some: only those whose value changed lose their formula.
+     *
+     * @param overwritten the bitmask of the bound variables the plan writes
+     * @param previous    their values before the plan failed, or {@code null} if it succeeded
+     */
+    private void overwrite(int overwritten, Number[] previous) {
+        for (int mask = overwritten; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            if (previous == null || !previous[slot].equals(valueOf(slot))) {
+                this.formulas.unbind(slot);
+            }
+        }
+    }
 
-        if (ExpressionUtils.isPreIncrement(token)) {
-            VariableExpression variableExpression = new VariableExpression(token.charAt(2), variableToNumber);
-            Expression IncreasingExpression = new Expression(new NumberExpression(1), Operator.ADD, variableExpression);
-            return new AssignmentExpression(variableExpression, IncreasingExpression, this.variableToNumber);
+    /**
+     * Recalculates the formulas depending on the variables a plan writes, once it was evaluated.
+     * The plan may have failed after writing some of them, so this also runs after a failure.
+     *
+     * @param plan the evaluated plan
+     */
+    private void propagate(ExpressionPlan plan) {
+        if (plan.getWriteMask() != 0) {
+            this.formulas.recompute(plan.getWriteMask(), this.formulaEvaluator);
         }
+    }
 
-        if (ExpressionUtils.isOpeningParenthesis(token)) {
-            return buildExpression(scanner);
+    /**
+     * Calculates the lines of a block one after the other.
+     *
+     * @param lines the expressions of the block, in order
+     * @return the result or error of each line
+     */
+    private BlockResult calculateSequentially(List<String> lines) {
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        Number[] values = new Number[lines.size()];
+        ExpressionCalculatorException[] errors = new ExpressionCalculatorException[lines.size()];
+        for (int line = 0; line < values.length; line++) {
+            try {
+                values[line] = calculateNumber(lines.get(line));
+            } catch (ExpressionCalculatorException e) {
+                errors[line] = e;
+            }
+        }
+        if (metrics.isEnabled()) {
+            metrics.recordBlock(System.nanoTime() - start);
         }
-        return null;
+        return new BlockResult(values, errors);
     }
     //endregion
 }
@@ -6,44 +6,76 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.taboola.exceptions.InvalidExpression;
-import org.taboola.exceptions.UndefinedVariableException;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.taboola.block.BlockResult;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.config.CalculatorRuntimeHints;
+import org.taboola.logging.ExpressionErrorLogger;
+import org.taboola.session.SessionManager;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Entry point for the Expression Calculator application.
  *
  * This is a Spring Boot application that accepts numeric expressions from standard input,
- * evaluates them, and displays results or errors.
+ * evaluates them, and displays results or errors. The same calculator is served over HTTP
+ * by {@link org.taboola.web.CalculatorController}.
  *
  * Supports variable assignments, arithmetic operations, and both pre/post increments.
+ *
+ * Scripted invocations that do not need the HTTP API start much faster through the Spring-free
+ * {@link CliLauncher}; {@link CalculatorRuntimeHints} lets the application itself be AOT-processed
+ * and compiled to a native image.
  */
 @Slf4j
 @SpringBootApplication
+@EnableConfigurationProperties(CalculatorProperties.class)
+@ImportRuntimeHints(CalculatorRuntimeHints.class)
 public class ExpressionCalculatorApplication implements CommandLineRunner {
 
     //region Members
 
+    /**
+     * Command-line flag buffering each block and evaluating its independent lines in parallel.
+     */
+    static final String PARALLEL_BLOCKS_FLAG = "--parallel-blocks";
+
     /**
      * The core calculator component responsible for parsing and evaluating expressions.
      */
     private final ExpressionCalculator calculator;
 
+    /**
+     * Runs the script files and the standard input, on the plan cache of the HTTP sessions.
+     */
+    private final CliLauncher launcher;
+
+    /**
+     * Reports the lines that could not be evaluated.
+     */
+    private final ExpressionErrorLogger errorLogger = new ExpressionErrorLogger();
+
     //endregion
 
     //region Constructors
 
     /**
-     * Constructs the application with the required calculator dependency.
+     * Constructs the application with its own calculators for the command line,
+     * sharing the plan cache and the metrics of the HTTP sessions.
      *
-     * @param calculator the expression calculator to be used for evaluation
+     * @param sessions the manager of the calculator sessions, which creates the calculators
      */
     @Autowired
-    public ExpressionCalculatorApplication(ExpressionCalculator calculator) {
-        this.calculator = calculator;
+    public ExpressionCalculatorApplication(SessionManager sessions) {
+        this.calculator = sessions.newCalculator();
+        this.launcher = new CliLauncher(sessions::newCalculator, this.errorLogger);
     }
     //endregion
 
@@ -62,11 +94,23 @@ public class ExpressionCalculatorApplication implements CommandLineRunner {
      * Command-line runner implementation that starts an interactive loop,
      * allowing the user to input expressions, evaluate them, and see results or error messages.
      *
-     * @param args arguments passed from the command line (ignored)
+     * The command line is run by the {@link CliLauncher}: the standard input through a pipeline
+     * reading, parsing and evaluating the lines on separate threads, or the script file given with
+     * {@code --file=<path>}, block by block on all cores with {@code --batch}. With {@code --parallel-blocks},
+     * the lines of each block are instead buffered until the empty line and evaluated together,
+     * running independent lines in parallel, and the variables are logged.
+     *
+     * @param args arguments passed from the command line
+     * @throws IOException if the script file cannot be read or its results cannot be written
      */
     @Override
-    public void run(String... args) {
+    public void run(String... args) throws IOException {
         BufferedReader buffer = new BufferedReader(new InputStreamReader(System.in));
+        if (CliLauncher.scriptFile(args) != null || CliLauncher.isBatch(args)) {
+            this.launcher.run(args, buffer);
+            return;
+        }
+
         log.info("Welcome to the Numeric Expression Calculator!\n" +
                 "--------------------------------------------------\n" +
                 "[✓] Supported operations: +, -, *, =, +=, ++ (pre/post increments))\n" +
@@ -75,29 +119,54 @@ public class ExpressionCalculatorApplication implements CommandLineRunner {
                 "[✓] To finish entering expressions and view the final result, press Enter on an empty line.\n" +
                 "--------------------------------------------------");
 
+        if (!Arrays.asList(args).contains(PARALLEL_BLOCKS_FLAG)) {
+            this.launcher.run(args, buffer);
+            return;
+        }
+        List<String> block = new ArrayList<>();
+
         while (true) {
             try {
                 String expression = buffer.readLine();
 
                 // User pressed enter without input: display result and reset state
                 if (expression == null || expression.trim().isEmpty()) {
+                    if (!block.isEmpty()) {
+                        calculateBlock(block);
+                        block.clear();
+                    }
                     log.info(calculator.getVariablesAsString());
                     calculator.reset();
+
+                    // End of input: stop reading, the HTTP API keeps serving
+                    if (expression == null) {
+                        return;
+                    }
                     continue;
                 }
 
-                // Try to evaluate expression and handle expected errors
-                try {
-                    calculator.calculate(expression);
-                } catch (InvalidExpression e) {
-                    log.error("The expression '{}' is invalid.", expression);
-                } catch (UndefinedVariableException e) {
-                    log.error("There is an undefined variable in the expression '{}'.", expression);
-                }
+                block.add(expression);
             } catch (IOException e) {
                 log.error("There was an error while reading or evaluating the expression.", e);
             }
         }
     }
     //endregion
+
+    //region Private Methods
+
+    /**
+     * Evaluates a buffered block and reports the errors of its lines in input order.
+     *
+     * @param block the lines of the block
+     */
+    private void calculateBlock(List<String> block) {
+        BlockResult result = calculator.calculateBlock(block);
+        for (int line = 0; line < result.size(); line++) {
+            if (!result.isSuccess(line)) {
+                this.errorLogger.accept(block.get(line), result.getError(line));
+            }
+        }
+    }
+    //endregion
 }
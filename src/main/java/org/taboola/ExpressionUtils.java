@@ -1,10 +1,14 @@
 package org.taboola;
 
-import java.util.regex.Pattern;
+import org.taboola.enums.TokenType;
+import org.taboola.parser.ExpressionLexer;
 
 /**
  * Utility class providing methods to identify and classify
  * different types of numeric expressions.
+ *
+ * Classification is done character by character through {@link ExpressionLexer},
+ * without compiling or matching regular expressions.
  */
 public class ExpressionUtils {
 
@@ -15,7 +19,15 @@ public class ExpressionUtils {
      * @return true if the string is a number, false otherwise
      */
     public static boolean isNumber(String s) {
-        return Pattern.matches("[0-9]+", s);
+        if (s.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (!ExpressionLexer.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -25,7 +37,7 @@ public class ExpressionUtils {
      * @return true if the string is a variable, false otherwise
      */
     public static boolean isVariable(String s) {
-        return Pattern.matches("[a-z]", s);
+        return is(s, TokenType.VARIABLE);
     }
 
     /**
@@ -35,7 +47,7 @@ public class ExpressionUtils {
      * @return true if the string is a pre increment expression, false otherwise
      */
     public static boolean isPreIncrement(String s) {
-        return Pattern.matches("\\+\\+[a-z]", s);
+        return is(s, TokenType.PRE_INCREMENT);
     }
 
     /**
@@ -45,7 +57,7 @@ public class ExpressionUtils {
      * @return true if the string is a post increment expression, false otherwise
      */
     public static boolean isPostIncrement(String s) {
-        return Pattern.matches("[a-z]\\+\\+", s);
+        return is(s, TokenType.POST_INCREMENT);
     }
 
     /**
@@ -76,7 +88,7 @@ public class ExpressionUtils {
      * @return true if the string is an operator, false otherwise
      */
     public static boolean isOperator(String s) {
-        return Pattern.matches("[+\\-*=]|\\+=", s);
+        return ExpressionLexer.classify(s, 0, s.length()).isOperator();
     }
 
     /**
@@ -100,4 +112,15 @@ public class ExpressionUtils {
     public static boolean isOperand(String s) {
         return isNumber(s) || isVariable(s) || isUnaryOperator(s);
     }
+
+    /**
+     * Checks if the input string is a single token of the given type.
+     *
+     * @param s    the input string
+     * @param type the expected token type
+     * @return true if the string is classified as the given type, false otherwise
+     */
+    private static boolean is(String s, TokenType type) {
+        return ExpressionLexer.classify(s, 0, s.length()) == type;
+    }
 }
@@ -2,9 +2,14 @@ package org.taboola;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.taboola.enums.Operator;
+import org.taboola.evaluator.EvaluableTree;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.logging.RateLimitedLogger;
+import org.taboola.parser.ExpressionLexer;
+import org.taboola.parser.ExpressionParser;
+import org.taboola.parser.TokenBuffer;
 
-import java.util.Scanner;
+import java.time.Duration;
 
 /**
  * Validates the syntax and structure of numeric expressions.
@@ -13,6 +18,9 @@ import java.util.Scanner;
  * - Balanced parentheses
  * - assignment expression
  * - Proper structure of operands and operators
+ *
+ * Validation is performed by {@link ExpressionParser}, which checks the grammar while
+ * building the evaluable tree, so the grammar is defined in a single place.
  */
 @Slf4j
 @Component
@@ -20,10 +28,14 @@ public class ExpressionValidator {
     //region Members
 
     /**
-     * Regex pattern to validate that the expression contains only allowed characters:
-     * letters, digits, operators, parentheses, and whitespace.
+     * Parser performing the structural validation.
      */
-    private static final String VALID_EXPRESSION_CHARACTER_PATTERN = "[a-zA-Z0-9+\\-*=()\\s]+";
+    private final ExpressionParser parser = new ExpressionParser();
+
+    /**
+     * Logs the invalid expressions checked with {@link #isValidExpression(TokenBuffer)}, at most ten times per second.
+     */
+    private static final RateLimitedLogger ERROR_LOG = new RateLimitedLogger(log, 10, Duration.ofSeconds(1));
 
     //endregion
 
@@ -37,161 +49,43 @@ public class ExpressionValidator {
      * @return true if the expression is valid, otherwise false
      */
     public boolean isValidExpression(String expression) {
-        if (!hasValidCharacters(expression)) {
-            log.error("The expression {} has invalid character.", expression);
-            return false;
-        }
-
-        if (!isBalancedParentheses(expression)) {
-            log.error("The expression {} has invalid parentheses", expression);
-            return false;
-        }
-
-        if (!isAssignmentExpression(expression)) {
-            log.error("The expression is not an assignment expression");
-            return false;
-        }
-
-        return isValidStructure(expression);
-    }
-
-    //endregion
-
-    //region Private Methods
-
-    /**
-     * Checks if the expression only contains valid characters (letters, digits, operators, parentheses, whitespace).
-     *
-     * @param expression the expression to check
-     * @return true if valid, otherwise false
-     */
-    private boolean hasValidCharacters(String expression) {
-        return expression.matches(VALID_EXPRESSION_CHARACTER_PATTERN);
-    }
-
-    /**
-     * Checks if the parentheses in the expression are balanced and properly ordered.
-     *
-     * @param expression the expression to check
-     * @return true if balanced, otherwise false
-     */
-    private boolean isBalancedParentheses(String expression) {
-        int balance = 0;
-
-        expression = expression.replace("(", " ( ").replace(")", " ) ");
-        Scanner scanner = new Scanner(expression);
-
-        while (scanner.hasNext()) {
-            String token = scanner.next();
-            if (ExpressionUtils.isOpeningParenthesis(token)) {
-                balance++;
-            } else if (ExpressionUtils.isClosingParenthesis(token)) {
-                balance--;
-            }
-
-            if (balance < 0) {
-                return false;
-            }
+        TokenBuffer tokens = ExpressionLexer.tokenize(expression, TokenBuffer.forCurrentThread());
+        try {
+            return isValidExpression(tokens);
+        } finally {
+            tokens.release();
         }
-
-        return balance == 0;
     }
 
     /**
-     * Verifies that the expression has a syntactically correct structure,
-     * ensuring proper placement of operands, operators, and parentheses.
+     * Validates an already tokenized expression for allowed characters, balanced parentheses,
+     * and proper syntactical structure.
      *
-     * @param expression the expression to validate
-     * @return true if structure is valid, otherwise false
+     * @param tokens the tokens of the numeric expression to validate
+     * @return true if the expression is valid, otherwise false
      */
-    private boolean isValidStructure(String expression) {
-        if (expression == null || expression.isBlank()) {
-            log.error("Empty expression is invalid");
+    public boolean isValidExpression(TokenBuffer tokens) {
+        try {
+            validateAndParse(tokens);
+            return true;
+        } catch (InvalidExpression e) {
+            ERROR_LOG.error("The expression {} is invalid: {} at position {}.",
+                    tokens.source(), e.getReason().getDescription(), e.getPosition());
             return false;
         }
-
-        String previous = null;
-        boolean expectingOperand = true;
-        boolean isValidStructure = true;
-
-        expression = expression.replace("(", " ( ").replace(")", " ) ");
-        Scanner scanner = new Scanner(expression);
-
-        while (scanner.hasNext()) {
-            String token = scanner.next();
-
-            if (ExpressionUtils.isOperator(token)) {
-                if (expectingOperand) {
-                    log.error("Invalid expression structure: expected operand after '{}' but found '{}'.", previous, token);
-                    isValidStructure = false;
-                    break;
-                }
-                expectingOperand = true;
-            } else if (ExpressionUtils.isClosingParenthesis(token)) {
-                if (expectingOperand || previous == null || ExpressionUtils.isOpeningParenthesis(previous)) {
-                    log.error("Invalid expression structure: unexpected closing parenthesis after '{}'.", previous);
-                    isValidStructure = false;
-                    break;
-                }
-            } else if (ExpressionUtils.isOperand(token) || ExpressionUtils.isOpeningParenthesis(token)) {
-                boolean isInvalidPrevious = previous != null &&
-                        (ExpressionUtils.isOperand(previous) || ExpressionUtils.isClosingParenthesis(previous));
-                if (!expectingOperand || isInvalidPrevious) {
-                    log.error("Invalid expression structure: unexpected operand or opening parenthesis after '{}'.", previous);
-                    isValidStructure = false;
-                    break;
-                }
-
-                if (ExpressionUtils.isOperand(token)) {
-                    expectingOperand = false;
-                }
-            } else {
-                log.error("Invalid token encountered: '{}'", token);
-                isValidStructure = false;
-                break;
-            }
-
-            previous = token;
-        }
-
-        return isValidStructure && !expectingOperand;
     }
 
     /**
-     * Checks whether a given expression is an assignment expression.
-     *
-     * An expression is considered an assignment expression if it satisfies one of the following:
-     * It is a unary increment operator, or it starts with a variable followed by an assignment operator .
+     * Validates an already tokenized expression and builds its evaluable tree in the same pass.
+     * Invalid expressions are not logged: the exception carries the reason, and the callers report it.
      *
-     * @param expression The input expression to validate.
-     * @return true if the expression is an assignment expression; false otherwise.
+     * @param tokens the tokens of the numeric expression, positioned at the first token
+     * @return the evaluable tree and its depth
+     * @throws InvalidExpression if the expression is invalid, with the reason and position of the problem
      */
-    private boolean isAssignmentExpression(String expression) {
-        if (ExpressionUtils.isUnaryOperator(expression)) {
-            return true;
-        }
-
-        expression = expression.replace("(", " ( ").replace(")", " ) ");
-        Scanner scanner = new Scanner(expression);
-
-        if (!scanner.hasNext()) {
-            return false;
-        }
-
-        String firstToken = scanner.next();
-
-        if (ExpressionUtils.isVariable(firstToken)) {
-            if (!scanner.hasNext()) {
-                return false;
-            }
-
-            String secondToken = scanner.next();
-            Operator operator = Operator.fromValue(secondToken);
-
-            return Operator.ASSIGN.equals(operator) || Operator.ADD_ASSIGN.equals(operator);
-        }
-
-        return false;
+    public EvaluableTree validateAndParse(TokenBuffer tokens) {
+        return parser.parse(tokens);
     }
+
     //endregion
 }
@@ -0,0 +1,120 @@
+package org.taboola.block;
+
+import org.taboola.ExpressionCalculator;
+import org.taboola.exceptions.ArithmeticOverflowException;
+import org.taboola.exceptions.ExpressionCalculatorException;
+
+/**
+ * The outcome of evaluating each line of a block of expressions.
+ *
+ * For every line, either its integer result or the exception it raised is available.
+ * Blocks evaluated in a wide numeric mode hold {@link Number} results instead.
+ */
+public final class BlockResult {
+
+    //region Members
+    /**
+     * The result of each line; meaningless for lines that failed.
+     */
+    private final int[] values;
+
+    /**
+     * The result of each line of a block evaluated in a wide numeric mode, or {@code null}.
+     */
+    private final Number[] numbers;
+
+    /**
+     * The exception raised by each line, or {@code null} for lines that succeeded.
+     */
+    private final ExpressionCalculatorException[] errors;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code BlockResult}.
+     *
+     * @param values the result of each line
+     * @param errors the exception raised by each line, or {@code null} for lines that succeeded
+     */
+    public BlockResult(int[] values, ExpressionCalculatorException[] errors) {
+        this.values = values;
+        this.numbers = null;
+        this.errors = errors;
+    }
+
+    /**
+     * Constructs a new {@code BlockResult} of a block evaluated in a wide numeric mode.
+     *
+     * @param numbers the result of each line
+     * @param errors  the exception raised by each line, or {@code null} for lines that succeeded
+     */
+    public BlockResult(Number[] numbers, ExpressionCalculatorException[] errors) {
+        this.values = null;
+        this.numbers = numbers;
+        this.errors = errors;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the number of lines in the block.
+     *
+     * @return the line count
+     */
+    public int size() {
+        return this.errors.length;
+    }
+
+    /**
+     * Checks whether the given line was evaluated successfully.
+     *
+     * @param line the line index
+     * @return true if the line succeeded, otherwise false
+     */
+    public boolean isSuccess(int line) {
+        return this.errors[line] == null;
+    }
+
+    /**
+     * Returns the result of the given line.
+     *
+     * @param line the line index
+     * @return the integer result of the line
+     * @throws ExpressionCalculatorException the exception the line raised, if it failed
+     * @throws ArithmeticOverflowException if the result of a wide numeric mode does not fit in an {@code int}
+     */
+    public int getValue(int line) {
+        if (this.errors[line] != null) {
+            throw this.errors[line];
+        }
+        if (this.numbers != null) {
+            return ExpressionCalculator.toInt(this.numbers[line]);
+        }
+        return this.values[line];
+    }
+
+    /**
+     * Returns the result of the given line in any numeric mode.
+     *
+     * @param line the line index
+     * @return the result of the line: an {@link Integer}, {@link Long} or {@link java.math.BigInteger}
+     * @throws ExpressionCalculatorException the exception the line raised, if it failed
+     */
+    public Number getNumber(int line) {
+        if (this.errors[line] != null) {
+            throw this.errors[line];
+        }
+        return this.numbers != null ? this.numbers[line] : Integer.valueOf(this.values[line]);
+    }
+
+    /**
+     * Returns the exception raised by the given line.
+     *
+     * @param line the line index
+     * @return the exception, or {@code null} if the line succeeded
+     */
+    public ExpressionCalculatorException getError(int line) {
+        return this.errors[line];
+    }
+    //endregion
+}
@@ -0,0 +1,245 @@
+package org.taboola.block;
+
+import org.taboola.evaluator.*;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.store.VariableSlots;
+import org.taboola.store.VariableStore;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates the lines of a block in order, computing each shared subexpression (see
+ * {@link org.taboola.optimizer.ExpressionInterner}) occurring more than once in the block only
+ * once while the variables it reads are unchanged.
+ *
+ * Every variable has a version, incremented whenever a line writes it, through an assignment,
+ * an increment or a compound assignment. A cached value is stamped with the sum of the versions
+ * of the variables its subexpression reads: versions only grow, so the stamp is unchanged exactly
+ * when none of them was written since, and the value is reused. A subexpression that fails, on an
+ * undefined variable, is not cached; once defined, a variable stays defined until the block ends.
+ *
+ * Lines holding a repeated subexpression are evaluated by walking their tree, which bumps the
+ * versions as it writes. The other lines run their plan as usual, then bump the versions of every
+ * variable they may have written. The evaluator is confined to one thread and one block.
+ */
+final class CommonSubexpressionEvaluator {
+
+    //region Members
+    /**
+     * Stamp of a cache entry that holds no value.
+     */
+    private static final long EMPTY = -1;
+
+    private final ExpressionPlan[] plans;
+    private final VariableStore store;
+
+    /**
+     * The shared subexpressions of the block, in an open-addressing table probed linearly from their
+     * hash code; an entry of the table is also the cache entry of its subexpression.
+     */
+    private final SharedExpression[] keys;
+
+    /**
+     * Number of occurrences of each subexpression in the block; only those occurring more than once are cached.
+     */
+    private final int[] occurrences;
+
+    /**
+     * Whether each line holds a repeated subexpression.
+     */
+    private final boolean[] walked;
+
+    /**
+     * The cached value and stamp of each entry.
+     */
+    private final int[] values;
+    private final long[] stamps;
+
+    /**
+     * Number of writes of each variable slot since the block started.
+     */
+    private final long[] versions = new long[VariableSlots.SLOT_COUNT];
+    //endregion
+
+    //region Constructors
+    private CommonSubexpressionEvaluator(ExpressionPlan[] plans, VariableStore store,
+                                         SharedExpression[] keys, int[] occurrences, boolean[] walked) {
+        this.plans = plans;
+        this.store = store;
+        this.keys = keys;
+        this.occurrences = occurrences;
+        this.walked = walked;
+        this.values = new int[keys.length];
+        this.stamps = new long[keys.length];
+        Arrays.fill(this.stamps, EMPTY);
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Creates the evaluator of a block, if it has repeated subexpressions.
+     *
+     * @param plans the plan of each line, {@code null} for invalid lines
+     * @param store the store holding the variable values
+     * @return the evaluator, or {@code null} if no shared subexpression occurs twice in the block
+     */
+    static CommonSubexpressionEvaluator forBlock(ExpressionPlan[] plans, VariableStore store) {
+        int total = 0;
+        for (ExpressionPlan plan : plans) {
+            if (plan != null) {
+                total += plan.getCommonSubexpressions().length;
+            }
+        }
+        if (total < 2) {
+            return null;
+        }
+
+        // At most half full, so probes stay short
+        SharedExpression[] keys = new SharedExpression[Integer.highestOneBit(total) << 2];
+        int[] occurrences = new int[keys.length];
+        for (ExpressionPlan plan : plans) {
+            if (plan != null) {
+                for (SharedExpression subexpression : plan.getCommonSubexpressions()) {
+                    int entry = find(keys, subexpression);
+                    keys[entry] = subexpression;
+                    occurrences[entry]++;
+                }
+            }
+        }
+
+        boolean[] walked = new boolean[plans.length];
+        boolean repeated = false;
+        for (int line = 0; line < plans.length; line++) {
+            if (plans[line] != null) {
+                for (SharedExpression subexpression : plans[line].getCommonSubexpressions()) {
+                    walked[line] |= occurrences[find(keys, subexpression)] > 1;
+                }
+                repeated |= walked[line];
+            }
+        }
+        return repeated ? new CommonSubexpressionEvaluator(plans, store, keys, occurrences, walked) : null;
+    }
+
+    /**
+     * Evaluates a single line, recording its result or error.
+     *
+     * @param line   the line index
+     * @param values the result of each line
+     * @param errors the error of each line
+     */
+    void evaluate(int line, int[] values, ExpressionCalculatorException[] errors) {
+        ExpressionPlan plan = this.plans[line];
+        if (plan == null) {
+            return;
+        }
+        try {
+            if (this.walked[line]) {
+                values[line] = eval(plan.getRoot());
+            } else {
+                try {
+                    values[line] = plan.eval(this.store);
+                } finally {
+                    for (int written = plan.getWriteMask(); written != 0; written &= written - 1) {
+                        this.versions[Integer.numberOfTrailingZeros(written)]++;
+                    }
+                }
+            }
+        } catch (ExpressionCalculatorException e) {
+            errors[line] = e;
+        }
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Evaluates a node with the same semantics as {@link Evaluable#eval(VariableStore)}, reusing
+     * the cached values of repeated subexpressions and recording the writes.
+     *
+     * @param node the node to evaluate
+     * @return the value of the node
+     */
+    private int eval(Evaluable node) {
+        // Tested by hand, most frequent first: a type switch tests the cases one by one through a bootstrap
+        if (node instanceof SharedExpression shared) {
+            return evalShared(shared);
+        }
+        if (node instanceof Expression expression) {
+            return expression.apply(eval(expression.getLeft()), eval(expression.getRight()));
+        }
+        if (node instanceof AssignmentExpression assignment) {
+            int value = eval(assignment.getExpression());
+            this.store.set(assignment.getVariable().getSlot(), value);
+            return written(assignment.getVariable().getSlot(), value);
+        }
+        if (node instanceof AddAssignmentExpression assignment) {
+            int slot = assignment.getVariable().getSlot();
+            // Reads the variable first, as AddAssignmentExpression does
+            int current = this.store.get(slot);
+            if (!assignment.expressionWritesVariable()) {
+                return written(slot, this.store.addAndGet(slot, eval(assignment.getExpression())));
+            }
+            int value = current + eval(assignment.getExpression());
+            this.store.set(slot, value);
+            return written(slot, value);
+        }
+        if (node instanceof PostIncrementVariableExpression || node instanceof PreIncrementVariableExpression) {
+            return written(((VariableExpression) node).getSlot(), node.eval(this.store));
+        }
+        return node.eval(this.store);
+    }
+
+    /**
+     * Evaluates a shared subexpression, from the cache while the variables it reads are unchanged.
+     *
+     * @param shared the shared subexpression
+     * @return the value of the subexpression
+     */
+    private int evalShared(SharedExpression shared) {
+        int entry = find(this.keys, shared);
+        if (this.keys[entry] != shared || this.occurrences[entry] < 2) {
+            return shared.apply(eval(shared.getLeft()), eval(shared.getRight()));
+        }
+        long stamp = 0;
+        for (int read = shared.getReadMask(); read != 0; read &= read - 1) {
+            stamp += this.versions[Integer.numberOfTrailingZeros(read)];
+        }
+        if (this.stamps[entry] == stamp) {
+            return this.values[entry];
+        }
+        // Evaluating a shared subexpression writes nothing, so the stamp still holds after it
+        int value = shared.apply(eval(shared.getLeft()), eval(shared.getRight()));
+        this.values[entry] = value;
+        this.stamps[entry] = stamp;
+        return value;
+    }
+
+    /**
+     * Finds the entry of a subexpression in a table, or the free entry where it belongs.
+     *
+     * @param keys          the table, with at least one free entry
+     * @param subexpression the subexpression
+     * @return the index of the entry
+     */
+    private static int find(SharedExpression[] keys, SharedExpression subexpression) {
+        int hash = subexpression.hashCode();
+        int entry = (hash ^ (hash >>> 16)) & (keys.length - 1);
+        while (keys[entry] != null && keys[entry] != subexpression) {
+            entry = (entry + 1) & (keys.length - 1);
+        }
+        return entry;
+    }
+
+    /**
+     * Records a write of a variable.
+     *
+     * @param slot  the written variable slot
+     * @param value the value of the writing node
+     * @return the value of the writing node
+     */
+    private int written(int slot, int value) {
+        this.versions[slot]++;
+        return value;
+    }
+    //endregion
+}
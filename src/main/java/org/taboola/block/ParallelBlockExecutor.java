@@ -0,0 +1,391 @@
+package org.taboola.block;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.VariableSlots;
+import org.taboola.store.VariableStore;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Evaluates a whole block of expressions, running independent lines in parallel.
+ *
+ * Each line's read and write sets (see {@link ExpressionPlan#getReadMask()} and
+ * {@link ExpressionPlan#getWriteMask()}) are used to build a dataflow graph in which a line
+ * depends on every earlier line it conflicts with:
+ * <ul>
+ *     <li>the last earlier line writing a variable it reads or writes (read-after-write, write-after-write);</li>
+ *     <li>every earlier line reading a variable it writes since that variable was last written (write-after-read).</li>
+ * </ul>
+ * Lines are scheduled on a {@link ForkJoinPool} as soon as all the lines they depend on are done;
+ * a line releasing a single dependent runs it inline rather than scheduling it.
+ * Conflicting lines therefore run in input order, so both the per-line results and the final
+ * variable values are identical to a sequential evaluation, including for lines that fail part-way.
+ * Invalid lines are reported without being scheduled. A line failing with anything but an
+ * {@link ExpressionCalculatorException} aborts the block: the lines not started yet are skipped,
+ * and the failure is rethrown to the caller.
+ *
+ * Evaluating a line takes far less time than scheduling it, so a block only runs in parallel
+ * when its graph is wide enough: on average at least {@code minParallelism} lines must be able
+ * to run side by side, measured as the number of lines divided by the longest dependency chain.
+ * Other blocks are evaluated sequentially, computing the subexpressions their lines have in common
+ * only once while the variables they read are unchanged (see {@link CommonSubexpressionEvaluator}),
+ * unless the store is shared with concurrent writers.
+ */
+@Component
+public class ParallelBlockExecutor {
+
+    //region Members
+    /**
+     * The pool running the lines.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Default minimum average number of lines that can run side by side for a block to run in parallel.
+     */
+    public static final int DEFAULT_MIN_PARALLELISM = 16;
+
+    /**
+     * Blocks with fewer lines than this are evaluated sequentially.
+     */
+    private final int parallelThreshold;
+
+    /**
+     * Blocks whose average parallelism is lower than this are evaluated sequentially.
+     */
+    private final int minParallelism;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code ParallelBlockExecutor} running on the common pool.
+     *
+     * @param properties the calculator settings holding the parallel threshold
+     */
+    @Autowired
+    public ParallelBlockExecutor(CalculatorProperties properties) {
+        this(ForkJoinPool.commonPool(), properties.getParallelBlockThreshold());
+    }
+
+    /**
+     * Constructs a new {@code ParallelBlockExecutor}.
+     *
+     * @param pool              the pool running the lines
+     * @param parallelThreshold blocks with fewer lines than this are evaluated sequentially
+     */
+    public ParallelBlockExecutor(ForkJoinPool pool, int parallelThreshold) {
+        this(pool, parallelThreshold, DEFAULT_MIN_PARALLELISM);
+    }
+
+    /**
+     * Constructs a new {@code ParallelBlockExecutor}.
+     *
+     * @param pool              the pool running the lines
+     * @param parallelThreshold blocks with fewer lines than this are evaluated sequentially
+     * @param minParallelism    blocks whose lines count is less than this many times their longest
+     *                          dependency chain are evaluated sequentially
+     */
+    public ParallelBlockExecutor(ForkJoinPool pool, int parallelThreshold, int minParallelism) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+        this.minParallelism = minParallelism;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Evaluates the given lines against the store, with the same outcome as evaluating them one by one.
+     *
+     * @param lines     the expressions of the block, in order
+     * @param planCache the cache providing the plan of each expression
+     * @param store     the store holding the variable values
+     * @return the result or error of each line
+     * @throws RuntimeException the first unexpected failure of a line, which aborts the block
+     */
+    public BlockResult execute(List<String> lines, ExpressionPlanCache planCache, VariableStore store) {
+        int size = lines.size();
+        ExpressionPlan[] plans = new ExpressionPlan[size];
+        int[] values = new int[size];
+        ExpressionCalculatorException[] errors = new ExpressionCalculatorException[size];
+
+        for (int line = 0; line < size; line++) {
+            try {
+                plans[line] = planCache.getPlan(lines.get(line));
+            } catch (ExpressionCalculatorException e) {
+                errors[line] = e;
+            }
+        }
+
+        Schedule schedule = size < parallelThreshold ? null : new Schedule(plans, values, errors, store);
+        if (schedule != null && (long) schedule.criticalPath * minParallelism <= size) {
+            schedule.run();
+        } else {
+            CommonSubexpressionEvaluator subexpressions = store.isConcurrent() ? null : CommonSubexpressionEvaluator.forBlock(plans, store);
+            for (int line = 0; line < size; line++) {
+                if (subexpressions != null) {
+                    subexpressions.evaluate(line, values, errors);
+                } else {
+                    evaluate(line, plans, values, errors, store);
+                }
+            }
+        }
+        return new BlockResult(values, errors);
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Evaluates a single line, recording its result or error.
+     *
+     * @param line   the line index
+     * @param plans  the plan of each line, {@code null} for invalid lines
+     * @param values the result of each line
+     * @param errors the error of each line
+     * @param store  the store holding the variable values
+     */
+    private static void evaluate(int line, ExpressionPlan[] plans, int[] values,
+                                 ExpressionCalculatorException[] errors, VariableStore store) {
+        if (plans[line] == null) {
+            return;
+        }
+        try {
+            values[line] = plans[line].eval(store);
+        } catch (ExpressionCalculatorException e) {
+            errors[line] = e;
+        }
+    }
+    //endregion
+
+    //region Schedule
+    /**
+     * The dataflow graph of one block and its execution state. The caller waits for the block as a
+     * {@link ForkJoinPool.ManagedBlocker}, so the pool can compensate when it is one of its workers.
+     */
+    private final class Schedule implements ForkJoinPool.ManagedBlocker {
+        private final ExpressionPlan[] plans;
+        private final int[] values;
+        private final ExpressionCalculatorException[] errors;
+        private final VariableStore store;
+
+        /**
+         * Number of unfinished lines each line still waits for.
+         */
+        private final AtomicIntegerArray pending;
+
+        /**
+         * Number of lines each line depends on, counted without atomics while the graph is built.
+         */
+        private final int[] predecessors;
+
+        /**
+         * Edges of the graph as linked lists: {@code firstEdge[line]} is the first outgoing edge of a line,
+         * {@code nextEdge[edge]} the following one, and {@code edgeTarget[edge]} the dependent line.
+         */
+        private final int[] firstEdge;
+        private int[] nextEdge = new int[64];
+        private int[] edgeTarget = new int[64];
+        private int edgeCount;
+
+        /**
+         * Counts down as lines finish, or all at once when a line fails unexpectedly.
+         */
+        private final CountDownLatch remaining;
+
+        /**
+         * The first failure of a line other than an {@link ExpressionCalculatorException}, which aborts the block.
+         */
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        /**
+         * Length of each line's longest chain of dependencies, the line included.
+         */
+        private final int[] depth;
+
+        /**
+         * Number of lines of the longest dependency chain of the block.
+         */
+        private int criticalPath;
+
+        Schedule(ExpressionPlan[] plans, int[] values, ExpressionCalculatorException[] errors, VariableStore store) {
+            this.plans = plans;
+            this.values = values;
+            this.errors = errors;
+            this.store = store;
+            this.firstEdge = new int[plans.length];
+            Arrays.fill(this.firstEdge, -1);
+            this.remaining = new CountDownLatch(plans.length);
+            this.depth = new int[plans.length];
+            this.predecessors = new int[plans.length];
+            buildGraph();
+            this.pending = new AtomicIntegerArray(this.predecessors);
+        }
+
+        /**
+         * Schedules the lines without dependencies and waits for the whole block to finish.
+         *
+         * @throws RuntimeException the first unexpected failure of a line
+         */
+        void run() {
+            try {
+                // Read the counts fixed at build time: the live ones reach zero as lines finish
+                for (int line = 0; line < plans.length; line++) {
+                    if (predecessors[line] == 0) {
+                        submit(line);
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                abort(e);
+            }
+            try {
+                ForkJoinPool.managedBlock(this);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while evaluating a block", e);
+            }
+
+            Throwable failed = failure.get();
+            if (failed instanceof RuntimeException e) {
+                throw e;
+            }
+            if (failed instanceof Error e) {
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            remaining.await();
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return remaining.getCount() == 0;
+        }
+
+        /**
+         * Adds an edge for every conflict between a line and the earlier lines.
+         */
+        private void buildGraph() {
+            int[] lastWriter = new int[VariableSlots.SLOT_COUNT];
+            Arrays.fill(lastWriter, -1);
+            int[][] readers = new int[VariableSlots.SLOT_COUNT][4];
+            int[] readerCount = new int[VariableSlots.SLOT_COUNT];
+
+            for (int line = 0; line < plans.length; line++) {
+                if (plans[line] == null) {
+                    continue;
+                }
+                depth[line] = 1;
+                int writes = plans[line].getWriteMask();
+                int reads = plans[line].getReadMask() & ~writes;
+
+                for (int accessed = reads | writes; accessed != 0; accessed &= accessed - 1) {
+                    int slot = Integer.numberOfTrailingZeros(accessed);
+                    if (lastWriter[slot] >= 0) {
+                        addEdge(lastWriter[slot], line);
+                    }
+                    if ((writes & (1 << slot)) != 0) {
+                        for (int i = 0; i < readerCount[slot]; i++) {
+                            addEdge(readers[slot][i], line);
+                        }
+                        readerCount[slot] = 0;
+                        lastWriter[slot] = line;
+                    } else {
+                        if (readerCount[slot] == readers[slot].length) {
+                            readers[slot] = Arrays.copyOf(readers[slot], readerCount[slot] << 1);
+                        }
+                        readers[slot][readerCount[slot]++] = line;
+                    }
+                }
+                criticalPath = Math.max(criticalPath, depth[line]);
+            }
+        }
+
+        /**
+         * Records that {@code to} must run after {@code from}.
+         *
+         * @param from the earlier line
+         * @param to   the dependent line
+         */
+        private void addEdge(int from, int to) {
+            if (edgeCount == edgeTarget.length) {
+                nextEdge = Arrays.copyOf(nextEdge, edgeCount << 1);
+                edgeTarget = Arrays.copyOf(edgeTarget, edgeCount << 1);
+            }
+            edgeTarget[edgeCount] = to;
+            nextEdge[edgeCount] = firstEdge[from];
+            firstEdge[from] = edgeCount++;
+            predecessors[to]++;
+            depth[to] = Math.max(depth[to], depth[from] + 1);
+        }
+
+        /**
+         * Submits a line whose dependencies are all done, or finishes it at once if it is invalid.
+         *
+         * @param line the line index
+         */
+        private void submit(int line) {
+            if (plans[line] == null) {
+                remaining.countDown();
+            } else {
+                pool.execute(() -> complete(line));
+            }
+        }
+
+        /**
+         * Evaluates a line, then releases the lines that were waiting for it. The first released
+         * line is evaluated in the same task, and so on along the chain; the others are submitted.
+         *
+         * @param line the line index
+         */
+        private void complete(int line) {
+            try {
+                while (line >= 0 && failure.get() == null) {
+                    evaluate(line, plans, values, errors, store);
+                    int next = -1;
+                    for (int edge = firstEdge[line]; edge >= 0; edge = nextEdge[edge]) {
+                        int dependent = edgeTarget[edge];
+                        if (pending.decrementAndGet(dependent) == 0) {
+                            if (next < 0) {
+                                next = dependent;
+                            } else {
+                                submit(dependent);
+                            }
+                        }
+                    }
+                    remaining.countDown();
+                    line = next;
+                }
+            } catch (Throwable e) {
+                abort(e);
+            }
+        }
+
+        /**
+         * Records an unexpected failure and releases the caller at once: the lines waiting for the
+         * failed one would never be released, and those not started yet are skipped.
+         *
+         * @param e the failure
+         */
+        private void abort(Throwable e) {
+            if (!failure.compareAndSet(null, e) && failure.get() != e) {
+                failure.get().addSuppressed(e);
+            }
+            while (remaining.getCount() > 0) {
+                remaining.countDown();
+            }
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,114 @@
+package org.taboola.columnar;
+
+import org.taboola.store.VariableSlots;
+
+/**
+ * A batch of variable bindings stored by column: one {@code int[]} per variable, holding the
+ * value of the variable in every row.
+ *
+ * Rows are independent scenarios evaluated by the {@link ColumnarEvaluator}. Evaluation replaces
+ * the columns of the variables it assigns with new arrays and never modifies the arrays it was
+ * given, so an input column can be shared by several batches.
+ */
+public final class ColumnBatch {
+
+    //region Members
+    /**
+     * The number of rows of every column.
+     */
+    private final int rows;
+
+    /**
+     * The column of each variable, indexed by slot, or {@code null} for unbound variables.
+     */
+    private final int[][] columns = new int[VariableSlots.SLOT_COUNT][];
+
+    /**
+     * Bitmask of the bound slots.
+     */
+    private int defined;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs an empty {@code ColumnBatch}.
+     *
+     * @param rows the number of rows of every column
+     */
+    public ColumnBatch(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Negative row count " + rows);
+        }
+        this.rows = rows;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Binds a variable to a column of values.
+     *
+     * @param name   the variable name (a-z)
+     * @param column the value of the variable in each row
+     * @return this batch
+     * @throws IllegalArgumentException if the column does not have one value per row
+     */
+    public ColumnBatch set(char name, int[] column) {
+        set(VariableSlots.slotOf(name), column);
+        return this;
+    }
+
+    /**
+     * Returns the column of a variable.
+     *
+     * @param name the variable name (a-z)
+     * @return the value of the variable in each row, or {@code null} if the variable is unbound
+     */
+    public int[] get(char name) {
+        return get(VariableSlots.slotOf(name));
+    }
+
+    /**
+     * Returns the number of rows of every column.
+     *
+     * @return the row count
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns a bitmask of the bound variables, where bit {@code i} is set if slot {@code i} is bound.
+     *
+     * @return the bound variables bitmask
+     */
+    public int definedMask() {
+        return this.defined;
+    }
+    //endregion
+
+    //region Package-Private Methods
+    /**
+     * Binds the variable in the given slot to a column of values.
+     *
+     * @param slot   the variable slot
+     * @param column the value of the variable in each row
+     */
+    void set(int slot, int[] column) {
+        if (column.length != this.rows) {
+            throw new IllegalArgumentException("Expected a column of " + this.rows + " rows, got " + column.length);
+        }
+        this.columns[slot] = column;
+        this.defined |= 1 << slot;
+    }
+
+    /**
+     * Returns the column of the variable in the given slot.
+     *
+     * @param slot the variable slot
+     * @return the column, or {@code null} if the variable is unbound
+     */
+    int[] get(int slot) {
+        return this.columns[slot];
+    }
+    //endregion
+}
@@ -0,0 +1,423 @@
+package org.taboola.columnar;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+import org.taboola.compiler.PostfixCompiler;
+import org.taboola.compiler.PostfixProgram;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.store.VariableSlots;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates one expression over every row of a {@link ColumnBatch} with the Vector API.
+ *
+ * The expression runs as its {@link PostfixProgram}, but each instruction is applied to a whole
+ * tile of rows at once rather than to a single value: the stack holds columns of intermediate
+ * results, and the arithmetic instructions are SIMD loops over them. The interpretation cost of
+ * an instruction is therefore paid once per tile instead of once per row. Variables that are only
+ * read are used in place from their input columns; variables the expression writes are kept in
+ * per-tile buffers, so increments and assignments are visible to the rest of the row, exactly as
+ * in {@link PostfixProgram#eval}.
+ *
+ * Arithmetic is wrapping {@code int} arithmetic, as in the {@code INT} numeric mode. Every row is
+ * evaluated independently, as if against its own variable store.
+ *
+ * The evaluator is stateless and thread-safe. Running it requires the
+ * {@code jdk.incubator.vector} module ({@code --add-modules jdk.incubator.vector}).
+ */
+public class ColumnarEvaluator {
+
+    //region Members
+    /**
+     * The widest vector shape supported by the platform.
+     */
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Number of rows processed by each instruction at once; small enough for a tile of every
+     * stack entry and variable to stay in the L1 cache.
+     */
+    static final int TILE_SIZE = 1024;
+
+    /**
+     * Compiler producing the programs of the evaluated plans.
+     */
+    private final PostfixCompiler compiler = new PostfixCompiler();
+    //endregion
+
+    //region Public Methods
+    /**
+     * Evaluates a plan for every row of a batch. See {@link #evaluate(PostfixProgram, ColumnBatch)}.
+     *
+     * @param plan  the plan of the expression
+     * @param batch the variable bindings, receiving the columns of the assigned variables
+     * @return the result of the expression in each row
+     * @throws UndefinedVariableException if the expression reads a variable that is neither bound nor assigned before
+     */
+    public int[] evaluate(ExpressionPlan plan, ColumnBatch batch) {
+        return evaluate(this.compiler.compile(plan.getRoot()), batch);
+    }
+
+    /**
+     * Evaluates a program for every row of a batch.
+     *
+     * The variables the program assigns or increments get new columns in the batch, holding their
+     * value at the end of each row; the columns given to the batch are never modified. A program
+     * reading a variable that is not bound fails as a whole before any row is evaluated.
+     *
+     * @param program the program of the expression
+     * @param batch   the variable bindings, receiving the columns of the assigned variables
+     * @return the result of the expression in each row
+     * @throws UndefinedVariableException if the program reads a variable that is neither bound nor assigned before
+     */
+    public int[] evaluate(PostfixProgram program, ColumnBatch batch) {
+        int[] code = program.getCode();
+        int writeMask = checkVariables(code, batch.definedMask());
+
+        int rows = batch.getRows();
+        int[] result = new int[rows];
+        int[][] outputs = new int[VariableSlots.SLOT_COUNT][];
+        for (int mask = writeMask; mask != 0; mask &= mask - 1) {
+            outputs[Integer.numberOfTrailingZeros(mask)] = new int[rows];
+        }
+
+        Tile tile = new Tile(batch, program.getMaxStack());
+        for (int start = 0; start < rows; start += TILE_SIZE) {
+            int length = Math.min(TILE_SIZE, rows - start);
+            tile.run(code, start, length);
+            tile.copyTop(result, start);
+            for (int mask = writeMask; mask != 0; mask &= mask - 1) {
+                int slot = Integer.numberOfTrailingZeros(mask);
+                System.arraycopy(tile.variables[slot], 0, outputs[slot], start, length);
+            }
+        }
+
+        for (int mask = writeMask; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            batch.set(slot, outputs[slot]);
+        }
+        return result;
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Checks that every variable the program reads is bound or assigned before it is read.
+     *
+     * @param code    the instructions of the program
+     * @param defined the bitmask of the bound variables
+     * @return the bitmask of the variables the program writes
+     * @throws UndefinedVariableException if a variable is read before being bound or assigned
+     */
+    private static int checkVariables(int[] code, int defined) {
+        int available = defined;
+        int written = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            int opcode = code[pc];
+            if (!PostfixProgram.hasOperand(opcode)) {
+                continue;
+            }
+            int operand = code[++pc];
+            if (opcode == PostfixProgram.PUSH_CONST) {
+                continue;
+            }
+            int bit = 1 << operand;
+            if (opcode != PostfixProgram.STORE && (available & bit) == 0) {
+                throw new UndefinedVariableException(VariableSlots.nameOf(operand));
+            }
+            if (opcode != PostfixProgram.LOAD) {
+                available |= bit;
+                written |= bit;
+            }
+        }
+        return written;
+    }
+    //endregion
+
+    //region Tile
+    /**
+     * The working state of an evaluation, reused for each tile of rows.
+     *
+     * A stack entry is either a constant or a reference to a column range: a range of an input
+     * column, or the stack buffer of the entry. Entries never reference the variable buffers,
+     * which later instructions may modify.
+     */
+    private static final class Tile {
+
+        private final ColumnBatch batch;
+
+        /**
+         * The buffer of each stack entry.
+         */
+        private final int[][] buffers;
+
+        /**
+         * The column referenced by each stack entry, or {@code null} if the entry is a constant.
+         */
+        private final int[][] arrays;
+        private final int[] offsets;
+        private final int[] constants;
+
+        /**
+         * The values of the variables modified in the current tile, indexed by slot.
+         */
+        private final int[][] variables = new int[VariableSlots.SLOT_COUNT][];
+
+        /**
+         * Bitmask of the variables modified in the current tile.
+         */
+        private int modified;
+
+        private int start;
+        private int length;
+        private int sp;
+
+        Tile(ColumnBatch batch, int maxStack) {
+            this.batch = batch;
+            this.buffers = new int[maxStack][TILE_SIZE];
+            this.arrays = new int[maxStack][];
+            this.offsets = new int[maxStack];
+            this.constants = new int[maxStack];
+        }
+
+        /**
+         * Runs the program over the rows of a tile, leaving its result on top of the stack.
+         *
+         * @param code   the instructions of the program
+         * @param start  the index of the first row of the tile
+         * @param length the number of rows of the tile
+         */
+        void run(int[] code, int start, int length) {
+            this.start = start;
+            this.length = length;
+            this.modified = 0;
+            this.sp = 0;
+
+            int pc = 0;
+            while (pc < code.length) {
+                switch (code[pc++]) {
+                    case PostfixProgram.PUSH_CONST -> pushConstant(code[pc++]);
+                    case PostfixProgram.LOAD -> load(code[pc++]);
+                    case PostfixProgram.STORE -> store(code[pc++]);
+                    case PostfixProgram.ADD -> binary(PostfixProgram.ADD);
+                    case PostfixProgram.SUB -> binary(PostfixProgram.SUB);
+                    case PostfixProgram.MUL -> binary(PostfixProgram.MUL);
+                    case PostfixProgram.INC_POST -> postIncrement(code[pc++]);
+                    case PostfixProgram.INC_PRE -> preIncrement(code[pc++]);
+                    case PostfixProgram.ADD_TO -> {
+                        // Each row of a batch has its own variables, so the addition needs no atomicity
+                        binary(PostfixProgram.ADD);
+                        store(code[pc++]);
+                    }
+                    default -> throw new IllegalStateException("Invalid opcode " + code[pc - 1] + " at " + (pc - 1));
+                }
+            }
+        }
+
+        /**
+         * Copies the result of the tile into the result column.
+         *
+         * @param result the result column
+         * @param start  the index of the first row of the tile
+         */
+        void copyTop(int[] result, int start) {
+            int top = this.sp - 1;
+            if (this.arrays[top] == null) {
+                Arrays.fill(result, start, start + this.length, this.constants[top]);
+            } else {
+                System.arraycopy(this.arrays[top], this.offsets[top], result, start, this.length);
+            }
+        }
+
+        private void pushConstant(int value) {
+            this.arrays[this.sp] = null;
+            this.constants[this.sp++] = value;
+        }
+
+        private void pushColumn(int[] array, int offset) {
+            this.arrays[this.sp] = array;
+            this.offsets[this.sp++] = offset;
+        }
+
+        /**
+         * Pushes a copy of the current value of a modified variable.
+         *
+         * @param slot the variable slot
+         */
+        private void pushCopy(int slot) {
+            int[] buffer = this.buffers[this.sp];
+            System.arraycopy(this.variables[slot], 0, buffer, 0, this.length);
+            pushColumn(buffer, 0);
+        }
+
+        private void load(int slot) {
+            if ((this.modified & (1 << slot)) != 0) {
+                pushCopy(slot);
+            } else {
+                pushColumn(this.batch.get(slot), this.start);
+            }
+        }
+
+        private void store(int slot) {
+            int[] variable = variableBuffer(slot);
+            int top = this.sp - 1;
+            if (this.arrays[top] == null) {
+                Arrays.fill(variable, 0, this.length, this.constants[top]);
+            } else {
+                System.arraycopy(this.arrays[top], this.offsets[top], variable, 0, this.length);
+            }
+            this.modified |= 1 << slot;
+        }
+
+        private void postIncrement(int slot) {
+            if ((this.modified & (1 << slot)) != 0) {
+                pushCopy(slot);
+                addConstant(this.variables[slot], 0, 1, this.variables[slot], this.length);
+            } else {
+                // The input column keeps the previous value, so it can be pushed as is
+                int[] column = this.batch.get(slot);
+                addConstant(column, this.start, 1, variableBuffer(slot), this.length);
+                this.modified |= 1 << slot;
+                pushColumn(column, this.start);
+            }
+        }
+
+        private void preIncrement(int slot) {
+            if ((this.modified & (1 << slot)) != 0) {
+                addConstant(this.variables[slot], 0, 1, this.variables[slot], this.length);
+            } else {
+                addConstant(this.batch.get(slot), this.start, 1, variableBuffer(slot), this.length);
+                this.modified |= 1 << slot;
+            }
+            pushCopy(slot);
+        }
+
+        private int[] variableBuffer(int slot) {
+            if (this.variables[slot] == null) {
+                this.variables[slot] = new int[TILE_SIZE];
+            }
+            return this.variables[slot];
+        }
+
+        /**
+         * Pops the two top entries and pushes the result of the operator applied to them.
+         *
+         * @param opcode the opcode of the operator
+         */
+        private void binary(int opcode) {
+            int right = --this.sp;
+            int left = right - 1;
+            int[] l = this.arrays[left];
+            int[] r = this.arrays[right];
+            int lo = this.offsets[left];
+            int ro = this.offsets[right];
+            int[] dest = this.buffers[left];
+
+            if (l == null && r == null) {
+                int a = this.constants[left];
+                int b = this.constants[right];
+                pushResult(left, null, switch (opcode) {
+                    case PostfixProgram.ADD -> a + b;
+                    case PostfixProgram.SUB -> a - b;
+                    default -> a * b;
+                });
+                return;
+            }
+
+            if (r == null) {
+                int b = this.constants[right];
+                switch (opcode) {
+                    case PostfixProgram.ADD -> addConstant(l, lo, b, dest, this.length);
+                    case PostfixProgram.SUB -> addConstant(l, lo, -b, dest, this.length);
+                    default -> multiplyConstant(l, lo, b, dest, this.length);
+                }
+            } else if (l == null) {
+                int a = this.constants[left];
+                switch (opcode) {
+                    case PostfixProgram.ADD -> addConstant(r, ro, a, dest, this.length);
+                    case PostfixProgram.SUB -> subtractFromConstant(a, r, ro, dest, this.length);
+                    default -> multiplyConstant(r, ro, a, dest, this.length);
+                }
+            } else {
+                switch (opcode) {
+                    case PostfixProgram.ADD -> add(l, lo, r, ro, dest, this.length);
+                    case PostfixProgram.SUB -> subtract(l, lo, r, ro, dest, this.length);
+                    default -> multiply(l, lo, r, ro, dest, this.length);
+                }
+            }
+            pushResult(left, dest, 0);
+        }
+
+        private void pushResult(int entry, int[] array, int constant) {
+            this.arrays[entry] = array;
+            this.offsets[entry] = 0;
+            this.constants[entry] = constant;
+        }
+    }
+    //endregion
+
+    //region Kernels
+    private static void add(int[] a, int ao, int[] b, int bo, int[] dest, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, a, ao + i).add(IntVector.fromArray(SPECIES, b, bo + i)).intoArray(dest, i);
+        }
+        for (; i < length; i++) {
+            dest[i] = a[ao + i] + b[bo + i];
+        }
+    }
+
+    private static void subtract(int[] a, int ao, int[] b, int bo, int[] dest, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, a, ao + i).sub(IntVector.fromArray(SPECIES, b, bo + i)).intoArray(dest, i);
+        }
+        for (; i < length; i++) {
+            dest[i] = a[ao + i] - b[bo + i];
+        }
+    }
+
+    private static void multiply(int[] a, int ao, int[] b, int bo, int[] dest, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, a, ao + i).mul(IntVector.fromArray(SPECIES, b, bo + i)).intoArray(dest, i);
+        }
+        for (; i < length; i++) {
+            dest[i] = a[ao + i] * b[bo + i];
+        }
+    }
+
+    private static void addConstant(int[] a, int ao, int b, int[] dest, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, a, ao + i).add(b).intoArray(dest, i);
+        }
+        for (; i < length; i++) {
+            dest[i] = a[ao + i] + b;
+        }
+    }
+
+    private static void subtractFromConstant(int a, int[] b, int bo, int[] dest, int length) {
+        IntVector constant = IntVector.broadcast(SPECIES, a);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            constant.sub(IntVector.fromArray(SPECIES, b, bo + i)).intoArray(dest, i);
+        }
+        for (; i < length; i++) {
+            dest[i] = a - b[bo + i];
+        }
+    }
+
+    private static void multiplyConstant(int[] a, int ao, int b, int[] dest, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, a, ao + i).mul(b).intoArray(dest, i);
+        }
+        for (; i < length; i++) {
+            dest[i] = a[ao + i] * b;
+        }
+    }
+    //endregion
+}
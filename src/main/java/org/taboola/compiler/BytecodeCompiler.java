@@ -0,0 +1,200 @@
+package org.taboola.compiler;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+import org.taboola.evaluator.*;
+import org.taboola.store.VariableStore;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Compiles an {@link Evaluable} tree into a generated JVM class.
+ *
+ * The generated class implements {@link Evaluable} with a single straight-line {@code eval}
+ * method: operands are pushed on the JVM operand stack, operators map to the matching
+ * {@code int} instructions, and variable accesses call the {@link VariableStore} slot methods
+ * directly. This removes the virtual dispatch between tree nodes, which becomes megamorphic
+ * once all node types are in use.
+ *
+ * Classes are defined as hidden classes, so they are unloaded once the compiled expression
+ * is no longer referenced (e.g., after its plan is evicted from the plan cache).
+ */
+public class BytecodeCompiler {
+
+    //region Members
+    /**
+     * Internal name of the generated class; hidden classes get a unique suffix appended by the JVM.
+     */
+    private static final String CLASS_NAME = Type.getInternalName(BytecodeCompiler.class)
+            .replace("BytecodeCompiler", "CompiledExpression");
+
+    private static final String EVALUABLE = Type.getInternalName(Evaluable.class);
+    private static final String STORE = Type.getInternalName(VariableStore.class);
+    private static final String EVAL_DESCRIPTOR = Type.getMethodDescriptor(Type.INT_TYPE, Type.getType(VariableStore.class));
+
+    /**
+     * Local variable holding the {@link VariableStore} argument of {@code eval}.
+     */
+    private static final int STORE_LOCAL = 1;
+
+    /**
+     * Scratch local variable holding an assigned value while it is written to the store.
+     */
+    private static final int VALUE_LOCAL = 2;
+
+    /**
+     * Lookup in this class's package, used to define the hidden classes.
+     */
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    //endregion
+
+    //region Public Methods
+    /**
+     * Compiles the given tree into an instance of a generated class.
+     *
+     * @param root the root of the tree to compile
+     * @return an evaluable equivalent to the tree
+     * @throws IllegalArgumentException if the tree contains an unsupported node type
+     * @throws IllegalStateException    if the class cannot be generated or defined
+     */
+    public Evaluable compile(Evaluable root) {
+        byte[] bytecode = generate(root);
+        try {
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytecode, true);
+            return (Evaluable) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to define compiled expression class", e);
+        }
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Generates the class file bytes for the given tree.
+     *
+     * @param root the root of the tree to compile
+     * @return the class file bytes
+     */
+    private byte[] generate(Evaluable root) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V21, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, CLASS_NAME,
+                null, Type.getInternalName(Object.class), new String[]{EVALUABLE});
+
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, Type.getInternalName(Object.class), "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor eval = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "eval", EVAL_DESCRIPTOR, null, null);
+        eval.visitCode();
+        emit(eval, root);
+        eval.visitInsn(Opcodes.IRETURN);
+        eval.visitMaxs(0, 0);
+        eval.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Emits the instructions leaving the value of the given node on the operand stack.
+     *
+     * @param method the method being generated
+     * @param node   the node to emit
+     */
+    private void emit(MethodVisitor method, Evaluable node) {
+        switch (node) {
+            case NumberExpression number -> pushInt(method, number.getValue());
+            case PostIncrementVariableExpression variable -> invokeStore(method, variable.getSlot(), "getAndIncrement");
+            case PreIncrementVariableExpression variable -> invokeStore(method, variable.getSlot(), "incrementAndGet");
+            case VariableExpression variable -> invokeStore(method, variable.getSlot(), "get");
+            case Expression expression -> {
+                emit(method, expression.getLeft());
+                emit(method, expression.getRight());
+                switch (expression.getOp()) {
+                    case ADD -> method.visitInsn(Opcodes.IADD);
+                    case SUB -> method.visitInsn(Opcodes.ISUB);
+                    case MULTIPLE -> method.visitInsn(Opcodes.IMUL);
+                    default -> {
+                        method.visitInsn(Opcodes.POP2);
+                        method.visitInsn(Opcodes.ICONST_0);
+                    }
+                }
+            }
+            case AssignmentExpression assignment -> {
+                emit(method, assignment.getExpression());
+                emitSet(method, assignment.getVariable().getSlot());
+            }
+            case AddAssignmentExpression assignment when assignment.expressionWritesVariable() -> {
+                invokeStore(method, assignment.getVariable().getSlot(), "get");
+                emit(method, assignment.getExpression());
+                method.visitInsn(Opcodes.IADD);
+                emitSet(method, assignment.getVariable().getSlot());
+            }
+            case AddAssignmentExpression assignment -> {
+                // The read only checks that the variable is defined; the store adds the value itself
+                invokeStore(method, assignment.getVariable().getSlot(), "get");
+                method.visitInsn(Opcodes.POP);
+                method.visitVarInsn(Opcodes.ALOAD, STORE_LOCAL);
+                pushInt(method, assignment.getVariable().getSlot());
+                emit(method, assignment.getExpression());
+                method.visitMethodInsn(Opcodes.INVOKEINTERFACE, STORE, "addAndGet", "(II)I", true);
+            }
+            default -> throw new IllegalArgumentException("Unsupported node type: " + node.getClass().getName());
+        }
+    }
+
+    /**
+     * Emits the instructions assigning the value on top of the operand stack to a variable,
+     * leaving the value on the stack.
+     *
+     * @param method the method being generated
+     * @param slot   the variable slot
+     */
+    private void emitSet(MethodVisitor method, int slot) {
+        method.visitInsn(Opcodes.DUP);
+        method.visitVarInsn(Opcodes.ISTORE, VALUE_LOCAL);
+        method.visitVarInsn(Opcodes.ALOAD, STORE_LOCAL);
+        pushInt(method, slot);
+        method.visitVarInsn(Opcodes.ILOAD, VALUE_LOCAL);
+        method.visitMethodInsn(Opcodes.INVOKEINTERFACE, STORE, "set", "(II)V", true);
+    }
+
+    /**
+     * Emits a call to a {@link VariableStore} method taking a slot and returning an {@code int}.
+     *
+     * @param method      the method being generated
+     * @param slot        the variable slot
+     * @param storeMethod the name of the store method
+     */
+    private void invokeStore(MethodVisitor method, int slot, String storeMethod) {
+        method.visitVarInsn(Opcodes.ALOAD, STORE_LOCAL);
+        pushInt(method, slot);
+        method.visitMethodInsn(Opcodes.INVOKEINTERFACE, STORE, storeMethod, "(I)I", true);
+    }
+
+    /**
+     * Emits the shortest instruction pushing the given constant.
+     *
+     * @param method the method being generated
+     * @param value  the constant to push
+     */
+    private void pushInt(MethodVisitor method, int value) {
+        if (value >= -1 && value <= 5) {
+            method.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            method.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            method.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,168 @@
+package org.taboola.compiler;
+
+import org.taboola.enums.Operator;
+import org.taboola.evaluator.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Compiles an {@link Evaluable} tree into a {@link PostfixProgram}.
+ *
+ * Operands are emitted before their operator (post-order), so the program evaluates
+ * operands left to right exactly like the tree does. Fused increment nodes produced by
+ * the optimizer map to single {@code INC_PRE} and {@code INC_POST} instructions, and fused
+ * additions whose right-hand side leaves the variable alone end with an {@code ADD_TO}.
+ */
+public class PostfixCompiler {
+
+    //region Public Methods
+    /**
+     * Compiles the given tree into a postfix program.
+     *
+     * The tree is walked with an explicit stack, so its depth is not bounded by the Java stack.
+     *
+     * @param root the root of the tree to compile
+     * @return the compiled program
+     * @throws IllegalArgumentException if the tree contains an unsupported node type or operator
+     */
+    public PostfixProgram compile(Evaluable root) {
+        Emitter emitter = new Emitter();
+        ArrayDeque<Step> pending = new ArrayDeque<>();
+        for (Step step = new Step(root, false); step != null; step = pending.pollLast()) {
+            if (step.operandsEmitted()) {
+                emitOperator(emitter, step.node());
+            } else {
+                emitOperands(emitter, step.node(), pending);
+            }
+        }
+        return new PostfixProgram(Arrays.copyOf(emitter.code, emitter.size), emitter.maxDepth);
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Emits the instructions of a leaf, or schedules the operands of a node followed by its operator.
+     *
+     * @param emitter the instruction stream being built
+     * @param node    the node to emit
+     * @param pending the steps left, the next one last
+     */
+    private void emitOperands(Emitter emitter, Evaluable node, ArrayDeque<Step> pending) {
+        switch (node) {
+            case NumberExpression number -> emitter.emit(PostfixProgram.PUSH_CONST, number.getValue(), 1);
+            case PostIncrementVariableExpression variable -> emitter.emit(PostfixProgram.INC_POST, variable.getSlot(), 1);
+            case PreIncrementVariableExpression variable -> emitter.emit(PostfixProgram.INC_PRE, variable.getSlot(), 1);
+            case VariableExpression variable -> emitter.emit(PostfixProgram.LOAD, variable.getSlot(), 1);
+            case Expression expression -> {
+                pending.addLast(new Step(expression, true));
+                pending.addLast(new Step(expression.getRight(), false));
+                pending.addLast(new Step(expression.getLeft(), false));
+            }
+            case AssignmentExpression assignment -> {
+                pending.addLast(new Step(assignment, true));
+                pending.addLast(new Step(assignment.getExpression(), false));
+            }
+            case AddAssignmentExpression assignment -> {
+                emitter.emit(PostfixProgram.LOAD, assignment.getVariable().getSlot(), 1);
+                pending.addLast(new Step(assignment, true));
+                pending.addLast(new Step(assignment.getExpression(), false));
+            }
+            default -> throw new IllegalArgumentException("Unsupported node type: " + node.getClass().getName());
+        }
+    }
+
+    /**
+     * Emits the instructions applying a node to its operands, already on the operand stack.
+     *
+     * @param emitter the instruction stream being built
+     * @param node    the node whose operands were emitted
+     */
+    private void emitOperator(Emitter emitter, Evaluable node) {
+        switch (node) {
+            case Expression expression -> emitter.emit(opcodeOf(expression.getOp()), -1);
+            case AssignmentExpression assignment -> emitter.emit(PostfixProgram.STORE, assignment.getVariable().getSlot(), 0);
+            case AddAssignmentExpression assignment when assignment.expressionWritesVariable() -> {
+                emitter.emit(PostfixProgram.ADD, -1);
+                emitter.emit(PostfixProgram.STORE, assignment.getVariable().getSlot(), 0);
+            }
+            case AddAssignmentExpression assignment -> emitter.emit(PostfixProgram.ADD_TO, assignment.getVariable().getSlot(), -1);
+            default -> throw new IllegalArgumentException("Unsupported node type: " + node.getClass().getName());
+        }
+    }
+
+    /**
+     * Returns the opcode of a binary operator.
+     *
+     * @param operator the operator
+     * @return the matching opcode
+     */
+    private int opcodeOf(Operator operator) {
+        return switch (operator) {
+            case ADD -> PostfixProgram.ADD;
+            case SUB -> PostfixProgram.SUB;
+            case MULTIPLE -> PostfixProgram.MUL;
+            default -> throw new IllegalArgumentException("Unsupported operator: " + operator);
+        };
+    }
+    //endregion
+
+    //region Step
+    /**
+     * A node left to emit: its operands and then its operator, or only its operator once its operands are emitted.
+     *
+     * @param node            the node
+     * @param operandsEmitted whether the operands of the node are already emitted
+     */
+    private record Step(Evaluable node, boolean operandsEmitted) {
+    }
+    //endregion
+
+    //region Emitter
+    /**
+     * Growable instruction stream that tracks the operand stack depth.
+     */
+    private static final class Emitter {
+        private int[] code = new int[32];
+        private int size;
+        private int depth;
+        private int maxDepth;
+
+        /**
+         * Appends an instruction without operand.
+         *
+         * @param opcode     the opcode
+         * @param stackDelta the change of the operand stack depth
+         */
+        void emit(int opcode, int stackDelta) {
+            append(opcode);
+            adjust(stackDelta);
+        }
+
+        /**
+         * Appends an instruction with an operand.
+         *
+         * @param opcode     the opcode
+         * @param operand    the operand
+         * @param stackDelta the change of the operand stack depth
+         */
+        void emit(int opcode, int operand, int stackDelta) {
+            append(opcode);
+            append(operand);
+            adjust(stackDelta);
+        }
+
+        private void append(int value) {
+            if (size == code.length) {
+                code = Arrays.copyOf(code, size << 1);
+            }
+            code[size++] = value;
+        }
+
+        private void adjust(int stackDelta) {
+            depth += stackDelta;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,161 @@
+package org.taboola.compiler;
+
+import org.taboola.evaluator.Evaluable;
+import org.taboola.store.VariableStore;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A compiled expression in the form of a flat postfix instruction stream.
+ *
+ * Each instruction is an opcode, followed by one operand for the opcodes that need one
+ * (a constant or a variable slot). The program is executed by a switch-dispatch loop over
+ * a primitive operand stack, reused per platform thread, so evaluation neither allocates nor chases
+ * pointers between tree nodes. Programs are plain {@code int[]} data, so they can be copied
+ * and serialized as-is.
+ */
+public final class PostfixProgram implements Evaluable, Serializable {
+
+    //region Members
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** Pushes the constant operand. */
+    public static final int PUSH_CONST = 0;
+    /** Pushes the value of the variable in the operand slot. */
+    public static final int LOAD = 1;
+    /** Assigns the top of the stack to the variable in the operand slot, leaving it on the stack. */
+    public static final int STORE = 2;
+    /** Pops two values and pushes their sum. */
+    public static final int ADD = 3;
+    /** Pops two values and pushes their difference. */
+    public static final int SUB = 4;
+    /** Pops two values and pushes their product. */
+    public static final int MUL = 5;
+    /** Pushes the value of the variable in the operand slot, then increments the variable. */
+    public static final int INC_POST = 6;
+    /** Increments the variable in the operand slot, then pushes its new value. */
+    public static final int INC_PRE = 7;
+    /**
+     * Pops the value to add and the variable value loaded before it, adds the value to the variable
+     * in the operand slot with {@link VariableStore#addAndGet(int, int)}, then pushes its new value.
+     */
+    public static final int ADD_TO = 8;
+
+    /**
+     * Depth of the operand stack kept per thread; deeper programs allocate their own, dropped after the call.
+     */
+    private static final int MAX_RETAINED_STACK = 1024;
+
+    /**
+     * Per-thread operand stack, so evaluation does not allocate.
+     * Platform threads only: virtual threads are created per task, and would never reuse theirs.
+     */
+    private static final ThreadLocal<int[]> STACK = ThreadLocal.withInitial(() -> new int[MAX_RETAINED_STACK]);
+
+    /**
+     * The instruction stream.
+     */
+    private final int[] code;
+
+    /**
+     * The maximum depth of the operand stack while executing the program.
+     */
+    private final int maxStack;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code PostfixProgram} from an instruction stream.
+     *
+     * @param code     the instruction stream
+     * @param maxStack the maximum depth of the operand stack while executing the program
+     */
+    public PostfixProgram(int[] code, int maxStack) {
+        this.code = code;
+        this.maxStack = maxStack;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Executes the program against the given store.
+     *
+     * @param store the store holding the variable values
+     * @return the value left on top of the operand stack
+     */
+    @Override
+    public int eval(VariableStore store) {
+        int[] stack = this.maxStack > MAX_RETAINED_STACK || Thread.currentThread().isVirtual()
+                ? new int[this.maxStack]
+                : STACK.get();
+
+        int[] code = this.code;
+        int sp = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case PUSH_CONST -> stack[sp++] = code[pc++];
+                case LOAD -> stack[sp++] = store.get(code[pc++]);
+                case STORE -> store.set(code[pc++], stack[sp - 1]);
+                case ADD -> {
+                    sp--;
+                    stack[sp - 1] += stack[sp];
+                }
+                case SUB -> {
+                    sp--;
+                    stack[sp - 1] -= stack[sp];
+                }
+                case MUL -> {
+                    sp--;
+                    stack[sp - 1] *= stack[sp];
+                }
+                case INC_POST -> stack[sp++] = store.getAndIncrement(code[pc++]);
+                case INC_PRE -> stack[sp++] = store.incrementAndGet(code[pc++]);
+                case ADD_TO -> {
+                    sp--;
+                    stack[sp - 1] = store.addAndGet(code[pc++], stack[sp]);
+                }
+                default -> throw new IllegalStateException("Invalid opcode " + code[pc - 1] + " at " + (pc - 1));
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Returns a copy of the instruction stream.
+     *
+     * @return the instructions
+     */
+    public int[] getCode() {
+        return this.code.clone();
+    }
+
+    /**
+     * Returns the maximum depth of the operand stack while executing the program.
+     *
+     * @return the maximum stack depth
+     */
+    public int getMaxStack() {
+        return this.maxStack;
+    }
+
+    /**
+     * Checks whether the given opcode is followed by an operand.
+     *
+     * @param opcode the opcode
+     * @return true if the opcode takes an operand, otherwise false
+     */
+    public static boolean hasOperand(int opcode) {
+        return opcode == PUSH_CONST || opcode == LOAD || opcode == STORE || opcode == INC_POST || opcode == INC_PRE
+                || opcode == ADD_TO;
+    }
+
+    @Override
+    public String toString() {
+        return "PostfixProgram" + Arrays.toString(this.code);
+    }
+    //endregion
+}
@@ -0,0 +1,99 @@
+package org.taboola.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.taboola.enums.ExecutionMode;
+import org.taboola.enums.FsyncPolicy;
+import org.taboola.enums.NumericMode;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Tunable settings of the expression calculator, bound from the {@code calculator.*} properties.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "calculator")
+public class CalculatorProperties {
+
+    /**
+     * Maximum number of parsed expression plans kept in the plan cache.
+     */
+    private long planCacheSize = 10_000;
+
+    /**
+     * Maximum number of expressions remembered as invalid in the rejection cache.
+     */
+    private long rejectedCacheSize = 10_000;
+
+    /**
+     * How parsed expression plans are executed.
+     */
+    private ExecutionMode executionMode = ExecutionMode.TREE;
+
+    /**
+     * The arithmetic used to evaluate expressions. The modes other than {@code INT} always walk
+     * the parsed tree, whatever the execution mode.
+     */
+    private NumericMode numericMode = NumericMode.INT;
+
+    /**
+     * Number of evaluations after which a plan is compiled, when running in {@code BYTECODE} mode.
+     */
+    private int compileThreshold = 1_000;
+
+    /**
+     * Whether parsed expressions are simplified by the optimizer before being evaluated.
+     */
+    private boolean optimize = true;
+
+    /**
+     * Minimum number of lines for a block to be evaluated in parallel by the block executor.
+     */
+    private int parallelBlockThreshold = 256;
+
+    /**
+     * Time after which a calculator session that received no request is closed.
+     */
+    private Duration sessionIdleTimeout = Duration.ofMinutes(30);
+
+    /**
+     * Maximum number of open calculator sessions; the least recently used ones are closed beyond it.
+     */
+    private long maxSessions = 100_000;
+
+    /**
+     * Whether the requests of a session run concurrently on an atomic variable store, instead of one
+     * at a time. Requires the {@code INT} numeric mode, the optimizer and in-memory sessions.
+     */
+    private boolean concurrentSessions;
+
+    /**
+     * Whether parse and evaluation latency and failures are recorded with Micrometer.
+     */
+    private boolean metricsEnabled = true;
+
+    /**
+     * Directory keeping the variables of the sessions across restarts, one subdirectory per session,
+     * or {@code null} to keep them in memory only. Only supported in the {@code INT} numeric mode.
+     */
+    private Path stateDirectory;
+
+    /**
+     * When the journal of the session variables is forced to the storage device.
+     */
+    private FsyncPolicy journalFsync = FsyncPolicy.INTERVAL;
+
+    /**
+     * Minimum time between two forces of a journal, in the {@code INTERVAL} fsync policy.
+     */
+    private Duration journalFsyncInterval = Duration.ofMillis(100);
+
+    /**
+     * Number of journal records after which a snapshot of the session variables is written
+     * and the journal emptied; bounds the work of recovering a session.
+     */
+    private int snapshotThreshold = 10_000;
+}
@@ -0,0 +1,29 @@
+package org.taboola.config;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+
+/**
+ * Runtime hints for the AOT processing of the application, needed to run it as a native image.
+ *
+ * The beans, the {@code calculator.*} properties and the web payloads are covered by the hints
+ * Spring infers on its own. These cover what it cannot see: the calculator and the validator,
+ * which are created by hand rather than as beans. The native image of the Spring-free
+ * {@link org.taboola.CliLauncher} is built separately, with its own hints under {@code src/cli/native-image}.
+ */
+public class CalculatorRuntimeHints implements RuntimeHintsRegistrar {
+
+    //region Public Methods
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.reflection()
+                .registerType(ExpressionCalculator.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(ExpressionValidator.class,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+    }
+    //endregion
+}
@@ -0,0 +1,13 @@
+package org.taboola.enums;
+
+/**
+ * Enumeration representing why an expression could not be calculated.
+ */
+public enum CalculationError {
+    /** The expression is not a valid assignment expression */
+    INVALID_EXPRESSION,
+    /** The expression reads a variable that was never assigned */
+    UNDEFINED_VARIABLE,
+    /** The result does not fit the range of the numeric mode */
+    OVERFLOW
+}
@@ -0,0 +1,13 @@
+package org.taboola.enums;
+
+/**
+ * Enumeration representing how parsed expression plans are executed.
+ */
+public enum ExecutionMode {
+    /** Walk the {@code Evaluable} tree on every evaluation */
+    TREE,
+    /** Walk the tree first, then compile the plan to bytecode once it becomes hot */
+    BYTECODE,
+    /** Run the plan as a flat postfix instruction stream */
+    POSTFIX
+}
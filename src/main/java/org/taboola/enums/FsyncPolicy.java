@@ -0,0 +1,13 @@
+package org.taboola.enums;
+
+/**
+ * Enumeration representing when the state journal is forced to the storage device.
+ */
+public enum FsyncPolicy {
+    /** Every commit is forced before the calculation returns */
+    ALWAYS,
+    /** Commits are forced together, at most once per fsync interval, and at most two intervals after they are made */
+    INTERVAL,
+    /** Commits are left to the operating system, and only forced when the journal is closed */
+    NEVER
+}
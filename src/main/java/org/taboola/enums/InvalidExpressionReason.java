@@ -0,0 +1,37 @@
+package org.taboola.enums;
+
+/**
+ * Enumeration representing the reasons an expression can be rejected as invalid.
+ * Each reason is associated with a human-readable description.
+ */
+public enum InvalidExpressionReason {
+    EMPTY_EXPRESSION("empty expression"),
+    INVALID_CHARACTER("invalid character"),
+    INVALID_TOKEN("invalid token"),
+    UNBALANCED_PARENTHESES("unbalanced parentheses"),
+    NOT_AN_ASSIGNMENT("not an assignment expression"),
+    MISSING_OPERAND("expected an operand"),
+    UNEXPECTED_TOKEN("unexpected operand or parenthesis"),
+    INVALID_ASSIGNMENT_TARGET("assignment target is not a variable"),
+    NOT_A_FORMULA("a formula must assign a side-effect free expression to a variable");
+
+    private final String description;
+
+    /**
+     * Constructs an InvalidExpressionReason enum with the specified description.
+     *
+     * @param description the human-readable description of the reason
+     */
+    InvalidExpressionReason(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Returns the human-readable description of this reason.
+     *
+     * @return the description
+     */
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,15 @@
+package org.taboola.enums;
+
+/**
+ * Enumeration representing the arithmetic used to evaluate expressions.
+ */
+public enum NumericMode {
+    /** 32-bit {@code int} arithmetic that silently wraps on overflow */
+    INT,
+    /** 32-bit {@code int} arithmetic that fails on overflow */
+    CHECKED_INT,
+    /** 64-bit {@code long} arithmetic that fails on overflow */
+    LONG,
+    /** Arbitrary-precision arithmetic, on {@code long} values until they overflow */
+    BIG_INTEGER
+}
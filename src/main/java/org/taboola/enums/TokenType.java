@@ -0,0 +1,63 @@
+package org.taboola.enums;
+
+/**
+ * Enumeration representing the kinds of tokens produced by the expression lexer.
+ */
+public enum TokenType {
+    NUMBER,
+    VARIABLE,
+    PRE_INCREMENT,
+    POST_INCREMENT,
+    ADD,
+    SUB,
+    MULTIPLE,
+    ASSIGN,
+    ADD_ASSIGN,
+    OPENING_PARENTHESIS,
+    CLOSING_PARENTHESIS,
+    /** Any token that is not part of the supported syntax */
+    INVALID;
+
+    /**
+     * Checks if this token type is an operand (number, variable, or unary increment expression).
+     *
+     * @return true if this token type is an operand, false otherwise
+     */
+    public boolean isOperand() {
+        return this == NUMBER || this == VARIABLE || isUnaryOperator();
+    }
+
+    /**
+     * Checks if this token type is a unary increment expression (pre or post increment).
+     *
+     * @return true if this token type is a unary increment expression, false otherwise
+     */
+    public boolean isUnaryOperator() {
+        return this == PRE_INCREMENT || this == POST_INCREMENT;
+    }
+
+    /**
+     * Checks if this token type is a supported binary or assignment operator.
+     *
+     * @return true if this token type is an operator, false otherwise
+     */
+    public boolean isOperator() {
+        return toOperator() != Operator.UNKNOWN;
+    }
+
+    /**
+     * Returns the {@link Operator} matching this token type.
+     *
+     * @return the matching operator, or {@code UNKNOWN} if this token type is not an operator
+     */
+    public Operator toOperator() {
+        return switch (this) {
+            case ADD -> Operator.ADD;
+            case SUB -> Operator.SUB;
+            case MULTIPLE -> Operator.MULTIPLE;
+            case ASSIGN -> Operator.ASSIGN;
+            case ADD_ASSIGN -> Operator.ADD_ASSIGN;
+            default -> Operator.UNKNOWN;
+        };
+    }
+}
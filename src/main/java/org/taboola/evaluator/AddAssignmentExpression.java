@@ -0,0 +1,94 @@
+package org.taboola.evaluator;
+
+import org.taboola.plan.VariableAccess;
+import org.taboola.store.VariableStore;
+
+/**
+ * Represents a compound assignment expression in the form:
+ *
+ * variable += expression
+ *
+ * This fused node replaces the equivalent assignment of {@code variable + expression}
+ * to {@code variable}. As in Java, the variable is read before the right-hand side
+ * expression is evaluated, so side effects of the expression on the same variable
+ * do not change the read value.
+ *
+ * When the right-hand side does not write the variable, which is almost always, the sum is
+ * applied with {@link VariableStore#addAndGet(int, int)} once the right-hand side is evaluated.
+ * The result is the same, and a concurrent store applies it as a single atomic read-modify-write.
+ */
+public class AddAssignmentExpression implements Evaluable {
+    //region Members
+    private final VariableExpression variable;
+    private final Evaluable expression;
+
+    /**
+     * Whether the right-hand side expression writes the variable, which then must be read first.
+     */
+    private final boolean expressionWritesVariable;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new AddAssignmentExpression.
+     *
+     * @param variable   The variable to add the value to.
+     * @param expression The expression whose evaluated value is added.
+     */
+    public AddAssignmentExpression(VariableExpression variable, Evaluable expression) {
+        this.variable = variable;
+        this.expression = expression;
+        this.expressionWritesVariable = (VariableAccess.writeMask(expression) & (1 << variable.getSlot())) != 0;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Reads the variable, evaluates the right-hand side expression and assigns
+     * their sum to the variable in the store.
+     *
+     * @param store The store holding the current variable values.
+     * @return The new value of the variable.
+     */
+    @Override
+    public int eval(VariableStore store) {
+        int slot = variable.getSlot();
+        // Reads the variable first, so an undefined variable fails before any side effect of the expression
+        int current = store.get(slot);
+        if (!this.expressionWritesVariable) {
+            return store.addAndGet(slot, expression.eval(store));
+        }
+        int value = current + expression.eval(store);
+        store.set(slot, value);
+        return value;
+    }
+
+    /**
+     * Returns the variable the value is added to.
+     *
+     * @return the assigned variable
+     */
+    public VariableExpression getVariable() {
+        return this.variable;
+    }
+
+    /**
+     * Returns the expression whose value is added.
+     *
+     * @return the added expression
+     */
+    public Evaluable getExpression() {
+        return this.expression;
+    }
+
+    /**
+     * Checks whether the added expression writes the variable, in which case the variable is read
+     * before evaluating it and the sum is assigned, rather than added once it is evaluated.
+     *
+     * @return true if the expression writes the variable, otherwise false
+     */
+    public boolean expressionWritesVariable() {
+        return this.expressionWritesVariable;
+    }
+    //endregion
+}
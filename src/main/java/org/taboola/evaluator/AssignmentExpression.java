@@ -1,6 +1,6 @@
 package org.taboola.evaluator;
 
-import java.util.Map;
+import org.taboola.store.VariableStore;
 
 /**
  * Represents an assignment expression in the form:
@@ -11,13 +11,12 @@ import java.util.Map;
  *
  * This class evaluates the right-hand side expression,
  * assigns the result to the specified variable, and updates
- * the variable-to-value map.
+ * the variable store.
  */
 public class AssignmentExpression implements Evaluable {
     //region Members
     private final VariableExpression variable;
     private final Evaluable expression;
-    private final Map<Character, Integer> map;
     //endregion
 
     //region Constructors
@@ -26,27 +25,44 @@ public class AssignmentExpression implements Evaluable {
      *
      * @param variable  The variable to assign a value to.
      * @param expression The expression whose evaluated value is to be assigned.
-     * @param map       The map storing current variable-to-value mappings.
      */
-    public AssignmentExpression(VariableExpression variable, Evaluable expression, Map<Character, Integer> map) {
+    public AssignmentExpression(VariableExpression variable, Evaluable expression) {
         this.variable = variable;
         this.expression = expression;
-        this.map = map;
     }
     //endregion
 
     //region Public Methods
     /**
      * Evaluates the right-hand side expression and assigns its value
-     * to the specified variable in the map.
+     * to the specified variable in the store.
      *
+     * @param store The store holding the current variable values.
      * @return The evaluated value of the expression.
      */
     @Override
-    public int eval() {
-        int value = expression.eval();
-        map.put(variable.getName(), value);
+    public int eval(VariableStore store) {
+        int value = expression.eval(store);
+        store.set(variable.getSlot(), value);
         return value;
     }
+
+    /**
+     * Returns the variable the value is assigned to.
+     *
+     * @return the assigned variable
+     */
+    public VariableExpression getVariable() {
+        return this.variable;
+    }
+
+    /**
+     * Returns the expression whose value is assigned.
+     *
+     * @return the assigned expression
+     */
+    public Evaluable getExpression() {
+        return this.expression;
+    }
     //endregion
 }
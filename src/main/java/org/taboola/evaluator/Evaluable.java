@@ -1,14 +1,20 @@
 package org.taboola.evaluator;
 
+import org.taboola.store.VariableStore;
+
 /**
  * Represents an evaluable expression or entity that can produce an integer result.
+ *
+ * Evaluables do not hold any variable state themselves: the variables are supplied
+ * on every evaluation, so a parsed tree can be shared and evaluated against any store.
  */
 public interface Evaluable {
 
     /**
      * Evaluates the expression or entity and returns its integer result.
      *
+     * @param store the store holding the current variable values
      * @return the evaluated integer result
      */
-    int eval();
+    int eval(VariableStore store);
 }
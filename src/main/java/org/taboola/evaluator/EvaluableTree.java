@@ -0,0 +1,11 @@
+package org.taboola.evaluator;
+
+/**
+ * The root of an evaluable tree together with its depth, as known by whoever built the tree,
+ * so that deciding whether it is too deep to walk recursively does not need walking it.
+ *
+ * @param root  the root of the tree
+ * @param depth the number of nodes on the longest path from the root to a leaf
+ */
+public record EvaluableTree(Evaluable root, int depth) {
+}
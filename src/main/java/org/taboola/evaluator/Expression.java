@@ -2,6 +2,7 @@ package org.taboola.evaluator;
 
 import lombok.Builder;
 import org.taboola.enums.Operator;
+import org.taboola.store.VariableStore;
 
 /**
  * Represents a binary expression composed of a left operand, an operator, and a right operand.
@@ -46,13 +47,25 @@ public class Expression implements Evaluable {
     /**
      * Evaluates the expression by recursively evaluating its operands and applying the operator.
      *
+     * @param store the store holding the current variable values
      * @return the result of applying the operator to the evaluated operands
      */
     @Override
-    public int eval() {
-        int leftValue = left.eval();
-        int rightValue = right.eval();
+    public int eval(VariableStore store) {
+        int leftValue = left.eval(store);
+        int rightValue = right.eval(store);
 
+        return apply(leftValue, rightValue);
+    }
+
+    /**
+     * Applies the operator to already evaluated operands.
+     *
+     * @param leftValue  the value of the left operand
+     * @param rightValue the value of the right operand
+     * @return the result of applying the operator
+     */
+    public int apply(int leftValue, int rightValue) {
         return switch (op) {
             case ADD -> leftValue + rightValue;
             case SUB -> leftValue - rightValue;
@@ -60,5 +73,32 @@ public class Expression implements Evaluable {
             default -> 0; // todo chen- consider to throw an exception
         };
     }
+
+    /**
+     * Returns the left-hand side operand of the expression.
+     *
+     * @return the left operand
+     */
+    public Evaluable getLeft() {
+        return this.left;
+    }
+
+    /**
+     * Returns the operator applied between the operands.
+     *
+     * @return the operator
+     */
+    public Operator getOp() {
+        return this.op;
+    }
+
+    /**
+     * Returns the right-hand side operand of the expression.
+     *
+     * @return the right operand
+     */
+    public Evaluable getRight() {
+        return this.right;
+    }
     //endRegion
 }
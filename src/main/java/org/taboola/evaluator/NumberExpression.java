@@ -1,5 +1,7 @@
 package org.taboola.evaluator;
 
+import org.taboola.store.VariableStore;
+
 /**
  * Represents a numeric literal in an expression tree.
  * This class wraps an integer value and implements {@link Evaluable},
@@ -29,11 +31,21 @@ public class NumberExpression implements Evaluable {
     /**
      * Evaluates the numeric expression.
      *
+     * @param store the store holding the variable values (unused)
      * @return the numeric value of this expression
      */
     @Override
-    public int eval() {
+    public int eval(VariableStore store) {
         return value;
     }
+
+    /**
+     * Returns the numeric value of this expression.
+     *
+     * @return the numeric value
+     */
+    public int getValue() {
+        return this.value;
+    }
     //endregion
 }
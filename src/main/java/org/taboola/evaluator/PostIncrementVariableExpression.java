@@ -1,6 +1,6 @@
 package org.taboola.evaluator;
 
-import java.util.Map;
+import org.taboola.store.VariableStore;
 
 /**
  * Represents a variable expression that performs a post increment operation (e.g., x++).
@@ -9,29 +9,26 @@ public class PostIncrementVariableExpression extends VariableExpression {
 
     //region Constructors
     /**
-     * Constructs a {@code PostIncrementVariableExpression} with the specified variable name
-     * and a reference to the variable-to-value map.
+     * Constructs a {@code PostIncrementVariableExpression} with the specified variable name.
      *
-     * @param name              the name of the variable (e.g., 'x')
-     * @param variableToNumber  the map storing variable values
+     * @param name the name of the variable (e.g., 'x')
      */
-    public PostIncrementVariableExpression(char name, Map<Character, Integer> variableToNumber) {
-        super(name, variableToNumber);
+    public PostIncrementVariableExpression(char name) {
+        super(name);
     }
     //endregion
 
     //region Public Methods
     /**
      * Evaluates the variable by returning its current value, and then increments
-     * the variable's value by 1 in the underlying variable map.
+     * the variable's value by 1 in the underlying variable store.
      *
+     * @param store the store holding the variable values
      * @return the current value of the variable before incrementing
      */
     @Override
-    public int eval() {
-        int result = super.eval();
-        this.variableToNumber.put(this.name, result + 1);
-        return result;
+    public int eval(VariableStore store) {
+        return store.getAndIncrement(this.slot);
     }
     //endregion
 }
@@ -0,0 +1,37 @@
+package org.taboola.evaluator;
+
+import org.taboola.store.VariableStore;
+
+/**
+ * Represents a variable expression that performs a pre increment operation (e.g., ++x).
+ *
+ * This fused node replaces the equivalent assignment of {@code 1 + x} to {@code x},
+ * incrementing the variable with a single store operation.
+ */
+public class PreIncrementVariableExpression extends VariableExpression {
+
+    //region Constructors
+    /**
+     * Constructs a {@code PreIncrementVariableExpression} with the specified variable name.
+     *
+     * @param name the name of the variable (e.g., 'x')
+     */
+    public PreIncrementVariableExpression(char name) {
+        super(name);
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Increments the variable's value by 1 in the underlying variable store,
+     * and then returns its new value.
+     *
+     * @param store the store holding the variable values
+     * @return the value of the variable after incrementing
+     */
+    @Override
+    public int eval(VariableStore store) {
+        return store.incrementAndGet(this.slot);
+    }
+    //endregion
+}
@@ -0,0 +1,145 @@
+package org.taboola.evaluator;
+
+import org.taboola.enums.Operator;
+import org.taboola.plan.VariableAccess;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A binary expression without side effects, interned so that every structurally identical
+ * subexpression of every plan is this same node (see {@link org.taboola.optimizer.ExpressionInterner}).
+ *
+ * Being pure, its value only depends on the variables it reads, which lets a block evaluation
+ * reuse the value across lines until one of them is written. The node keeps its read variables,
+ * its size and its hash code, so that none of them needs walking the subtree again.
+ *
+ * The interner also marks the nodes it found again, in another plan or elsewhere in the same plan,
+ * as common: only those are worth caching. The mark is a hint, set once and never cleared, so racing
+ * threads can at worst miss it for a while. Every new mark is counted by the plan that created the node,
+ * telling it to collect its common subexpressions again. Only that plan needs to: any other plan holding
+ * the node found it while being interned, which marked it as common already.
+ *
+ * Shared nodes are only equal to themselves, but their hash code is derived from their operator
+ * and operands, computed once, rather than read from the object header: looking shared nodes up,
+ * by the interner or by a block evaluation, costs a field read.
+ */
+public final class SharedExpression extends Expression {
+
+    //region Members
+    /**
+     * Bitmask of the variable slots the subexpression reads.
+     */
+    private final int readMask;
+
+    /**
+     * Number of binary operators in the subexpression, this one included.
+     */
+    private final int size;
+
+    /**
+     * Hash code of the subexpression, derived from its operator and operands.
+     */
+    private final int hash;
+
+    /**
+     * Whether the subexpression was interned more than once.
+     */
+    private boolean common;
+
+    /**
+     * Number of the nodes created by the same plan that were marked as common so far.
+     */
+    private final AtomicInteger commonMarks;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new SharedExpression from operands that have no side effects.
+     *
+     * @param left        the left operand
+     * @param op          the operator
+     * @param right       the right operand
+     * @param commonMarks the counter of the common marks of the plan creating the node
+     */
+    public SharedExpression(Evaluable left, Operator op, Evaluable right, AtomicInteger commonMarks) {
+        super(left, op, right);
+        this.commonMarks = commonMarks;
+        this.readMask = readMaskOf(left) | readMaskOf(right);
+        this.size = sizeOf(left) + sizeOf(right) + 1;
+        this.hash = 31 * (31 * left.hashCode() + op.ordinal()) + right.hashCode();
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the variables the subexpression reads.
+     *
+     * @return the bitmask of read variable slots
+     */
+    public int getReadMask() {
+        return this.readMask;
+    }
+
+    /**
+     * Returns the number of binary operators in the subexpression, this one included.
+     *
+     * @return the size of the subexpression
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Checks whether the subexpression was interned more than once, so that several
+     * expressions, or several places of the same expression, have it in common.
+     *
+     * @return true if the subexpression is common, otherwise false
+     */
+    public boolean isCommon() {
+        return this.common;
+    }
+
+    /**
+     * Marks the subexpression as interned more than once, counting the mark for the plan that created it
+     * the first time. The mark is visible to the threads that read the count.
+     */
+    public void markCommon() {
+        if (!this.common) {
+            this.common = true;
+            this.commonMarks.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the hash code derived from the operator and the operands, consistent with identity equality.
+     *
+     * @return the hash code of the subexpression
+     */
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Returns the variables an operand reads, without walking an operand that is itself shared.
+     *
+     * @param operand the operand
+     * @return the bitmask of read variable slots
+     */
+    private static int readMaskOf(Evaluable operand) {
+        return operand instanceof SharedExpression shared ? shared.readMask : VariableAccess.readMask(operand);
+    }
+
+    /**
+     * Returns the number of binary operators in an operand, which is either shared or a leaf.
+     *
+     * @param operand the operand
+     * @return the size of the operand
+     */
+    private static int sizeOf(Evaluable operand) {
+        return operand instanceof SharedExpression shared ? shared.size : 0;
+    }
+    //endregion
+}
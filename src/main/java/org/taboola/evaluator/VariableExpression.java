@@ -1,14 +1,15 @@
 package org.taboola.evaluator;
 
-import lombok.extern.slf4j.Slf4j;
 import org.taboola.exceptions.UndefinedVariableException;
-
-import java.util.Map;
+import org.taboola.store.VariableSlots;
+import org.taboola.store.VariableStore;
 
 /**
  * Represents a variable within an expression.
+ *
+ * The variable name is resolved to its store slot once, when the expression is parsed,
+ * so evaluation is a plain slot read.
  */
-@Slf4j
 public class VariableExpression implements Evaluable {
 
     //region Members
@@ -18,39 +19,34 @@ public class VariableExpression implements Evaluable {
     final char name;
 
     /**
-     * A reference to the map containing variable names and their corresponding integer values.
+     * The store slot of the variable.
      */
-    final Map<Character, Integer> variableToNumber;
+    final int slot;
     //endregion
 
     //region Constructors
     /**
-     * Constructs a {@code VariableExpression} with the specified variable name and map of variable values.
+     * Constructs a {@code VariableExpression} with the specified variable name.
      *
-     * @param name              the name of the variable
-     * @param variableToNumber  the map containing variable names and values
+     * @param name the name of the variable
      */
-    public VariableExpression(char name, Map<Character, Integer> variableToNumber) {
+    public VariableExpression(char name) {
         this.name = name;
-        this.variableToNumber = variableToNumber;
+        this.slot = VariableSlots.slotOf(name);
     }
     //endregion
 
     //region Public Methods
     /**
-     * Evaluates the variable by looking up its value in the map.
-     * If the variable is not defined, logs an error and throws an {@link UndefinedVariableException}.
+     * Evaluates the variable by reading its value from the store.
      *
+     * @param store the store holding the variable values
      * @return the current value of the variable
-     * @throws UndefinedVariableException if the variable is not present in the map
+     * @throws UndefinedVariableException if the variable is not defined in the store
      */
     @Override
-    public int eval() {
-        if (!this.variableToNumber.containsKey(this.name)) {
-            log.error("The variable {} is undefined", this.name);
-            throw new UndefinedVariableException();
-        }
-        return this.variableToNumber.get(this.name);
+    public int eval(VariableStore store) {
+        return store.get(this.slot);
     }
 
     /**
@@ -61,5 +57,14 @@ public class VariableExpression implements Evaluable {
     public char getName() {
         return this.name;
     }
+
+    /**
+     * Returns the store slot of the variable.
+     *
+     * @return the variable slot
+     */
+    public int getSlot() {
+        return this.slot;
+    }
     //endregion
-}
\ No newline at end of file
+}
@@ -0,0 +1,384 @@
+package org.taboola.evaluator;
+
+import org.taboola.enums.NumericMode;
+import org.taboola.enums.Operator;
+import org.taboola.exceptions.ArithmeticOverflowException;
+import org.taboola.store.HeapSize;
+import org.taboola.store.WideVariableStore;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Evaluates {@link Evaluable} trees with the arithmetic of a {@link NumericMode} other than
+ * the default wrapping {@code int} one, against a {@link WideVariableStore}.
+ *
+ * Evaluation runs on primitive {@code long} values and detects overflow with the
+ * {@link Math#addExact(long, long)} family. In {@code CHECKED_INT} mode every result is also
+ * checked against the {@code int} range. On overflow, {@code CHECKED_INT} and {@code LONG} fail
+ * with an {@link ArithmeticOverflowException}, while {@code BIG_INTEGER} redoes the overflowing
+ * operation with {@link BigInteger}s: only the values that actually overflow are promoted, and
+ * results that fit in a {@code long} again go back to the primitive path.
+ *
+ * Side effects happen in the same order as in {@code int} evaluation. Trees are evaluated with
+ * explicit stacks rather than by recursion, so their depth is not bounded by the Java stack. An evaluator is not
+ * thread-safe; use one per variable store.
+ */
+public class WideEvaluator {
+
+    //region Members
+    /**
+     * The arithmetic applied by the evaluator.
+     */
+    private final NumericMode mode;
+
+    /**
+     * The value of the last evaluated node when it does not fit in a {@code long}, in which case
+     * the primitive value returned for the node is meaningless; {@code null} otherwise.
+     */
+    private BigInteger wide;
+
+    /**
+     * The nodes left to visit, the next one last, and whether each one's operands are already scheduled.
+     */
+    private Evaluable[] steps = new Evaluable[16];
+    private boolean[] operandsEvaluated = new boolean[16];
+    private int stepCount;
+
+    /**
+     * The values of the evaluated nodes whose parent is not applied yet, and their wide values.
+     */
+    private long[] values = new long[16];
+    private BigInteger[] wideValues = new BigInteger[16];
+    private int valueCount;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code WideEvaluator}.
+     *
+     * @param mode the arithmetic applied by the evaluator
+     */
+    public WideEvaluator(NumericMode mode) {
+        this.mode = mode;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Evaluates a tree against the given store.
+     *
+     * @param root  the root of the tree
+     * @param store the store holding the current variable values
+     * @return the result, as an {@link Integer} in the {@code int} modes, otherwise as a {@link Long}
+     * or, if it does not fit in one, a {@link BigInteger}
+     * @throws ArithmeticOverflowException if a result overflows the range of the mode
+     */
+    public Number evaluate(Evaluable root, WideVariableStore store) {
+        this.wide = null;
+        long value = eval(root, store);
+        BigInteger wideValue = take();
+        if (wideValue != null) {
+            return wideValue;
+        }
+        return this.mode == NumericMode.LONG || this.mode == NumericMode.BIG_INTEGER ? (Number) value : (Number) (int) value;
+    }
+
+    /**
+     * Returns the arithmetic applied by the evaluator.
+     *
+     * @return the numeric mode
+     */
+    public NumericMode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * Estimates the heap footprint of the evaluator and of its stacks, which grow with the deepest
+     * expression evaluated, in bytes; see {@link HeapSize}.
+     *
+     * @return the estimated size of the evaluator
+     */
+    public long estimateSize() {
+        return HeapSize.object(6 * HeapSize.REFERENCE + 2 * Integer.BYTES)
+                + HeapSize.referenceArray(this.steps.length) + HeapSize.booleanArray(this.operandsEvaluated.length)
+                + HeapSize.longArray(this.values.length) + HeapSize.referenceArray(this.wideValues.length)
+                + HeapSize.bigInteger(this.wide);
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Evaluates a tree, leaving its value in {@code wide} if it does not fit in a {@code long}.
+     *
+     * Nodes are visited twice through an explicit stack of steps: once to evaluate their leaves, or
+     * schedule their operands, and once their operands are evaluated, to apply them to their values.
+     * The values wait on a separate stack, as in a postfix evaluation.
+     *
+     * @param root  the root of the tree
+     * @param store the store holding the current variable values
+     * @return the value of the tree
+     */
+    private long eval(Evaluable root, WideVariableStore store) {
+        this.stepCount = 0;
+        this.valueCount = 0;
+        try {
+            pushStep(root, false);
+            while (this.stepCount > 0) {
+                Evaluable node = this.steps[--this.stepCount];
+                this.steps[this.stepCount] = null;
+                if (this.operandsEvaluated[this.stepCount]) {
+                    applyNode(node, store);
+                } else {
+                    visitNode(node, store);
+                }
+            }
+            this.wide = this.wideValues[0];
+            this.wideValues[0] = null;
+            return this.values[0];
+        } finally {
+            Arrays.fill(this.steps, 0, this.stepCount, null);
+            Arrays.fill(this.wideValues, 0, this.valueCount, null);
+        }
+    }
+
+    /**
+     * Evaluates a leaf, or schedules the operands of a node followed by the node itself.
+     *
+     * @param node  the node
+     * @param store the store holding the current variable values
+     */
+    private void visitNode(Evaluable node, WideVariableStore store) {
+        switch (node) {
+            case NumberExpression number -> pushValue(number.getValue());
+            case WideNumberExpression number -> pushValue(narrow(number.getValue()));
+            case PostIncrementVariableExpression variable -> pushValue(postIncrement(variable.getSlot(), store));
+            case PreIncrementVariableExpression variable -> pushValue(preIncrement(variable.getSlot(), store));
+            case VariableExpression variable -> pushValue(read(variable.getSlot(), store));
+            case Expression expression -> {
+                pushStep(expression, true);
+                pushStep(expression.getRight(), false);
+                pushStep(expression.getLeft(), false);
+            }
+            case AssignmentExpression assignment -> {
+                pushStep(assignment, true);
+                pushStep(assignment.getExpression(), false);
+            }
+            case AddAssignmentExpression assignment -> {
+                // The variable is read before the expression, as in int evaluation
+                pushValue(read(assignment.getVariable().getSlot(), store));
+                pushStep(assignment, true);
+                pushStep(assignment.getExpression(), false);
+            }
+            default -> throw new IllegalArgumentException("Unsupported node " + node.getClass().getName());
+        }
+    }
+
+    /**
+     * Applies a node whose operands are evaluated to their values, on top of the value stack.
+     *
+     * @param node  the node
+     * @param store the store holding the current variable values
+     */
+    private void applyNode(Evaluable node, WideVariableStore store) {
+        int right = --this.valueCount;
+        BigInteger rightWide = this.wideValues[right];
+        this.wideValues[right] = null;
+        switch (node) {
+            case Expression expression -> {
+                int left = --this.valueCount;
+                BigInteger leftWide = this.wideValues[left];
+                this.wideValues[left] = null;
+                pushValue(apply(expression.getOp(), this.values[left], leftWide, this.values[right], rightWide));
+            }
+            case AssignmentExpression assignment ->
+                    pushValue(assign(assignment.getVariable().getSlot(), this.values[right], rightWide, store));
+            case AddAssignmentExpression assignment -> {
+                int current = --this.valueCount;
+                BigInteger currentWide = this.wideValues[current];
+                this.wideValues[current] = null;
+                long sum = apply(Operator.ADD, this.values[current], currentWide, this.values[right], rightWide);
+                pushValue(assign(assignment.getVariable().getSlot(), sum, take(), store));
+            }
+            default -> throw new IllegalArgumentException("Unsupported node " + node.getClass().getName());
+        }
+    }
+
+    /**
+     * Schedules a visit of a node.
+     *
+     * @param node              the node
+     * @param operandsEvaluated whether the operands of the node are already scheduled
+     */
+    private void pushStep(Evaluable node, boolean operandsEvaluated) {
+        if (this.stepCount == this.steps.length) {
+            this.steps = Arrays.copyOf(this.steps, this.stepCount << 1);
+            this.operandsEvaluated = Arrays.copyOf(this.operandsEvaluated, this.stepCount << 1);
+        }
+        this.steps[this.stepCount] = node;
+        this.operandsEvaluated[this.stepCount++] = operandsEvaluated;
+    }
+
+    /**
+     * Pushes the value of the last evaluated node, taking its wide value if it has one.
+     *
+     * @param value the value, if it fits in a {@code long}
+     */
+    private void pushValue(long value) {
+        if (this.valueCount == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.valueCount << 1);
+            this.wideValues = Arrays.copyOf(this.wideValues, this.valueCount << 1);
+        }
+        this.values[this.valueCount] = value;
+        this.wideValues[this.valueCount++] = take();
+    }
+
+    /**
+     * Applies an operator on the primitive path, falling back to {@link BigInteger}s
+     * when an operand is wide or the result overflows.
+     *
+     * @param op        the operator
+     * @param left      the left operand, if it fits in a {@code long}
+     * @param leftWide  the left operand, if it does not fit in a {@code long}, otherwise {@code null}
+     * @param right     the right operand, if it fits in a {@code long}
+     * @param rightWide the right operand, if it does not fit in a {@code long}, otherwise {@code null}
+     * @return the result of the operator
+     */
+    private long apply(Operator op, long left, BigInteger leftWide, long right, BigInteger rightWide) {
+        if (leftWide == null && rightWide == null) {
+            try {
+                return check(switch (op) {
+                    case ADD -> Math.addExact(left, right);
+                    case SUB -> Math.subtractExact(left, right);
+                    case MULTIPLE -> Math.multiplyExact(left, right);
+                    default -> 0;
+                });
+            } catch (ArithmeticException e) {
+                if (this.mode != NumericMode.BIG_INTEGER) {
+                    throw new ArithmeticOverflowException(this.mode);
+                }
+            }
+        }
+
+        BigInteger l = leftWide != null ? leftWide : BigInteger.valueOf(left);
+        BigInteger r = rightWide != null ? rightWide : BigInteger.valueOf(right);
+        return narrow(switch (op) {
+            case ADD -> l.add(r);
+            case SUB -> l.subtract(r);
+            case MULTIPLE -> l.multiply(r);
+            default -> BigInteger.ZERO;
+        });
+    }
+
+    /**
+     * Reads a variable.
+     *
+     * @param slot  the variable slot
+     * @param store the store holding the current variable values
+     * @return the value of the variable
+     */
+    private long read(int slot, WideVariableStore store) {
+        long value = store.get(slot);
+        this.wide = store.getWide(slot);
+        return value;
+    }
+
+    /**
+     * Assigns a value to a variable.
+     *
+     * @param slot      the variable slot
+     * @param value     the value, if it fits in a {@code long}
+     * @param wideValue the value, if it does not fit in a {@code long}, otherwise {@code null}
+     * @param store     the store holding the current variable values
+     * @return the assigned value
+     */
+    private long assign(int slot, long value, BigInteger wideValue, WideVariableStore store) {
+        if (wideValue != null) {
+            store.set(slot, wideValue);
+        } else {
+            store.set(slot, value);
+        }
+        this.wide = wideValue;
+        return value;
+    }
+
+    /**
+     * Increments a variable and returns its previous value (e.g., x++).
+     *
+     * @param slot  the variable slot
+     * @param store the store holding the current variable values
+     * @return the value before incrementing
+     */
+    private long postIncrement(int slot, WideVariableStore store) {
+        long value = read(slot, store);
+        BigInteger wideValue = take();
+        long incremented = apply(Operator.ADD, value, wideValue, 1, null);
+        assign(slot, incremented, take(), store);
+        this.wide = wideValue;
+        return value;
+    }
+
+    /**
+     * Increments a variable and returns its new value (e.g., ++x).
+     *
+     * @param slot  the variable slot
+     * @param store the store holding the current variable values
+     * @return the value after incrementing
+     */
+    private long preIncrement(int slot, WideVariableStore store) {
+        long value = read(slot, store);
+        long incremented = apply(Operator.ADD, value, take(), 1, null);
+        return assign(slot, incremented, take(), store);
+    }
+
+    /**
+     * Checks a primitive result against the range of the mode.
+     *
+     * @param value the result
+     * @return the result
+     * @throws ArithmeticOverflowException if the result is out of the {@code int} range in an {@code int} mode
+     */
+    private long check(long value) {
+        return switch (this.mode) {
+            case INT -> (int) value;
+            case CHECKED_INT -> {
+                if ((int) value != value) {
+                    throw new ArithmeticOverflowException(this.mode);
+                }
+                yield value;
+            }
+            default -> value;
+        };
+    }
+
+    /**
+     * Returns a {@link BigInteger} result on the primitive path if it fits in a {@code long},
+     * otherwise leaves it in {@code wide}.
+     *
+     * @param value the result
+     * @return the result if it fits in a {@code long}, otherwise 0
+     * @throws ArithmeticOverflowException if the result does not fit in a {@code long} outside of {@code BIG_INTEGER} mode
+     */
+    private long narrow(BigInteger value) {
+        if (value.bitLength() < Long.SIZE) {
+            return check(value.longValue());
+        }
+        if (this.mode != NumericMode.BIG_INTEGER) {
+            throw new ArithmeticOverflowException(this.mode);
+        }
+        this.wide = value;
+        return 0;
+    }
+
+    /**
+     * Returns and clears the wide value of the last evaluated node.
+     *
+     * @return the wide value, or {@code null} if the node fits in a {@code long}
+     */
+    private BigInteger take() {
+        BigInteger value = this.wide;
+        this.wide = null;
+        return value;
+    }
+    //endregion
+}
@@ -0,0 +1,58 @@
+package org.taboola.evaluator;
+
+import org.taboola.enums.NumericMode;
+import org.taboola.exceptions.ArithmeticOverflowException;
+import org.taboola.store.VariableStore;
+
+import java.math.BigInteger;
+
+/**
+ * Represents a numeric literal that does not fit in an {@code int}, in an expression tree
+ * parsed for the {@code LONG} or {@code BIG_INTEGER} numeric mode.
+ *
+ * Such literals are only evaluated by the {@link WideEvaluator}; the {@code int} evaluation
+ * of this class fails, as the literal has no {@code int} value.
+ */
+public class WideNumberExpression implements Evaluable {
+
+    //region Members
+    /**
+     * The value of the literal.
+     */
+    private final BigInteger value;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code WideNumberExpression} with the specified value.
+     *
+     * @param value the numeric value of the literal
+     */
+    public WideNumberExpression(BigInteger value) {
+        this.value = value;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Always fails, as the literal does not fit in an {@code int}.
+     *
+     * @param store the store holding the variable values (unused)
+     * @return never
+     * @throws ArithmeticOverflowException always
+     */
+    @Override
+    public int eval(VariableStore store) {
+        throw new ArithmeticOverflowException(NumericMode.INT);
+    }
+
+    /**
+     * Returns the numeric value of the literal.
+     *
+     * @return the numeric value
+     */
+    public BigInteger getValue() {
+        return this.value;
+    }
+    //endregion
+}
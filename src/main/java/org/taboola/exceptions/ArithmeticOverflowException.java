@@ -0,0 +1,40 @@
+package org.taboola.exceptions;
+
+import org.taboola.enums.NumericMode;
+
+/**
+ * Thrown to indicate that the result of an operation does not fit the range of the numeric mode.
+ * Like the other evaluation errors, it does not capture a stack trace.
+ */
+public class ArithmeticOverflowException extends ExpressionCalculatorException {
+
+    //region Members
+    /**
+     * The numeric mode whose range was exceeded.
+     */
+    private final NumericMode mode;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code ArithmeticOverflowException}.
+     *
+     * @param mode the numeric mode whose range was exceeded
+     */
+    public ArithmeticOverflowException(NumericMode mode) {
+        super("The result overflows the " + mode + " range", false);
+        this.mode = mode;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the numeric mode whose range was exceeded.
+     *
+     * @return the numeric mode
+     */
+    public NumericMode getMode() {
+        return this.mode;
+    }
+    //endregion
+}
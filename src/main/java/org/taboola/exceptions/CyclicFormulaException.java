@@ -0,0 +1,38 @@
+package org.taboola.exceptions;
+
+/**
+ * Thrown to indicate that binding a formula would make a variable depend on itself,
+ * directly or through other formulas.
+ */
+public class CyclicFormulaException extends ExpressionCalculatorException {
+
+    //region Members
+    /**
+     * The variable whose formula was rejected.
+     */
+    private final char variable;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code CyclicFormulaException}.
+     *
+     * @param variable the variable whose formula was rejected
+     */
+    public CyclicFormulaException(char variable) {
+        super("The formula of " + variable + " depends on itself", false);
+        this.variable = variable;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the variable whose formula was rejected.
+     *
+     * @return the variable name
+     */
+    public char getVariable() {
+        return this.variable;
+    }
+    //endregion
+}
@@ -6,4 +6,32 @@ package org.taboola.exceptions;
  **/
 public class ExpressionCalculatorException extends RuntimeException {
 
+    /**
+     * Constructs a new exception without a detail message.
+     */
+    public ExpressionCalculatorException() {
+        super();
+    }
+
+    /**
+     * Constructs a new exception with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public ExpressionCalculatorException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new exception with the specified detail message, optionally without a stack trace.
+     *
+     * Expression errors are expected input problems rather than bugs: the stack trace says nothing
+     * the exception's own fields do not, and filling it in dominates the cost of rejecting a line.
+     *
+     * @param message            the detail message, or {@code null}
+     * @param writableStackTrace whether the stack trace is captured
+     */
+    protected ExpressionCalculatorException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
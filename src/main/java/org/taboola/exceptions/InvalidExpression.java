@@ -1,8 +1,69 @@
 package org.taboola.exceptions;
 
+import org.taboola.enums.InvalidExpressionReason;
+
 /**
  * Thrown to indicate that an expression is invalid or cannot be parsed correctly.
  * This may be due to syntax errors, malformed tokens, or unsupported formats.
+ *
+ * When raised by the parser, the exception carries the reason and the character
+ * offset in the expression at which the problem was detected. It has no stack trace,
+ * so rejecting invalid input stays cheap.
  */
 public class InvalidExpression extends ExpressionCalculatorException {
+
+    //region Members
+    /**
+     * The reason the expression was rejected, or {@code null} if unknown.
+     */
+    private final InvalidExpressionReason reason;
+
+    /**
+     * The character offset at which the problem was detected, or -1 if unknown.
+     */
+    private final int position;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code InvalidExpression} without a known reason or position.
+     */
+    public InvalidExpression() {
+        super(null, false);
+        this.reason = null;
+        this.position = -1;
+    }
+
+    /**
+     * Constructs a new {@code InvalidExpression} with the given reason and position.
+     *
+     * @param reason   the reason the expression was rejected
+     * @param position the character offset at which the problem was detected
+     */
+    public InvalidExpression(InvalidExpressionReason reason, int position) {
+        super(reason.getDescription() + " at position " + position, false);
+        this.reason = reason;
+        this.position = position;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the reason the expression was rejected.
+     *
+     * @return the reason, or {@code null} if unknown
+     */
+    public InvalidExpressionReason getReason() {
+        return this.reason;
+    }
+
+    /**
+     * Returns the character offset at which the problem was detected.
+     *
+     * @return the position, or -1 if unknown
+     */
+    public int getPosition() {
+        return this.position;
+    }
+    //endregion
 }
@@ -0,0 +1,17 @@
+package org.taboola.exceptions;
+
+
+/**
+ * Thrown to indicate that a calculator session does not exist, or no longer exists.
+ */
+public class SessionNotFoundException extends ExpressionCalculatorException {
+
+    /**
+     * Constructs a new {@code SessionNotFoundException} for the given session.
+     *
+     * @param sessionId the identifier of the missing session
+     */
+    public SessionNotFoundException(String sessionId) {
+        super("Unknown session " + sessionId);
+    }
+}
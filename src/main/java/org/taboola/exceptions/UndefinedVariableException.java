@@ -3,6 +3,45 @@ package org.taboola.exceptions;
 
 /**
  * Thrown to indicate that a variable used in an expression has not been defined.
+ * It has no stack trace, so rejecting such lines stays cheap.
  */
 public class UndefinedVariableException extends ExpressionCalculatorException {
+
+    //region Members
+    /**
+     * The name of the undefined variable, or {@code 0} if unknown.
+     */
+    private final char variable;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code UndefinedVariableException} for an unknown variable.
+     */
+    public UndefinedVariableException() {
+        super(null, false);
+        this.variable = 0;
+    }
+
+    /**
+     * Constructs a new {@code UndefinedVariableException} for the given variable.
+     *
+     * @param variable the name of the undefined variable
+     */
+    public UndefinedVariableException(char variable) {
+        super("The variable " + variable + " is undefined", false);
+        this.variable = variable;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the name of the undefined variable.
+     *
+     * @return the variable name, or {@code 0} if unknown
+     */
+    public char getVariable() {
+        return this.variable;
+    }
+    //endregion
 }
@@ -0,0 +1,232 @@
+package org.taboola.formula;
+
+import org.taboola.enums.InvalidExpressionReason;
+import org.taboola.enums.TokenType;
+import org.taboola.evaluator.AssignmentExpression;
+import org.taboola.exceptions.CyclicFormulaException;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.parser.ExpressionLexer;
+import org.taboola.parser.TokenBuffer;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.store.HeapSize;
+import org.taboola.store.VariableSlots;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * The live formulas of a calculator and the dependency graph between their variables.
+ *
+ * A formula is an assignment such as {@code b = a + 2} bound to its target variable: whenever
+ * one of the variables it reads changes, it is evaluated again. As there are only 26 variables,
+ * the graph is a bitmask of dependencies per variable, and the formulas are kept sorted in
+ * topological order, so that recomputing after a change is a single pass that evaluates each
+ * affected formula once, after the formulas it depends on.
+ *
+ * The graph never contains cycles: binding a formula that would depend on itself is rejected.
+ * A graph is not thread-safe.
+ */
+public final class FormulaGraph {
+
+    //region Members
+    /**
+     * The formula bound to each variable, indexed by slot, or {@code null}.
+     */
+    private final ExpressionPlan[] formulas = new ExpressionPlan[VariableSlots.SLOT_COUNT];
+
+    /**
+     * The variables read by the formula of each variable, indexed by slot.
+     */
+    private final int[] dependencies = new int[VariableSlots.SLOT_COUNT];
+
+    /**
+     * The slots of the bound variables, in topological order: each formula comes after the formulas it reads.
+     */
+    private final int[] order = new int[VariableSlots.SLOT_COUNT];
+
+    /**
+     * Bitmask of the variables bound to a formula.
+     */
+    private int bound;
+    //endregion
+
+    //region Public Methods
+    /**
+     * Binds the target variable of an assignment to it, replacing any previous formula of the variable.
+     *
+     * @param plan the plan of the assignment
+     * @return the slot of the target variable
+     * @throws InvalidExpression      if the plan is not a plain assignment of a side-effect free expression
+     * @throws CyclicFormulaException if the variable would depend on itself
+     */
+    public int bind(ExpressionPlan plan) {
+        // The shape comes first: x++, ++x and x += 1 are not formulas, even though they read their variable
+        int target = plan.getWriteMask();
+        if (!isPlainAssignment(plan) || Integer.bitCount(target) != 1) {
+            throw new InvalidExpression(InvalidExpressionReason.NOT_A_FORMULA, 0);
+        }
+        int slot = Integer.numberOfTrailingZeros(target);
+        if ((reachable(plan.getReadMask()) & target) != 0) {
+            throw new CyclicFormulaException(VariableSlots.nameOf(slot));
+        }
+        if (!(plan.getRoot() instanceof AssignmentExpression assignment) || assignment.getVariable().getSlot() != slot) {
+            throw new InvalidExpression(InvalidExpressionReason.NOT_A_FORMULA, 0);
+        }
+
+        this.formulas[slot] = plan;
+        this.dependencies[slot] = plan.getReadMask();
+        this.bound |= 1 << slot;
+        sort();
+        return slot;
+    }
+
+    /**
+     * Removes the formula of a variable; the variable keeps its current value.
+     *
+     * @param slot the variable slot
+     * @return true if the variable was bound to a formula, otherwise false
+     */
+    public boolean unbind(int slot) {
+        if ((this.bound & (1 << slot)) == 0) {
+            return false;
+        }
+        this.formulas[slot] = null;
+        this.dependencies[slot] = 0;
+        this.bound &= ~(1 << slot);
+        sort();
+        return true;
+    }
+
+    /**
+     * Removes all the formulas.
+     */
+    public void clear() {
+        for (int mask = this.bound; mask != 0; mask &= mask - 1) {
+            this.formulas[Integer.numberOfTrailingZeros(mask)] = null;
+        }
+        this.bound = 0;
+    }
+
+    /**
+     * Returns a bitmask of the variables bound to a formula.
+     *
+     * @return the bound variables bitmask
+     */
+    public int boundMask() {
+        return this.bound;
+    }
+
+    /**
+     * Checks whether no formula is bound.
+     *
+     * @return true if the graph has no formula, otherwise false
+     */
+    public boolean isEmpty() {
+        return this.bound == 0;
+    }
+
+    /**
+     * Evaluates again, in topological order, every formula that depends on the changed variables,
+     * directly or through other formulas.
+     *
+     * @param changed   the bitmask of the variables that changed
+     * @param evaluator evaluates a formula; if it fails, the remaining formulas are not evaluated
+     * @return the bitmask of the variables whose formula was evaluated
+     */
+    public int recompute(int changed, Consumer<ExpressionPlan> evaluator) {
+        int dirty = changed;
+        int recomputed = 0;
+        for (int i = 0, count = Integer.bitCount(this.bound); i < count; i++) {
+            int slot = this.order[i];
+            if ((this.dependencies[slot] & dirty) != 0) {
+                evaluator.accept(this.formulas[slot]);
+                dirty |= 1 << slot;
+                recomputed |= 1 << slot;
+            }
+        }
+        return recomputed;
+    }
+
+    /**
+     * Returns the expressions of the formulas, by variable name.
+     *
+     * @return a new map of the formulas, sorted by variable name
+     */
+    public Map<Character, String> getFormulas() {
+        Map<Character, String> formulas = new TreeMap<>();
+        for (int mask = this.bound; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            formulas.put(VariableSlots.nameOf(slot), this.formulas[slot].getExpression());
+        }
+        return formulas;
+    }
+
+    /**
+     * Estimates the heap footprint of the graph, in bytes; see {@link HeapSize}. The plans of the
+     * formulas are shared with the plan cache, and are not counted.
+     *
+     * @return the estimated size of the graph
+     */
+    public long estimateSize() {
+        return HeapSize.object(3 * HeapSize.REFERENCE + Integer.BYTES) + HeapSize.referenceArray(this.formulas.length)
+                + HeapSize.intArray(this.dependencies.length) + HeapSize.intArray(this.order.length);
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Checks whether the text of a plan assigns its variable with {@code =}: {@code x += e} parses
+     * to the same tree as {@code x = x + e}, and the optimizer rewrites both alike.
+     *
+     * @param plan the plan
+     * @return true if the plan is written as a plain assignment, or has no text, otherwise false
+     */
+    private static boolean isPlainAssignment(ExpressionPlan plan) {
+        if (plan.getExpression() == null) {
+            return true;
+        }
+        TokenBuffer tokens = ExpressionLexer.tokenize(plan.getExpression(), new TokenBuffer());
+        return tokens.size() > 1 && tokens.type(1) == TokenType.ASSIGN;
+    }
+
+    /**
+     * Returns the variables reachable from the given ones through the dependencies of the formulas.
+     *
+     * @param start the bitmask of the starting variables
+     * @return the bitmask of the starting variables and of every variable they depend on
+     */
+    private int reachable(int start) {
+        int reached = start;
+        int frontier = start & this.bound;
+        while (frontier != 0) {
+            int slot = Integer.numberOfTrailingZeros(frontier);
+            frontier &= frontier - 1;
+            int added = this.dependencies[slot] & ~reached;
+            reached |= added;
+            frontier |= added & this.bound;
+        }
+        return reached;
+    }
+
+    /**
+     * Sorts the bound variables in topological order, by repeatedly taking the formulas
+     * that depend on no remaining formula.
+     */
+    private void sort() {
+        int remaining = this.bound;
+        int size = 0;
+        while (remaining != 0) {
+            int ready = 0;
+            for (int mask = remaining; mask != 0; mask &= mask - 1) {
+                int slot = Integer.numberOfTrailingZeros(mask);
+                if ((this.dependencies[slot] & remaining) == 0) {
+                    ready |= 1 << slot;
+                    this.order[size++] = slot;
+                }
+            }
+            remaining &= ~ready;
+        }
+    }
+    //endregion
+}
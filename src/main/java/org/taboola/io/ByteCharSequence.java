@@ -0,0 +1,110 @@
+package org.taboola.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable {@link CharSequence} view over a range of bytes of a {@link ByteBuffer},
+ * decoding each byte as a single ISO-8859-1 character.
+ *
+ * Expressions are pure ASCII, so the view lets the lexer read a line straight out
+ * of a mapped file without decoding it into a string. Any non-ASCII byte shows up
+ * as a character the lexer rejects, as it would in a decoded string.
+ */
+public final class ByteCharSequence implements CharSequence {
+
+    //region Members
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+    //endregion
+
+    //region Public Methods
+    /**
+     * Points the view at a new range of bytes.
+     *
+     * @param buffer the buffer holding the bytes
+     * @param offset the absolute index of the first byte in the buffer
+     * @param length the number of bytes
+     * @return this view
+     */
+    public ByteCharSequence wrap(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (this.buffer.get(this.offset + index) & 0xFF);
+    }
+
+    /**
+     * Returns a copy of the bytes of the view.
+     *
+     * @return a new array holding the bytes
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[this.length];
+        this.buffer.get(this.offset, bytes);
+        return bytes;
+    }
+
+    /**
+     * Checks whether the view holds the given bytes.
+     *
+     * @param bytes the bytes to compare with
+     * @return true if the view has the same bytes, otherwise false
+     */
+    public boolean contentEquals(byte[] bytes) {
+        if (bytes.length != this.length) {
+            return false;
+        }
+        for (int i = 0; i < this.length; i++) {
+            if (this.buffer.get(this.offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a hash of the bytes of the view.
+     *
+     * @return the hash code of the content
+     */
+    public int contentHash() {
+        int hash = 0;
+        for (int i = 0; i < this.length; i++) {
+            hash = 31 * hash + this.buffer.get(this.offset + i);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns a copy of a range of the view, as a string.
+     * Allocates, so it is meant for error reporting only.
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        this.buffer.get(this.offset + start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns the content of the view as a string.
+     * Allocates, so it is meant for error reporting only.
+     */
+    @Override
+    public String toString() {
+        return subSequence(0, this.length).toString();
+    }
+    //endregion
+}
@@ -0,0 +1,270 @@
+package org.taboola.io;
+
+import org.taboola.ExpressionCalculator;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs a script file through the calculator at close to disk bandwidth.
+ *
+ * The file is memory-mapped in windows and its lines are scanned straight out of the
+ * mapped bytes: each line is handed to the lexer through a reused {@link ByteCharSequence},
+ * so no string is created per line. As in the interactive mode, an empty line ends a block:
+ * the variables are written to the output and cleared. Block results go through a direct
+ * buffer to the output channel rather than through the logger.
+ *
+ * Plans are looked up in a small direct-mapped cache keyed by the line bytes, and lines
+ * missing from it are parsed without going through the string-keyed {@link ExpressionPlanCache},
+ * so that scripts of millions of distinct lines do not flood the shared cache.
+ *
+ * The lines are calculated on an {@link ExpressionCalculator}, in its numeric mode, with
+ * {@link ExpressionCalculator#calculatePlan(ExpressionPlan)}, and each block ends with
+ * {@link ExpressionCalculator#endBlock()}.
+ *
+ * A runner is not thread-safe; use one per file.
+ */
+public class MappedScriptRunner {
+
+    //region Members
+    /**
+     * Default number of bytes mapped at once.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+    /**
+     * Number of entries of the plan cache; a power of two.
+     */
+    private static final int PLAN_SLOTS = 4096;
+
+    /**
+     * Size of the output buffer.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 << 10;
+
+    /**
+     * The calculator evaluating the lines, whose plan cache parses the lines that are not in the local cache.
+     */
+    private final ExpressionCalculator calculator;
+
+    /**
+     * Number of bytes mapped at once; also the maximum line length.
+     */
+    private final int windowSize;
+
+    /**
+     * Receives each line that could not be evaluated, with its error.
+     */
+    private final BiConsumer<String, ExpressionCalculatorException> errorHandler;
+
+    private final ByteCharSequence line = new ByteCharSequence();
+    private final ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+
+    /**
+     * Direct-mapped cache of the recent lines: the bytes of each line, and its plan or the error it raised.
+     */
+    private final byte[][] cachedLines = new byte[PLAN_SLOTS][];
+    private final ExpressionPlan[] cachedPlans = new ExpressionPlan[PLAN_SLOTS];
+    private final ExpressionCalculatorException[] cachedErrors = new ExpressionCalculatorException[PLAN_SLOTS];
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code MappedScriptRunner} calculating with a plain calculator on the given plan cache.
+     *
+     * @param planCache    the cache used to parse new lines
+     * @param windowSize   the number of bytes mapped at once, which is also the maximum line length
+     * @param errorHandler receives each line that could not be evaluated, with its error
+     */
+    public MappedScriptRunner(ExpressionPlanCache planCache, int windowSize,
+                              BiConsumer<String, ExpressionCalculatorException> errorHandler) {
+        this(new ExpressionCalculator(planCache), windowSize, errorHandler);
+    }
+
+    /**
+     * Constructs a new {@code MappedScriptRunner}.
+     *
+     * @param calculator   the calculator evaluating the lines, whose plan cache parses new lines
+     * @param windowSize   the number of bytes mapped at once, which is also the maximum line length
+     * @param errorHandler receives each line that could not be evaluated, with its error
+     */
+    public MappedScriptRunner(ExpressionCalculator calculator, int windowSize,
+                              BiConsumer<String, ExpressionCalculatorException> errorHandler) {
+        this.calculator = calculator;
+        this.windowSize = windowSize;
+        this.errorHandler = errorHandler;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Evaluates every line of the given file and writes the variables of each block to the output.
+     * The variables of a last block that is not followed by an empty line are written at the end of the file.
+     *
+     * @param input  the script file
+     * @param target the channel receiving the block results
+     * @throws IOException if the file cannot be read or the output cannot be written
+     */
+    public void run(Path input, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            boolean pendingBlock = false;
+
+            while (position < size) {
+                int length = (int) Math.min(this.windowSize, size - position);
+                boolean lastWindow = position + length == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                int lineStart = 0;
+                for (int i = 0; i < length; i++) {
+                    if (window.get(i) == '\n') {
+                        pendingBlock = processLine(window, lineStart, i, target);
+                        lineStart = i + 1;
+                    }
+                }
+
+                if (lastWindow) {
+                    if (lineStart < length) {
+                        pendingBlock = processLine(window, lineStart, length, target);
+                    }
+                    position = size;
+                } else if (lineStart == 0) {
+                    throw new IOException("A line of " + input + " is longer than " + this.windowSize + " bytes");
+                } else {
+                    // Remap from the start of the line cut by the end of the window
+                    position += lineStart;
+                }
+            }
+
+            if (pendingBlock) {
+                endBlock(target);
+            }
+            flush(target);
+        }
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Evaluates one line, or ends the block if the line is blank.
+     *
+     * @param window the mapped bytes
+     * @param start  the index of the first byte of the line
+     * @param end    the index of the line feed ending the line, or of the end of the window
+     * @param target the channel receiving the block results
+     * @return true if the line was evaluated, false if it ended the block
+     * @throws IOException if the output cannot be written
+     */
+    private boolean processLine(ByteBuffer window, int start, int end, WritableByteChannel target)
+            throws IOException {
+        if (end > start && window.get(end - 1) == '\r') {
+            end--;
+        }
+        if (isBlank(window, start, end)) {
+            endBlock(target);
+            return false;
+        }
+
+        this.line.wrap(window, start, end - start);
+        int slot = this.line.contentHash() & (PLAN_SLOTS - 1);
+        if (this.cachedLines[slot] == null || !this.line.contentEquals(this.cachedLines[slot])) {
+            cacheLine(slot);
+        }
+
+        try {
+            if (this.cachedErrors[slot] != null) {
+                throw this.cachedErrors[slot];
+            }
+            this.calculator.calculatePlan(this.cachedPlans[slot]);
+        } catch (ExpressionCalculatorException e) {
+            this.errorHandler.accept(this.line.toString(), e);
+        }
+        return true;
+    }
+
+    /**
+     * Parses the current line and stores its plan, or its error, in the given cache slot.
+     *
+     * @param slot the cache slot of the line
+     */
+    private void cacheLine(int slot) {
+        this.cachedLines[slot] = this.line.toByteArray();
+        try {
+            this.cachedPlans[slot] = this.calculator.getPlanCache().parse(this.line);
+            this.cachedErrors[slot] = null;
+        } catch (ExpressionCalculatorException e) {
+            this.cachedPlans[slot] = null;
+            this.cachedErrors[slot] = e;
+        }
+    }
+
+    /**
+     * Writes the variables of the current block to the output and clears them.
+     *
+     * @param target the channel receiving the block results
+     * @throws IOException if the output cannot be written
+     */
+    private void endBlock(WritableByteChannel target) throws IOException {
+        String variables = this.calculator.endBlock();
+        for (int i = 0; i < variables.length(); i++) {
+            write((byte) variables.charAt(i), target);
+        }
+        write((byte) '\n', target);
+    }
+
+    /**
+     * Appends a byte to the output buffer, draining it to the channel when full.
+     *
+     * @param b      the byte to write
+     * @param target the channel receiving the block results
+     * @throws IOException if the output cannot be written
+     */
+    private void write(byte b, WritableByteChannel target) throws IOException {
+        if (!this.output.hasRemaining()) {
+            flush(target);
+        }
+        this.output.put(b);
+    }
+
+    /**
+     * Drains the output buffer to the channel.
+     *
+     * @param target the channel receiving the block results
+     * @throws IOException if the output cannot be written
+     */
+    private void flush(WritableByteChannel target) throws IOException {
+        this.output.flip();
+        while (this.output.hasRemaining()) {
+            target.write(this.output);
+        }
+        this.output.clear();
+    }
+
+    /**
+     * Checks whether a line holds only whitespace or control characters, like {@link String#trim()}.
+     *
+     * @param window the mapped bytes
+     * @param start  the index of the first byte of the line
+     * @param end    the index just past the last byte of the line
+     * @return true if the line is blank, otherwise false
+     */
+    private static boolean isBlank(ByteBuffer window, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ((window.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+    //endregion
+}
@@ -0,0 +1,196 @@
+package org.taboola.io;
+
+import org.taboola.ExpressionCalculator;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs a stream of blocks through the calculator, evaluating independent blocks concurrently.
+ *
+ * An empty line ends a block and clears the variables, so consecutive blocks share no state.
+ * The runner splits the input at empty lines and evaluates each block on the executor with
+ * its own calculator, while all blocks share the plan cache. Results are written in input
+ * order through a reorder buffer holding at most {@code maxPendingBlocks} blocks: once it is full,
+ * reading waits for the oldest block to finish and be written, which bounds the memory used
+ * whatever the size of the input.
+ *
+ * The lines are calculated with {@link ExpressionCalculator#calculatePlan(ExpressionPlan)}, in the
+ * numeric mode of the calculator, and each block ends with {@link ExpressionCalculator#endBlock()}.
+ */
+public class ParallelBlockRunner {
+
+    //region Members
+    /**
+     * Creates the calculator of each block; all of them share one plan cache.
+     */
+    private final Supplier<ExpressionCalculator> calculators;
+
+    /**
+     * The executor evaluating the blocks.
+     */
+    private final Executor executor;
+
+    /**
+     * Maximum number of blocks read but not written yet.
+     */
+    private final int maxPendingBlocks;
+
+    /**
+     * Receives each line that could not be evaluated, with its error, in input order.
+     */
+    private final BiConsumer<String, ExpressionCalculatorException> errorHandler;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code ParallelBlockRunner} calculating with plain calculators on the given plan cache.
+     *
+     * @param planCache        the cache providing the plan of each line
+     * @param executor         the executor evaluating the blocks
+     * @param maxPendingBlocks the maximum number of blocks read but not written yet
+     * @param errorHandler     receives each line that could not be evaluated, with its error, in input order
+     */
+    public ParallelBlockRunner(ExpressionPlanCache planCache, Executor executor, int maxPendingBlocks,
+                               BiConsumer<String, ExpressionCalculatorException> errorHandler) {
+        this(() -> new ExpressionCalculator(planCache), executor, maxPendingBlocks, errorHandler);
+    }
+
+    /**
+     * Constructs a new {@code ParallelBlockRunner}.
+     *
+     * @param calculators      creates the calculator of each block, all on the same plan cache
+     * @param executor         the executor evaluating the blocks
+     * @param maxPendingBlocks the maximum number of blocks read but not written yet
+     * @param errorHandler     receives each line that could not be evaluated, with its error, in input order
+     */
+    public ParallelBlockRunner(Supplier<ExpressionCalculator> calculators, Executor executor, int maxPendingBlocks,
+                               BiConsumer<String, ExpressionCalculatorException> errorHandler) {
+        this.calculators = calculators;
+        this.executor = executor;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.errorHandler = errorHandler;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Evaluates every block of the input and writes the variables of each one, in input order.
+     * The variables of a last block that is not followed by an empty line are written at the end of the input.
+     *
+     * @param input  the lines of the blocks
+     * @param output the writer receiving one line of variables per block; flushed at the end
+     * @throws IOException if the input cannot be read or the output cannot be written
+     */
+    public void run(BufferedReader input, Writer output) throws IOException {
+        ArrayDeque<CompletableFuture<BlockOutcome>> pending = new ArrayDeque<>(this.maxPendingBlocks);
+        List<String> block = new ArrayList<>();
+        String line;
+
+        while ((line = input.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                block.add(line);
+                continue;
+            }
+            if (pending.size() == this.maxPendingBlocks) {
+                write(pending.poll(), output);
+            }
+            pending.add(submit(block));
+            block = new ArrayList<>();
+        }
+        if (!block.isEmpty()) {
+            pending.add(submit(block));
+        }
+
+        while (!pending.isEmpty()) {
+            write(pending.poll(), output);
+        }
+        output.flush();
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Schedules the evaluation of a block with its own calculator.
+     *
+     * @param block the lines of the block
+     * @return the future outcome of the block
+     */
+    private CompletableFuture<BlockOutcome> submit(List<String> block) {
+        return CompletableFuture.supplyAsync(() -> evaluate(block), this.executor);
+    }
+
+    /**
+     * Evaluates the lines of a block in order.
+     *
+     * @param block the lines of the block
+     * @return the variables at the end of the block and the errors raised by its lines
+     */
+    private BlockOutcome evaluate(List<String> block) {
+        ExpressionCalculator calculator = this.calculators.get();
+        ExpressionPlanCache planCache = calculator.getPlanCache();
+        List<String> failedLines = new ArrayList<>(0);
+        List<ExpressionCalculatorException> errors = new ArrayList<>(0);
+
+        for (String line : block) {
+            try {
+                calculator.calculatePlan(planCache.getPlan(line));
+            } catch (ExpressionCalculatorException e) {
+                failedLines.add(line);
+                errors.add(e);
+            }
+        }
+        return new BlockOutcome(calculator.endBlock(), failedLines, errors);
+    }
+
+    /**
+     * Waits for a block to finish, reports its errors and writes its variables.
+     *
+     * @param future the future outcome of the block
+     * @param output the writer receiving the variables
+     * @throws IOException if the output cannot be written
+     */
+    private void write(CompletableFuture<BlockOutcome> future, Writer output) throws IOException {
+        BlockOutcome outcome;
+        try {
+            outcome = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        for (int i = 0; i < outcome.failedLines().size(); i++) {
+            this.errorHandler.accept(outcome.failedLines().get(i), outcome.errors().get(i));
+        }
+        output.write(outcome.variables());
+        output.write('\n');
+    }
+    //endregion
+
+    //region BlockOutcome
+    /**
+     * The result of evaluating one block.
+     *
+     * @param variables   the variables at the end of the block, formatted as {@code (a=1,b=2)}
+     * @param failedLines the lines that could not be evaluated, in order
+     * @param errors      the error raised by each failed line
+     */
+    private record BlockOutcome(String variables, List<String> failedLines,
+                                List<ExpressionCalculatorException> errors) {
+    }
+    //endregion
+}
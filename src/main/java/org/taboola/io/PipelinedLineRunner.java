@@ -0,0 +1,389 @@
+package org.taboola.io;
+
+import org.taboola.ExpressionCalculator;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs a stream of lines through the calculator in three pipelined stages, so that reading and
+ * parsing overlap with the evaluation instead of adding to its latency:
+ *
+ * <ol>
+ *     <li>A reader thread reads the lines.</li>
+ *     <li>Parser threads look up the plan of each line in the plan cache, validating and parsing the
+ *     lines it does not hold yet. Parsing has no side effect, so they run ahead of the evaluation,
+ *     on other cores and in any order.</li>
+ *     <li>The calling thread evaluates the plans in input order on an {@link ExpressionCalculator}, and
+ *     writes the variables of each block to a buffered writer, flushed whenever the evaluation catches
+ *     up with the input.</li>
+ * </ol>
+ *
+ * The stages hand the lines over through a ring of {@code capacity} slots, without locks: each slot
+ * is stamped with the sequence number of its line by the reader once the line is read, then by a
+ * parser once its plan is ready, and the evaluator publishes how many lines it consumed. The reader
+ * waits while the ring is full of lines not evaluated yet, which bounds the memory used whatever the
+ * input. A stage with nothing to do spins for a short while, then sleeps until another stage makes
+ * progress, so an idle interactive session costs no CPU.
+ *
+ * As in the interactive loop, an empty line ends a block: the variables are written and cleared.
+ * They are also written at the end of the input. The lines are calculated with
+ * {@link ExpressionCalculator#calculatePlan(ExpressionPlan)}, in the numeric mode of the calculator
+ * and recording its metrics, and each block ends with {@link ExpressionCalculator#endBlock()}.
+ */
+public class PipelinedLineRunner {
+
+    //region Members
+    /**
+     * Number of idle rounds a stage spins before yielding, then sleeping.
+     */
+    private static final int SPIN_ROUNDS = 100;
+
+    /**
+     * Creates the calculator of each run.
+     */
+    private final Supplier<ExpressionCalculator> calculators;
+
+    /**
+     * Number of parser threads.
+     */
+    private final int parsers;
+
+    /**
+     * Number of slots of the ring, a power of two.
+     */
+    private final int capacity;
+
+    /**
+     * Receives each line that could not be evaluated, with its error, in input order.
+     */
+    private final BiConsumer<String, ExpressionCalculatorException> errorHandler;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code PipelinedLineRunner} calculating with plain calculators on the given plan cache.
+     *
+     * @param planCache    the cache providing the plan of each line
+     * @param parsers      the number of parser threads
+     * @param capacity     the maximum number of lines read but not evaluated yet, rounded up to a power of two
+     * @param errorHandler receives each line that could not be evaluated, with its error, in input order
+     * @throws IllegalArgumentException if there is no parser thread or the capacity is not positive
+     */
+    public PipelinedLineRunner(ExpressionPlanCache planCache, int parsers, int capacity,
+                               BiConsumer<String, ExpressionCalculatorException> errorHandler) {
+        this(() -> new ExpressionCalculator(planCache), parsers, capacity, errorHandler);
+    }
+
+    /**
+     * Constructs a new {@code PipelinedLineRunner}.
+     *
+     * @param calculators  creates the calculator of each run, whose plan cache provides the plan of each line
+     * @param parsers      the number of parser threads
+     * @param capacity     the maximum number of lines read but not evaluated yet, rounded up to a power of two
+     * @param errorHandler receives each line that could not be evaluated, with its error, in input order
+     * @throws IllegalArgumentException if there is no parser thread or the capacity is not positive
+     */
+    public PipelinedLineRunner(Supplier<ExpressionCalculator> calculators, int parsers, int capacity,
+                               BiConsumer<String, ExpressionCalculatorException> errorHandler) {
+        if (parsers < 1 || capacity < 1) {
+            throw new IllegalArgumentException("The pipeline needs at least one parser and one slot");
+        }
+        this.calculators = calculators;
+        this.parsers = parsers;
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.errorHandler = errorHandler;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Evaluates every line of the input and writes the variables of each block, in input order.
+     *
+     * @param input  the lines of the blocks
+     * @param output the writer receiving one line of variables per block and one at the end of the input
+     * @throws IOException if the input cannot be read or the output cannot be written
+     */
+    public void run(BufferedReader input, Writer output) throws IOException {
+        ExpressionCalculator calculator = this.calculators.get();
+        Pipeline pipeline = new Pipeline(calculator.getPlanCache(), this.capacity);
+        List<Thread> threads = new ArrayList<>(this.parsers + 1);
+        threads.add(Thread.ofPlatform().daemon().name("calculator-reader").start(() -> pipeline.read(input)));
+        for (int i = 0; i < this.parsers; i++) {
+            threads.add(Thread.ofPlatform().daemon().name("calculator-parser-" + i).start(pipeline::parse));
+        }
+        try {
+            evaluate(calculator, pipeline, output);
+        } finally {
+            // Stops the other stages if the evaluation failed; the reader may stay blocked on its input
+            pipeline.closed = true;
+            pipeline.signal();
+            for (int i = 1; i < threads.size(); i++) {
+                try {
+                    threads.get(i).join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (pipeline.failure != null) {
+            throw pipeline.failure;
+        }
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Runs the evaluation stage on the calling thread, until the end of the input.
+     *
+     * @param calculator the calculator of the run
+     * @param pipeline   the pipeline
+     * @param output     the writer receiving the variables
+     * @throws IOException if the output cannot be written
+     */
+    private void evaluate(ExpressionCalculator calculator, Pipeline pipeline, Writer output) throws IOException {
+        for (long sequence = 0; ; sequence++) {
+            Slot slot = pipeline.slots[(int) sequence & pipeline.mask];
+            if (slot.parsed != sequence) {
+                // Caught up with the input: hands the results so far over before waiting
+                output.flush();
+                long expected = sequence;
+                pipeline.await(() -> slot.parsed == expected);
+            }
+            String line = slot.line;
+            ExpressionPlan plan = slot.plan;
+            RuntimeException error = slot.error;
+            slot.line = null;
+            slot.plan = null;
+            slot.error = null;
+            pipeline.evaluated = sequence + 1;
+            pipeline.signal();
+
+            if (line == null || (plan == null && error == null)) {
+                output.write(calculator.endBlock());
+                output.write('\n');
+                if (line == null) {
+                    output.flush();
+                    return;
+                }
+                continue;
+            }
+            try {
+                if (error != null) {
+                    throw error;
+                }
+                calculator.calculatePlan(plan);
+            } catch (ExpressionCalculatorException e) {
+                this.errorHandler.accept(line, e);
+            }
+        }
+    }
+    //endregion
+
+    //region Pipeline
+    /**
+     * The ring of slots shared by the stages of one run, and the reader and parser stages.
+     */
+    private static final class Pipeline {
+        private final ExpressionPlanCache planCache;
+        private final Slot[] slots;
+        private final int mask;
+
+        /**
+         * Number of lines consumed by the evaluator; the reader may fill a slot once its previous line is consumed.
+         */
+        private volatile long evaluated;
+
+        /**
+         * Sequence number of the end-of-input marker, once read.
+         */
+        private volatile long end = Long.MAX_VALUE;
+
+        /**
+         * Sequence number of the next line for a parser to claim.
+         */
+        private final AtomicLong claimed = new AtomicLong();
+
+        /**
+         * Set once the evaluation stops, to stop the other stages.
+         */
+        private volatile boolean closed;
+
+        /**
+         * The error raised while reading the input, if any.
+         */
+        private volatile IOException failure;
+
+        /**
+         * Lets the sleeping stages wait for another stage to make progress.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition progress = this.lock.newCondition();
+
+        /**
+         * Number of stages sleeping on {@link #progress}; the other stages only signal it while some do.
+         */
+        private final AtomicInteger sleepers = new AtomicInteger();
+
+        Pipeline(ExpressionPlanCache planCache, int capacity) {
+            this.planCache = planCache;
+            this.slots = new Slot[capacity];
+            this.mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                this.slots[i] = new Slot();
+            }
+        }
+
+        /**
+         * Runs the reader stage: reads every line into the ring, then the end-of-input marker.
+         *
+         * @param input the lines to read
+         */
+        void read(BufferedReader input) {
+            long sequence = 0;
+            try {
+                String line;
+                while ((line = input.readLine()) != null && publish(sequence, line)) {
+                    sequence++;
+                }
+            } catch (IOException e) {
+                this.failure = e;
+            }
+            this.end = sequence;
+            publish(sequence, null);
+        }
+
+        /**
+         * Waits until a stage can go on: spins for a short while, yields, then sleeps until another stage
+         * makes progress. The stages signal after every change they publish, which the condition reads.
+         *
+         * @param ready checks whether the waiting stage can go on
+         */
+        void await(BooleanSupplier ready) {
+            for (int round = 0; round < 2 * SPIN_ROUNDS; round++) {
+                if (ready.getAsBoolean()) {
+                    return;
+                }
+                if (round < SPIN_ROUNDS) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            this.lock.lock();
+            try {
+                // Counted before checking again: a stage publishing after the check sees the sleeper and signals
+                this.sleepers.incrementAndGet();
+                while (!ready.getAsBoolean()) {
+                    this.progress.awaitUninterruptibly();
+                }
+            } finally {
+                this.sleepers.decrementAndGet();
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Wakes the sleeping stages up after a change they may be waiting for; costs a volatile read if none sleeps.
+         */
+        void signal() {
+            if (this.sleepers.get() > 0) {
+                this.lock.lock();
+                try {
+                    this.progress.signalAll();
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Runs a parser stage: claims lines in sequence and looks up their plans, until the end of the input.
+         */
+        void parse() {
+            while (!this.closed) {
+                long sequence = this.claimed.getAndIncrement();
+                if (sequence > this.end) {
+                    return;
+                }
+                Slot slot = this.slots[(int) sequence & this.mask];
+                if (slot.read != sequence) {
+                    await(() -> slot.read == sequence || this.closed || sequence > this.end);
+                    if (slot.read != sequence) {
+                        return;
+                    }
+                }
+
+                String line = slot.line;
+                if (line != null && !line.trim().isEmpty()) {
+                    try {
+                        slot.plan = this.planCache.getPlan(line);
+                    } catch (RuntimeException e) {
+                        slot.error = e;
+                    }
+                }
+                slot.parsed = sequence;
+                signal();
+                if (line == null) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Puts a line into its slot, once the evaluator consumed the line it held before.
+         *
+         * @param sequence the sequence number of the line
+         * @param line     the line, or {@code null} for the end-of-input marker
+         * @return false if the evaluation stopped, otherwise true
+         */
+        private boolean publish(long sequence, String line) {
+            if (sequence - this.evaluated >= this.slots.length) {
+                await(() -> sequence - this.evaluated < this.slots.length || this.closed);
+                if (this.closed) {
+                    return false;
+                }
+            }
+            Slot slot = this.slots[(int) sequence & this.mask];
+            slot.line = line;
+            slot.read = sequence;
+            signal();
+            return true;
+        }
+    }
+    //endregion
+
+    //region Slot
+    /**
+     * A slot of the ring. The plain fields are published to the next stage by the write of its stamp.
+     */
+    private static final class Slot {
+        private String line;
+        private ExpressionPlan plan;
+        private RuntimeException error;
+
+        /**
+         * Sequence number of the line the slot holds, stamped by the reader once the line is set.
+         */
+        private volatile long read = -1;
+
+        /**
+         * Sequence number of the line the slot holds, stamped by a parser once its plan or error is set.
+         */
+        private volatile long parsed = -1;
+    }
+    //endregion
+}
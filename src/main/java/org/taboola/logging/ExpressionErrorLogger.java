@@ -0,0 +1,47 @@
+package org.taboola.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.taboola.exceptions.ArithmeticOverflowException;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.exceptions.UndefinedVariableException;
+
+import java.time.Duration;
+import java.util.function.BiConsumer;
+
+/**
+ * Reports the lines of the command line that could not be evaluated, one log record per line,
+ * at most ten per second so that a batch full of errors is not slowed down by its logging.
+ * Shared by the Spring application and the Spring-free launcher, so both report errors alike.
+ */
+@Slf4j
+public final class ExpressionErrorLogger implements BiConsumer<String, ExpressionCalculatorException> {
+
+    //region Members
+    /**
+     * Logs the lines that could not be evaluated, at most ten times per second.
+     */
+    private static final RateLimitedLogger ERROR_LOG = new RateLimitedLogger(log, 10, Duration.ofSeconds(1));
+    //endregion
+
+    //region Public Methods
+    /**
+     * Reports an expression that could not be evaluated.
+     *
+     * @param expression the expression
+     * @param e          the error raised while evaluating it
+     */
+    @Override
+    public void accept(String expression, ExpressionCalculatorException e) {
+        if (e instanceof InvalidExpression) {
+            ERROR_LOG.error("The expression '{}' is invalid.", expression);
+        } else if (e instanceof UndefinedVariableException) {
+            ERROR_LOG.error("There is an undefined variable in the expression '{}'.", expression);
+        } else if (e instanceof ArithmeticOverflowException overflow) {
+            ERROR_LOG.error("The expression '{}' overflows the {} range.", expression, overflow.getMode());
+        } else {
+            ERROR_LOG.error("The expression '{}' could not be evaluated.", expression);
+        }
+    }
+    //endregion
+}
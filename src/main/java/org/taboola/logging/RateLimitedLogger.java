@@ -0,0 +1,130 @@
+package org.taboola.logging;
+
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a {@link Logger} so that a flood of similar errors, such as a batch full of invalid
+ * lines, costs a counter increment per line instead of a formatted log record.
+ *
+ * At most {@code maxPerWindow} messages are logged per time window; the others are dropped
+ * and counted, and the count is reported with the first message of a later window.
+ */
+public final class RateLimitedLogger {
+
+    //region Members
+    private final Logger logger;
+    private final int maxPerWindow;
+    private final long windowNanos;
+
+    /**
+     * When the current window started, in {@link System#nanoTime()} units.
+     */
+    private final AtomicLong windowStart;
+
+    /**
+     * Number of messages offered in the current window.
+     */
+    private final AtomicInteger offered = new AtomicInteger();
+
+    /**
+     * Number of messages dropped since the last report.
+     */
+    private final AtomicLong suppressed = new AtomicLong();
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code RateLimitedLogger}.
+     *
+     * @param logger       the logger receiving the messages
+     * @param maxPerWindow the maximum number of messages logged per window
+     * @param window       the length of a window
+     */
+    public RateLimitedLogger(Logger logger, int maxPerWindow, Duration window) {
+        this.logger = logger;
+        this.maxPerWindow = maxPerWindow;
+        this.windowNanos = window.toNanos();
+        this.windowStart = new AtomicLong(System.nanoTime());
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Logs an error with one argument, unless the rate limit is reached.
+     *
+     * @param format the message format
+     * @param arg    the argument
+     */
+    public void error(String format, Object arg) {
+        if (this.logger.isErrorEnabled() && tryAcquire()) {
+            this.logger.error(format, arg);
+        }
+    }
+
+    /**
+     * Logs an error with two arguments, unless the rate limit is reached.
+     *
+     * @param format the message format
+     * @param arg1   the first argument
+     * @param arg2   the second argument
+     */
+    public void error(String format, Object arg1, Object arg2) {
+        if (this.logger.isErrorEnabled() && tryAcquire()) {
+            this.logger.error(format, arg1, arg2);
+        }
+    }
+
+    /**
+     * Logs an error with three arguments, unless the rate limit is reached.
+     *
+     * @param format the message format
+     * @param arg1   the first argument
+     * @param arg2   the second argument
+     * @param arg3   the third argument
+     */
+    public void error(String format, Object arg1, Object arg2, Object arg3) {
+        if (this.logger.isErrorEnabled() && tryAcquire()) {
+            this.logger.error(format, arg1, arg2, arg3);
+        }
+    }
+
+    /**
+     * Returns the number of messages dropped and not reported yet.
+     *
+     * @return the suppressed message count
+     */
+    public long getSuppressedCount() {
+        return this.suppressed.get();
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Takes a slot in the current window, starting a new window if the current one is over.
+     *
+     * @return true if the message may be logged, otherwise false
+     */
+    private boolean tryAcquire() {
+        long now = System.nanoTime();
+        long start = this.windowStart.get();
+        if (now - start >= this.windowNanos && this.windowStart.compareAndSet(start, now)) {
+            this.offered.set(0);
+            long dropped = this.suppressed.getAndSet(0);
+            if (dropped > 0) {
+                this.logger.warn("{} similar messages were suppressed in the last {} ms.",
+                        dropped, (now - start) / 1_000_000);
+            }
+        }
+
+        if (this.offered.incrementAndGet() <= this.maxPerWindow) {
+            return true;
+        }
+        this.suppressed.incrementAndGet();
+        return false;
+    }
+    //endregion
+}
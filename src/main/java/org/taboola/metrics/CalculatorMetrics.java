@@ -0,0 +1,57 @@
+package org.taboola.metrics;
+
+import org.taboola.enums.InvalidExpressionReason;
+
+/**
+ * Records the latency and failures of the calculator.
+ *
+ * Callers check {@link #isEnabled()} before reading the clock, so that with metrics
+ * disabled an instrumented call costs a single predictable branch and allocates nothing.
+ */
+public interface CalculatorMetrics {
+
+    /**
+     * Metrics that record nothing.
+     */
+    CalculatorMetrics NOOP = new NoopCalculatorMetrics();
+
+    /**
+     * Checks whether the metrics are recorded at all.
+     *
+     * @return true if the recording methods do anything, otherwise false
+     */
+    boolean isEnabled();
+
+    /**
+     * Records the time spent tokenizing, validating and parsing an expression that was not cached yet.
+     *
+     * @param nanos the elapsed time in nanoseconds
+     */
+    void recordParse(long nanos);
+
+    /**
+     * Records the time spent evaluating a single expression.
+     *
+     * @param nanos the elapsed time in nanoseconds
+     */
+    void recordEvaluation(long nanos);
+
+    /**
+     * Records the time spent evaluating a whole block of expressions.
+     *
+     * @param nanos the elapsed time in nanoseconds
+     */
+    void recordBlock(long nanos);
+
+    /**
+     * Counts an expression rejected as invalid, whether it was parsed or found in the rejection cache.
+     *
+     * @param reason the reason the expression was rejected, or {@code null} if unknown
+     */
+    void recordInvalidExpression(InvalidExpressionReason reason);
+
+    /**
+     * Counts an evaluation that read an undefined variable.
+     */
+    void recordUndefinedVariable();
+}
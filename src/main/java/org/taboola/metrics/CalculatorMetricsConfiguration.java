@@ -0,0 +1,31 @@
+package org.taboola.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.taboola.config.CalculatorProperties;
+
+/**
+ * Provides the {@link CalculatorMetrics} of the application: Micrometer-backed when
+ * {@code calculator.metrics-enabled} is set and a meter registry is available, no-op otherwise.
+ */
+@Configuration
+public class CalculatorMetricsConfiguration {
+
+    /**
+     * Creates the calculator metrics.
+     *
+     * @param properties the calculator settings
+     * @param registry   the meter registry, if any
+     * @return the calculator metrics
+     */
+    @Bean
+    public CalculatorMetrics calculatorMetrics(CalculatorProperties properties, ObjectProvider<MeterRegistry> registry) {
+        MeterRegistry meterRegistry = registry.getIfAvailable();
+        if (!properties.isMetricsEnabled() || meterRegistry == null) {
+            return CalculatorMetrics.NOOP;
+        }
+        return new MicrometerCalculatorMetrics(meterRegistry);
+    }
+}
@@ -0,0 +1,119 @@
+package org.taboola.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.taboola.enums.InvalidExpressionReason;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CalculatorMetrics} backed by Micrometer.
+ *
+ * Every meter is registered up front, including one failure counter per
+ * {@link InvalidExpressionReason}, so recording only updates existing meters
+ * and never looks up or allocates tags on the hot path.
+ */
+public class MicrometerCalculatorMetrics implements CalculatorMetrics {
+
+    //region Members
+    private final Timer parseTimer;
+    private final Timer evaluationTimer;
+    private final Timer blockTimer;
+
+    /**
+     * Invalid expression counters, indexed by reason ordinal; the last one counts unknown reasons.
+     */
+    private final Counter[] invalidExpressionCounters;
+
+    private final Counter undefinedVariableCounter;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code MicrometerCalculatorMetrics} and registers its meters.
+     *
+     * @param registry the registry receiving the meters
+     */
+    public MicrometerCalculatorMetrics(MeterRegistry registry) {
+        this.parseTimer = timer(registry, "calculator.parse", "Time to tokenize, validate and parse an uncached expression");
+        this.evaluationTimer = timer(registry, "calculator.evaluation", "Time to evaluate an expression");
+        this.blockTimer = timer(registry, "calculator.block", "Time to evaluate a whole block of expressions");
+
+        InvalidExpressionReason[] reasons = InvalidExpressionReason.values();
+        this.invalidExpressionCounters = new Counter[reasons.length + 1];
+        for (InvalidExpressionReason reason : reasons) {
+            this.invalidExpressionCounters[reason.ordinal()] = failureCounter(registry, "invalid_expression", reason.name());
+        }
+        this.invalidExpressionCounters[reasons.length] = failureCounter(registry, "invalid_expression", "UNKNOWN");
+        this.undefinedVariableCounter = failureCounter(registry, "undefined_variable", "UNDEFINED_VARIABLE");
+    }
+    //endregion
+
+    //region Public Methods
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordParse(long nanos) {
+        this.parseTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordEvaluation(long nanos) {
+        this.evaluationTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordBlock(long nanos) {
+        this.blockTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordInvalidExpression(InvalidExpressionReason reason) {
+        int index = reason != null ? reason.ordinal() : this.invalidExpressionCounters.length - 1;
+        this.invalidExpressionCounters[index].increment();
+    }
+
+    @Override
+    public void recordUndefinedVariable() {
+        this.undefinedVariableCounter.increment();
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Registers a latency timer publishing its median, 95th and 99th percentiles and a histogram.
+     *
+     * @param registry    the registry receiving the timer
+     * @param name        the timer name
+     * @param description the timer description
+     * @return the registered timer
+     */
+    private static Timer timer(MeterRegistry registry, String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Registers a counter of failed expressions.
+     *
+     * @param registry the registry receiving the counter
+     * @param type     the failure type
+     * @param reason   the failure reason
+     * @return the registered counter
+     */
+    private static Counter failureCounter(MeterRegistry registry, String type, String reason) {
+        return Counter.builder("calculator.failures")
+                .description("Expressions that could not be evaluated")
+                .tag("type", type)
+                .tag("reason", reason)
+                .register(registry);
+    }
+    //endregion
+}
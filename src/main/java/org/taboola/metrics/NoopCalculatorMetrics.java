@@ -0,0 +1,34 @@
+package org.taboola.metrics;
+
+import org.taboola.enums.InvalidExpressionReason;
+
+/**
+ * {@link CalculatorMetrics} that record nothing, used when metrics are disabled.
+ */
+final class NoopCalculatorMetrics implements CalculatorMetrics {
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void recordParse(long nanos) {
+    }
+
+    @Override
+    public void recordEvaluation(long nanos) {
+    }
+
+    @Override
+    public void recordBlock(long nanos) {
+    }
+
+    @Override
+    public void recordInvalidExpression(InvalidExpressionReason reason) {
+    }
+
+    @Override
+    public void recordUndefinedVariable() {
+    }
+}
@@ -0,0 +1,53 @@
+package org.taboola.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.session.SessionManager;
+
+/**
+ * Publishes gauges of the calculator state: open sessions, variables defined across sessions,
+ * estimated memory of the sessions, and cached plans. Gauges are only computed when the registry is scraped.
+ */
+@Component
+public class SessionMetricsBinder implements MeterBinder {
+
+    //region Members
+    private final SessionManager sessions;
+    private final ExpressionPlanCache planCache;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code SessionMetricsBinder}.
+     *
+     * @param sessions  the manager of the calculator sessions
+     * @param planCache the cache of parsed expression plans
+     */
+    public SessionMetricsBinder(SessionManager sessions, ExpressionPlanCache planCache) {
+        this.sessions = sessions;
+        this.planCache = planCache;
+    }
+    //endregion
+
+    //region Public Methods
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("calculator.sessions", sessions, SessionManager::getActiveSessionCount)
+                .description("Open calculator sessions")
+                .register(registry);
+        Gauge.builder("calculator.variables", sessions, SessionManager::getVariableCount)
+                .description("Variables defined across all open sessions")
+                .register(registry);
+        Gauge.builder("calculator.sessions.memory", sessions, SessionManager::getEstimatedSize)
+                .description("Estimated heap footprint of all open sessions")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("calculator.plans", planCache, ExpressionPlanCache::getPlanCount)
+                .description("Parsed expression plans in the plan cache")
+                .register(registry);
+    }
+    //endregion
+}
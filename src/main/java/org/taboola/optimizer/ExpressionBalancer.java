@@ -0,0 +1,275 @@
+package org.taboola.optimizer;
+
+import org.taboola.enums.Operator;
+import org.taboola.evaluator.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rebalances the long chains of parsed {@link Evaluable} trees, whose depth otherwise grows with
+ * the number of terms: {@code a + b - c + d} parses as {@code ((a + b) - c) + d}.
+ *
+ * A chain of additions and subtractions, whatever its parentheses, is the signed sum of its terms,
+ * and is rebuilt as a balanced tree over the same terms in the same order: {@code (a + b) - (c - d)}.
+ * Chains of multiplications are rebuilt the same way. The terms are evaluated in the same order, so
+ * side effects and undefined variable errors are unchanged, and the depth of a chain of {@code n}
+ * terms drops to {@code log2(n)}.
+ *
+ * The result only stays the same when the arithmetic is associative: the wrapping {@code int}
+ * arithmetic and the exact {@code BIG_INTEGER} one. Checked arithmetic can overflow on an intermediate
+ * result of one grouping and not of the other, so trees evaluated with it must not be rebalanced.
+ *
+ * Trees are walked with explicit stacks, so their depth is not bounded by the Java stack. The depth
+ * of each rebuilt node is kept alongside it, so the balanced tree comes with its depth.
+ */
+public class ExpressionBalancer {
+
+    //region Public Methods
+    /**
+     * Returns a tree equivalent to the given one, with its chains balanced.
+     *
+     * @param root the root of the tree to balance
+     * @return the balanced tree, whose root is possibly the given node itself, and its depth
+     */
+    public EvaluableTree balance(Evaluable root) {
+        ArrayDeque<Object> pending = new ArrayDeque<>();
+        NodeStack results = new NodeStack();
+        pending.addLast(root);
+
+        while (!pending.isEmpty()) {
+            switch (pending.pollLast()) {
+                case Chain chain -> chain.build(results);
+                case Rebuild rebuild -> rebuild.build(results);
+                case Expression expression -> {
+                    Chain chain = Chain.of(expression);
+                    pending.addLast(chain);
+                    for (int term = chain.terms.size() - 1; term >= 0; term--) {
+                        pending.addLast(chain.terms.get(term));
+                    }
+                }
+                case AssignmentExpression assignment -> {
+                    pending.addLast(new Rebuild(assignment));
+                    pending.addLast(assignment.getExpression());
+                }
+                case AddAssignmentExpression assignment -> {
+                    pending.addLast(new Rebuild(assignment));
+                    pending.addLast(assignment.getExpression());
+                }
+                case Evaluable leaf -> results.push(leaf, 1);
+                default -> throw new IllegalStateException("Unexpected step");
+            }
+        }
+        int depth = results.topDepth();
+        return new EvaluableTree(results.pop(), depth);
+    }
+
+    /**
+     * Returns the depth of a tree: the number of nodes on its longest path from the root to a leaf.
+     *
+     * @param root the root of the tree
+     * @return the depth of the tree
+     */
+    public static int depthOf(Evaluable root) {
+        int depth = 0;
+        NodeStack pending = new NodeStack();
+        pending.push(root, 1);
+
+        while (!pending.isEmpty()) {
+            int nodeDepth = pending.topDepth();
+            Evaluable node = pending.pop();
+            depth = Math.max(depth, nodeDepth);
+            switch (node) {
+                case Expression expression -> {
+                    pending.push(expression.getRight(), nodeDepth + 1);
+                    pending.push(expression.getLeft(), nodeDepth + 1);
+                }
+                case AssignmentExpression assignment -> pending.push(assignment.getExpression(), nodeDepth + 1);
+                case AddAssignmentExpression assignment -> pending.push(assignment.getExpression(), nodeDepth + 1);
+                default -> {
+                }
+            }
+        }
+        return depth;
+    }
+    //endregion
+
+    //region Chain
+    /**
+     * The terms of a chain, in order, waiting for their balanced forms to be rebuilt into a balanced chain.
+     */
+    private static final class Chain {
+        private final boolean multiplicative;
+        private final List<Evaluable> terms = new ArrayList<>();
+
+        /**
+         * Whether each term is subtracted rather than added; always false in a chain of multiplications.
+         */
+        private final List<Boolean> negated = new ArrayList<>();
+
+        private Chain(boolean multiplicative) {
+            this.multiplicative = multiplicative;
+        }
+
+        /**
+         * Collects the terms of the chain rooted at a binary expression.
+         *
+         * @param root the root of the chain
+         * @return the chain
+         */
+        static Chain of(Expression root) {
+            Chain chain = new Chain(root.getOp() == Operator.MULTIPLE);
+            ArrayDeque<Evaluable> pending = new ArrayDeque<>();
+            ArrayDeque<Boolean> pendingNegated = new ArrayDeque<>();
+            pending.addLast(root);
+            pendingNegated.addLast(false);
+
+            while (!pending.isEmpty()) {
+                Evaluable node = pending.pollLast();
+                boolean negated = pendingNegated.pollLast();
+                if (node instanceof Expression expression && chain.continuesWith(expression.getOp())) {
+                    // The right operand is pushed first, so the left one is collected first
+                    pending.addLast(expression.getRight());
+                    pendingNegated.addLast(expression.getOp() == Operator.SUB != negated);
+                    pending.addLast(expression.getLeft());
+                    pendingNegated.addLast(negated);
+                } else {
+                    chain.terms.add(node);
+                    chain.negated.add(negated);
+                }
+            }
+            return chain;
+        }
+
+        /**
+         * Builds the balanced chain over the balanced terms, pairing neighbours level by level, and pushes it
+         * in place of the terms. A pair keeps the sign of its first term: {@code -x + y} is {@code -(x - y)}.
+         *
+         * @param results the balanced terms, the last one on top
+         */
+        void build(NodeStack results) {
+            int count = this.terms.size();
+            Evaluable[] nodes = new Evaluable[count];
+            int[] depths = new int[count];
+            boolean[] signs = new boolean[count];
+            for (int term = count - 1; term >= 0; term--) {
+                depths[term] = results.topDepth();
+                nodes[term] = results.pop();
+                signs[term] = this.negated.get(term);
+            }
+
+            while (count > 1) {
+                int paired = 0;
+                for (int term = 0; term + 1 < count; term += 2) {
+                    Operator op = this.multiplicative ? Operator.MULTIPLE
+                            : signs[term] == signs[term + 1] ? Operator.ADD : Operator.SUB;
+                    nodes[paired] = new Expression(nodes[term], op, nodes[term + 1]);
+                    depths[paired] = Math.max(depths[term], depths[term + 1]) + 1;
+                    signs[paired++] = signs[term];
+                }
+                if (count % 2 == 1) {
+                    nodes[paired] = nodes[count - 1];
+                    depths[paired] = depths[count - 1];
+                    signs[paired++] = signs[count - 1];
+                }
+                count = paired;
+            }
+            results.push(nodes[0], depths[0]);
+        }
+
+        /**
+         * Checks whether an operator continues the chain.
+         *
+         * @param op the operator
+         * @return true if the operator belongs to the chain, otherwise false
+         */
+        private boolean continuesWith(Operator op) {
+            return this.multiplicative ? op == Operator.MULTIPLE : op == Operator.ADD || op == Operator.SUB;
+        }
+    }
+    //endregion
+
+    //region Rebuild
+    /**
+     * An assignment waiting for the balanced form of its expression.
+     *
+     * @param assignment the assignment or compound assignment
+     */
+    private record Rebuild(Evaluable assignment) {
+
+        /**
+         * Rebuilds the assignment over the balanced expression, and pushes it in place of the expression.
+         *
+         * @param results the balanced nodes, the balanced expression on top
+         */
+        void build(NodeStack results) {
+            int depth = results.topDepth() + 1;
+            Evaluable value = results.pop();
+            results.push(rebuild(value), depth);
+        }
+
+        /**
+         * Rebuilds the assignment over the balanced expression.
+         *
+         * @param value the balanced expression
+         * @return the assignment, possibly the original one
+         */
+        private Evaluable rebuild(Evaluable value) {
+            return switch (this.assignment) {
+                case AssignmentExpression original -> value == original.getExpression()
+                        ? original : new AssignmentExpression(original.getVariable(), value);
+                case AddAssignmentExpression original -> value == original.getExpression()
+                        ? original : new AddAssignmentExpression(original.getVariable(), value);
+                default -> throw new IllegalStateException("Unexpected node " + this.assignment.getClass().getName());
+            };
+        }
+    }
+    //endregion
+
+    //region NodeStack
+    /**
+     * A stack of nodes together with their depths, which are kept in a parallel array rather than boxed.
+     */
+    private static final class NodeStack {
+        private Evaluable[] nodes = new Evaluable[16];
+        private int[] depths = new int[16];
+        private int count;
+
+        /**
+         * Pushes a node.
+         *
+         * @param node  the node
+         * @param depth the depth of the node, in whatever sense the walk counts it
+         */
+        void push(Evaluable node, int depth) {
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, count << 1);
+                depths = Arrays.copyOf(depths, count << 1);
+            }
+            depths[count] = depth;
+            nodes[count++] = node;
+        }
+
+        /**
+         * Removes the node on top of the stack.
+         *
+         * @return the removed node
+         */
+        Evaluable pop() {
+            Evaluable node = nodes[--count];
+            nodes[count] = null;
+            return node;
+        }
+
+        int topDepth() {
+            return depths[count - 1];
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+    }
+    //endregion
+}
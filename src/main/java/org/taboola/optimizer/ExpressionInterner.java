@@ -0,0 +1,139 @@
+package org.taboola.optimizer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.taboola.enums.Operator;
+import org.taboola.evaluator.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hash-conses {@link Evaluable} trees: structurally identical subtrees without side effects are
+ * replaced by a single shared node, so the trees of all plans form one directed acyclic graph.
+ *
+ * Numbers and variable reads are shared by value, and binary expressions whose operands are both
+ * shared become {@link SharedExpression} nodes, looked up by their operator and the identity of
+ * their operands. Subtrees that write variables (assignments, increments and compound assignments)
+ * are never shared, but their operands are. Two occurrences of {@code (a + b) * c}, in the same line
+ * or in different lines, are therefore the same node, which a block evaluation computes only once
+ * while {@code a}, {@code b} and {@code c} are not written. A shared expression found again is marked
+ * as common (see {@link SharedExpression#isCommon()}), telling the block evaluation what is worth caching,
+ * and the expressions created by a plan count their marks for it, telling it when to look for them again.
+ *
+ * Shared nodes are only weakly held, and dropped once no plan uses them anymore.
+ * The interner is thread-safe.
+ */
+public class ExpressionInterner {
+
+    //region Members
+    /**
+     * The shared nodes, by their {@link Integer}, {@link java.math.BigInteger} or {@link Character}
+     * value for leaves, and by their {@link BinaryKey} for binary expressions.
+     */
+    private final Cache<Object, Evaluable> nodes = Caffeine.newBuilder()
+            .weakValues()
+            .build();
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns a tree equivalent to the given one in which every subtree without side effects is shared.
+     *
+     * @param node        the root of the tree to intern
+     * @param commonMarks the counter of the common marks of the plan of the tree,
+     *                    advanced when an expression it creates is later found again
+     * @return the root of the interned tree, possibly the given node itself
+     */
+    public Evaluable intern(Evaluable node, AtomicInteger commonMarks) {
+        return switch (node) {
+            // Increments extend VariableExpression but write their variable
+            case PostIncrementVariableExpression ignored -> node;
+            case PreIncrementVariableExpression ignored -> node;
+            case VariableExpression variable -> nodes.get(variable.getName(), name -> variable);
+            case NumberExpression number -> nodes.get(number.getValue(), value -> number);
+            case WideNumberExpression number -> nodes.get(number.getValue(), value -> number);
+            case SharedExpression ignored -> node;
+            case Expression expression -> internExpression(expression, commonMarks);
+            case AssignmentExpression assignment -> {
+                Evaluable value = intern(assignment.getExpression(), commonMarks);
+                yield value == assignment.getExpression() ? assignment : new AssignmentExpression(assignment.getVariable(), value);
+            }
+            case AddAssignmentExpression assignment -> {
+                Evaluable value = intern(assignment.getExpression(), commonMarks);
+                yield value == assignment.getExpression() ? assignment : new AddAssignmentExpression(assignment.getVariable(), value);
+            }
+            default -> node;
+        };
+    }
+
+    /**
+     * Returns the number of shared nodes currently held, including those about to be dropped.
+     *
+     * @return the approximate number of shared nodes
+     */
+    public long size() {
+        return nodes.estimatedSize();
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Interns the operands of a binary expression, then shares the expression if both operands are shared.
+     * A shared expression found already, or created concurrently by another plan, is marked as common.
+     *
+     * @param expression  the expression to intern
+     * @param commonMarks the counter of the common marks of the plan of the expression
+     * @return the shared node, or an expression over the interned operands
+     */
+    private Evaluable internExpression(Expression expression, AtomicInteger commonMarks) {
+        Evaluable left = intern(expression.getLeft(), commonMarks);
+        Evaluable right = intern(expression.getRight(), commonMarks);
+        Operator op = expression.getOp();
+
+        if (isShared(left) && isShared(right)) {
+            BinaryKey key = new BinaryKey(op, left, right);
+            SharedExpression shared = (SharedExpression) nodes.getIfPresent(key);
+            if (shared != null) {
+                shared.markCommon();
+                return shared;
+            }
+            SharedExpression created = new SharedExpression(left, op, right, commonMarks);
+            shared = (SharedExpression) nodes.get(key, ignored -> created);
+            if (shared != created) {
+                shared.markCommon();
+            }
+            return shared;
+        }
+        if (left == expression.getLeft() && right == expression.getRight()) {
+            return expression;
+        }
+        return new Expression(left, op, right);
+    }
+
+    /**
+     * Checks whether an interned node is shared, that is whether it has no side effect.
+     *
+     * @param node the interned node
+     * @return true if the node is a shared leaf or binary expression, otherwise false
+     */
+    private static boolean isShared(Evaluable node) {
+        return node instanceof SharedExpression
+                || node instanceof NumberExpression
+                || node instanceof WideNumberExpression
+                || node.getClass() == VariableExpression.class;
+    }
+    //endregion
+
+    //region BinaryKey
+    /**
+     * The key of a shared binary expression. Its operands are shared nodes, which do not override
+     * {@code equals}, so keys are equal only for the same operator applied to the same operands.
+     *
+     * @param op    the operator
+     * @param left  the shared left operand
+     * @param right the shared right operand
+     */
+    private record BinaryKey(Operator op, Evaluable left, Evaluable right) {
+    }
+    //endregion
+}
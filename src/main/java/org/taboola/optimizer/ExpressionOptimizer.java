@@ -0,0 +1,198 @@
+package org.taboola.optimizer;
+
+import org.taboola.enums.NumericMode;
+import org.taboola.enums.Operator;
+import org.taboola.evaluator.*;
+
+/**
+ * Simplifies parsed {@link Evaluable} trees before they are evaluated.
+ *
+ * The optimizer rewrites a tree bottom-up and only applies rewrites that keep the
+ * observable behavior, including the order of side effects and undefined variable errors:
+ * <ul>
+ *     <li>constant subtrees are folded, with the same {@code int} overflow behavior as evaluation.
+ *     Folding is disabled for the other numeric modes, whose trees are evaluated by the
+ *     {@link WideEvaluator};</li>
+ *     <li>{@code x + 0}, {@code 0 + x}, {@code x - 0}, {@code x * 1} and {@code 1 * x} become {@code x};</li>
+ *     <li>{@code x * 0} and {@code 0 * x} become {@code 0} only when {@code x} is side-effect free.
+ *     Reading a variable can fail when it is undefined, so only constant operands qualify;</li>
+ *     <li>{@code x = 1 + x}, {@code x = x + 1} and {@code x += 1} (the parsed forms of {@code ++x})
+ *     become a single {@link PreIncrementVariableExpression};</li>
+ *     <li>{@code x = x + e} (the parsed form of {@code x += e}) becomes an {@link AddAssignmentExpression}.</li>
+ * </ul>
+ */
+public class ExpressionOptimizer {
+
+    //region Members
+    /**
+     * Whether constant subtrees are folded with {@code int} arithmetic.
+     */
+    private final boolean foldConstants;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code ExpressionOptimizer} for the default {@code INT} numeric mode.
+     */
+    public ExpressionOptimizer() {
+        this(NumericMode.INT);
+    }
+
+    /**
+     * Constructs a new {@code ExpressionOptimizer} for the given numeric mode.
+     *
+     * @param mode the numeric mode the optimized trees are evaluated with
+     */
+    public ExpressionOptimizer(NumericMode mode) {
+        this.foldConstants = mode == NumericMode.INT;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns an optimized tree equivalent to the given one.
+     *
+     * @param node the root of the tree to optimize
+     * @return the root of the optimized tree, possibly the given node itself
+     */
+    public Evaluable optimize(Evaluable node) {
+        return switch (node) {
+            case Expression expression -> optimizeExpression(expression);
+            case AssignmentExpression assignment -> optimizeAssignment(assignment);
+            case AddAssignmentExpression assignment -> optimizeAddAssignment(
+                    assignment.getVariable(), optimize(assignment.getExpression()));
+            default -> node;
+        };
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Folds and simplifies a binary expression.
+     *
+     * @param expression the expression to optimize
+     * @return the optimized expression
+     */
+    private Evaluable optimizeExpression(Expression expression) {
+        Evaluable left = optimize(expression.getLeft());
+        Evaluable right = optimize(expression.getRight());
+        Operator op = expression.getOp();
+
+        if (foldConstants && left instanceof NumberExpression l && right instanceof NumberExpression r) {
+            return new NumberExpression(fold(l, op, r));
+        }
+
+        switch (op) {
+            case ADD:
+                if (isConstant(right, 0)) return left;
+                if (isConstant(left, 0)) return right;
+                break;
+            case SUB:
+                if (isConstant(right, 0)) return left;
+                break;
+            case MULTIPLE:
+                if (isConstant(right, 1)) return left;
+                if (isConstant(left, 1)) return right;
+                if ((isConstant(right, 0) && isSideEffectFree(left)) || (isConstant(left, 0) && isSideEffectFree(right))) {
+                    return new NumberExpression(0);
+                }
+                break;
+            default:
+                break;
+        }
+
+        if (left == expression.getLeft() && right == expression.getRight()) {
+            return expression;
+        }
+        return new Expression(left, op, right);
+    }
+
+    /**
+     * Fuses an assignment into an increment or compound assignment when possible.
+     *
+     * @param assignment the assignment to optimize
+     * @return the optimized assignment
+     */
+    private Evaluable optimizeAssignment(AssignmentExpression assignment) {
+        VariableExpression variable = assignment.getVariable();
+        Evaluable value = optimize(assignment.getExpression());
+
+        if (value instanceof Expression sum && sum.getOp() == Operator.ADD) {
+            if (isRead(sum.getLeft(), variable)) {
+                return optimizeAddAssignment(variable, sum.getRight());
+            }
+            if (isRead(sum.getRight(), variable) && isConstant(sum.getLeft(), 1)) {
+                return new PreIncrementVariableExpression(variable.getName());
+            }
+        }
+
+        if (value == assignment.getExpression()) {
+            return assignment;
+        }
+        return new AssignmentExpression(variable, value);
+    }
+
+    /**
+     * Builds the fused node of {@code variable += value}.
+     *
+     * @param variable the assigned variable
+     * @param value    the optimized added expression
+     * @return a pre increment when the added value is {@code 1}, otherwise a compound assignment
+     */
+    private Evaluable optimizeAddAssignment(VariableExpression variable, Evaluable value) {
+        if (isConstant(value, 1)) {
+            return new PreIncrementVariableExpression(variable.getName());
+        }
+        return new AddAssignmentExpression(variable, value);
+    }
+
+    /**
+     * Applies an operator to two constants with the same {@code int} arithmetic as {@link Expression}.
+     *
+     * @param left  the left constant
+     * @param op    the operator
+     * @param right the right constant
+     * @return the folded value
+     */
+    private int fold(NumberExpression left, Operator op, NumberExpression right) {
+        return new Expression(left, op, right).eval(null);
+    }
+
+    /**
+     * Checks whether the node is a plain read (no increment) of the given variable.
+     *
+     * @param node     the node to check
+     * @param variable the variable
+     * @return true if the node reads the variable without modifying it, otherwise false
+     */
+    private boolean isRead(Evaluable node, VariableExpression variable) {
+        return node.getClass() == VariableExpression.class
+                && ((VariableExpression) node).getSlot() == variable.getSlot();
+    }
+
+    /**
+     * Checks whether the node is the given constant.
+     *
+     * @param node  the node to check
+     * @param value the constant value
+     * @return true if the node is a number with the given value, otherwise false
+     */
+    private boolean isConstant(Evaluable node, int value) {
+        return node instanceof NumberExpression number && number.getValue() == value;
+    }
+
+    /**
+     * Checks whether evaluating the node can neither modify variables nor fail.
+     *
+     * @param node the node to check
+     * @return true if the node can be dropped without changing behavior, otherwise false
+     */
+    private boolean isSideEffectFree(Evaluable node) {
+        return switch (node) {
+            case NumberExpression ignored -> true;
+            case Expression expression -> isSideEffectFree(expression.getLeft()) && isSideEffectFree(expression.getRight());
+            default -> false;
+        };
+    }
+    //endregion
+}
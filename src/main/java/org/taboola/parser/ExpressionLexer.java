@@ -0,0 +1,263 @@
+package org.taboola.parser;
+
+import org.taboola.enums.NumericMode;
+import org.taboola.enums.TokenType;
+
+/**
+ * Hand-written, single-pass lexer for numeric expressions.
+ *
+ * Parentheses always form their own tokens. Any other token is a maximal run of
+ * characters that are neither whitespace nor parentheses, classified as a whole:
+ * operands and operators must therefore be separated by whitespace, exactly as
+ * with the previous {@link java.util.Scanner} based tokenization.
+ *
+ * Tokens are written into a caller supplied {@link TokenBuffer}; no strings,
+ * regular expressions or other objects are created per token.
+ *
+ * The range of the number literals follows the {@link NumericMode}: literals beyond the
+ * {@code int} range are accepted in {@code LONG} and {@code BIG_INTEGER} modes, and are
+ * marked with {@link TokenBuffer#WIDE_LITERAL} for the parser to read them from the source.
+ */
+public final class ExpressionLexer {
+
+    //region Constructors
+
+    private ExpressionLexer() {
+    }
+    //endregion
+
+    //region Public Methods
+
+    /**
+     * Tokenizes the given expression into the given buffer, replacing its previous content.
+     * Number literals must fit in an {@code int}.
+     *
+     * @param expression the expression to tokenize
+     * @param buffer     the buffer receiving the tokens
+     * @return the given buffer, positioned at its first token
+     */
+    public static TokenBuffer tokenize(CharSequence expression, TokenBuffer buffer) {
+        return tokenize(expression, buffer, NumericMode.INT);
+    }
+
+    /**
+     * Tokenizes the given expression into the given buffer, replacing its previous content.
+     *
+     * @param expression the expression to tokenize
+     * @param buffer     the buffer receiving the tokens
+     * @param mode       the numeric mode bounding the number literals
+     * @return the given buffer, positioned at its first token
+     */
+    public static TokenBuffer tokenize(CharSequence expression, TokenBuffer buffer, NumericMode mode) {
+        buffer.reset(expression);
+        int length = expression.length();
+        int index = 0;
+
+        while (index < length) {
+            char c = expression.charAt(index);
+
+            if (isWhitespace(c)) {
+                index++;
+            } else if (c == '(') {
+                buffer.add(TokenType.OPENING_PARENTHESIS, index, ++index, 0);
+            } else if (c == ')') {
+                buffer.add(TokenType.CLOSING_PARENTHESIS, index, ++index, 0);
+            } else {
+                int start = index;
+                while (index < length && !isDelimiter(expression.charAt(index))) {
+                    index++;
+                }
+                addWord(expression, start, index, buffer, mode);
+            }
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Classifies a single whitespace-free word of an expression, accepting {@code int} literals only.
+     *
+     * @param expression the expression containing the word
+     * @param start      the offset of the first character of the word
+     * @param end        the offset just past the last character of the word
+     * @return the token type of the word, or {@code INVALID} if it is not a supported token
+     */
+    public static TokenType classify(CharSequence expression, int start, int end) {
+        return classify(expression, start, end, NumericMode.INT);
+    }
+
+    /**
+     * Classifies a single whitespace-free word of an expression.
+     *
+     * @param expression the expression containing the word
+     * @param start      the offset of the first character of the word
+     * @param end        the offset just past the last character of the word
+     * @param mode       the numeric mode bounding the number literals
+     * @return the token type of the word, or {@code INVALID} if it is not a supported token
+     */
+    public static TokenType classify(CharSequence expression, int start, int end, NumericMode mode) {
+        int length = end - start;
+        char first = length > 0 ? expression.charAt(start) : 0;
+
+        if (isDigit(first)) {
+            return parseNumber(expression, start, end, mode) >= 0 ? TokenType.NUMBER : TokenType.INVALID;
+        }
+
+        switch (length) {
+            case 1:
+                if (isVariableName(first)) {
+                    return TokenType.VARIABLE;
+                }
+                return switch (first) {
+                    case '+' -> TokenType.ADD;
+                    case '-' -> TokenType.SUB;
+                    case '*' -> TokenType.MULTIPLE;
+                    case '=' -> TokenType.ASSIGN;
+                    default -> TokenType.INVALID;
+                };
+            case 2:
+                return first == '+' && expression.charAt(start + 1) == '=' ? TokenType.ADD_ASSIGN : TokenType.INVALID;
+            case 3:
+                char second = expression.charAt(start + 1);
+                char third = expression.charAt(start + 2);
+                if (first == '+' && second == '+' && isVariableName(third)) {
+                    return TokenType.PRE_INCREMENT;
+                }
+                if (isVariableName(first) && second == '+' && third == '+') {
+                    return TokenType.POST_INCREMENT;
+                }
+                return TokenType.INVALID;
+            default:
+                return TokenType.INVALID;
+        }
+    }
+
+    /**
+     * Checks if the given character is a decimal digit (0-9).
+     *
+     * @param c the character to check
+     * @return true if the character is a digit, false otherwise
+     */
+    public static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Checks if the given character is a valid variable name (a-z).
+     *
+     * @param c the character to check
+     * @return true if the character is a variable name, false otherwise
+     */
+    public static boolean isVariableName(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    /**
+     * Checks if the given character may appear in an expression at all:
+     * letters, digits, operators, parentheses, and whitespace.
+     *
+     * @param c the character to check
+     * @return true if the character is allowed, false otherwise
+     */
+    public static boolean isAllowedCharacter(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') ||
+                c == '+' || c == '-' || c == '*' || c == '=' || c == '(' || c == ')' || isWhitespace(c);
+    }
+    //endregion
+
+    //region Private Methods
+
+    /**
+     * Classifies the word between the given offsets and appends it to the buffer.
+     *
+     * @param expression the expression containing the word
+     * @param start      the offset of the first character of the word
+     * @param end        the offset just past the last character of the word
+     * @param buffer     the buffer receiving the token
+     * @param mode       the numeric mode bounding the number literals
+     */
+    private static void addWord(CharSequence expression, int start, int end, TokenBuffer buffer, NumericMode mode) {
+        TokenType type = classify(expression, start, end, mode);
+        int value = switch (type) {
+            case NUMBER -> toTokenValue(parseNumber(expression, start, end, mode));
+            case VARIABLE, POST_INCREMENT -> expression.charAt(start);
+            case PRE_INCREMENT -> expression.charAt(start + 2);
+            default -> 0;
+        };
+        buffer.add(type, start, end, value);
+    }
+
+    /**
+     * Parses a non-negative decimal integer literal.
+     *
+     * @param expression the expression containing the literal
+     * @param start      the offset of the first digit
+     * @param end        the offset just past the last digit
+     * @param mode       the numeric mode bounding the literal
+     * @return the literal value, {@code Long.MAX_VALUE} for a {@code BIG_INTEGER} literal that does not fit in
+     * a {@code long}, or -1 if the word is not a number or is out of the range of the mode
+     */
+    private static long parseNumber(CharSequence expression, int start, int end, NumericMode mode) {
+        long limit = mode == NumericMode.INT || mode == NumericMode.CHECKED_INT ? Integer.MAX_VALUE : Long.MAX_VALUE;
+        long value = 0;
+        for (int index = start; index < end; index++) {
+            char c = expression.charAt(index);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            if (value > (limit - (c - '0')) / 10) {
+                return mode == NumericMode.BIG_INTEGER && isDigits(expression, index, end) ? Long.MAX_VALUE : -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Converts a parsed literal to the value stored in its token.
+     *
+     * @param value the literal value
+     * @return the value, or {@link TokenBuffer#WIDE_LITERAL} if it does not fit in an {@code int}
+     */
+    private static int toTokenValue(long value) {
+        return value <= Integer.MAX_VALUE ? (int) value : TokenBuffer.WIDE_LITERAL;
+    }
+
+    /**
+     * Checks whether the characters between the given offsets are all decimal digits.
+     *
+     * @param expression the expression to check
+     * @param start      the offset of the first character
+     * @param end        the offset just past the last character
+     * @return true if all the characters are digits, otherwise false
+     */
+    private static boolean isDigits(CharSequence expression, int start, int end) {
+        for (int index = start; index < end; index++) {
+            if (!isDigit(expression.charAt(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the given character ends a word token.
+     *
+     * @param c the character to check
+     * @return true if the character is whitespace or a parenthesis, false otherwise
+     */
+    private static boolean isDelimiter(char c) {
+        return isWhitespace(c) || c == '(' || c == ')';
+    }
+
+    /**
+     * Checks if the given character is whitespace, using the same set as the regex {@code \s}.
+     *
+     * @param c the character to check
+     * @return true if the character is whitespace, false otherwise
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+    //endregion
+}
@@ -0,0 +1,353 @@
+package org.taboola.parser;
+
+import org.taboola.enums.InvalidExpressionReason;
+import org.taboola.enums.Operator;
+import org.taboola.enums.TokenType;
+import org.taboola.evaluator.*;
+import org.taboola.exceptions.InvalidExpression;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Precedence-climbing parser that validates an expression and builds its {@link Evaluable} tree
+ * in a single pass over its tokens. The tree does not reference any variable store.
+ *
+ * The grammar mirrors Java arithmetic for the supported subset:
+ * <pre>
+ * statement      := unary-operand | assignment
+ * assignment     := variable ('=' | '+=') expression
+ * expression     := term (('+' | '-') term)*
+ * term           := primary ('*' primary)*
+ * primary        := number | variable | ++variable | variable++ | '(' expression ')' | assignment
+ * </pre>
+ * Binary operators are left-associative and {@code *} binds tighter than {@code +} and {@code -}.
+ *
+ * The parser does not recurse: pending operators, parentheses and assignments are kept on an explicit
+ * stack, and a pending operator is applied to the operands before it as soon as an operator of the same
+ * or a lower precedence follows. Parentheses and assignments are never applied before their expression
+ * ends, so an assignment takes everything up to the end of its enclosing parentheses. The time is linear
+ * in the number of tokens and the Java stack does not grow with the nesting of the expression. The depth
+ * of each operand is kept alongside it, so the depth of the tree comes with it at no extra walk.
+ *
+ * Any violation is reported as an {@link InvalidExpression} carrying its reason and the
+ * character offset of the offending token.
+ */
+public class ExpressionParser {
+
+    //region Members
+    /**
+     * Kinds of the pending operators that are not binary operators, which use the ordinal of their {@link Operator}.
+     */
+    private static final int PARENTHESIS = -1;
+    private static final int ASSIGNMENT = -2;
+    private static final int ADD_ASSIGNMENT = -3;
+
+    /**
+     * The binary operators, by ordinal.
+     */
+    private static final Operator[] OPERATORS = Operator.values();
+    //endregion
+
+    //region Public Methods
+
+    /**
+     * Validates the tokenized expression and builds its evaluable tree.
+     *
+     * @param tokens the tokens of the expression, positioned at the first token
+     * @return the evaluable tree and its depth
+     * @throws InvalidExpression if the expression is not a valid assignment expression
+     */
+    public EvaluableTree parse(TokenBuffer tokens) {
+        if (tokens.size() == 0) {
+            throw new InvalidExpression(InvalidExpressionReason.EMPTY_EXPRESSION, 0);
+        }
+
+        if (!isAssignmentStatement(tokens)) {
+            int invalidToken = firstInvalidToken(tokens);
+            throw invalidToken >= 0
+                    ? unexpected(tokens, invalidToken)
+                    : new InvalidExpression(InvalidExpressionReason.NOT_AN_ASSIGNMENT, tokens.start(0));
+        }
+
+        return parseExpression(tokens);
+    }
+    //endregion
+
+    //region Private Methods
+
+    /**
+     * Checks whether the expression is a statement: a lone increment, or a variable
+     * followed by an assignment operator.
+     *
+     * @param tokens the tokens of the expression
+     * @return true if the expression has the shape of an assignment statement, otherwise false
+     */
+    private boolean isAssignmentStatement(TokenBuffer tokens) {
+        if (tokens.size() == 1) {
+            return tokens.type(0).isUnaryOperator();
+        }
+        return tokens.type(0) == TokenType.VARIABLE && isAssignmentOperator(tokens.type(1));
+    }
+
+    /**
+     * Parses the whole expression, alternating between reading operands and reading the operators
+     * or closing parentheses after them.
+     *
+     * @param tokens the tokens of the expression
+     * @return the evaluable tree for the parsed expression and its depth
+     */
+    private EvaluableTree parseExpression(TokenBuffer tokens) {
+        Stacks stacks = new Stacks();
+        boolean expectOperand = true;
+
+        while (true) {
+            if (expectOperand) {
+                expectOperand = parseOperand(tokens, stacks);
+                continue;
+            }
+            if (!tokens.hasNext()) {
+                break;
+            }
+            TokenType type = tokens.type(tokens.peek());
+            if (type == TokenType.ADD || type == TokenType.SUB || type == TokenType.MULTIPLE) {
+                tokens.next();
+                int operator = type.toOperator().ordinal();
+                while (stacks.operatorCount > 0 && precedence(stacks.topOperator()) >= precedence(operator)) {
+                    stacks.reduce();
+                }
+                stacks.pushOperator(operator, null);
+                expectOperand = true;
+            } else if (type == TokenType.CLOSING_PARENTHESIS && stacks.closeParenthesis()) {
+                tokens.next();
+            } else {
+                break;
+            }
+        }
+
+        if (tokens.hasNext()) {
+            throw unexpected(tokens, tokens.next());
+        }
+        while (stacks.operatorCount > 0) {
+            if (stacks.topOperator() == PARENTHESIS) {
+                throw new InvalidExpression(InvalidExpressionReason.UNBALANCED_PARENTHESES, tokens.source().length());
+            }
+            stacks.reduce();
+        }
+        return new EvaluableTree(stacks.operands[0], stacks.depths[0]);
+    }
+
+    /**
+     * Parses a single operand: a number, a variable or an increment expression, pushed as an operand,
+     * or the start of a parenthesized expression or of a nested assignment, pushed as a pending operator.
+     *
+     * @param tokens the tokens of the expression
+     * @param stacks the operands and pending operators
+     * @return true if an operand is still expected, after an opening parenthesis or an assignment operator
+     */
+    private boolean parseOperand(TokenBuffer tokens, Stacks stacks) {
+        if (!tokens.hasNext()) {
+            throw new InvalidExpression(InvalidExpressionReason.MISSING_OPERAND, tokens.source().length());
+        }
+
+        int token = tokens.next();
+        char name = (char) tokens.value(token);
+
+        switch (tokens.type(token)) {
+            case NUMBER:
+                if (tokens.value(token) == TokenBuffer.WIDE_LITERAL) {
+                    stacks.pushOperand(new WideNumberExpression(new BigInteger(
+                            tokens.source().subSequence(tokens.start(token), tokens.end(token)).toString())), 1);
+                } else {
+                    stacks.pushOperand(new NumberExpression(tokens.value(token)), 1);
+                }
+                return false;
+            case VARIABLE:
+                VariableExpression variable = new VariableExpression(name);
+                if (tokens.hasNext() && isAssignmentOperator(tokens.type(tokens.peek()))) {
+                    boolean add = tokens.type(tokens.next()) == TokenType.ADD_ASSIGN;
+                    stacks.pushOperator(add ? ADD_ASSIGNMENT : ASSIGNMENT, variable);
+                    return true;
+                }
+                stacks.pushOperand(variable, 1);
+                return false;
+            case POST_INCREMENT:
+                stacks.pushOperand(new PostIncrementVariableExpression(name), 1);
+                return false;
+            case PRE_INCREMENT:
+                VariableExpression variableExpression = new VariableExpression(name);
+                Expression increasingExpression = new Expression(new NumberExpression(1), Operator.ADD, variableExpression);
+                stacks.pushOperand(new AssignmentExpression(variableExpression, increasingExpression), 3);
+                return false;
+            case OPENING_PARENTHESIS:
+                stacks.pushOperator(PARENTHESIS, null);
+                return true;
+            case INVALID:
+                throw unexpected(tokens, token);
+            default:
+                throw new InvalidExpression(InvalidExpressionReason.MISSING_OPERAND, tokens.start(token));
+        }
+    }
+
+    /**
+     * Returns how tightly a pending operator binds. Parentheses and assignments bind the loosest,
+     * so no binary operator after them applies them before their expression ends.
+     *
+     * @param kind the kind of the pending operator
+     * @return the precedence of the operator
+     */
+    private static int precedence(int kind) {
+        if (kind < 0) {
+            return 0;
+        }
+        return OPERATORS[kind] == Operator.MULTIPLE ? 2 : 1;
+    }
+
+    /**
+     * Builds the exception for a token that cannot appear where it was found.
+     *
+     * @param tokens the tokens of the expression
+     * @param token  the index of the offending token
+     * @return the exception describing the problem
+     */
+    private InvalidExpression unexpected(TokenBuffer tokens, int token) {
+        InvalidExpressionReason reason = switch (tokens.type(token)) {
+            case INVALID -> hasInvalidCharacter(tokens, token)
+                    ? InvalidExpressionReason.INVALID_CHARACTER
+                    : InvalidExpressionReason.INVALID_TOKEN;
+            case CLOSING_PARENTHESIS -> InvalidExpressionReason.UNBALANCED_PARENTHESES;
+            case ASSIGN, ADD_ASSIGN -> InvalidExpressionReason.INVALID_ASSIGNMENT_TARGET;
+            default -> InvalidExpressionReason.UNEXPECTED_TOKEN;
+        };
+        return new InvalidExpression(reason, tokens.start(token));
+    }
+
+    /**
+     * Returns the index of the first token the lexer could not classify.
+     *
+     * @param tokens the tokens of the expression
+     * @return the token index, or -1 if all tokens are valid
+     */
+    private int firstInvalidToken(TokenBuffer tokens) {
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.type(i) == TokenType.INVALID) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether the given token contains a character that is not allowed in expressions at all.
+     *
+     * @param tokens the tokens of the expression
+     * @param token  the index of the token to check
+     * @return true if the token contains a disallowed character, otherwise false
+     */
+    private boolean hasInvalidCharacter(TokenBuffer tokens, int token) {
+        CharSequence source = tokens.source();
+        for (int i = tokens.start(token); i < tokens.end(token); i++) {
+            if (!ExpressionLexer.isAllowedCharacter(source.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the token type is {@code =} or {@code +=}.
+     *
+     * @param type the token type
+     * @return true if the type is an assignment operator, otherwise false
+     */
+    private boolean isAssignmentOperator(TokenType type) {
+        return type == TokenType.ASSIGN || type == TokenType.ADD_ASSIGN;
+    }
+
+    //endregion
+
+    //region Stacks
+    /**
+     * The operands, with their depths, and the pending operators of the expression being parsed.
+     */
+    private static final class Stacks {
+        private Evaluable[] operands = new Evaluable[16];
+        private int[] depths = new int[16];
+        private int operandCount;
+        private int[] operators = new int[16];
+        private VariableExpression[] targets = new VariableExpression[16];
+        private int operatorCount;
+
+        /**
+         * Pushes an operand.
+         *
+         * @param operand the operand
+         * @param depth   the depth of the operand's tree
+         */
+        void pushOperand(Evaluable operand, int depth) {
+            if (operandCount == operands.length) {
+                operands = Arrays.copyOf(operands, operandCount << 1);
+                depths = Arrays.copyOf(depths, operandCount << 1);
+            }
+            depths[operandCount] = depth;
+            operands[operandCount++] = operand;
+        }
+
+        /**
+         * Pushes a pending operator.
+         *
+         * @param kind   the ordinal of a binary operator, or the kind of a parenthesis or an assignment
+         * @param target the assigned variable of an assignment, otherwise {@code null}
+         */
+        void pushOperator(int kind, VariableExpression target) {
+            if (operatorCount == operators.length) {
+                operators = Arrays.copyOf(operators, operatorCount << 1);
+                targets = Arrays.copyOf(targets, operatorCount << 1);
+            }
+            operators[operatorCount] = kind;
+            targets[operatorCount++] = target;
+        }
+
+        int topOperator() {
+            return operators[operatorCount - 1];
+        }
+
+        /**
+         * Applies the pending operator on top of the stack, other than a parenthesis, to the operands before it.
+         */
+        void reduce() {
+            int kind = operators[--operatorCount];
+            VariableExpression target = targets[operatorCount];
+            targets[operatorCount] = null;
+            Evaluable right = operands[--operandCount];
+            int rightDepth = depths[operandCount];
+            operands[operandCount] = null;
+
+            if (kind >= 0) {
+                operands[operandCount - 1] = new Expression(operands[operandCount - 1], OPERATORS[kind], right);
+                depths[operandCount - 1] = Math.max(depths[operandCount - 1], rightDepth) + 1;
+            } else {
+                Evaluable value = kind == ADD_ASSIGNMENT ? new Expression(target, Operator.ADD, right) : right;
+                depths[operandCount] = (kind == ADD_ASSIGNMENT ? rightDepth + 1 : rightDepth) + 1;
+                operands[operandCount++] = new AssignmentExpression(target, value);
+            }
+        }
+
+        /**
+         * Applies the pending operators down to the innermost open parenthesis, then removes it.
+         *
+         * @return false if no parenthesis is open, otherwise true
+         */
+        boolean closeParenthesis() {
+            while (operatorCount > 0 && topOperator() != PARENTHESIS) {
+                reduce();
+            }
+            if (operatorCount == 0) {
+                return false;
+            }
+            operatorCount--;
+            return true;
+        }
+    }
+    //endregion
+}
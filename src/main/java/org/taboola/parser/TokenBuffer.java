@@ -0,0 +1,267 @@
+package org.taboola.parser;
+
+import org.taboola.enums.TokenType;
+
+import java.util.Arrays;
+
+/**
+ * Reusable, array-backed buffer of the tokens of a single expression.
+ *
+ * Each token is stored as its type, its start and end offsets in the source,
+ * and an integer value: the literal value for numbers, or the variable name
+ * for variables and increment expressions. Filling the buffer does not allocate
+ * once its arrays are large enough for the longest expression seen so far.
+ *
+ * The buffer also keeps a read position, so consumers can walk the tokens
+ * in order in the same way they would with a {@link java.util.Scanner}.
+ *
+ * Once its tokens are consumed, a reused buffer is {@link #release() released}: it drops its source,
+ * which may be a huge line or a window of a mapped file, and the arrays an unusually long expression grew.
+ */
+public final class TokenBuffer {
+
+    //region Members
+
+    /**
+     * Value of a number token whose literal does not fit in an {@code int}; the literal is read from the source.
+     */
+    public static final int WIDE_LITERAL = -1;
+
+    /**
+     * Initial number of tokens the buffer can hold before growing.
+     */
+    private static final int INITIAL_CAPACITY = 32;
+
+    /**
+     * Largest number of tokens a released buffer keeps room for; larger arrays are shrunk back.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1024;
+
+    /**
+     * Per-thread buffer, so stateless components can tokenize without allocating.
+     * Platform threads only: virtual threads are created per task, and would never reuse theirs.
+     */
+    private static final ThreadLocal<TokenBuffer> THREAD_BUFFER = ThreadLocal.withInitial(TokenBuffer::new);
+
+    private TokenType[] types;
+    private int[] starts;
+    private int[] ends;
+    private int[] values;
+
+    /**
+     * The number of tokens currently held.
+     */
+    private int size;
+
+    /**
+     * The index of the next token returned by {@link #next()}.
+     */
+    private int position;
+
+    /**
+     * The expression the tokens were read from.
+     */
+    private CharSequence source;
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Constructs an empty {@code TokenBuffer}.
+     */
+    public TokenBuffer() {
+        this.types = new TokenType[INITIAL_CAPACITY];
+        this.starts = new int[INITIAL_CAPACITY];
+        this.ends = new int[INITIAL_CAPACITY];
+        this.values = new int[INITIAL_CAPACITY];
+        this.source = "";
+    }
+    //endregion
+
+    //region Public Methods
+
+    /**
+     * Returns the token buffer owned by the current thread, or a new buffer on a virtual thread.
+     *
+     * @return the current thread's token buffer
+     */
+    public static TokenBuffer forCurrentThread() {
+        return Thread.currentThread().isVirtual() ? new TokenBuffer() : THREAD_BUFFER.get();
+    }
+
+    /**
+     * Clears the buffer once its tokens are consumed: drops the source, and shrinks the arrays
+     * back to their initial size if they grew beyond {@value #MAX_RETAINED_CAPACITY} tokens.
+     */
+    public void release() {
+        reset("");
+        if (this.types.length > MAX_RETAINED_CAPACITY) {
+            this.types = new TokenType[INITIAL_CAPACITY];
+            this.starts = new int[INITIAL_CAPACITY];
+            this.ends = new int[INITIAL_CAPACITY];
+            this.values = new int[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * Returns the number of tokens the buffer holds without growing.
+     *
+     * @return the capacity of the buffer
+     */
+    public int capacity() {
+        return this.types.length;
+    }
+
+    /**
+     * Returns the number of tokens in the buffer.
+     *
+     * @return the token count
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the expression the tokens were read from.
+     *
+     * @return the source expression
+     */
+    public CharSequence source() {
+        return this.source;
+    }
+
+    /**
+     * Returns the type of the token at the given index.
+     *
+     * @param index the token index
+     * @return the token type
+     */
+    public TokenType type(int index) {
+        return this.types[index];
+    }
+
+    /**
+     * Returns the offset of the first character of the token at the given index.
+     *
+     * @param index the token index
+     * @return the start offset in the source
+     */
+    public int start(int index) {
+        return this.starts[index];
+    }
+
+    /**
+     * Returns the offset just past the last character of the token at the given index.
+     *
+     * @param index the token index
+     * @return the end offset in the source
+     */
+    public int end(int index) {
+        return this.ends[index];
+    }
+
+    /**
+     * Returns the value of the token at the given index: the literal value for numbers,
+     * or the variable name for variables and increment expressions. Number literals that do
+     * not fit in an {@code int} have the value {@link #WIDE_LITERAL}.
+     *
+     * @param index the token index
+     * @return the token value
+     */
+    public int value(int index) {
+        return this.values[index];
+    }
+
+    /**
+     * Checks if there are tokens left to read.
+     *
+     * @return true if {@link #next()} can be called, otherwise false
+     */
+    public boolean hasNext() {
+        return this.position < this.size;
+    }
+
+    /**
+     * Returns the index of the next token and advances the read position.
+     *
+     * @return the index of the next token
+     */
+    public int next() {
+        return this.position++;
+    }
+
+    /**
+     * Returns the index of the next token without advancing the read position.
+     *
+     * @return the index of the next token
+     */
+    public int peek() {
+        return this.position;
+    }
+
+    /**
+     * Moves the read position back to the first token.
+     */
+    public void rewind() {
+        this.position = 0;
+    }
+
+    /**
+     * Returns the text of the token at the given index.
+     * Allocates a new string, so it is meant for error reporting only.
+     *
+     * @param index the token index
+     * @return the token text
+     */
+    public String text(int index) {
+        return this.source.subSequence(this.starts[index], this.ends[index]).toString();
+    }
+    //endregion
+
+    //region Package Methods
+
+    /**
+     * Clears the buffer and associates it with a new source expression.
+     *
+     * @param source the expression about to be tokenized
+     */
+    void reset(CharSequence source) {
+        this.source = source;
+        this.size = 0;
+        this.position = 0;
+    }
+
+    /**
+     * Appends a token to the buffer, growing it if needed.
+     *
+     * @param type  the token type
+     * @param start the start offset in the source
+     * @param end   the end offset in the source
+     * @param value the token value
+     */
+    void add(TokenType type, int start, int end, int value) {
+        if (this.size == this.types.length) {
+            grow();
+        }
+        this.types[this.size] = type;
+        this.starts[this.size] = start;
+        this.ends[this.size] = end;
+        this.values[this.size] = value;
+        this.size++;
+    }
+    //endregion
+
+    //region Private Methods
+
+    /**
+     * Doubles the capacity of the buffer.
+     */
+    private void grow() {
+        int capacity = this.types.length << 1;
+        this.types = Arrays.copyOf(this.types, capacity);
+        this.starts = Arrays.copyOf(this.starts, capacity);
+        this.ends = Arrays.copyOf(this.ends, capacity);
+        this.values = Arrays.copyOf(this.values, capacity);
+    }
+    //endregion
+}
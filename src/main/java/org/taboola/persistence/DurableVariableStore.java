@@ -0,0 +1,332 @@
+package org.taboola.persistence;
+
+import org.taboola.config.CalculatorProperties;
+import org.taboola.store.ArrayVariableStore;
+import org.taboola.store.HeapSize;
+import org.taboola.store.VariableSlots;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * {@link ArrayVariableStore} whose variables survive restarts, kept in a directory of its own.
+ *
+ * Writes go to memory as usual, and only mark the written slots dirty. On {@link #commit()},
+ * the dirty variables are appended to a {@link StateJournal} as a single record. Once the
+ * journal holds {@code calculator.snapshot-threshold} records, a {@link StateSnapshot} of the
+ * whole store is written and the journal is emptied, so opening the store only reads one
+ * snapshot and a bounded journal tail, however long the history of the store.
+ *
+ * As with the array store, threads may write to distinct slots concurrently between two commits,
+ * but commits must be ordered with all writes by a happens-before relationship.
+ */
+public final class DurableVariableStore extends ArrayVariableStore implements Closeable {
+
+    //region Members
+    /**
+     * Name of the journal file in the directory of the store.
+     */
+    static final String JOURNAL_FILE = "journal";
+
+    /**
+     * Name of the snapshot file in the directory of the store.
+     */
+    static final String SNAPSHOT_FILE = "snapshot";
+
+    /**
+     * Handle used to mark slots dirty atomically.
+     */
+    private static final VarHandle DIRTY;
+
+    static {
+        try {
+            DIRTY = MethodHandles.lookup().findVarHandle(DurableVariableStore.class, "dirty", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Path directory;
+    private final int snapshotThreshold;
+    private StateJournal journal;
+
+    /**
+     * The values committed to the journal, indexed by slot.
+     */
+    private final int[] committed = new int[VariableSlots.SLOT_COUNT];
+
+    /**
+     * The values of the commit being appended to the journal, indexed by slot; only the changed ones are meaningful.
+     */
+    private final int[] pending = new int[VariableSlots.SLOT_COUNT];
+
+    /**
+     * Bitmask of the variables defined at the last commit.
+     */
+    private int committedDefined;
+
+    /**
+     * Bitmask of the slots written since the last commit.
+     */
+    private int dirty;
+
+    /**
+     * The generation of the last snapshot.
+     */
+    private long generation;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code DurableVariableStore}; the journal is opened by {@link #open(Path, CalculatorProperties)}.
+     *
+     * @param directory         the directory of the store
+     * @param snapshotThreshold the number of journal records after which a snapshot is written
+     */
+    private DurableVariableStore(Path directory, int snapshotThreshold) {
+        this.directory = directory;
+        this.snapshotThreshold = snapshotThreshold;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Opens the store kept in a directory, creating it if needed, and recovers its variables
+     * from the latest snapshot and the journal records written after it.
+     *
+     * @param directory  the directory of the store
+     * @param properties the calculator settings holding the fsync policy and the snapshot threshold
+     * @return the open store
+     * @throws IOException if the directory cannot be created, or its files cannot be read or are corrupt
+     */
+    public static DurableVariableStore open(Path directory, CalculatorProperties properties) throws IOException {
+        Files.createDirectories(directory);
+        DurableVariableStore store = new DurableVariableStore(directory, properties.getSnapshotThreshold());
+
+        StateSnapshot snapshot = StateSnapshot.read(directory.resolve(SNAPSHOT_FILE));
+        store.generation = snapshot.generation();
+        store.restore(snapshot.defined(), snapshot.defined(), snapshot.values());
+        store.journal = StateJournal.open(directory.resolve(JOURNAL_FILE), snapshot.generation(),
+                properties.getJournalFsync(), properties.getJournalFsyncInterval(), store::restore);
+        // Publishes the recovered variables; nothing is written as they are all committed
+        store.commit();
+        return store;
+    }
+
+    @Override
+    public void set(int slot, int value) {
+        super.set(slot, value);
+        markDirty(slot);
+    }
+
+    @Override
+    public int getAndIncrement(int slot) {
+        int value = super.getAndIncrement(slot);
+        markDirty(slot);
+        return value;
+    }
+
+    @Override
+    public int incrementAndGet(int slot) {
+        int value = super.incrementAndGet(slot);
+        markDirty(slot);
+        return value;
+    }
+
+    @Override
+    public int addAndGet(int slot, int delta) {
+        int value = super.addAndGet(slot, delta);
+        markDirty(slot);
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        this.dirty = 0;
+    }
+
+    /**
+     * Publishes the variables, appends the ones written since the last commit to the journal, and
+     * writes a snapshot once the journal is long enough. Writes nothing if no variable changed.
+     *
+     * The committed values are only updated once the record is written, so that the variables of a
+     * commit whose record could not be written are still dirty, and are written by the next commit.
+     *
+     * @throws UncheckedIOException if the journal or the snapshot cannot be written
+     */
+    @Override
+    public void commit() {
+        super.commit();
+        int defined = definedMask();
+        // After a clear, the record must hold every defined variable, as replaying it clears the store
+        boolean cleared = (this.committedDefined & ~defined) != 0;
+        int changed = this.dirty & defined;
+        for (int mask = changed; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            int value = get(slot);
+            if (!cleared && (this.committedDefined & (1 << slot)) != 0 && this.committed[slot] == value) {
+                changed &= ~(1 << slot);
+            }
+            this.pending[slot] = value;
+        }
+        if (changed == 0 && defined == this.committedDefined) {
+            this.dirty = 0;
+            return;
+        }
+
+        try {
+            this.journal.append(changed, defined, this.pending);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the variables to " + this.directory, e);
+        }
+        for (int mask = changed; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            this.committed[slot] = this.pending[slot];
+        }
+        this.committedDefined = defined;
+        this.dirty = 0;
+
+        if (this.journal.getRecordCount() >= this.snapshotThreshold) {
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write a snapshot of the variables to " + this.directory, e);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the committed variables and empties the journal.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeSnapshot() throws IOException {
+        long next = this.generation + 1;
+        new StateSnapshot(next, this.committedDefined, this.committed.clone()).write(this.directory.resolve(SNAPSHOT_FILE));
+        this.journal.restart(next);
+        this.generation = next;
+    }
+
+    /**
+     * Forces the committed records of the journal in the {@code INTERVAL} fsync policy, if the fsync interval
+     * has passed since the last fsync. Like commits, it must be ordered with all writes.
+     *
+     * @return true if records were forced, otherwise false
+     * @throws IOException if the journal cannot be forced
+     */
+    public boolean syncIfDue() throws IOException {
+        return this.journal.syncIfDue();
+    }
+
+    /**
+     * Estimates the heap footprint of the store, of its committed values and of its journal, in bytes;
+     * see {@link org.taboola.store.HeapSize}.
+     *
+     * @return the estimated size of the store
+     */
+    @Override
+    public long estimateSize() {
+        // The fields added to the array store: the directory, the journal, the committed and pending values and masks
+        return super.estimateSize() + 5 * HeapSize.REFERENCE + 4 * Integer.BYTES + Long.BYTES
+                + HeapSize.string(this.directory.toString())
+                + HeapSize.intArray(this.committed.length) + HeapSize.intArray(this.pending.length)
+                + this.journal.estimateSize();
+    }
+
+    /**
+     * Returns the directory of the store.
+     *
+     * @return the store directory
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Forces the committed variables to the storage device and closes the journal.
+     * The variables written since the last commit are not saved.
+     *
+     * @throws IOException if the journal cannot be forced
+     */
+    @Override
+    public void close() throws IOException {
+        this.journal.close();
+    }
+
+    /**
+     * Closes the store and deletes its directory, discarding the variables for good.
+     *
+     * @throws IOException if the files of the store cannot be deleted
+     */
+    public void delete() throws IOException {
+        close();
+        delete(this.directory);
+    }
+
+    /**
+     * Deletes the directory of a store that is not open, discarding its variables for good.
+     *
+     * @param directory the directory of the store
+     * @throws IOException if the files of the store cannot be deleted
+     */
+    public static void delete(Path directory) throws IOException {
+        Files.deleteIfExists(directory.resolve(JOURNAL_FILE));
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE));
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Returns when the variables of a store were last written: the last modification of its journal,
+     * or of its directory if it has no journal.
+     *
+     * @param directory the directory of the store
+     * @return the time of the last write
+     * @throws IOException if the files of the store cannot be read
+     */
+    public static FileTime lastModified(Path directory) throws IOException {
+        Path journal = directory.resolve(JOURNAL_FILE);
+        return Files.getLastModifiedTime(Files.exists(journal) ? journal : directory);
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Marks a slot as written since the last commit.
+     *
+     * @param slot the written slot
+     */
+    private void markDirty(int slot) {
+        int bit = 1 << slot;
+        if ((this.dirty & bit) == 0) {
+            DIRTY.getAndBitwiseOr(this, bit);
+        }
+    }
+
+    /**
+     * Applies a committed change while recovering, without marking the variables dirty.
+     *
+     * @param changed the bitmask of the changed variables
+     * @param defined the bitmask of the variables defined after the change
+     * @param values  the values of the variables, indexed by slot
+     */
+    private void restore(int changed, int defined, int[] values) {
+        // Only a clear undefines variables, and every variable defined after a clear was changed
+        if ((this.committedDefined & ~defined) != 0) {
+            super.clear();
+        }
+        for (int mask = changed; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            super.set(slot, values[slot]);
+            this.committed[slot] = values[slot];
+        }
+        this.committedDefined = defined;
+    }
+    //endregion
+}
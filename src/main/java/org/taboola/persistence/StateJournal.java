@@ -0,0 +1,361 @@
+package org.taboola.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.taboola.enums.FsyncPolicy;
+import org.taboola.store.HeapSize;
+import org.taboola.store.VariableSlots;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of the changes committed to a variable store.
+ *
+ * Each record holds the bitmask of the variables changed by a commit, the bitmask of the
+ * variables defined after it and the new values of the changed variables, followed by a
+ * checksum. Records carry values rather than expressions, so replaying them never evaluates
+ * anything. A commit is a single record however many variables it changes, so a whole block
+ * of expressions is committed with one write, and the {@link FsyncPolicy} decides how many
+ * commits share each fsync.
+ *
+ * The journal starts with the generation of the snapshot it follows: it only holds the
+ * changes made since that snapshot, and is emptied when the next snapshot is written.
+ * A torn record at the end of the journal, left by a crash in the middle of a write,
+ * is dropped when the journal is opened.
+ *
+ * A journal is not thread-safe.
+ */
+@Slf4j
+final class StateJournal implements Closeable {
+
+    //region Members
+    /**
+     * Marks the start of a journal file.
+     */
+    private static final int MAGIC = 0x4A524E4C;
+
+    /**
+     * Size of the header: the magic number and the generation.
+     */
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    /**
+     * Size of the largest record: both bitmasks, every variable and the checksum.
+     */
+    private static final int MAX_RECORD_SIZE = (3 + VariableSlots.SLOT_COUNT) * Integer.BYTES;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    /**
+     * Buffer the records are encoded into before being written.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(HEADER_SIZE, MAX_RECORD_SIZE));
+    private final CRC32C checksum = new CRC32C();
+
+    /**
+     * The generation of the snapshot the journal follows.
+     */
+    private long generation;
+
+    /**
+     * Number of records written since the journal was last emptied, including the replayed ones.
+     */
+    private int recordCount;
+
+    /**
+     * Time of the last fsync, from {@link System#nanoTime()}.
+     */
+    private long lastSync;
+
+    /**
+     * Whether records were written since the last fsync.
+     */
+    private boolean unsynced;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code StateJournal} on an open file.
+     *
+     * @param file          the path of the journal file
+     * @param channel       the journal file
+     * @param fsyncPolicy   when the records are forced to the storage device
+     * @param fsyncInterval the minimum time between two fsyncs in {@code INTERVAL} mode
+     */
+    private StateJournal(Path file, FileChannel channel, FsyncPolicy fsyncPolicy, Duration fsyncInterval) {
+        this.file = file;
+        this.channel = channel;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.lastSync = System.nanoTime();
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Opens the journal file following the given snapshot, and replays its records.
+     *
+     * A missing or empty journal, or one left over from an older snapshot, is started afresh.
+     *
+     * @param file          the journal file
+     * @param generation    the generation of the snapshot the variables were loaded from
+     * @param fsyncPolicy   when the records are forced to the storage device
+     * @param fsyncInterval the minimum time between two fsyncs in {@code INTERVAL} mode
+     * @param replay        receives the records of the journal, in order
+     * @return the open journal, positioned after its last valid record
+     * @throws IOException if the file cannot be read, or follows a snapshot newer than the given one
+     */
+    static StateJournal open(Path file, long generation, FsyncPolicy fsyncPolicy, Duration fsyncInterval,
+                             Replay replay) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        StateJournal journal = new StateJournal(file, channel, fsyncPolicy, fsyncInterval);
+        try {
+            if (!journal.replay(generation, replay)) {
+                journal.restart(generation);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * Appends a commit to the journal, and forces it according to the fsync policy.
+     *
+     * @param changed the bitmask of the variables changed by the commit
+     * @param defined the bitmask of the variables defined after the commit
+     * @param values  the values of the variables, indexed by slot; only the changed ones are written
+     * @throws IOException if the record cannot be written; the journal is then cut back to its previous record
+     */
+    void append(int changed, int defined, int[] values) throws IOException {
+        this.buffer.clear();
+        this.buffer.putInt(changed).putInt(defined);
+        for (int mask = changed; mask != 0; mask &= mask - 1) {
+            this.buffer.putInt(values[Integer.numberOfTrailingZeros(mask)]);
+        }
+        this.checksum.reset();
+        this.checksum.update(this.buffer.flip());
+        this.buffer.limit(this.buffer.capacity()).putInt((int) this.checksum.getValue()).flip();
+        long start = this.channel.position();
+        try {
+            write(this.buffer);
+        } catch (IOException e) {
+            // A partial record left in the middle of the journal would hide the records appended after it
+            try {
+                this.channel.truncate(start);
+                this.channel.position(start);
+            } catch (IOException truncation) {
+                e.addSuppressed(truncation);
+            }
+            throw e;
+        }
+        this.recordCount++;
+        this.unsynced = true;
+
+        if (this.fsyncPolicy == FsyncPolicy.ALWAYS) {
+            sync();
+        } else {
+            syncIfDue();
+        }
+    }
+
+    /**
+     * Forces the pending records in the {@code INTERVAL} policy, if the fsync interval has passed since the last fsync.
+     * Called after each record and periodically, so that the last records before an idle period are forced too.
+     *
+     * @return true if records were forced, otherwise false
+     * @throws IOException if the records cannot be forced
+     */
+    boolean syncIfDue() throws IOException {
+        if (!this.unsynced || this.fsyncPolicy != FsyncPolicy.INTERVAL
+                || System.nanoTime() - this.lastSync < this.fsyncIntervalNanos) {
+            return false;
+        }
+        sync();
+        return true;
+    }
+
+    /**
+     * Empties the journal once a snapshot of the given generation was written.
+     *
+     * @param generation the generation of the new snapshot
+     * @throws IOException if the journal cannot be emptied
+     */
+    void restart(long generation) throws IOException {
+        this.channel.truncate(0);
+        this.buffer.clear();
+        this.buffer.putInt(MAGIC).putLong(generation).flip();
+        this.channel.position(0);
+        write(this.buffer);
+        this.channel.force(false);
+        this.generation = generation;
+        this.recordCount = 0;
+        this.unsynced = false;
+        this.lastSync = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of records of the journal.
+     *
+     * @return the record count
+     */
+    int getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Returns the generation of the snapshot the journal follows.
+     *
+     * @return the snapshot generation
+     */
+    long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Estimates the heap and native memory held by the journal, in bytes; see {@link HeapSize}.
+     * The open file is counted as its channel object only.
+     *
+     * @return the estimated size of the journal
+     */
+    long estimateSize() {
+        // The journal, its direct buffer and the native memory behind it, its checksum, and its channel
+        return HeapSize.object(6 * HeapSize.REFERENCE + 3 * Long.BYTES + Integer.BYTES + 1)
+                + HeapSize.object(12 * HeapSize.REFERENCE) + this.buffer.capacity()
+                + HeapSize.object(Integer.BYTES)
+                + HeapSize.object(8 * HeapSize.REFERENCE);
+    }
+
+    /**
+     * Forces the pending records and closes the file.
+     *
+     * @throws IOException if the records cannot be forced
+     */
+    @Override
+    public void close() throws IOException {
+        try (this.channel) {
+            if (this.unsynced) {
+                sync();
+            }
+        }
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Reads the journal and replays the records following the given snapshot.
+     * Truncates the journal after its last valid record.
+     *
+     * @param generation the generation of the loaded snapshot
+     * @param replay     receives the records
+     * @return true if the journal follows the snapshot, false if it must be started afresh
+     * @throws IOException if the file cannot be read, or follows a newer snapshot
+     */
+    private boolean replay(long generation, Replay replay) throws IOException {
+        long size = this.channel.size();
+        if (size < HEADER_SIZE) {
+            return false;
+        }
+        // The whole journal is read at once: its length is bounded by the snapshot threshold
+        ByteBuffer content = ByteBuffer.allocate((int) size);
+        while (content.hasRemaining()) {
+            if (this.channel.read(content, content.position()) < 0) {
+                break;
+            }
+        }
+        content.flip();
+
+        if (content.getInt() != MAGIC) {
+            throw new IOException(this.file + " is not a state journal");
+        }
+        long journalGeneration = content.getLong();
+        if (journalGeneration < generation) {
+            return false;
+        }
+        if (journalGeneration > generation) {
+            throw new IOException(this.file + " follows the snapshot " + journalGeneration
+                    + ", but the snapshot " + generation + " was loaded");
+        }
+
+        int[] values = new int[VariableSlots.SLOT_COUNT];
+        int end = content.position();
+        while (content.remaining() >= 3 * Integer.BYTES) {
+            int start = content.position();
+            int changed = content.getInt();
+            int defined = content.getInt();
+            int length = (Integer.bitCount(changed) + 1) * Integer.BYTES;
+            if (content.remaining() < length || (changed & ~defined) != 0) {
+                break;
+            }
+            for (int mask = changed; mask != 0; mask &= mask - 1) {
+                values[Integer.numberOfTrailingZeros(mask)] = content.getInt();
+            }
+            this.checksum.reset();
+            this.checksum.update(content.slice(start, content.position() - start));
+            if (content.getInt() != (int) this.checksum.getValue()) {
+                break;
+            }
+            replay.apply(changed, defined, values);
+            this.recordCount++;
+            end = content.position();
+        }
+
+        if (end < size) {
+            log.warn("Dropping the last {} bytes of a torn state journal.", size - end);
+            this.channel.truncate(end);
+        }
+        this.channel.position(end);
+        this.generation = generation;
+        return true;
+    }
+
+    /**
+     * Writes a buffer fully at the current position of the journal.
+     *
+     * @param source the bytes to write
+     * @throws IOException if the bytes cannot be written
+     */
+    private void write(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            this.channel.write(source);
+        }
+    }
+
+    /**
+     * Forces the written records to the storage device.
+     *
+     * @throws IOException if the records cannot be forced
+     */
+    private void sync() throws IOException {
+        this.channel.force(false);
+        this.unsynced = false;
+        this.lastSync = System.nanoTime();
+    }
+    //endregion
+
+    /**
+     * Receives the records of a journal being replayed.
+     */
+    @FunctionalInterface
+    interface Replay {
+
+        /**
+         * Applies a committed change.
+         *
+         * @param changed the bitmask of the variables changed by the commit
+         * @param defined the bitmask of the variables defined after the commit
+         * @param values  the values of the variables, indexed by slot; only the changed ones are meaningful
+         */
+        void apply(int changed, int defined, int[] values);
+    }
+}
@@ -0,0 +1,98 @@
+package org.taboola.persistence;
+
+import org.taboola.store.VariableSlots;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary image of a variable store, written and read through memory-mapped files.
+ *
+ * A snapshot holds its generation, the bitmask of the defined variables and the value of every
+ * slot, followed by a checksum; its size is fixed, so loading it takes the same time however
+ * long the history that led to it. A snapshot is written to a temporary file, forced, and then
+ * atomically renamed over the previous one, so a crash leaves either the old or the new snapshot.
+ *
+ * @param generation the number of snapshots written before this one, plus one
+ * @param defined    the bitmask of the defined variables
+ * @param values     the values of the variables, indexed by slot
+ */
+record StateSnapshot(long generation, int defined, int[] values) {
+
+    //region Members
+    /**
+     * Marks the start of a snapshot file.
+     */
+    private static final int MAGIC = 0x534E4150;
+
+    /**
+     * Size of a snapshot: the magic number, the generation, the bitmask, the values and the checksum.
+     */
+    private static final int SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES
+            + VariableSlots.SLOT_COUNT * Integer.BYTES + Integer.BYTES;
+
+    /**
+     * The snapshot of a store that never had one.
+     */
+    static final StateSnapshot EMPTY = new StateSnapshot(0, 0, new int[VariableSlots.SLOT_COUNT]);
+    //endregion
+
+    //region Public Methods
+    /**
+     * Reads the snapshot from a file.
+     *
+     * @param file the snapshot file
+     * @return the snapshot, or {@link #EMPTY} if the file does not exist
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    static StateSnapshot read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return EMPTY;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != SIZE) {
+                throw new IOException(file + " is not a state snapshot");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, SIZE);
+            CRC32C checksum = new CRC32C();
+            checksum.update(buffer.slice(0, SIZE - Integer.BYTES));
+            if (buffer.getInt() != MAGIC || buffer.getInt(SIZE - Integer.BYTES) != (int) checksum.getValue()) {
+                throw new IOException(file + " is corrupt");
+            }
+
+            long generation = buffer.getLong();
+            int defined = buffer.getInt();
+            int[] values = new int[VariableSlots.SLOT_COUNT];
+            buffer.asIntBuffer().get(0, values);
+            return new StateSnapshot(generation, defined, values);
+        }
+    }
+
+    /**
+     * Writes the snapshot to a file, replacing the previous snapshot only once it is durable.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+            buffer.putInt(MAGIC).putLong(this.generation).putInt(this.defined);
+            buffer.asIntBuffer().put(this.values);
+            CRC32C checksum = new CRC32C();
+            checksum.update(buffer.slice(0, SIZE - Integer.BYTES));
+            buffer.putInt(SIZE - Integer.BYTES, (int) checksum.getValue());
+            buffer.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    //endregion
+}
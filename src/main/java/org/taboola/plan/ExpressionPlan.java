@@ -0,0 +1,269 @@
+package org.taboola.plan;
+
+import lombok.extern.slf4j.Slf4j;
+import org.taboola.compiler.BytecodeCompiler;
+import org.taboola.evaluator.AddAssignmentExpression;
+import org.taboola.evaluator.AssignmentExpression;
+import org.taboola.evaluator.Evaluable;
+import org.taboola.evaluator.Expression;
+import org.taboola.evaluator.SharedExpression;
+import org.taboola.store.VariableStore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A validated and parsed expression, ready to be evaluated.
+ *
+ * A plan is immutable and does not reference any variable store: the variables
+ * are bound on each evaluation, so a single plan can be cached and shared by
+ * every calculator evaluating the same expression text.
+ *
+ * The plan executes either its tree or an equivalent compiled form of it, such as a
+ * {@link org.taboola.compiler.PostfixProgram}. When given a {@link BytecodeCompiler},
+ * the plan is tiered: it interprets its tree until it has been evaluated
+ * {@code compileThreshold} times, then compiles itself and runs the generated class
+ * from then on.
+ */
+@Slf4j
+public final class ExpressionPlan {
+
+    //region Members
+    /**
+     * Shared subexpressions with fewer operators than this are cheaper to evaluate than to look up:
+     * below it, walking the tree to reuse them costs more than the operators it saves.
+     */
+    public static final int MIN_SHARED_SIZE = 8;
+
+    /**
+     * The expression text the plan was parsed from, or {@code null} for plans of transient text.
+     */
+    private final String expression;
+
+    /**
+     * The root of the parsed evaluable tree.
+     */
+    private final Evaluable root;
+
+    /**
+     * Bitmask of the variable slots the expression reads.
+     */
+    private final int readMask;
+
+    /**
+     * Bitmask of the variable slots the expression writes.
+     */
+    private final int writeMask;
+
+    /**
+     * Number of the shared expressions created for the tree that were marked as common so far.
+     */
+    private final AtomicInteger commonMarks;
+
+    /**
+     * The outermost common subexpressions of the tree, collected on first use and again
+     * whenever more of its subexpressions became common since.
+     */
+    private volatile CommonSubexpressions commonSubexpressions;
+
+    /**
+     * The compiler used to promote the plan, or {@code null} if the plan is always interpreted.
+     */
+    private final BytecodeCompiler compiler;
+
+    /**
+     * The number of evaluations after which the plan is compiled.
+     */
+    private final int compileThreshold;
+
+    /**
+     * The evaluable currently executing the plan: the tree or its compiled form,
+     * then the generated class once promoted.
+     */
+    private volatile Evaluable executable;
+
+    /**
+     * Approximate number of interpreted evaluations; races between threads only delay promotion.
+     */
+    private int invocations;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code ExpressionPlan} that is always interpreted.
+     *
+     * @param expression the expression text the plan was parsed from
+     * @param root       the root of the parsed evaluable tree
+     */
+    public ExpressionPlan(String expression, Evaluable root) {
+        this(expression, root, root, null, 0, new AtomicInteger());
+    }
+
+    /**
+     * Constructs a new {@code ExpressionPlan}, possibly tiered.
+     *
+     * @param expression       the expression text the plan was parsed from
+     * @param root             the root of the parsed evaluable tree
+     * @param executable       the evaluable executing the plan, either the tree or a compiled form of it
+     * @param compiler         the compiler used to promote the plan, or {@code null} to never promote it
+     * @param compileThreshold the number of evaluations after which the plan is compiled
+     * @param commonMarks      the counter of the common marks the tree was interned with
+     */
+    public ExpressionPlan(String expression, Evaluable root, Evaluable executable,
+                          BytecodeCompiler compiler, int compileThreshold, AtomicInteger commonMarks) {
+        this.expression = expression;
+        this.root = root;
+        this.readMask = VariableAccess.readMask(root);
+        this.writeMask = VariableAccess.writeMask(root);
+        this.executable = executable;
+        this.compiler = compiler;
+        this.compileThreshold = compileThreshold;
+        this.commonMarks = commonMarks;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Evaluates the plan against the given variable store.
+     *
+     * @param store the store holding the current variable values
+     * @return the integer result of the expression
+     */
+    public int eval(VariableStore store) {
+        Evaluable current = this.executable;
+        if (current == this.root && this.compiler != null && ++this.invocations >= this.compileThreshold) {
+            current = promote();
+        }
+        return current.eval(store);
+    }
+
+    /**
+     * Returns the expression text the plan was parsed from.
+     *
+     * @return the expression text, or {@code null} if the plan was parsed from transient text
+     */
+    public String getExpression() {
+        return this.expression;
+    }
+
+    /**
+     * Returns the root of the parsed evaluable tree.
+     *
+     * @return the root evaluable
+     */
+    public Evaluable getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Returns the variables the expression reads, including those it increments.
+     *
+     * @return the bitmask of read variable slots
+     */
+    public int getReadMask() {
+        return this.readMask;
+    }
+
+    /**
+     * Returns the variables the expression writes, through assignments or increments.
+     *
+     * @return the bitmask of written variable slots
+     */
+    public int getWriteMask() {
+        return this.writeMask;
+    }
+
+    /**
+     * Returns the outermost subexpressions of the tree worth computing once per block: the shared
+     * subexpressions with at least {@link #MIN_SHARED_SIZE} operators that are common to several
+     * expressions, or to several places of this one (see {@link SharedExpression#isCommon()}).
+     *
+     * They are collected again only when a shared expression created for this tree became common since
+     * the last call (see {@link SharedExpression#markCommon()}), as the other shared expressions of the
+     * tree are common already: a block parses all its lines before asking, so they include those the lines
+     * of the block have in common, even for a plan cached by an earlier block, while new expressions
+     * elsewhere leave the plan alone.
+     * A subexpression occurring several times in the tree occurs as many times in the array.
+     *
+     * @return the outermost common subexpressions, in evaluation order
+     */
+    public SharedExpression[] getCommonSubexpressions() {
+        CommonSubexpressions common = this.commonSubexpressions;
+        int marks = this.commonMarks.get();
+        if (common == null || common.marks() != marks) {
+            common = new CommonSubexpressions(marks, collectCommonSubexpressions(this.root));
+            this.commonSubexpressions = common;
+        }
+        return common.subexpressions();
+    }
+
+    /**
+     * Checks whether the plan runs a compiled form of its tree rather than the tree itself.
+     *
+     * @return true if the plan runs compiled code, otherwise false
+     */
+    public boolean isCompiled() {
+        return this.executable != this.root;
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Collects the outermost common subexpressions of a tree with at least {@link #MIN_SHARED_SIZE} operators.
+     *
+     * @param root the root of the tree
+     * @return the common subexpressions, in evaluation order
+     */
+    private static SharedExpression[] collectCommonSubexpressions(Evaluable root) {
+        List<SharedExpression> collected = new ArrayList<>();
+        ArrayDeque<Evaluable> pending = new ArrayDeque<>();
+        for (Evaluable node = root; node != null; node = pending.pollLast()) {
+            switch (node) {
+                case SharedExpression shared when shared.getSize() < MIN_SHARED_SIZE -> {
+                }
+                case SharedExpression shared when shared.isCommon() -> collected.add(shared);
+                case Expression expression -> {
+                    pending.addLast(expression.getRight());
+                    pending.addLast(expression.getLeft());
+                }
+                case AssignmentExpression assignment -> pending.addLast(assignment.getExpression());
+                case AddAssignmentExpression assignment -> pending.addLast(assignment.getExpression());
+                default -> {
+                }
+            }
+        }
+        return collected.toArray(new SharedExpression[0]);
+    }
+
+    /**
+     * Compiles the plan, once, and switches execution to the compiled class.
+     * If compilation fails the plan stays interpreted.
+     *
+     * @return the evaluable to use from now on
+     */
+    private synchronized Evaluable promote() {
+        if (this.executable == this.root && this.invocations >= 0) {
+            try {
+                this.executable = this.compiler.compile(this.root);
+            } catch (RuntimeException e) {
+                log.warn("Failed to compile the expression {}, it will stay interpreted.", this.expression, e);
+                this.invocations = Integer.MIN_VALUE;
+            }
+        }
+        return this.executable;
+    }
+    //endregion
+
+    //region CommonSubexpressions
+    /**
+     * The common subexpressions of the tree, as collected after a number of common marks.
+     *
+     * @param marks          the number of common marks of the tree read before collecting them
+     * @param subexpressions the outermost common subexpressions, in evaluation order
+     */
+    private record CommonSubexpressions(int marks, SharedExpression[] subexpressions) {
+    }
+    //endregion
+}
@@ -0,0 +1,311 @@
+package org.taboola.plan;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.taboola.ExpressionValidator;
+import org.taboola.compiler.BytecodeCompiler;
+import org.taboola.compiler.PostfixCompiler;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.ExecutionMode;
+import org.taboola.enums.NumericMode;
+import org.taboola.evaluator.Evaluable;
+import org.taboola.evaluator.EvaluableTree;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.metrics.CalculatorMetrics;
+import org.taboola.optimizer.ExpressionBalancer;
+import org.taboola.optimizer.ExpressionInterner;
+import org.taboola.optimizer.ExpressionOptimizer;
+import org.taboola.parser.ExpressionLexer;
+import org.taboola.parser.TokenBuffer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded, concurrent cache of parsed {@link ExpressionPlan}s keyed by expression text.
+ *
+ * Valid expressions are cached as plans, so a repeated expression is tokenized and parsed
+ * only once. Invalid expressions are remembered in a separate, negative cache together with
+ * the {@link InvalidExpression} they produced, so a flood of the same malformed input is
+ * rejected without being validated again. Both caches use W-TinyLFU eviction and record
+ * hit, miss and eviction statistics.
+ *
+ * The trees of new plans are interned by an {@link ExpressionInterner}, so the subexpressions
+ * they have in common are the same nodes, which a block evaluation computes only once.
+ *
+ * Trees deeper than {@link #MAX_TREE_DEPTH}, such as long chains of additions, first have their
+ * chains balanced when the arithmetic allows it (see {@link ExpressionBalancer}). Those still too
+ * deep for the recursive optimizer, interner and tree interpreter skip them: they are evaluated
+ * as postfix programs, or by the {@link org.taboola.evaluator.WideEvaluator}, which both keep
+ * their state on explicit stacks.
+ */
+@Component
+public class ExpressionPlanCache {
+
+    //region Members
+    /**
+     * Depth above which a parsed tree is balanced, and above which it is never walked recursively.
+     */
+    public static final int MAX_TREE_DEPTH = 256;
+
+    /**
+     * Validator used to parse expressions that are not cached yet.
+     */
+    private final ExpressionValidator validator;
+
+    /**
+     * How new plans are executed.
+     */
+    private final ExecutionMode executionMode;
+
+    /**
+     * The arithmetic the plans are evaluated with, which bounds the number literals.
+     */
+    private final NumericMode numericMode;
+
+    /**
+     * Optimizer simplifying parsed trees, or {@code null} if trees are evaluated as parsed.
+     */
+    private final ExpressionOptimizer optimizer;
+
+    /**
+     * Interner sharing the identical side-effect-free subtrees of all plans.
+     */
+    private final ExpressionInterner interner = new ExpressionInterner();
+
+    /**
+     * Balancer of deep trees, or {@code null} if the arithmetic is not associative and trees keep their shape.
+     */
+    private final ExpressionBalancer balancer;
+
+    /**
+     * Compiler producing the postfix programs of new plans in {@code POSTFIX} mode.
+     */
+    private final PostfixCompiler postfixCompiler = new PostfixCompiler();
+
+    /**
+     * Compiler used to promote hot plans, or {@code null} if plans are never compiled to bytecode.
+     */
+    private final BytecodeCompiler compiler;
+
+    /**
+     * Number of evaluations after which a plan is compiled.
+     */
+    private final int compileThreshold;
+
+    /**
+     * Records the parse latency and the rejected expressions.
+     */
+    private final CalculatorMetrics metrics;
+
+    /**
+     * Plans of valid expressions, keyed by expression text.
+     */
+    private final Cache<String, ExpressionPlan> plans;
+
+    /**
+     * Rejections of invalid expressions, keyed by expression text.
+     */
+    private final Cache<String, InvalidExpression> rejected;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code ExpressionPlanCache}.
+     *
+     * @param validator  the validator used to parse uncached expressions
+     * @param properties the calculator settings holding the cache sizes and execution mode
+     */
+    public ExpressionPlanCache(ExpressionValidator validator, CalculatorProperties properties) {
+        this(validator, properties, CalculatorMetrics.NOOP);
+    }
+
+    /**
+     * Constructs a new {@code ExpressionPlanCache} recording its activity.
+     *
+     * @param validator  the validator used to parse uncached expressions
+     * @param properties the calculator settings holding the cache sizes and execution mode
+     * @param metrics    records the parse latency and the rejected expressions
+     */
+    @Autowired
+    public ExpressionPlanCache(ExpressionValidator validator, CalculatorProperties properties, CalculatorMetrics metrics) {
+        this.validator = validator;
+        this.metrics = metrics;
+        this.numericMode = properties.getNumericMode();
+        // The compiled forms only implement int arithmetic
+        this.executionMode = this.numericMode == NumericMode.INT ? executionModeOf(properties) : ExecutionMode.TREE;
+        this.optimizer = properties.isOptimize() ? new ExpressionOptimizer(this.numericMode) : null;
+        // Regrouping only keeps the results of the wrapping and the exact arithmetic
+        this.balancer = this.numericMode == NumericMode.INT || this.numericMode == NumericMode.BIG_INTEGER
+                ? new ExpressionBalancer() : null;
+        this.compiler = this.executionMode == ExecutionMode.BYTECODE ? new BytecodeCompiler() : null;
+        this.compileThreshold = properties.getCompileThreshold();
+        this.plans = Caffeine.newBuilder()
+                .maximumSize(properties.getPlanCacheSize())
+                .recordStats()
+                .build();
+        this.rejected = Caffeine.newBuilder()
+                .maximumSize(properties.getRejectedCacheSize())
+                .recordStats()
+                .build();
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the plan of the given expression, parsing and caching it on first use.
+     *
+     * Expressions already known to be invalid are rejected before the plan cache is consulted,
+     * so that repeated invalid lines are not counted as plan cache misses.
+     *
+     * @param expression the expression text
+     * @return the plan of the expression
+     * @throws InvalidExpression if the expression is invalid, now or on a previous call
+     */
+    public ExpressionPlan getPlan(String expression) {
+        InvalidExpression rejection = rejected.getIfPresent(expression);
+        if (rejection != null) {
+            metrics.recordInvalidExpression(rejection.getReason());
+            throw rejection;
+        }
+        return plans.get(expression, this::compile);
+    }
+
+    /**
+     * Parses the given expression into a plan without caching it, nor consulting the caches.
+     *
+     * Meant for transient text, such as a line of a memory-mapped file: the expression is
+     * tokenized directly from the given characters and is never copied into a string.
+     * The returned plan has no expression text.
+     *
+     * @param expression the expression characters, only read during the call
+     * @return the plan of the expression
+     * @throws InvalidExpression if the expression is invalid
+     */
+    public ExpressionPlan parse(CharSequence expression) {
+        TokenBuffer tokens = ExpressionLexer.tokenize(expression, TokenBuffer.forCurrentThread(), numericMode);
+        try {
+            return newPlan(null, validator.validateAndParse(tokens));
+        } finally {
+            // Drops the characters, which are only valid during the call
+            tokens.release();
+        }
+    }
+
+    /**
+     * Returns the arithmetic the plans are parsed for, and must be evaluated with.
+     *
+     * @return the numeric mode
+     */
+    public NumericMode getNumericMode() {
+        return numericMode;
+    }
+
+    /**
+     * Returns the hit, miss and eviction statistics of the plan cache.
+     *
+     * @return the plan cache statistics
+     */
+    public CacheStats getPlanStats() {
+        return plans.stats();
+    }
+
+    /**
+     * Returns the hit, miss and eviction statistics of the negative cache of invalid expressions.
+     *
+     * @return the rejection cache statistics
+     */
+    public CacheStats getRejectedStats() {
+        return rejected.stats();
+    }
+
+    /**
+     * Returns the approximate number of cached plans.
+     *
+     * @return the number of cached plans
+     */
+    public long getPlanCount() {
+        return plans.estimatedSize();
+    }
+
+    /**
+     * Discards all cached plans and rejections.
+     */
+    public void invalidateAll() {
+        plans.invalidateAll();
+        rejected.invalidateAll();
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Returns the configured execution mode, or {@code TREE} instead of {@code BYTECODE} in a native
+     * image, which cannot define the classes of compiled plans at run time.
+     *
+     * @param properties the calculator settings
+     * @return the execution mode to use
+     */
+    private static ExecutionMode executionModeOf(CalculatorProperties properties) {
+        ExecutionMode mode = properties.getExecutionMode();
+        if (mode == ExecutionMode.BYTECODE && System.getProperty("org.graalvm.nativeimage.imagecode") != null) {
+            return ExecutionMode.TREE;
+        }
+        return mode;
+    }
+
+    /**
+     * Tokenizes and parses the given expression into a plan, remembering it as invalid if it is.
+     * Invoked by the plan cache on a miss.
+     *
+     * @param expression the expression text
+     * @return the parsed plan
+     * @throws InvalidExpression if the expression is invalid
+     */
+    private ExpressionPlan compile(String expression) {
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        try {
+            TokenBuffer tokens = ExpressionLexer.tokenize(expression, TokenBuffer.forCurrentThread(), numericMode);
+            try {
+                return newPlan(expression, validator.validateAndParse(tokens));
+            } finally {
+                tokens.release();
+            }
+        } catch (InvalidExpression e) {
+            rejected.put(expression, e);
+            metrics.recordInvalidExpression(e.getReason());
+            throw e;
+        } finally {
+            if (metrics.isEnabled()) {
+                metrics.recordParse(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Creates the plan of a parsed expression, optimized, interned and compiled for the configured execution mode.
+     * Deep trees are balanced first, and those still too deep are only compiled to a postfix program.
+     *
+     * @param expression the expression text, or {@code null} if it is not kept
+     * @param parsed     the parsed tree and its depth
+     * @return the new plan
+     */
+    private ExpressionPlan newPlan(String expression, EvaluableTree parsed) {
+        Evaluable tree = parsed.root();
+        if (parsed.depth() > MAX_TREE_DEPTH) {
+            EvaluableTree balanced = balancer != null ? balancer.balance(tree) : parsed;
+            tree = balanced.root();
+            if (balanced.depth() > MAX_TREE_DEPTH) {
+                // Wide modes evaluate the tree with the iterative WideEvaluator, never through the plan
+                Evaluable executable = numericMode == NumericMode.INT ? postfixCompiler.compile(tree) : tree;
+                return new ExpressionPlan(expression, tree, executable, null, 0, new AtomicInteger());
+            }
+        }
+        AtomicInteger commonMarks = new AtomicInteger();
+        Evaluable root = interner.intern(optimizer != null ? optimizer.optimize(tree) : tree, commonMarks);
+        Evaluable executable = executionMode == ExecutionMode.POSTFIX ? postfixCompiler.compile(root) : root;
+        return new ExpressionPlan(expression, root, executable, compiler, compileThreshold, commonMarks);
+    }
+    //endregion
+}
@@ -0,0 +1,97 @@
+package org.taboola.plan;
+
+import org.taboola.evaluator.*;
+
+import java.util.ArrayDeque;
+
+/**
+ * Computes which variables an {@link Evaluable} tree reads and writes.
+ *
+ * Sets are returned as bitmasks over variable slots: bit {@code i} is set if slot {@code i}
+ * is accessed. Increments and compound assignments both read and write their variable.
+ * The trees are walked with an explicit stack, so their depth is not bounded by the Java stack.
+ */
+public final class VariableAccess {
+
+    //region Constructors
+    private VariableAccess() {
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the variables read by the given tree.
+     *
+     * @param root the root of the tree
+     * @return the bitmask of read slots
+     */
+    public static int readMask(Evaluable root) {
+        int mask = 0;
+        ArrayDeque<Evaluable> pending = new ArrayDeque<>();
+        for (Evaluable node = root; node != null; node = pending.pollLast()) {
+            switch (node) {
+                case VariableExpression variable -> mask |= bit(variable);
+                case SharedExpression shared -> mask |= shared.getReadMask();
+                case Expression expression -> {
+                    pending.addLast(expression.getRight());
+                    pending.addLast(expression.getLeft());
+                }
+                case AssignmentExpression assignment -> pending.addLast(assignment.getExpression());
+                case AddAssignmentExpression assignment -> {
+                    mask |= bit(assignment.getVariable());
+                    pending.addLast(assignment.getExpression());
+                }
+                default -> {
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the variables written by the given tree.
+     *
+     * @param root the root of the tree
+     * @return the bitmask of written slots
+     */
+    public static int writeMask(Evaluable root) {
+        int mask = 0;
+        ArrayDeque<Evaluable> pending = new ArrayDeque<>();
+        for (Evaluable node = root; node != null; node = pending.pollLast()) {
+            switch (node) {
+                case PostIncrementVariableExpression variable -> mask |= bit(variable);
+                case PreIncrementVariableExpression variable -> mask |= bit(variable);
+                case SharedExpression shared -> {
+                }
+                case Expression expression -> {
+                    pending.addLast(expression.getRight());
+                    pending.addLast(expression.getLeft());
+                }
+                case AssignmentExpression assignment -> {
+                    mask |= bit(assignment.getVariable());
+                    pending.addLast(assignment.getExpression());
+                }
+                case AddAssignmentExpression assignment -> {
+                    mask |= bit(assignment.getVariable());
+                    pending.addLast(assignment.getExpression());
+                }
+                default -> {
+                }
+            }
+        }
+        return mask;
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Returns the bitmask of a single variable.
+     *
+     * @param variable the variable
+     * @return the bitmask with only the variable's slot set
+     */
+    private static int bit(VariableExpression variable) {
+        return 1 << variable.getSlot();
+    }
+    //endregion
+}
@@ -0,0 +1,202 @@
+package org.taboola.session;
+
+import org.taboola.ExpressionCalculator;
+import org.taboola.exceptions.SessionNotFoundException;
+import org.taboola.persistence.DurableVariableStore;
+import org.taboola.store.HeapSize;
+import org.taboola.store.VariableSnapshot;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A single isolated calculator session: a calculator with its own variables,
+ * and the lock serializing the work submitted to it.
+ *
+ * A {@link ReentrantLock} is used rather than {@code synchronized} so that virtual
+ * threads waiting for a busy session unmount instead of pinning their carrier thread.
+ * A session whose calculator is {@link ExpressionCalculator#isConcurrent() concurrent}
+ * does not take the lock at all, and runs its work as it comes.
+ *
+ * Closing or discarding a session takes its lock too, so its durable store is never closed under
+ * running work, and the work still waiting for the lock then fails as if the session did not exist.
+ */
+public final class CalculatorSession {
+
+    //region Members
+    /**
+     * The session identifier.
+     */
+    private final String id;
+
+    /**
+     * The calculator holding the session's variables.
+     */
+    private final ExpressionCalculator calculator;
+
+    /**
+     * The store keeping the session's variables across restarts, or {@code null} if they are kept in memory only.
+     */
+    private final DurableVariableStore store;
+
+    /**
+     * Serializes the work on the calculator, which is not thread-safe.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Whether the calculator may be used by several threads at once, so that work runs without the lock.
+     */
+    private final boolean concurrent;
+
+    /**
+     * Whether the durable store of the session was closed; guarded by the lock.
+     */
+    private boolean closed;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code CalculatorSession}.
+     *
+     * @param id         the session identifier
+     * @param calculator the calculator holding the session's variables
+     * @param store      the durable store of the calculator, or {@code null} if its variables are kept in memory only
+     */
+    CalculatorSession(String id, ExpressionCalculator calculator, DurableVariableStore store) {
+        this.id = id;
+        this.calculator = calculator;
+        this.store = store;
+        this.concurrent = calculator.isConcurrent();
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the session identifier.
+     *
+     * @return the identifier
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * Returns the number of variables defined in the session, without waiting for its lock.
+     * The count is that of the last calculation completed.
+     *
+     * @return the variable count
+     */
+    public int getVariableCount() {
+        return this.calculator.getVariableCount();
+    }
+
+    /**
+     * Returns a consistent snapshot of the session's variables as of the last calculation completed,
+     * without waiting for its lock, so that polling readers never queue behind the calculations.
+     *
+     * @return the snapshot of the variables
+     */
+    public VariableSnapshot getSnapshot() {
+        return this.calculator.getSnapshot();
+    }
+
+    /**
+     * Estimates the heap footprint of the session, in bytes: its identifier, its lock and its calculator,
+     * with the store of its variables and its formulas; see {@link HeapSize}. Does not wait for the lock,
+     * so the estimate is only approximate while work runs on the session.
+     *
+     * @return the estimated size of the session
+     */
+    public long estimateSize() {
+        // The session, its identifier, and its lock with its synchronizer
+        return HeapSize.object(4 * HeapSize.REFERENCE + 2) + HeapSize.string(this.id)
+                + HeapSize.object(HeapSize.REFERENCE) + HeapSize.object(Integer.BYTES + 3 * HeapSize.REFERENCE)
+                + this.calculator.estimateSize();
+    }
+
+    /**
+     * Runs the given work against the session's calculator, exclusively of any other work on this session
+     * unless the calculator is concurrent.
+     *
+     * @param work the work to run
+     * @param <T>  the type of the result
+     * @return the result of the work
+     * @throws SessionNotFoundException if the session was closed while the work was waiting for it
+     */
+    public <T> T execute(Function<ExpressionCalculator, T> work) {
+        if (this.concurrent) {
+            return work.apply(this.calculator);
+        }
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                throw new SessionNotFoundException(this.id);
+            }
+            return work.apply(this.calculator);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+    //endregion
+
+    //region Package-Private Methods
+    /**
+     * Closes the durable store of the session, if any, keeping its variables for the next start.
+     * Waits for the work running on the session to complete.
+     *
+     * @throws IOException if the store cannot be forced
+     */
+    void close() throws IOException {
+        if (this.store == null) {
+            return;
+        }
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.store.close();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the journal of the durable store of the session, if any, once its fsync interval has passed.
+     * Does nothing while work runs on the session, as the commit of that work forces the journal when due.
+     *
+     * @throws IOException if the journal cannot be forced
+     */
+    void syncIfDue() throws IOException {
+        if (this.store == null || !this.lock.tryLock()) {
+            return;
+        }
+        try {
+            if (!this.closed) {
+                this.store.syncIfDue();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the durable store of the session, if any, discarding its variables for good.
+     * Waits for the work running on the session to complete.
+     *
+     * @throws IOException if the files of the store cannot be deleted
+     */
+    void discard() throws IOException {
+        if (this.store == null) {
+            return;
+        }
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.store.delete();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,563 @@
+package org.taboola.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.taboola.ExpressionCalculator;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.FsyncPolicy;
+import org.taboola.enums.NumericMode;
+import org.taboola.exceptions.SessionNotFoundException;
+import org.taboola.metrics.CalculatorMetrics;
+import org.taboola.persistence.DurableVariableStore;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.AtomicVariableStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Hands out isolated calculator sessions, each with its own variables.
+ *
+ * Sessions live in a concurrent map that closes them once idle for
+ * {@code calculator.session-idle-timeout}, and closes the least recently used ones beyond
+ * {@code calculator.max-sessions}. There is no global lock: work on a session only
+ * takes that session's lock, so different sessions run in parallel across cores
+ * while the work on one session is serialized. All sessions share the plan cache.
+ *
+ * When {@code calculator.state-directory} is set, the variables of each session are kept in a
+ * {@link DurableVariableStore} in a subdirectory named after the session, and the sessions found
+ * there are reopened when the manager starts, up to {@code calculator.max-sessions}. Closing a session
+ * explicitly, or letting it expire, deletes its state. A session evicted beyond {@code calculator.max-sessions}
+ * only has its store closed, and is reopened from its state when it is next used. A background thread deletes
+ * the state of the sessions left out of the map for longer than the idle timeout and, in the {@code INTERVAL}
+ * fsync policy, forces the journals of the idle sessions every {@code calculator.journal-fsync-interval}.
+ *
+ * Evicted and expired sessions are closed while the map holds their entry, and sessions are reopened and
+ * closed explicitly through the map too, so that a session's state is never open twice, nor deleted while
+ * it is reopened.
+ *
+ * When {@code calculator.concurrent-sessions} is set instead, the variables of each session are kept
+ * in an {@link AtomicVariableStore} and the requests of a session run concurrently, without its lock.
+ */
+@Slf4j
+@Component
+public class SessionManager {
+
+    //region Members
+    /**
+     * The open sessions, by identifier.
+     */
+    private final Cache<String, CalculatorSession> sessions;
+
+    /**
+     * Cache of parsed expression plans, shared by all sessions.
+     */
+    private final ExpressionPlanCache planCache;
+
+    /**
+     * Executor evaluating whole blocks, shared by all sessions.
+     */
+    private final ParallelBlockExecutor blockExecutor;
+
+    /**
+     * Records the activity of the calculators of the sessions.
+     */
+    private final CalculatorMetrics metrics;
+
+    /**
+     * The settings of the durable stores of the sessions.
+     */
+    private final CalculatorProperties properties;
+
+    /**
+     * The directory keeping the variables of the sessions, or {@code null} if they are kept in memory only.
+     */
+    private final Path stateDirectory;
+
+    /**
+     * Whether the requests of a session run concurrently on an atomic store.
+     */
+    private final boolean concurrent;
+
+    /**
+     * Forces the journals and deletes the stale state of the sessions, or {@code null} without a state directory.
+     */
+    private final ScheduledExecutorService maintenance;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code SessionManager} using the system clock.
+     *
+     * @param properties    the calculator settings holding the session limits
+     * @param planCache     the cache of parsed expression plans shared by all sessions
+     * @param blockExecutor the executor evaluating whole blocks
+     * @param metrics       records the activity of the calculators of the sessions
+     */
+    @Autowired
+    public SessionManager(CalculatorProperties properties, ExpressionPlanCache planCache,
+                          ParallelBlockExecutor blockExecutor, CalculatorMetrics metrics) {
+        this(properties, planCache, blockExecutor, metrics, Ticker.systemTicker());
+    }
+
+    /**
+     * Constructs a new {@code SessionManager}.
+     *
+     * @param properties    the calculator settings holding the session limits
+     * @param planCache     the cache of parsed expression plans shared by all sessions
+     * @param blockExecutor the executor evaluating whole blocks
+     * @param metrics       records the activity of the calculators of the sessions
+     * @param ticker        the clock measuring how long sessions have been idle
+     * @throws IllegalStateException if the state directory is set in a wide numeric mode, or concurrent
+     *                               sessions are enabled along with it, a wide numeric mode or without the optimizer
+     * @throws UncheckedIOException  if the sessions of the state directory cannot be reopened
+     */
+    public SessionManager(CalculatorProperties properties, ExpressionPlanCache planCache,
+                          ParallelBlockExecutor blockExecutor, CalculatorMetrics metrics, Ticker ticker) {
+        this.planCache = planCache;
+        this.blockExecutor = blockExecutor;
+        this.metrics = metrics;
+        this.properties = properties;
+        this.stateDirectory = properties.getStateDirectory();
+        if (this.stateDirectory != null && planCache.getNumericMode() != NumericMode.INT) {
+            throw new IllegalStateException("Session variables can only be kept in a state directory in the INT numeric mode");
+        }
+        this.concurrent = properties.isConcurrentSessions();
+        if (this.concurrent && (this.stateDirectory != null || planCache.getNumericMode() != NumericMode.INT || !properties.isOptimize())) {
+            // Without the optimizer, x += e is evaluated as a separate read and write, which is not atomic
+            throw new IllegalStateException("Concurrent sessions require the INT numeric mode, the optimizer and no state directory");
+        }
+        this.sessions = Caffeine.newBuilder()
+                .expireAfterAccess(properties.getSessionIdleTimeout())
+                .maximumSize(properties.getMaxSessions())
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .evictionListener((String id, CalculatorSession session, RemovalCause cause) -> onEviction(id, session, cause))
+                .build();
+        recover();
+        this.maintenance = this.stateDirectory != null ? startMaintenance() : null;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Opens a new session with no variables defined.
+     *
+     * @return the new session
+     */
+    public CalculatorSession create() {
+        CalculatorSession session = open(UUID.randomUUID().toString());
+        this.sessions.put(session.getId(), session);
+        this.created.increment();
+        return session;
+    }
+
+    /**
+     * Returns an open session, marking it as used. A session evicted beyond the maximum session count
+     * is reopened from its durable state, if any.
+     *
+     * @param id the session identifier
+     * @return the session
+     * @throws SessionNotFoundException if the session does not exist or was closed
+     * @throws UncheckedIOException     if the durable state of an evicted session cannot be reopened
+     */
+    public CalculatorSession get(String id) {
+        CalculatorSession session = this.sessions.getIfPresent(id);
+        if (session == null && this.stateDirectory != null && isSessionId(id)) {
+            session = this.sessions.get(id, this::reopen);
+        }
+        if (session == null) {
+            throw new SessionNotFoundException(id);
+        }
+        return session;
+    }
+
+    /**
+     * Runs the given work against the calculator of a session, exclusively of any other work on that session
+     * unless sessions are concurrent.
+     *
+     * @param id   the session identifier
+     * @param work the work to run
+     * @param <T>  the type of the result
+     * @return the result of the work
+     * @throws SessionNotFoundException if the session does not exist or was closed
+     */
+    public <T> T execute(String id, Function<ExpressionCalculator, T> work) {
+        return get(id).execute(work);
+    }
+
+    /**
+     * Closes a session and discards its variables, deleting its durable state.
+     *
+     * @param id the session identifier
+     * @throws SessionNotFoundException if the session does not exist or was already closed
+     */
+    public void close(String id) {
+        boolean[] found = new boolean[1];
+        this.sessions.asMap().compute(id, (key, session) -> {
+            found[0] = session != null || this.stateDirectory != null && isSessionId(key)
+                    && Files.isDirectory(this.stateDirectory.resolve(key));
+            if (found[0]) {
+                discard(key, session);
+            }
+            return null;
+        });
+        if (!found[0]) {
+            throw new SessionNotFoundException(id);
+        }
+        this.closed.increment();
+        log.debug("The session {} was closed.", id);
+    }
+
+    /**
+     * Creates a calculator outside of any session, sharing the plan cache of the sessions.
+     * The caller owns the calculator, which is never closed by the manager.
+     *
+     * @return a new calculator with no variables defined
+     */
+    public ExpressionCalculator newCalculator() {
+        return new ExpressionCalculator(this.planCache, this.blockExecutor, this.metrics);
+    }
+
+    /**
+     * Returns the approximate number of open sessions.
+     *
+     * @return the session count
+     */
+    public long getActiveSessionCount() {
+        return this.sessions.estimatedSize();
+    }
+
+    /**
+     * Returns the number of variables defined across all open sessions.
+     * Walks every session, so it is meant for periodic monitoring only.
+     *
+     * @return the variable count
+     */
+    public long getVariableCount() {
+        long count = 0;
+        for (CalculatorSession session : this.sessions.asMap().values()) {
+            count += session.getVariableCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the estimated heap footprint of all open sessions, in bytes, from what each session holds.
+     * Walks every session, so it is meant for periodic monitoring only.
+     *
+     * @return the estimated size of the sessions
+     */
+    public long getEstimatedSize() {
+        long size = 0;
+        for (CalculatorSession session : this.sessions.asMap().values()) {
+            size += session.estimateSize();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the current session counters, and the estimated memory of the open sessions.
+     * Walks every session, so it is meant for periodic monitoring only.
+     *
+     * @return the session statistics
+     */
+    public SessionStats getStats() {
+        this.sessions.cleanUp();
+        long active = 0;
+        long size = 0;
+        long largest = 0;
+        for (CalculatorSession session : this.sessions.asMap().values()) {
+            long sessionSize = session.estimateSize();
+            active++;
+            size += sessionSize;
+            largest = Math.max(largest, sessionSize);
+        }
+        return new SessionStats(active, this.created.sum(), this.closed.sum(), this.expired.sum(),
+                this.evicted.sum(), active == 0 ? 0 : size / active, largest, size);
+    }
+
+    /**
+     * Closes the durable stores of the open sessions on shutdown, keeping their variables
+     * for the next start.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (this.maintenance != null) {
+            this.maintenance.shutdownNow();
+        }
+        for (CalculatorSession session : this.sessions.asMap().values()) {
+            try {
+                session.close();
+            } catch (IOException e) {
+                log.error("The variables of the session {} could not be saved.", session.getId(), e);
+            }
+        }
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Opens a session, reopening its durable state if there is a state directory.
+     *
+     * @param id the session identifier
+     * @return the session
+     * @throws UncheckedIOException if the durable state of the session cannot be opened
+     */
+    private CalculatorSession open(String id) {
+        if (this.concurrent) {
+            ExpressionCalculator calculator = new ExpressionCalculator(this.planCache, this.blockExecutor, this.metrics,
+                    new AtomicVariableStore());
+            return new CalculatorSession(id, calculator, null);
+        }
+        if (this.stateDirectory == null) {
+            return new CalculatorSession(id, newCalculator(), null);
+        }
+        try {
+            DurableVariableStore store = DurableVariableStore.open(this.stateDirectory.resolve(id), this.properties);
+            ExpressionCalculator calculator = new ExpressionCalculator(this.planCache, this.blockExecutor, this.metrics, store);
+            return new CalculatorSession(id, calculator, store);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the state of the session " + id, e);
+        }
+    }
+
+    /**
+     * Reopens a session evicted beyond the maximum session count from its durable state, unless it was
+     * left out of the map for longer than the idle timeout, in which case its state is deleted.
+     *
+     * @param id the session identifier
+     * @return the session, or {@code null} if it has no durable state
+     * @throws UncheckedIOException if the durable state of the session cannot be read
+     */
+    private CalculatorSession reopen(String id) {
+        Path directory = this.stateDirectory.resolve(id);
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        try {
+            if (isStale(directory)) {
+                DurableVariableStore.delete(directory);
+                this.expired.increment();
+                return null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the state of the session " + id, e);
+        }
+        log.debug("The session {} was reopened.", id);
+        return open(id);
+    }
+
+    /**
+     * Checks whether the durable state of a session out of the map was last written longer than the idle timeout ago,
+     * so that the session would have expired had it stayed in the map.
+     *
+     * @param directory the directory of the session
+     * @return true if the state is stale, otherwise false
+     * @throws IOException if the files of the state cannot be read
+     */
+    private boolean isStale(Path directory) throws IOException {
+        Instant written = DurableVariableStore.lastModified(directory).toInstant();
+        return written.plus(this.properties.getSessionIdleTimeout()).isBefore(Instant.now());
+    }
+
+    /**
+     * Checks whether a string is a session identifier, so that it can safely name a state directory.
+     *
+     * @param id the string to check
+     * @return true if the string is a session identifier, otherwise false
+     */
+    private static boolean isSessionId(String id) {
+        try {
+            return UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts the thread forcing the journals of the sessions in the {@code INTERVAL} fsync policy, so that the
+     * last commits before an idle period are forced within the fsync interval rather than when the session is
+     * next used or closed, and deleting the stale state of the sessions out of the map.
+     *
+     * @return the executor running the tasks
+     */
+    private ScheduledExecutorService startMaintenance() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("session-maintenance").daemon().factory());
+        if (this.properties.getJournalFsync() == FsyncPolicy.INTERVAL) {
+            long period = Math.max(1, this.properties.getJournalFsyncInterval().toNanos());
+            executor.scheduleWithFixedDelay(this::syncJournals, period, period, TimeUnit.NANOSECONDS);
+        }
+        long period = Math.max(1, this.properties.getSessionIdleTimeout().toNanos());
+        executor.scheduleWithFixedDelay(this::deleteStaleStates, period, period, TimeUnit.NANOSECONDS);
+        return executor;
+    }
+
+    /**
+     * Forces the journals of the open sessions whose fsync interval has passed.
+     */
+    private void syncJournals() {
+        for (CalculatorSession session : this.sessions.asMap().values()) {
+            try {
+                session.syncIfDue();
+            } catch (IOException e) {
+                log.error("The journal of the session {} could not be forced.", session.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Expires the idle sessions of the map, and deletes the stale state of the sessions out of it.
+     */
+    private void deleteStaleStates() {
+        this.sessions.cleanUp();
+        for (Path directory : listStates()) {
+            String id = directory.getFileName().toString();
+            if (!isSessionId(id)) {
+                continue;
+            }
+            this.sessions.asMap().compute(id, (key, session) -> {
+                if (session == null) {
+                    try {
+                        if (Files.isDirectory(directory) && isStale(directory)) {
+                            DurableVariableStore.delete(directory);
+                            this.expired.increment();
+                        }
+                    } catch (IOException e) {
+                        log.error("The state of the session {} could not be deleted.", key, e);
+                    }
+                }
+                return session;
+            });
+        }
+    }
+
+    /**
+     * Lists the state directories of the sessions.
+     *
+     * @return the directories of the sessions
+     * @throws UncheckedIOException if the state directory cannot be read
+     */
+    private List<Path> listStates() {
+        try {
+            Files.createDirectories(this.stateDirectory);
+            try (Stream<Path> entries = Files.list(this.stateDirectory)) {
+                return entries.filter(Files::isDirectory).toList();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the state directory " + this.stateDirectory, e);
+        }
+    }
+
+    /**
+     * Reopens the most recently written sessions found in the state directory, if any, up to the maximum
+     * session count. The others are reopened when they are next used, and the stale ones are deleted.
+     *
+     * @throws UncheckedIOException if the state directory cannot be read
+     */
+    private void recover() {
+        if (this.stateDirectory == null) {
+            return;
+        }
+        List<Map.Entry<Path, FileTime>> states = new ArrayList<>();
+        try {
+            for (Path directory : listStates()) {
+                if (isStale(directory)) {
+                    DurableVariableStore.delete(directory);
+                } else {
+                    states.add(Map.entry(directory, DurableVariableStore.lastModified(directory)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the state directory " + this.stateDirectory, e);
+        }
+
+        // The least recently written sessions are put first, so that they are the first evicted
+        states.sort(Map.Entry.comparingByValue());
+        List<Map.Entry<Path, FileTime>> reopened =
+                states.subList((int) Math.max(0, states.size() - this.properties.getMaxSessions()), states.size());
+        for (Map.Entry<Path, FileTime> state : reopened) {
+            CalculatorSession session = open(state.getKey().getFileName().toString());
+            this.sessions.put(session.getId(), session);
+        }
+        if (!states.isEmpty()) {
+            log.info("Reopened {} of {} sessions from {}.", reopened.size(), states.size(), this.stateDirectory);
+        }
+    }
+
+    /**
+     * Closes the durable state of a session evicted or expired, and counts it by cause. The state of an
+     * expired session is deleted, while that of an evicted session is kept to reopen it when it is next used.
+     * Called while the map holds the entry of the session, so that it is not reopened meanwhile.
+     *
+     * @param id      the session identifier
+     * @param session the removed session
+     * @param cause   why the session was removed
+     */
+    private void onEviction(String id, CalculatorSession session, RemovalCause cause) {
+        switch (cause) {
+            case EXPIRED -> {
+                this.expired.increment();
+                discard(id, session);
+            }
+            case SIZE -> {
+                this.evicted.increment();
+                try {
+                    session.close();
+                } catch (IOException e) {
+                    log.error("The state of the session {} could not be closed.", id, e);
+                }
+            }
+            default -> {
+                return;
+            }
+        }
+        log.debug("The session {} was closed ({}).", id, cause);
+    }
+
+    /**
+     * Deletes the durable state of a session, open or not.
+     *
+     * @param id      the session identifier
+     * @param session the open session, or {@code null} if it is not open
+     */
+    private void discard(String id, CalculatorSession session) {
+        try {
+            if (session != null) {
+                session.discard();
+            } else {
+                DurableVariableStore.delete(this.stateDirectory.resolve(id));
+            }
+        } catch (IOException e) {
+            log.error("The state of the session {} could not be deleted.", id, e);
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,18 @@
+package org.taboola.session;
+
+/**
+ * A snapshot of the activity of the {@link SessionManager}.
+ *
+ * @param activeSessions           the number of open sessions
+ * @param createdSessions          the number of sessions opened since startup
+ * @param closedSessions           the number of sessions closed explicitly
+ * @param expiredSessions          the number of sessions closed after being idle too long
+ * @param evictedSessions          the number of sessions closed to respect the maximum session count
+ * @param averageBytesPerSession   the average estimated heap footprint of an open session
+ * @param largestSessionBytes      the estimated heap footprint of the largest open session
+ * @param estimatedBytes           the estimated heap footprint of all open sessions, from what each one holds
+ */
+public record SessionStats(long activeSessions, long createdSessions, long closedSessions,
+                           long expiredSessions, long evictedSessions,
+                           long averageBytesPerSession, long largestSessionBytes, long estimatedBytes) {
+}
@@ -0,0 +1,155 @@
+package org.taboola.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.logging.RateLimitedLogger;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+
+/**
+ * {@link VariableStore} backed by a dense {@code int[]} indexed by slot and a bitmask of defined slots.
+ *
+ * Reads and writes are plain array accesses with no boxing or hashing.
+ *
+ * The store is not thread-safe in general. Threads may however write to distinct slots
+ * concurrently, as long as all accesses to the same slot are ordered by a happens-before
+ * relationship: defining a new slot updates the shared bitmask atomically, and every
+ * other access only touches the slot's own array element.
+ *
+ * Each {@link #commit()} publishes an immutable {@link VariableSnapshot} of the variables,
+ * which readers on other threads get from {@link #snapshot()} without blocking the writer.
+ */
+@Slf4j
+public class ArrayVariableStore implements VariableStore {
+
+    //region Members
+    /**
+     * Handle used to update the defined bitmask atomically.
+     */
+    private static final VarHandle DEFINED;
+
+    /**
+     * Logs undefined variables, at most ten times per second.
+     */
+    private static final RateLimitedLogger ERROR_LOG = new RateLimitedLogger(log, 10, Duration.ofSeconds(1));
+
+    static {
+        try {
+            DEFINED = MethodHandles.lookup().findVarHandle(ArrayVariableStore.class, "defined", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The values of the variables, indexed by slot.
+     */
+    private final int[] values = new int[VariableSlots.SLOT_COUNT];
+
+    /**
+     * Bitmask of the defined slots.
+     */
+    private int defined;
+
+    /**
+     * The variables as of the last commit, read by any thread without locking.
+     */
+    private volatile VariableSnapshot snapshot = VariableSnapshot.EMPTY;
+    //endregion
+
+    //region Public Methods
+    @Override
+    public int get(int slot) {
+        if ((this.defined & (1 << slot)) == 0) {
+            throw undefined(slot);
+        }
+        return this.values[slot];
+    }
+
+    @Override
+    public void set(int slot, int value) {
+        this.values[slot] = value;
+        int bit = 1 << slot;
+        if ((this.defined & bit) == 0) {
+            DEFINED.getAndBitwiseOr(this, bit);
+        }
+    }
+
+    @Override
+    public int getAndIncrement(int slot) {
+        int value = get(slot);
+        this.values[slot] = value + 1;
+        return value;
+    }
+
+    @Override
+    public int incrementAndGet(int slot) {
+        int value = get(slot) + 1;
+        this.values[slot] = value;
+        return value;
+    }
+
+    @Override
+    public int addAndGet(int slot, int delta) {
+        int value = get(slot) + delta;
+        this.values[slot] = value;
+        return value;
+    }
+
+    @Override
+    public boolean isDefined(int slot) {
+        return (this.defined & (1 << slot)) != 0;
+    }
+
+    @Override
+    public int definedMask() {
+        return this.defined;
+    }
+
+    @Override
+    public void clear() {
+        this.defined = 0;
+    }
+
+    /**
+     * Publishes a new snapshot of the variables if they changed since the last commit.
+     */
+    @Override
+    public void commit() {
+        this.snapshot = this.snapshot.next(this.defined, this.values);
+    }
+
+    /**
+     * Returns the snapshot published by the last commit, without copying; safe to call from any thread.
+     *
+     * @return the snapshot of the variables as of the last commit
+     */
+    @Override
+    public VariableSnapshot snapshot() {
+        return this.snapshot;
+    }
+
+    @Override
+    public long estimateSize() {
+        // The values, the defined mask and the snapshot
+        return HeapSize.object(2 * HeapSize.REFERENCE + Integer.BYTES)
+                + HeapSize.intArray(this.values.length) + this.snapshot.estimateSize();
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Logs and builds the exception for reading an undefined variable.
+     *
+     * @param slot the slot of the undefined variable
+     * @return the exception to throw
+     */
+    private UndefinedVariableException undefined(int slot) {
+        char name = VariableSlots.nameOf(slot);
+        ERROR_LOG.error("The variable {} is undefined", name);
+        return new UndefinedVariableException(name);
+    }
+    //endregion
+}
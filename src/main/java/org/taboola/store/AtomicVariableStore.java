@@ -0,0 +1,159 @@
+package org.taboola.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.logging.RateLimitedLogger;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link VariableStore} that any number of threads may share, backed by an {@link AtomicIntegerArray}.
+ *
+ * Every operation on a single variable is atomic: increments and additions are read-modify-write
+ * operations on the slot's element, so concurrent {@code x++} or {@code x += 2} never lose an update,
+ * and no lock is taken, so threads working on different variables do not contend at all.
+ *
+ * An expression reading or writing several variables is not atomic as a whole: it sees each
+ * variable as of the moment it reads it, and other threads may see some of its writes before
+ * the others, as with a group of {@code AtomicInteger}s.
+ */
+@Slf4j
+public class AtomicVariableStore implements VariableStore {
+
+    //region Members
+    /**
+     * Handle used to update the defined bitmask atomically.
+     */
+    private static final VarHandle DEFINED;
+
+    /**
+     * Logs undefined variables, at most ten times per second.
+     */
+    private static final RateLimitedLogger ERROR_LOG = new RateLimitedLogger(log, 10, Duration.ofSeconds(1));
+
+    static {
+        try {
+            DEFINED = MethodHandles.lookup().findVarHandle(AtomicVariableStore.class, "defined", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The values of the variables, indexed by slot.
+     */
+    private final AtomicIntegerArray values = new AtomicIntegerArray(VariableSlots.SLOT_COUNT);
+
+    /**
+     * The last snapshot handed out, which the next one shares its unchanged values with.
+     */
+    private final AtomicReference<VariableSnapshot> snapshot = new AtomicReference<>(VariableSnapshot.EMPTY);
+
+    /**
+     * Bitmask of the defined slots.
+     */
+    private volatile int defined;
+    //endregion
+
+    //region Public Methods
+    @Override
+    public int get(int slot) {
+        checkDefined(slot);
+        return this.values.get(slot);
+    }
+
+    @Override
+    public void set(int slot, int value) {
+        this.values.set(slot, value);
+        int bit = 1 << slot;
+        if ((this.defined & bit) == 0) {
+            DEFINED.getAndBitwiseOr(this, bit);
+        }
+    }
+
+    @Override
+    public int getAndIncrement(int slot) {
+        checkDefined(slot);
+        return this.values.getAndIncrement(slot);
+    }
+
+    @Override
+    public int incrementAndGet(int slot) {
+        checkDefined(slot);
+        return this.values.incrementAndGet(slot);
+    }
+
+    @Override
+    public int addAndGet(int slot, int delta) {
+        checkDefined(slot);
+        return this.values.addAndGet(slot, delta);
+    }
+
+    @Override
+    public boolean isDefined(int slot) {
+        return (this.defined & (1 << slot)) != 0;
+    }
+
+    @Override
+    public int definedMask() {
+        return this.defined;
+    }
+
+    @Override
+    public void clear() {
+        this.defined = 0;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of the variables, built when called since writers never stop to commit.
+     * Each variable is read atomically, but the snapshot may see some of the writes of an
+     * expression running concurrently and not the others. Successive calls return the same
+     * snapshot while the variables do not change.
+     *
+     * @return the snapshot of the variables
+     */
+    @Override
+    public VariableSnapshot snapshot() {
+        int defined = this.defined;
+        int[] current = new int[VariableSlots.SLOT_COUNT];
+        for (int mask = defined; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            current[slot] = this.values.get(slot);
+        }
+        return this.snapshot.updateAndGet(previous -> previous.next(defined, current));
+    }
+
+    @Override
+    public long estimateSize() {
+        // The values, the defined mask and the snapshot reference
+        return HeapSize.object(2 * HeapSize.REFERENCE + Integer.BYTES)
+                + HeapSize.object(HeapSize.REFERENCE) + HeapSize.intArray(this.values.length())
+                + HeapSize.object(HeapSize.REFERENCE) + this.snapshot.get().estimateSize();
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Checks that the variable in the given slot is defined.
+     *
+     * @param slot the variable slot
+     * @throws UndefinedVariableException if the variable has not been assigned
+     */
+    private void checkDefined(int slot) {
+        if ((this.defined & (1 << slot)) == 0) {
+            char name = VariableSlots.nameOf(slot);
+            ERROR_LOG.error("The variable {} is undefined", name);
+            throw new UndefinedVariableException(name);
+        }
+    }
+    //endregion
+}
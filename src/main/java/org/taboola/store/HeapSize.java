@@ -0,0 +1,143 @@
+package org.taboola.store;
+
+import java.math.BigInteger;
+
+/**
+ * Estimates of the heap footprint of objects, in bytes, from the layout of a 64-bit JVM with
+ * compressed references: 12-byte object headers, 16-byte array headers, 4-byte references,
+ * and sizes rounded up to 8 bytes.
+ *
+ * The estimates are computed from the actual contents of the objects, such as the length of
+ * the arrays and of the big integers, so that they follow what each session really holds.
+ */
+public final class HeapSize {
+
+    //region Members
+    /**
+     * Size of the header of an object.
+     */
+    public static final int OBJECT_HEADER = 12;
+
+    /**
+     * Size of the header of an array, including its length.
+     */
+    public static final int ARRAY_HEADER = 16;
+
+    /**
+     * Size of a reference.
+     */
+    public static final int REFERENCE = 4;
+    //endregion
+
+    //region Constructors
+    private HeapSize() {
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the size of an object with fields of the given total size.
+     *
+     * @param fieldBytes the total size of the fields of the object
+     * @return the size of the object
+     */
+    public static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /**
+     * Returns the size of an {@code int[]}.
+     *
+     * @param length the length of the array
+     * @return the size of the array
+     */
+    public static long intArray(int length) {
+        return align(ARRAY_HEADER + (long) Integer.BYTES * length);
+    }
+
+    /**
+     * Returns the size of a {@code long[]}.
+     *
+     * @param length the length of the array
+     * @return the size of the array
+     */
+    public static long longArray(int length) {
+        return align(ARRAY_HEADER + (long) Long.BYTES * length);
+    }
+
+    /**
+     * Returns the size of a {@code boolean[]}.
+     *
+     * @param length the length of the array
+     * @return the size of the array
+     */
+    public static long booleanArray(int length) {
+        return align(ARRAY_HEADER + (long) length);
+    }
+
+    /**
+     * Returns the size of an array of references, not counting the objects referenced.
+     *
+     * @param length the length of the array
+     * @return the size of the array
+     */
+    public static long referenceArray(int length) {
+        return align(ARRAY_HEADER + (long) REFERENCE * length);
+    }
+
+    /**
+     * Returns the size of a string of single-byte characters.
+     *
+     * @param string the string, or {@code null}
+     * @return the size of the string and of its characters, or 0 for {@code null}
+     */
+    public static long string(String string) {
+        if (string == null) {
+            return 0;
+        }
+        return object(REFERENCE + Integer.BYTES + 2) + align(ARRAY_HEADER + (long) string.length());
+    }
+
+    /**
+     * Returns the size of a boxed number.
+     *
+     * @param number the number, or {@code null}
+     * @return the size of the number, or 0 for {@code null}
+     */
+    public static long number(Number number) {
+        return switch (number) {
+            case null -> 0;
+            case Integer ignored -> object(Integer.BYTES);
+            case Long ignored -> object(Long.BYTES);
+            case BigInteger big -> bigInteger(big);
+            default -> object(Long.BYTES);
+        };
+    }
+
+    /**
+     * Returns the size of a big integer and of its magnitude.
+     *
+     * @param value the big integer, or {@code null}
+     * @return the size of the big integer, or 0 for {@code null}
+     */
+    public static long bigInteger(BigInteger value) {
+        if (value == null) {
+            return 0;
+        }
+        // The sign, three cached values and the magnitude
+        return object(4 * Integer.BYTES + REFERENCE) + intArray((value.abs().bitLength() + 31) / 32);
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Rounds a size up to the 8-byte alignment of objects.
+     *
+     * @param size the unaligned size
+     * @return the aligned size
+     */
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+    //endregion
+}
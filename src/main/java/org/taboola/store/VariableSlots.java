@@ -0,0 +1,38 @@
+package org.taboola.store;
+
+/**
+ * Mapping between variable names and the dense slot indexes used by {@link VariableStore}.
+ *
+ * Variables are single lowercase letters, so slot {@code 0} is {@code a} and slot {@code 25} is {@code z};
+ * slot order is therefore also alphabetical order.
+ */
+public final class VariableSlots {
+
+    /**
+     * The number of distinct variables.
+     */
+    public static final int SLOT_COUNT = 26;
+
+    private VariableSlots() {
+    }
+
+    /**
+     * Resolves a variable name to its slot.
+     *
+     * @param name the variable name (a-z)
+     * @return the slot of the variable
+     */
+    public static int slotOf(char name) {
+        return name - 'a';
+    }
+
+    /**
+     * Returns the variable name stored in the given slot.
+     *
+     * @param slot the variable slot
+     * @return the variable name
+     */
+    public static char nameOf(int slot) {
+        return (char) ('a' + slot);
+    }
+}
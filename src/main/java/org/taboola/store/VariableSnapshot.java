@@ -0,0 +1,248 @@
+package org.taboola.store;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable, consistent view of the variables of a store as of a commit.
+ *
+ * A store publishes a new snapshot when a commit changed its variables, and keeps handing out the
+ * same one otherwise, so reading the latest snapshot is a single volatile read that never waits
+ * for, nor delays, the writers. Snapshots are copy-on-write: a new snapshot shares the boxed values
+ * of the variables that did not change with the previous one. The formatted string and the map of
+ * a snapshot are built on first use and then reused, so frequent polling between two changes costs
+ * nothing more than the read.
+ *
+ * Snapshots are safe to share between threads.
+ */
+public final class VariableSnapshot {
+
+    //region Members
+    /**
+     * The snapshot of a store with no variables defined.
+     */
+    public static final VariableSnapshot EMPTY = new VariableSnapshot(0, 0, new Number[VariableSlots.SLOT_COUNT]);
+
+    /**
+     * Number of changes published by the store before this snapshot.
+     */
+    private final long version;
+
+    /**
+     * Bitmask of the defined variables.
+     */
+    private final int defined;
+
+    /**
+     * The values of the defined variables, indexed by slot; never modified once published.
+     */
+    private final Number[] values;
+
+    /**
+     * The variables formatted like {@link VariableStore#format()}, built on first use.
+     */
+    private String formatted;
+
+    /**
+     * The variables by name, built on first use.
+     */
+    private Map<Character, Number> map;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code VariableSnapshot}.
+     *
+     * @param version the number of changes published before this snapshot
+     * @param defined the bitmask of the defined variables
+     * @param values  the values of the variables, indexed by slot; owned by the snapshot
+     */
+    private VariableSnapshot(long version, int defined, Number[] values) {
+        this.version = version;
+        this.defined = defined;
+        this.values = values;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the version of the snapshot, which grows by one with every change of the variables.
+     *
+     * @return the snapshot version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns a bitmask of the defined variables, where bit {@code i} is set if slot {@code i} is defined.
+     *
+     * @return the defined variables bitmask
+     */
+    public int definedMask() {
+        return this.defined;
+    }
+
+    /**
+     * Returns the number of defined variables.
+     *
+     * @return the variable count
+     */
+    public int size() {
+        return Integer.bitCount(this.defined);
+    }
+
+    /**
+     * Returns the value of a variable.
+     *
+     * @param variable the variable name
+     * @return the value of the variable, or {@code null} if it is not defined
+     */
+    public Number get(char variable) {
+        int slot = VariableSlots.slotOf(variable);
+        return slot >= 0 && slot < VariableSlots.SLOT_COUNT ? this.values[slot] : null;
+    }
+
+    /**
+     * Returns the variables by name, sorted by name.
+     *
+     * @return an unmodifiable map of the variables
+     */
+    public Map<Character, Number> toMap() {
+        Map<Character, Number> variables = this.map;
+        if (variables == null) {
+            Map<Character, Number> sorted = new LinkedHashMap<>();
+            for (int mask = this.defined; mask != 0; mask &= mask - 1) {
+                int slot = Integer.numberOfTrailingZeros(mask);
+                sorted.put(VariableSlots.nameOf(slot), this.values[slot]);
+            }
+            // The unmodifiable wrapper only has final fields, so it may be published without synchronization
+            variables = Collections.unmodifiableMap(sorted);
+            this.map = variables;
+        }
+        return variables;
+    }
+
+    /**
+     * Returns the variables formatted as a comma-separated list sorted by name
+     * and enclosed in parentheses (e.g., "(a=1,b=2)").
+     *
+     * @return a formatted string of variables and their values
+     */
+    public String format() {
+        String string = this.formatted;
+        if (string == null) {
+            StringBuilder builder = new StringBuilder().append('(');
+            for (int mask = this.defined; mask != 0; mask &= mask - 1) {
+                int slot = Integer.numberOfTrailingZeros(mask);
+                if (builder.length() > 1) {
+                    builder.append(',');
+                }
+                builder.append(VariableSlots.nameOf(slot)).append('=').append(this.values[slot]);
+            }
+            string = builder.append(')').toString();
+            this.formatted = string;
+        }
+        return string;
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    /**
+     * Estimates the heap footprint of the snapshot, of its boxed values, and of its string and map
+     * if they were built, in bytes; see {@link HeapSize}. The empty snapshot is shared, and counts for nothing.
+     *
+     * @return the estimated size of the snapshot
+     */
+    public long estimateSize() {
+        if (this == EMPTY) {
+            return 0;
+        }
+        // The version, the defined mask, the values, the string and the map
+        long size = HeapSize.object(Long.BYTES + Integer.BYTES + 3 * HeapSize.REFERENCE)
+                + HeapSize.referenceArray(this.values.length);
+        for (Number value : this.values) {
+            size += HeapSize.number(value);
+        }
+        size += HeapSize.string(this.formatted);
+        if (this.map != null) {
+            // The map, its table, and an entry per variable; the boxed names are cached by Character
+            size += HeapSize.object(8 * HeapSize.REFERENCE) + HeapSize.referenceArray(2 * VariableSlots.SLOT_COUNT)
+                    + this.map.size() * HeapSize.object(Integer.BYTES + 5 * HeapSize.REFERENCE);
+        }
+        return size;
+    }
+    //endregion
+
+    //region Package-Private Methods
+    /**
+     * Returns the snapshot following this one for the given {@code int} variables.
+     *
+     * @param defined the bitmask of the defined variables
+     * @param values  the values of the variables, indexed by slot
+     * @return this snapshot if the variables did not change, otherwise a new snapshot
+     */
+    VariableSnapshot next(int defined, int[] values) {
+        Number[] copy = defined == this.defined ? null : copy(defined);
+        for (int mask = defined; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            if (!(this.values[slot] instanceof Integer previous) || previous != values[slot]) {
+                if (copy == null) {
+                    copy = copy(defined);
+                }
+                copy[slot] = values[slot];
+            }
+        }
+        return copy == null ? this : new VariableSnapshot(this.version + 1, defined, copy);
+    }
+
+    /**
+     * Returns the snapshot following this one for the given wide variables.
+     *
+     * @param defined    the bitmask of the defined variables
+     * @param values     the values of the variables that fit in a {@code long}, indexed by slot
+     * @param wideValues the values of the other variables, indexed by slot, or {@code null}
+     * @return this snapshot if the variables did not change, otherwise a new snapshot
+     */
+    VariableSnapshot next(int defined, long[] values, BigInteger[] wideValues) {
+        Number[] copy = defined == this.defined ? null : copy(defined);
+        for (int mask = defined; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            BigInteger wideValue = wideValues[slot];
+            Number previous = this.values[slot];
+            boolean unchanged = wideValue != null
+                    ? wideValue.equals(previous)
+                    : previous instanceof Long longValue && longValue == values[slot];
+            if (!unchanged) {
+                if (copy == null) {
+                    copy = copy(defined);
+                }
+                copy[slot] = wideValue != null ? wideValue : values[slot];
+            }
+        }
+        return copy == null ? this : new VariableSnapshot(this.version + 1, defined, copy);
+    }
+    //endregion
+
+    //region Private Methods
+    /**
+     * Copies the values of the variables that stay defined.
+     *
+     * @param defined the bitmask of the variables defined in the next snapshot
+     * @return a new array of values, indexed by slot
+     */
+    private Number[] copy(int defined) {
+        Number[] copy = new Number[VariableSlots.SLOT_COUNT];
+        for (int mask = defined & this.defined; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            copy[slot] = this.values[slot];
+        }
+        return copy;
+    }
+    //endregion
+}
@@ -0,0 +1,167 @@
+package org.taboola.store;
+
+import org.taboola.exceptions.UndefinedVariableException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Storage of variable values, addressed by slot rather than by name.
+ *
+ * Variable names are resolved to slots once, when an expression is parsed
+ * (see {@link VariableSlots}), so evaluation only deals with primitive slot indexes
+ * and values.
+ */
+public interface VariableStore {
+
+    /**
+     * Returns the value of the variable in the given slot.
+     *
+     * @param slot the variable slot
+     * @return the current value of the variable
+     * @throws UndefinedVariableException if the variable has not been assigned
+     */
+    int get(int slot);
+
+    /**
+     * Assigns a value to the variable in the given slot, defining it if needed.
+     *
+     * @param slot  the variable slot
+     * @param value the new value
+     */
+    void set(int slot, int value);
+
+    /**
+     * Increments the variable in the given slot and returns its previous value (e.g., x++).
+     *
+     * @param slot the variable slot
+     * @return the value before incrementing
+     * @throws UndefinedVariableException if the variable has not been assigned
+     */
+    int getAndIncrement(int slot);
+
+    /**
+     * Increments the variable in the given slot and returns its new value (e.g., ++x).
+     *
+     * @param slot the variable slot
+     * @return the value after incrementing
+     * @throws UndefinedVariableException if the variable has not been assigned
+     */
+    int incrementAndGet(int slot);
+
+    /**
+     * Adds a value to the variable in the given slot and returns its new value (e.g., x += 2).
+     *
+     * @param slot  the variable slot
+     * @param delta the value to add
+     * @return the value after adding
+     * @throws UndefinedVariableException if the variable has not been assigned
+     */
+    default int addAndGet(int slot, int delta) {
+        int value = get(slot) + delta;
+        set(slot, value);
+        return value;
+    }
+
+    /**
+     * Checks whether the variable in the given slot has been assigned.
+     *
+     * @param slot the variable slot
+     * @return true if the variable is defined, otherwise false
+     */
+    boolean isDefined(int slot);
+
+    /**
+     * Returns a bitmask of the defined variables, where bit {@code i} is set if slot {@code i} is defined.
+     *
+     * @return the defined variables bitmask
+     */
+    int definedMask();
+
+    /**
+     * Removes all variables from the store.
+     */
+    void clear();
+
+    /**
+     * Checks whether the store may be read and written by any number of threads at once, with
+     * increments and additions applied as atomic read-modify-write operations.
+     *
+     * @return true if the store is safe for concurrent calculations, otherwise false
+     */
+    default boolean isConcurrent() {
+        return false;
+    }
+
+    /**
+     * Estimates the heap footprint of the store and of its last snapshot, in bytes; see {@link HeapSize}.
+     * May be called from any thread, and is only approximate while the store is written.
+     *
+     * @return the estimated size of the store
+     */
+    long estimateSize();
+
+    /**
+     * Marks the end of a calculation. A durable store makes the changes since the previous
+     * commit durable; the in-memory stores do nothing.
+     *
+     * @throws java.io.UncheckedIOException if the changes cannot be written
+     */
+    default void commit() {
+    }
+
+    /**
+     * Returns an immutable snapshot of the variables as of the last commit.
+     *
+     * The default implementation copies the current variables, and must not run concurrently
+     * with writes; stores that publish their snapshots on commit return them without copying
+     * and can be read from any thread.
+     *
+     * @return the snapshot of the variables
+     */
+    default VariableSnapshot snapshot() {
+        int[] values = new int[VariableSlots.SLOT_COUNT];
+        int defined = definedMask();
+        for (int mask = defined; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            values[slot] = get(slot);
+        }
+        return VariableSnapshot.EMPTY.next(defined, values);
+    }
+
+    /**
+     * Returns a new map containing all defined variable names and their values.
+     *
+     * @return a map of variable names to values
+     */
+    default Map<Character, Integer> toMap() {
+        Map<Character, Integer> variables = new HashMap<>();
+        int mask = definedMask();
+        for (int slot = 0; slot < VariableSlots.SLOT_COUNT; slot++) {
+            if ((mask & (1 << slot)) != 0) {
+                variables.put(VariableSlots.nameOf(slot), get(slot));
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Returns all defined variables formatted as a comma-separated list sorted by name
+     * and enclosed in parentheses (e.g., "(a=1,b=2)"). Slots are ordered by name, so no sorting is needed.
+     *
+     * @return a formatted string of variables and their values
+     */
+    default String format() {
+        StringBuilder builder = new StringBuilder().append('(');
+        int mask = definedMask();
+        for (int slot = 0; slot < VariableSlots.SLOT_COUNT; slot++) {
+            if ((mask & (1 << slot)) != 0) {
+                if (builder.length() > 1) {
+                    builder.append(',');
+                }
+                builder.append(VariableSlots.nameOf(slot)).append('=').append(get(slot));
+            }
+        }
+        return builder.append(')').toString();
+    }
+}
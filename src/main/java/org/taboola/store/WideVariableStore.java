@@ -0,0 +1,207 @@
+package org.taboola.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.logging.RateLimitedLogger;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Storage of the variables of the wide numeric modes, addressed by slot like {@link VariableStore}.
+ *
+ * Values are kept in a dense {@code long[]}; only values that do not fit in a {@code long}
+ * are kept as {@link BigInteger}s, in a side array that stays empty in the common case.
+ *
+ * The store is not thread-safe, except for {@link #snapshot()}: each {@link #commit()} publishes
+ * an immutable {@link VariableSnapshot} that any thread may read without blocking the writer.
+ */
+@Slf4j
+public class WideVariableStore {
+
+    //region Members
+    /**
+     * Logs undefined variables, at most ten times per second.
+     */
+    private static final RateLimitedLogger ERROR_LOG = new RateLimitedLogger(log, 10, Duration.ofSeconds(1));
+
+    /**
+     * The values of the variables that fit in a {@code long}, indexed by slot.
+     */
+    private final long[] values = new long[VariableSlots.SLOT_COUNT];
+
+    /**
+     * The values of the variables that do not fit in a {@code long}, indexed by slot; {@code null} otherwise.
+     */
+    private final BigInteger[] wideValues = new BigInteger[VariableSlots.SLOT_COUNT];
+
+    /**
+     * Bitmask of the defined slots.
+     */
+    private int defined;
+
+    /**
+     * Bitmask of the slots holding a value in {@code wideValues}.
+     */
+    private int wide;
+
+    /**
+     * The variables as of the last commit, read by any thread without locking.
+     */
+    private volatile VariableSnapshot snapshot = VariableSnapshot.EMPTY;
+    //endregion
+
+    //region Public Methods
+    /**
+     * Returns the value of the variable in the given slot, if it fits in a {@code long}.
+     *
+     * @param slot the variable slot
+     * @return the value of the variable, or 0 if it is wide (see {@link #getWide(int)})
+     * @throws UndefinedVariableException if the variable has not been assigned
+     */
+    public long get(int slot) {
+        if ((this.defined & (1 << slot)) == 0) {
+            char name = VariableSlots.nameOf(slot);
+            ERROR_LOG.error("The variable {} is undefined", name);
+            throw new UndefinedVariableException(name);
+        }
+        return this.values[slot];
+    }
+
+    /**
+     * Returns the value of the variable in the given slot, if it does not fit in a {@code long}.
+     *
+     * @param slot the variable slot
+     * @return the value of the variable, or {@code null} if it fits in a {@code long} or is undefined
+     */
+    public BigInteger getWide(int slot) {
+        return (this.wide & (1 << slot)) != 0 ? this.wideValues[slot] : null;
+    }
+
+    /**
+     * Assigns a value to the variable in the given slot, defining it if needed.
+     *
+     * @param slot  the variable slot
+     * @param value the new value
+     */
+    public void set(int slot, long value) {
+        this.values[slot] = value;
+        if ((this.wide & (1 << slot)) != 0) {
+            this.wideValues[slot] = null;
+            this.wide &= ~(1 << slot);
+        }
+        this.defined |= 1 << slot;
+    }
+
+    /**
+     * Assigns a value to the variable in the given slot, defining it if needed.
+     * The value is stored as a {@code long} if it fits in one.
+     *
+     * @param slot  the variable slot
+     * @param value the new value
+     */
+    public void set(int slot, BigInteger value) {
+        if (value.bitLength() < Long.SIZE) {
+            set(slot, value.longValue());
+            return;
+        }
+        this.values[slot] = 0;
+        this.wideValues[slot] = value;
+        this.wide |= 1 << slot;
+        this.defined |= 1 << slot;
+    }
+
+    /**
+     * Returns a bitmask of the defined variables, where bit {@code i} is set if slot {@code i} is defined.
+     *
+     * @return the defined variables bitmask
+     */
+    public int definedMask() {
+        return this.defined;
+    }
+
+    /**
+     * Removes all variables from the store.
+     */
+    public void clear() {
+        for (int mask = this.wide; mask != 0; mask &= mask - 1) {
+            this.wideValues[Integer.numberOfTrailingZeros(mask)] = null;
+        }
+        this.defined = 0;
+        this.wide = 0;
+    }
+
+    /**
+     * Publishes a new snapshot of the variables if they changed since the last commit.
+     */
+    public void commit() {
+        this.snapshot = this.snapshot.next(this.defined, this.values, this.wideValues);
+    }
+
+    /**
+     * Returns the snapshot published by the last commit, without copying; safe to call from any thread.
+     *
+     * @return the snapshot of the variables as of the last commit
+     */
+    public VariableSnapshot snapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Returns a new map containing all defined variable names and their values,
+     * as {@link Long}s or, for the values that do not fit in one, {@link BigInteger}s.
+     *
+     * @return a map of variable names to values
+     */
+    public Map<Character, Number> toMap() {
+        Map<Character, Number> variables = new HashMap<>();
+        for (int mask = this.defined; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            BigInteger wideValue = getWide(slot);
+            variables.put(VariableSlots.nameOf(slot), wideValue != null ? wideValue : this.values[slot]);
+        }
+        return variables;
+    }
+
+    /**
+     * Returns all defined variables formatted like {@link VariableStore#format()} (e.g., "(a=1,b=2)").
+     *
+     * @return a formatted string of variables and their values
+     */
+    public String format() {
+        StringBuilder builder = new StringBuilder().append('(');
+        for (int mask = this.defined; mask != 0; mask &= mask - 1) {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(VariableSlots.nameOf(slot)).append('=');
+            BigInteger wideValue = getWide(slot);
+            if (wideValue != null) {
+                builder.append(wideValue);
+            } else {
+                builder.append(this.values[slot]);
+            }
+        }
+        return builder.append(')').toString();
+    }
+
+    /**
+     * Estimates the heap footprint of the store, of its big integers and of its last snapshot, in bytes;
+     * see {@link HeapSize}. May be called from any thread, and is only approximate while the store is written.
+     *
+     * @return the estimated size of the store
+     */
+    public long estimateSize() {
+        // The two arrays, the defined and wide masks and the snapshot
+        long size = HeapSize.object(3 * HeapSize.REFERENCE + 2 * Integer.BYTES)
+                + HeapSize.longArray(this.values.length) + HeapSize.referenceArray(this.wideValues.length);
+        for (BigInteger wideValue : this.wideValues) {
+            size += HeapSize.bigInteger(wideValue);
+        }
+        return size + this.snapshot.estimateSize();
+    }
+    //endregion
+}
@@ -0,0 +1,11 @@
+package org.taboola.web;
+
+import java.util.List;
+
+/**
+ * Body of a request evaluating a block of expressions in one round trip.
+ *
+ * @param expressions the expressions to evaluate, in order
+ */
+public record BatchRequest(List<String> expressions) {
+}
@@ -0,0 +1,12 @@
+package org.taboola.web;
+
+import java.util.List;
+
+/**
+ * Body of the response to a batch evaluation.
+ *
+ * @param results   the outcome of each expression, in request order
+ * @param variables the variables of the session after the batch, formatted as {@code (a=1,b=2)}
+ */
+public record BatchResponse(List<EvaluationResponse> results, String variables) {
+}
@@ -0,0 +1,190 @@
+package org.taboola.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.taboola.block.BlockResult;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.session.SessionManager;
+import org.taboola.session.SessionStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP entry point of the calculator.
+ *
+ * Clients open a session, submit expressions to it one at a time or as a whole block,
+ * and read back its variables either as JSON or in the {@code (a=1,b=2)} text format.
+ */
+@RestController
+@RequestMapping("/sessions")
+public class CalculatorController {
+
+    //region Members
+    /**
+     * The manager of the calculator sessions.
+     */
+    private final SessionManager sessions;
+    //endregion
+
+    //region Constructors
+    /**
+     * Constructs a new {@code CalculatorController}.
+     *
+     * @param sessions the manager of the calculator sessions
+     */
+    public CalculatorController(SessionManager sessions) {
+        this.sessions = sessions;
+    }
+    //endregion
+
+    //region Public Methods
+    /**
+     * Opens a new session.
+     *
+     * @return the {@code 201} response holding the session identifier
+     */
+    @PostMapping
+    public ResponseEntity<SessionResponse> createSession() {
+        String id = sessions.create().getId();
+        return ResponseEntity.created(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").build(id))
+                .body(new SessionResponse(id));
+    }
+
+    /**
+     * Evaluates a single expression in a session.
+     *
+     * @param id      the session identifier
+     * @param request the expression to evaluate
+     * @return the value of the expression
+     */
+    @PostMapping("/{id}/expressions")
+    public EvaluationResponse evaluate(@PathVariable String id, @RequestBody ExpressionRequest request) {
+        String expression = request.expression();
+        if (expression == null) {
+            throw new InvalidExpression();
+        }
+        Number value = sessions.execute(id, calculator -> calculator.calculateNumber(expression));
+        return EvaluationResponse.success(expression, value);
+    }
+
+    /**
+     * Evaluates a block of expressions in a session, in one round trip.
+     *
+     * Every expression is evaluated even if an earlier one fails, exactly as the
+     * lines of a block typed in the command line, and its outcome is reported in order.
+     *
+     * @param id      the session identifier
+     * @param request the expressions to evaluate
+     * @return the outcome of each expression and the resulting variables
+     */
+    @PostMapping("/{id}/expressions/batch")
+    public BatchResponse evaluateBatch(@PathVariable String id, @RequestBody BatchRequest request) {
+        List<String> expressions = request.expressions() != null ? request.expressions() : List.of();
+        if (expressions.contains(null)) {
+            throw new InvalidExpression();
+        }
+        return sessions.execute(id, calculator -> {
+            BlockResult result = calculator.calculateBlock(expressions);
+            List<EvaluationResponse> results = new ArrayList<>(result.size());
+            for (int line = 0; line < result.size(); line++) {
+                results.add(result.isSuccess(line)
+                        ? EvaluationResponse.success(expressions.get(line), result.getNumber(line))
+                        : EvaluationResponse.failure(expressions.get(line), result.getError(line)));
+            }
+            return new BatchResponse(results, calculator.getVariablesAsString());
+        });
+    }
+
+    /**
+     * Binds a variable of a session to a live formula, recalculated whenever its inputs change.
+     *
+     * @param id      the session identifier
+     * @param request the formula, such as {@code b = a + 2}
+     * @return the current value of the variable
+     */
+    @PostMapping("/{id}/formulas")
+    public EvaluationResponse bindFormula(@PathVariable String id, @RequestBody ExpressionRequest request) {
+        String expression = request.expression();
+        if (expression == null) {
+            throw new InvalidExpression();
+        }
+        Number value = sessions.execute(id, calculator -> calculator.bind(expression));
+        return EvaluationResponse.success(expression, value);
+    }
+
+    /**
+     * Returns the live formulas of a session.
+     *
+     * @param id the session identifier
+     * @return the formula expressions by variable name
+     */
+    @GetMapping("/{id}/formulas")
+    public Map<Character, String> getFormulas(@PathVariable String id) {
+        return sessions.execute(id, calculator -> calculator.getFormulas());
+    }
+
+    /**
+     * Removes the formula of a variable of a session; the variable keeps its current value.
+     *
+     * @param id       the session identifier
+     * @param variable the variable name
+     * @return {@code 204} if the formula was removed, {@code 404} if the variable had no formula
+     */
+    @DeleteMapping("/{id}/formulas/{variable}")
+    public ResponseEntity<Void> unbindFormula(@PathVariable String id, @PathVariable char variable) {
+        boolean removed = sessions.execute(id, calculator -> calculator.unbind(variable));
+        return removed ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Returns the variables of a session as a JSON object, as of its last completed calculation.
+     * Reads a snapshot of the variables, so it never waits for the calculations of the session.
+     *
+     * @param id the session identifier
+     * @return the variables by name
+     */
+    @GetMapping(path = "/{id}/variables", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<Character, Number> getVariables(@PathVariable String id) {
+        return sessions.get(id).getSnapshot().toMap();
+    }
+
+    /**
+     * Returns the variables of a session in the {@code (a=1,b=2)} format printed by the command line,
+     * as of its last completed calculation. Reads a snapshot of the variables, so it never waits
+     * for the calculations of the session.
+     *
+     * @param id the session identifier
+     * @return the formatted variables
+     */
+    @GetMapping(path = "/{id}/variables", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String getVariablesAsString(@PathVariable String id) {
+        return sessions.get(id).getSnapshot().format();
+    }
+
+    /**
+     * Closes a session.
+     *
+     * @param id the session identifier
+     */
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void deleteSession(@PathVariable String id) {
+        sessions.close(id);
+    }
+
+    /**
+     * Returns the session counters: open, created, closed, expired and evicted sessions, and their memory.
+     *
+     * @return the session statistics
+     */
+    @GetMapping("/stats")
+    public SessionStats getStats() {
+        return sessions.getStats();
+    }
+    //endregion
+}
@@ -0,0 +1,52 @@
+package org.taboola.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.exceptions.SessionNotFoundException;
+
+/**
+ * Maps calculator exceptions to HTTP responses: unknown sessions to {@code 404},
+ * and invalid expressions, undefined variables or operations the sessions do not support to {@code 400}.
+ * Errors are always written as JSON, even to clients asking for the text format.
+ */
+@RestControllerAdvice
+public class CalculatorExceptionHandler {
+
+    /**
+     * Handles requests targeting a session that does not exist.
+     *
+     * @param e the exception
+     * @return the {@code 404} response
+     */
+    @ExceptionHandler(SessionNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleSessionNotFound(SessionNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(ErrorResponse.of(e));
+    }
+
+    /**
+     * Handles expressions that could not be evaluated.
+     *
+     * @param e the exception
+     * @return the {@code 400} response
+     */
+    @ExceptionHandler(ExpressionCalculatorException.class)
+    public ResponseEntity<ErrorResponse> handleCalculatorException(ExpressionCalculatorException e) {
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(ErrorResponse.of(e));
+    }
+
+    /**
+     * Handles operations the calculator of a session does not support, such as formulas on concurrent sessions.
+     *
+     * @param e the exception
+     * @return the {@code 400} response
+     */
+    @ExceptionHandler(UnsupportedOperationException.class)
+    public ResponseEntity<ErrorResponse> handleUnsupportedOperation(UnsupportedOperationException e) {
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                .body(new ErrorResponse(e.getMessage(), null, null));
+    }
+}
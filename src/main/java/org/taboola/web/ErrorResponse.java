@@ -0,0 +1,47 @@
+package org.taboola.web;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.taboola.enums.InvalidExpressionReason;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.exceptions.UndefinedVariableException;
+
+/**
+ * Body of an error response.
+ *
+ * @param error    the description of the error
+ * @param reason   the reason an invalid expression was rejected, if known
+ * @param position the character offset of the problem in an invalid expression, if known
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ErrorResponse(String error, InvalidExpressionReason reason, Integer position) {
+
+    /**
+     * Builds the error response for the given exception.
+     *
+     * @param e the exception
+     * @return the response
+     */
+    public static ErrorResponse of(ExpressionCalculatorException e) {
+        if (e instanceof InvalidExpression invalid && invalid.getReason() != null) {
+            return new ErrorResponse(describe(e), invalid.getReason(), invalid.getPosition());
+        }
+        return new ErrorResponse(describe(e), null, null);
+    }
+
+    /**
+     * Returns a human-readable description of the given exception.
+     *
+     * @param e the exception
+     * @return the description
+     */
+    static String describe(ExpressionCalculatorException e) {
+        if (e instanceof InvalidExpression) {
+            return e.getMessage() != null ? "invalid expression: " + e.getMessage() : "invalid expression";
+        }
+        if (e instanceof UndefinedVariableException) {
+            return "undefined variable";
+        }
+        return e.getMessage();
+    }
+}
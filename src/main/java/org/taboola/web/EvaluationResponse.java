@@ -0,0 +1,42 @@
+package org.taboola.web;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.taboola.enums.InvalidExpressionReason;
+import org.taboola.exceptions.ExpressionCalculatorException;
+
+/**
+ * The outcome of evaluating one expression: either its value or the error it raised.
+ *
+ * @param expression the evaluated expression
+ * @param value      the result of the expression, or {@code null} if it failed
+ * @param error      the description of the error, or {@code null} if it succeeded
+ * @param reason     the reason an invalid expression was rejected, if known
+ * @param position   the character offset of the problem in an invalid expression, if known
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record EvaluationResponse(String expression, Number value, String error,
+                                 InvalidExpressionReason reason, Integer position) {
+
+    /**
+     * Builds the response of an expression that was evaluated successfully.
+     *
+     * @param expression the evaluated expression
+     * @param value      the result of the expression
+     * @return the response
+     */
+    public static EvaluationResponse success(String expression, Number value) {
+        return new EvaluationResponse(expression, value, null, null, null);
+    }
+
+    /**
+     * Builds the response of an expression that could not be evaluated.
+     *
+     * @param expression the expression
+     * @param e          the error raised while evaluating it
+     * @return the response
+     */
+    public static EvaluationResponse failure(String expression, ExpressionCalculatorException e) {
+        ErrorResponse error = ErrorResponse.of(e);
+        return new EvaluationResponse(expression, null, error.error(), error.reason(), error.position());
+    }
+}
@@ -0,0 +1,9 @@
+package org.taboola.web;
+
+/**
+ * Body of a request evaluating a single expression.
+ *
+ * @param expression the expression to evaluate
+ */
+public record ExpressionRequest(String expression) {
+}
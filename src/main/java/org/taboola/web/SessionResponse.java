@@ -0,0 +1,9 @@
+package org.taboola.web;
+
+/**
+ * Body of the response to the creation of a session.
+ *
+ * @param id the identifier of the new session
+ */
+public record SessionResponse(String id) {
+}
@@ -0,0 +1,133 @@
+package taboola;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.ExecutionMode;
+import org.taboola.enums.NumericMode;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.metrics.CalculatorMetrics;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.session.SessionManager;
+import org.taboola.store.AtomicVariableStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AtomicVariableStoreTest {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 20_000;
+
+    private static ExpressionCalculator calculator(CalculatorProperties properties) {
+        return new ExpressionCalculator(new ExpressionPlanCache(new ExpressionValidator(), properties),
+                new ParallelBlockExecutor(properties), CalculatorMetrics.NOOP, new AtomicVariableStore());
+    }
+
+    private static void runConcurrently(Runnable work) {
+        List<CompletableFuture<Void>> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < ITERATIONS; j++) {
+                    work.run();
+                }
+            }));
+        }
+        CompletableFuture.allOf(threads.toArray(CompletableFuture[]::new)).join();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionMode.class)
+    void shouldNotLoseConcurrentUpdates(ExecutionMode executionMode) {
+        CalculatorProperties properties = new CalculatorProperties();
+        properties.setExecutionMode(executionMode);
+        properties.setCompileThreshold(1);
+        ExpressionCalculator calculator = calculator(properties);
+        calculator.calculate("a = 0");
+        calculator.calculate("b = 0");
+        calculator.calculate("c = 0");
+
+        runConcurrently(() -> {
+            calculator.calculate("a++");
+            calculator.calculate("b += 2");
+            calculator.calculate("c += a * 0 + 3");
+        });
+
+        int total = THREADS * ITERATIONS;
+        assertEquals("(a=" + total + ",b=" + 2 * total + ",c=" + 3 * total + ")", calculator.getVariablesAsString());
+    }
+
+    @Test
+    void shouldNotLoseUpdatesOfParallelBlocks() {
+        CalculatorProperties properties = new CalculatorProperties();
+        properties.setParallelBlockThreshold(2);
+        ExpressionCalculator calculator = calculator(properties);
+        calculator.calculate("a = 0");
+        calculator.calculate("b = 0");
+
+        runConcurrently(() -> calculator.calculateBlock(List.of("a++", "b += 5")));
+
+        int total = THREADS * ITERATIONS;
+        assertEquals("(a=" + total + ",b=" + 5 * total + ")", calculator.getSnapshot().format());
+    }
+
+    @Test
+    void shouldKeepSequentialSemantics() {
+        ExpressionCalculator calculator = calculator(new CalculatorProperties());
+        calculator.calculate("a = 5");
+
+        assertEquals(10, calculator.calculate("a += a++"), "the variable is read before the right-hand side");
+        assertEquals(10, calculator.calculate("b = a"));
+        assertThrows(UndefinedVariableException.class, () -> calculator.calculate("x += a++"));
+        assertEquals("(a=10,b=10)", calculator.getVariablesAsString(), "an undefined variable fails before any side effect");
+    }
+
+    @Test
+    void shouldRejectFormulas() {
+        ExpressionCalculator calculator = calculator(new CalculatorProperties());
+        calculator.calculate("a = 1");
+
+        assertTrue(calculator.isConcurrent());
+        assertThrows(UnsupportedOperationException.class, () -> calculator.bind("b = a + 1"));
+    }
+
+    @Test
+    void shouldRunConcurrentSessionsWithoutLock() {
+        CalculatorProperties properties = new CalculatorProperties();
+        properties.setConcurrentSessions(true);
+        SessionManager manager = newManager(properties);
+        String id = manager.create().getId();
+        manager.execute(id, calculator -> calculator.calculate("a = 0"));
+
+        runConcurrently(() -> manager.execute(id, calculator -> calculator.calculate("a += 1")));
+
+        assertEquals(THREADS * ITERATIONS, manager.get(id).getSnapshot().get('a'));
+    }
+
+    @Test
+    void shouldRejectUnsupportedConcurrentSessions() {
+        CalculatorProperties wide = new CalculatorProperties();
+        wide.setConcurrentSessions(true);
+        wide.setNumericMode(NumericMode.LONG);
+        CalculatorProperties unoptimized = new CalculatorProperties();
+        unoptimized.setConcurrentSessions(true);
+        unoptimized.setOptimize(false);
+
+        assertThrows(IllegalStateException.class, () -> newManager(wide));
+        assertThrows(IllegalStateException.class, () -> newManager(unoptimized));
+    }
+
+    private static SessionManager newManager(CalculatorProperties properties) {
+        Ticker ticker = () -> 0;
+        return new SessionManager(properties, new ExpressionPlanCache(new ExpressionValidator(), properties),
+                new ParallelBlockExecutor(properties), CalculatorMetrics.NOOP, ticker);
+    }
+}
@@ -0,0 +1,74 @@
+package taboola;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.taboola.ExpressionValidator;
+import org.taboola.compiler.BytecodeCompiler;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.ExecutionMode;
+import org.taboola.evaluator.Evaluable;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.ArrayVariableStore;
+import org.taboola.store.VariableStore;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static taboola.TestFixtures.newStore;
+
+public class BytecodeCompilerTest {
+
+    private ExpressionPlanCache planCache;
+    private BytecodeCompiler compiler;
+
+    @BeforeEach
+    void setUp() {
+        planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        compiler = new BytecodeCompiler();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "x = 1",
+            "x = 1000000 * 3 - 70000 + 200",
+            "x = (a + b) * c - 2",
+            "x = a++ + ++b * c++",
+            "c += a * b",
+            "x = y = a - b - c",
+            "a++",
+            "++b",
+            "x = 2147483647 + a"
+    })
+    void shouldMatchTreeEvaluation(String expression) {
+        Evaluable tree = planCache.getPlan(expression).getRoot();
+        Evaluable compiled = compiler.compile(tree);
+        VariableStore interpretedStore = newStore();
+        VariableStore compiledStore = newStore();
+
+        assertEquals(tree.eval(interpretedStore), compiled.eval(compiledStore), "Unexpected result for: " + expression);
+        assertEquals(interpretedStore.toMap(), compiledStore.toMap(), "Unexpected variables for: " + expression);
+    }
+
+    @Test
+    void shouldRaiseUndefinedVariable() {
+        Evaluable compiled = compiler.compile(planCache.getPlan("x = y + 1").getRoot());
+
+        assertThrows(UndefinedVariableException.class, () -> compiled.eval(new ArrayVariableStore()));
+    }
+
+    @Test
+    void shouldPromotePlanAfterThreshold() {
+        CalculatorProperties properties = new CalculatorProperties();
+        properties.setExecutionMode(ExecutionMode.BYTECODE);
+        properties.setCompileThreshold(3);
+        ExpressionPlan plan = new ExpressionPlanCache(new ExpressionValidator(), properties).getPlan("a++");
+        VariableStore store = newStore();
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(1 + i, plan.eval(store));
+            assertEquals(i >= 2, plan.isCompiled());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package taboola;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.metrics.CalculatorMetrics;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.session.SessionManager;
+import org.taboola.web.CalculatorController;
+import org.taboola.web.CalculatorExceptionHandler;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class CalculatorControllerTest {
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        CalculatorProperties properties = new CalculatorProperties();
+        SessionManager sessions = new SessionManager(properties,
+                new ExpressionPlanCache(new ExpressionValidator(), properties), new ParallelBlockExecutor(properties),
+                CalculatorMetrics.NOOP);
+        mockMvc = MockMvcBuilders.standaloneSetup(new CalculatorController(sessions))
+                .setControllerAdvice(new CalculatorExceptionHandler())
+                .build();
+    }
+
+    private String createSession() throws Exception {
+        String body = mockMvc.perform(post("/sessions"))
+                .andExpect(status().isCreated())
+                .andExpect(header().exists("Location"))
+                .andReturn().getResponse().getContentAsString();
+        return new ObjectMapper().readTree(body).get("id").asText();
+    }
+
+    @Test
+    void shouldEvaluateExpressionsInSession() throws Exception {
+        String id = createSession();
+
+        mockMvc.perform(post("/sessions/{id}/expressions", id)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"expression\": \"a = 1\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.value").value(1));
+        mockMvc.perform(post("/sessions/{id}/expressions", id)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"expression\": \"b = a++ + 2\"}"))
+                .andExpect(jsonPath("$.value").value(3));
+
+        mockMvc.perform(get("/sessions/{id}/variables", id).accept(MediaType.TEXT_PLAIN))
+                .andExpect(status().isOk())
+                .andExpect(content().string("(a=2,b=3)"));
+        mockMvc.perform(get("/sessions/{id}/variables", id).accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.a").value(2))
+                .andExpect(jsonPath("$.b").value(3));
+    }
+
+    @Test
+    void shouldEvaluateBatch() throws Exception {
+        String id = createSession();
+
+        mockMvc.perform(post("/sessions/{id}/expressions/batch", id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"expressions\": [\"a = 1\", \"b = a + 2\", \"c = z\", \"d = = 1\", \"++a\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[1].value").value(3))
+                .andExpect(jsonPath("$.results[2].error").value("undefined variable"))
+                .andExpect(jsonPath("$.results[3].reason").value("MISSING_OPERAND"))
+                .andExpect(jsonPath("$.results[4].value").value(2))
+                .andExpect(jsonPath("$.variables").value("(a=2,b=3)"));
+    }
+
+    @Test
+    void shouldMapErrorsToStatusCodes() throws Exception {
+        String id = createSession();
+
+        mockMvc.perform(post("/sessions/{id}/expressions", id)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"expression\": \"a = 1 +\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.reason").value("MISSING_OPERAND"))
+                .andExpect(jsonPath("$.position").value(7));
+        mockMvc.perform(post("/sessions/{id}/expressions", id)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"expression\": \"a = b\"}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(delete("/sessions/{id}", id)).andExpect(status().isNoContent());
+        mockMvc.perform(get("/sessions/{id}/variables", id).accept(MediaType.TEXT_PLAIN))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").exists());
+    }
+
+    @Test
+    void shouldReportSessionStats() throws Exception {
+        createSession();
+        mockMvc.perform(delete("/sessions/{id}", createSession()));
+
+        mockMvc.perform(get("/sessions/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.activeSessions").value(1))
+                .andExpect(jsonPath("$.createdSessions").value(2))
+                .andExpect(jsonPath("$.closedSessions").value(1));
+    }
+}
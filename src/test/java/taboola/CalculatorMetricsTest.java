@@ -0,0 +1,70 @@
+package taboola;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.metrics.CalculatorMetrics;
+import org.taboola.metrics.MicrometerCalculatorMetrics;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CalculatorMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private ExpressionCalculator calculator;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        CalculatorMetrics metrics = new MicrometerCalculatorMetrics(registry);
+        CalculatorProperties properties = new CalculatorProperties();
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), properties, metrics);
+        calculator = new ExpressionCalculator(planCache, new ParallelBlockExecutor(properties), metrics);
+    }
+
+    private double failures(String type, String reason) {
+        return registry.get("calculator.failures").tag("type", type).tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void shouldTimeParsingOncePerExpression() {
+        calculator.calculate("a = 1");
+        calculator.calculate("a = 1");
+        calculator.calculate("b = a + 1");
+
+        assertEquals(2, registry.get("calculator.parse").timer().count());
+        assertEquals(3, registry.get("calculator.evaluation").timer().count());
+    }
+
+    @Test
+    void shouldCountFailuresByReason() {
+        assertThrows(InvalidExpression.class, () -> calculator.calculate("a = 1 +"));
+        assertThrows(InvalidExpression.class, () -> calculator.calculate("a = 1 +"));
+        assertThrows(InvalidExpression.class, () -> calculator.calculate("a = (1"));
+        assertThrows(UndefinedVariableException.class, () -> calculator.calculate("a = b"));
+
+        assertEquals(2, failures("invalid_expression", "MISSING_OPERAND"));
+        assertEquals(1, failures("invalid_expression", "UNBALANCED_PARENTHESES"));
+        assertEquals(1, failures("undefined_variable", "UNDEFINED_VARIABLE"));
+        assertEquals(0, failures("invalid_expression", "INVALID_CHARACTER"));
+    }
+
+    @Test
+    void shouldCountBlockFailures() {
+        calculator.calculateBlock(List.of("a = 1", "b = c", "d = = 1"));
+
+        assertEquals(1, registry.get("calculator.block").timer().count());
+        assertEquals(1, failures("undefined_variable", "UNDEFINED_VARIABLE"));
+        assertEquals(1, failures("invalid_expression", "MISSING_OPERAND"));
+        assertEquals(1, calculator.getVariableCount());
+    }
+}
@@ -0,0 +1,114 @@
+package taboola;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.taboola.CliLauncher;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.config.CalculatorRuntimeHints;
+import org.taboola.logging.ExpressionErrorLogger;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CliLauncherTest {
+
+    private static String run(List<String> errors, String input, String... args) throws IOException {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        CliLauncher launcher = new CliLauncher(planCache, (line, e) -> errors.add(line));
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true));
+        try {
+            launcher.run(args, new BufferedReader(new StringReader(input)));
+        } finally {
+            System.setOut(stdout);
+        }
+        // Logging goes to the standard output too in the tests
+        StringBuilder variables = new StringBuilder();
+        output.toString().lines().filter(line -> line.startsWith("(")).forEach(line -> variables.append(line).append('\n'));
+        return variables.toString();
+    }
+
+    @Test
+    void shouldRunTheStandardInputWithoutSpring() throws IOException {
+        List<String> errors = new ArrayList<>();
+
+        assertEquals("(a=1,b=3)\n(c=2)\n", run(errors, "a = 1\nb = a + 2\nx = y\n\nc = 2\n"));
+        assertEquals(List.of("x = y"), errors);
+    }
+
+    @Test
+    void shouldLogInvalidLinesOnceAndAtMostTenTimesPerSecond() throws IOException {
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        List<Logger> loggers = List.of((Logger) LoggerFactory.getLogger(ExpressionErrorLogger.class),
+                (Logger) LoggerFactory.getLogger(ExpressionValidator.class));
+        loggers.forEach(logger -> logger.addAppender(appender));
+        try {
+            ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+            new CliLauncher(planCache, new ExpressionErrorLogger())
+                    .run(new String[0], new BufferedReader(new StringReader("x = = 1\n".repeat(100))));
+        } finally {
+            loggers.forEach(logger -> logger.detachAppender(appender));
+        }
+
+        assertFalse(appender.list.isEmpty());
+        assertTrue(appender.list.size() <= 10, "logged " + appender.list.size() + " records");
+        assertTrue(appender.list.stream().allMatch(event -> event.getLoggerName().equals(ExpressionErrorLogger.class.getName())));
+    }
+
+    @Test
+    void shouldRunBatches() throws IOException {
+        List<String> errors = new ArrayList<>();
+
+        assertEquals("(a=1)\n(b=2)\n", run(errors, "a = 1\n\nb = 2\n", "--batch"));
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    void shouldParseTheCommandLine() {
+        assertEquals(Path.of("script.txt"), CliLauncher.scriptFile(new String[]{"--batch", "--file=script.txt"}));
+        assertNull(CliLauncher.scriptFile(new String[]{"--batch"}));
+        assertTrue(CliLauncher.isBatch(new String[]{"--file=script.txt", "--batch"}));
+    }
+
+    @Test
+    void shouldRegisterNativeImageHints() {
+        RuntimeHints hints = new RuntimeHints();
+        new CalculatorRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onType(ExpressionCalculator.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(ExpressionValidator.class).test(hints));
+    }
+
+    @Test
+    void shouldHintTheLoggingOfTheCliNativeImage() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode reflection = mapper.readTree(Path.of("src/cli/native-image/reflect-config.json").toFile());
+        JsonNode resources = mapper.readTree(Path.of("src/cli/native-image/resource-config.json").toFile());
+
+        for (JsonNode type : reflection) {
+            assertDoesNotThrow(() -> Class.forName(type.get("name").asText()));
+        }
+        assertEquals("\\Qcli-logback.xml\\E", resources.at("/resources/includes/0/pattern").asText());
+        assertNotNull(getClass().getClassLoader().getResource("cli-logback.xml"));
+    }
+}
@@ -0,0 +1,89 @@
+package taboola;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.taboola.ExpressionValidator;
+import org.taboola.columnar.ColumnBatch;
+import org.taboola.columnar.ColumnarEvaluator;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.ArrayVariableStore;
+import org.taboola.store.VariableStore;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarEvaluatorTest {
+
+    private static final int ROWS = 2_500;
+
+    private final ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+    private final ColumnarEvaluator evaluator = new ColumnarEvaluator();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "r = a * b + c - 3 * a",
+            "r = 7 - a * (b - 2) * 65537",
+            "a = a * a * a * a * a + b",
+            "r = a++ + a + ++b * b",
+            "r = (a += b) * a + c",
+            "c += a++ * ++a - 1",
+            "r = 2 * 3 + 4",
+            "r = (s = a + 1) * s",
+            "++c",
+    })
+    void shouldMatchRowByRowEvaluation(String expression) {
+        Random random = new Random(expression.hashCode());
+        int[] a = random.ints(ROWS).toArray();
+        int[] b = random.ints(ROWS, -1000, 1000).toArray();
+        int[] c = random.ints(ROWS).toArray();
+        ColumnBatch batch = new ColumnBatch(ROWS).set('a', a).set('b', b).set('c', c);
+        int[] originalA = a.clone();
+
+        ExpressionPlan plan = planCache.getPlan(expression);
+        int[] result = evaluator.evaluate(plan, batch);
+
+        assertArrayEquals(originalA, a, "input columns are not modified");
+        for (int row = 0; row < ROWS; row++) {
+            VariableStore store = new ArrayVariableStore();
+            store.set(0, a[row]);
+            store.set(1, b[row]);
+            store.set(2, c[row]);
+            assertEquals(plan.eval(store), result[row], "result of row " + row);
+            for (char name : new char[]{'a', 'b', 'c', 'r', 's'}) {
+                int slot = name - 'a';
+                if (store.isDefined(slot)) {
+                    assertEquals(store.get(slot), batch.get(name)[row], name + " in row " + row);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldRejectUnboundVariablesBeforeEvaluating() {
+        ColumnBatch batch = new ColumnBatch(10).set('a', new int[10]);
+
+        UndefinedVariableException exception = assertThrows(UndefinedVariableException.class,
+                () -> evaluator.evaluate(planCache.getPlan("b = a++ + c"), batch));
+        assertEquals('c', exception.getVariable());
+        assertNull(batch.get('b'));
+    }
+
+    @Test
+    void shouldEvaluateEmptyAndConstantBatches() {
+        assertArrayEquals(new int[0], evaluator.evaluate(planCache.getPlan("x = 1"), new ColumnBatch(0)));
+
+        ColumnBatch batch = new ColumnBatch(3);
+        assertArrayEquals(new int[]{5, 5, 5}, evaluator.evaluate(planCache.getPlan("x = 2 + 3"), batch));
+        assertArrayEquals(new int[]{5, 5, 5}, batch.get('x'));
+    }
+
+    @Test
+    void shouldRejectColumnsOfTheWrongSize() {
+        assertThrows(IllegalArgumentException.class, () -> new ColumnBatch(3).set('a', new int[2]));
+    }
+}
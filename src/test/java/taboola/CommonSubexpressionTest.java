@@ -0,0 +1,161 @@
+package taboola;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.BlockResult;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.evaluator.AssignmentExpression;
+import org.taboola.evaluator.SharedExpression;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommonSubexpressionTest {
+
+    private static final String COMMON = "(a + b) * c - (a - b) * (c + 1) + a * b * c";
+
+    private static final String[] SUBEXPRESSIONS = {
+            COMMON, "a * b - c * (d + e) * (a - 1) + b * b - c", "(b - c) * (a + 2) * (d - e) * (e + a) + 1"
+    };
+
+    private static final String[] TEMPLATES = {
+            "%s = %s", "%s = %s + %s", "%s += %s", "%s++", "++%s", "%s = %s * %s++", "%s = %s - ++%s"
+    };
+
+    private ExpressionCalculator newCalculator(ExpressionPlanCache planCache) {
+        return new ExpressionCalculator(planCache, new ParallelBlockExecutor(ForkJoinPool.commonPool(), Integer.MAX_VALUE));
+    }
+
+    private static int common(int a, int b, int c) {
+        return (a + b) * c - (a - b) * (c + 1) + a * b * c;
+    }
+
+    private String variable(Random random) {
+        return String.valueOf((char) ('a' + random.nextInt(5)));
+    }
+
+    @Test
+    void shouldShareIdenticalSubexpressionsAcrossPlans() {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        ExpressionPlan first = planCache.getPlan("x = " + COMMON);
+        ExpressionPlan second = planCache.getPlan("y = 1 - (" + COMMON + ")");
+
+        SharedExpression shared = assertInstanceOf(SharedExpression.class, ((AssignmentExpression) first.getRoot()).getExpression());
+        assertSame(shared, ((SharedExpression) ((AssignmentExpression) second.getRoot()).getExpression()).getRight());
+        assertTrue(shared.isCommon());
+        assertArrayEquals(new SharedExpression[]{shared}, first.getCommonSubexpressions());
+        assertArrayEquals(new SharedExpression[]{shared}, second.getCommonSubexpressions());
+        assertEquals(9, shared.getSize());
+        assertEquals(0b111, shared.getReadMask());
+    }
+
+    @Test
+    void shouldOnlyCollectCommonSubexpressionsWorthCaching() {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        planCache.getPlan("y = (a + b) * c");
+        planCache.getPlan("y = " + COMMON);
+
+        assertEquals(0, planCache.getPlan("x = (a + b) * c").getCommonSubexpressions().length);
+        assertEquals(0, planCache.getPlan("x = " + COMMON.replaceFirst("a", "a++")).getCommonSubexpressions().length);
+        assertEquals(0, planCache.getPlan("x = " + COMMON.replace("+ 1", "+ 2")).getCommonSubexpressions().length);
+    }
+
+    @Test
+    void shouldFindSubexpressionsBecomingCommonAfterAPlanIsCached() {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        ExpressionCalculator calculator = newCalculator(planCache);
+        calculator.calculateBlock(List.of("a = 1", "b = 2", "c = 3"));
+        BlockResult alone = calculator.calculateBlock(List.of("x = " + COMMON));
+        assertEquals(0, planCache.getPlan("x = " + COMMON).getCommonSubexpressions().length);
+
+        BlockResult result = calculator.calculateBlock(List.of("x = " + COMMON, "y = 1 - (" + COMMON + ")"));
+
+        SharedExpression shared = (SharedExpression) ((AssignmentExpression) planCache.getPlan("x = " + COMMON).getRoot()).getExpression();
+        assertArrayEquals(new SharedExpression[]{shared}, planCache.getPlan("x = " + COMMON).getCommonSubexpressions());
+        assertEquals(common(1, 2, 3), alone.getValue(0));
+        assertEquals(common(1, 2, 3), result.getValue(0));
+        assertEquals(1 - common(1, 2, 3), result.getValue(1));
+    }
+
+    @Test
+    void shouldKeepTheCommonSubexpressionsOfPlansUntouchedByNewMarks() {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        ExpressionPlan plan = planCache.getPlan("x = " + COMMON);
+        planCache.getPlan("y = 1 - (" + COMMON + ")");
+        SharedExpression[] collected = plan.getCommonSubexpressions();
+
+        planCache.getPlan("x = " + SUBEXPRESSIONS[1]);
+        planCache.getPlan("y = 1 - (" + SUBEXPRESSIONS[1] + ")");
+
+        assertSame(collected, plan.getCommonSubexpressions());
+        assertEquals(1, planCache.getPlan("x = " + SUBEXPRESSIONS[1]).getCommonSubexpressions().length);
+    }
+
+    @Test
+    void shouldRecomputeSubexpressionsAfterTheirVariablesAreWritten() {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        ExpressionCalculator calculator = newCalculator(planCache);
+
+        BlockResult result = calculator.calculateBlock(List.of(
+                "x = " + COMMON, "a = 1", "b = 2", "c = 3",
+                "x = " + COMMON, "y = " + COMMON + " + x", "z = d",
+                "a++", "x = " + COMMON, "b += 2", "x = " + COMMON, "++c", "x = " + COMMON,
+                "c = " + COMMON + " + " + COMMON, "x = " + COMMON, "d = " + COMMON + " + (c += 1) + " + COMMON));
+
+        int c = 2 * common(2, 4, 4);
+        assertInstanceOf(UndefinedVariableException.class, result.getError(0));
+        assertEquals(common(1, 2, 3), result.getValue(4));
+        assertEquals(2 * common(1, 2, 3), result.getValue(5));
+        assertInstanceOf(UndefinedVariableException.class, result.getError(6));
+        assertEquals(common(2, 2, 3), result.getValue(8));
+        assertEquals(common(2, 4, 3), result.getValue(10));
+        assertEquals(common(2, 4, 4), result.getValue(12));
+        assertEquals(c, result.getValue(13));
+        assertEquals(common(2, 4, c), result.getValue(14));
+        assertEquals(common(2, 4, c) + c + 1 + common(2, 4, c + 1), result.getValue(15));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 7, 42, 2024})
+    void shouldMatchLineByLineEvaluation(long seed) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            String template = TEMPLATES[random.nextInt(TEMPLATES.length)];
+            String line = String.format(template, variable(random), variable(random), variable(random));
+            lines.add(line.replaceFirst("= ([a-e])$", "= " + SUBEXPRESSIONS[random.nextInt(SUBEXPRESSIONS.length)]));
+        }
+
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        ExpressionCalculator sequential = newCalculator(planCache);
+        List<Object> expected = new ArrayList<>();
+        for (String line : lines) {
+            try {
+                expected.add(sequential.calculate(line));
+            } catch (ExpressionCalculatorException e) {
+                expected.add(e.getClass());
+            }
+        }
+
+        ExpressionCalculator block = newCalculator(planCache);
+        BlockResult result = block.calculateBlock(lines);
+
+        for (int line = 0; line < lines.size(); line++) {
+            Object actual = result.isSuccess(line) ? (Object) result.getValue(line) : result.getError(line).getClass();
+            assertEquals(expected.get(line), actual, "line " + line + ": " + lines.get(line));
+        }
+        assertEquals(sequential.getVariablesAsString(), block.getVariablesAsString());
+    }
+}
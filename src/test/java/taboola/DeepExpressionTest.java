@@ -0,0 +1,105 @@
+package taboola;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.ExecutionMode;
+import org.taboola.enums.InvalidExpressionReason;
+import org.taboola.enums.NumericMode;
+import org.taboola.evaluator.EvaluableTree;
+import org.taboola.exceptions.ArithmeticOverflowException;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.optimizer.ExpressionBalancer;
+import org.taboola.parser.ExpressionLexer;
+import org.taboola.parser.TokenBuffer;
+import org.taboola.plan.ExpressionPlanCache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeepExpressionTest {
+
+    private static final int TERMS = 200_000;
+
+    private static ExpressionPlanCache planCache(NumericMode numericMode, ExecutionMode executionMode) {
+        CalculatorProperties properties = new CalculatorProperties();
+        properties.setNumericMode(numericMode);
+        properties.setExecutionMode(executionMode);
+        return new ExpressionPlanCache(new ExpressionValidator(), properties);
+    }
+
+    private static ExpressionCalculator calculator(NumericMode mode) {
+        return new ExpressionCalculator(planCache(mode, ExecutionMode.TREE));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionMode.class)
+    void shouldBalanceLongChains(ExecutionMode executionMode) {
+        ExpressionPlanCache planCache = planCache(NumericMode.INT, ExecutionMode.TREE);
+        ExpressionCalculator calculator = new ExpressionCalculator(planCache(NumericMode.INT, executionMode));
+        StringBuilder chain = new StringBuilder("x = a");
+        for (int term = 1; term < TERMS; term++) {
+            chain.append(term % 3 == 0 ? " - a * a" : " + a");
+        }
+        calculator.calculate("a = 3");
+
+        // A third of the terms are a - 9 instead of a
+        assertEquals(TERMS * 3 - (TERMS / 3) * 12, calculator.calculate(chain.toString()));
+        assertTrue(ExpressionBalancer.depthOf(planCache.getPlan(chain.toString()).getRoot()) < 40);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"x = 1", "x++", "++x", "x = a + b * (c - d) * e", "x += y = ++a * (b += 2) - c++",
+            "x = a + b - c + d - e + a * b * c * d - (a - (b - (c + d)))"})
+    void shouldReportTheDepthOfParsedAndBalancedTrees(String expression) {
+        EvaluableTree parsed = new ExpressionValidator().validateAndParse(ExpressionLexer.tokenize(expression, new TokenBuffer()));
+        EvaluableTree balanced = new ExpressionBalancer().balance(parsed.root());
+
+        assertEquals(ExpressionBalancer.depthOf(parsed.root()), parsed.depth());
+        assertEquals(ExpressionBalancer.depthOf(balanced.root()), balanced.depth());
+    }
+
+    @ParameterizedTest
+    @EnumSource(NumericMode.class)
+    void shouldCalculateLongChainsInEveryMode(NumericMode mode) {
+        String chain = "x = 1" + " + 1".repeat(TERMS - 1);
+
+        assertEquals(TERMS, calculator(mode).calculateNumber(chain).intValue());
+    }
+
+    @ParameterizedTest
+    @EnumSource(NumericMode.class)
+    void shouldCalculateDeeplyNestedExpressions(NumericMode mode) {
+        ExpressionCalculator calculator = calculator(mode);
+        String nested = "x = " + "(".repeat(TERMS) + "1" + ") * 1 + 1".repeat(TERMS);
+        String rightNested = "y = " + "1 - (".repeat(TERMS) + "1" + ")".repeat(TERMS);
+
+        assertEquals(TERMS + 1, calculator.calculateNumber(nested).intValue());
+        assertEquals(1, calculator.calculateNumber(rightNested).intValue());
+        assertEquals(1, calculator.calculateNumber("z = " + "y = ".repeat(TERMS) + "y").intValue());
+    }
+
+    @Test
+    void shouldKeepTheOrderOfCheckedOperations() {
+        String chain = "x = 9223372036854775807 + 1 - 1" + " - 0".repeat(TERMS);
+
+        assertThrows(ArithmeticOverflowException.class, () -> calculator(NumericMode.LONG).calculate(chain));
+    }
+
+    @Test
+    void shouldReportErrorsInDeepExpressions() {
+        String unclosed = "x = " + "(".repeat(TERMS) + "1";
+        String trailing = "x = " + "1 + ".repeat(TERMS);
+
+        InvalidExpression unbalanced = assertThrows(InvalidExpression.class, () -> calculator(NumericMode.INT).calculate(unclosed));
+        InvalidExpression missing = assertThrows(InvalidExpression.class, () -> calculator(NumericMode.INT).calculate(trailing));
+
+        assertEquals(InvalidExpressionReason.UNBALANCED_PARENTHESES, unbalanced.getReason());
+        assertEquals(unclosed.length(), unbalanced.getPosition());
+        assertEquals(InvalidExpressionReason.MISSING_OPERAND, missing.getReason());
+        assertEquals(trailing.length(), missing.getPosition());
+    }
+}
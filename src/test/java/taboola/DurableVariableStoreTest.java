@@ -0,0 +1,412 @@
+package taboola;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.MockedStatic;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.FsyncPolicy;
+import org.taboola.enums.NumericMode;
+import org.taboola.exceptions.SessionNotFoundException;
+import org.taboola.metrics.CalculatorMetrics;
+import org.taboola.persistence.DurableVariableStore;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.session.CalculatorSession;
+import org.taboola.session.SessionManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mockStatic;
+
+public class DurableVariableStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private CalculatorProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CalculatorProperties();
+        properties.setStateDirectory(directory);
+    }
+
+    private ExpressionCalculator calculator(DurableVariableStore store) {
+        return new ExpressionCalculator(new ExpressionPlanCache(new ExpressionValidator(), properties),
+                new ParallelBlockExecutor(properties), CalculatorMetrics.NOOP, store);
+    }
+
+    private String reopen(Path path) throws IOException {
+        try (DurableVariableStore store = DurableVariableStore.open(path, properties)) {
+            return store.format();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    void shouldRecoverCommittedVariables(FsyncPolicy policy) throws IOException {
+        properties.setJournalFsync(policy);
+        Path path = directory.resolve("session");
+        try (DurableVariableStore store = DurableVariableStore.open(path, properties)) {
+            ExpressionCalculator calculator = calculator(store);
+            calculator.calculate("a = 1");
+            calculator.calculate("b = a++ + 10");
+            calculator.calculate("c = a * b");
+            calculator.calculate("c += 1");
+        }
+
+        assertEquals("(a=2,b=11,c=23)", reopen(path));
+    }
+
+    @Test
+    void shouldForceIdleJournalsOnceTheIntervalHasPassed() throws Exception {
+        properties.setJournalFsyncInterval(Duration.ofMillis(500));
+        try (DurableVariableStore store = DurableVariableStore.open(directory.resolve("session"), properties)) {
+            ExpressionCalculator calculator = calculator(store);
+            Thread.sleep(600);
+            calculator.calculate("a = 1");
+            calculator.calculate("b = 2");
+
+            assertFalse(store.syncIfDue(), "the first commit was forced less than an interval ago");
+            Thread.sleep(600);
+            assertTrue(store.syncIfDue());
+            assertFalse(store.syncIfDue(), "no commit is left to force");
+        }
+    }
+
+    @Test
+    void shouldRecoverVariablesWrittenByFailingExpressions() throws IOException {
+        Path path = directory.resolve("session");
+        try (DurableVariableStore store = DurableVariableStore.open(path, properties)) {
+            ExpressionCalculator calculator = calculator(store);
+            calculator.tryCalculate("x = (y = 5) + z");
+            calculator.tryCalculate("x = 1 +");
+        }
+
+        assertEquals("(y=5)", reopen(path));
+    }
+
+    @Test
+    void shouldRecoverResets() throws IOException {
+        Path path = directory.resolve("session");
+        try (DurableVariableStore store = DurableVariableStore.open(path, properties)) {
+            ExpressionCalculator calculator = calculator(store);
+            calculator.calculate("a = 1");
+            calculator.calculate("b = 2");
+            calculator.reset();
+            calculator.calculate("b = 2");
+        }
+
+        assertEquals("(b=2)", reopen(path));
+    }
+
+    @Test
+    void shouldBoundTheJournalWithSnapshots() throws IOException {
+        properties.setSnapshotThreshold(10);
+        Path path = directory.resolve("session");
+        try (DurableVariableStore store = DurableVariableStore.open(path, properties)) {
+            ExpressionCalculator calculator = calculator(store);
+            calculator.calculate("a = 0");
+            for (int i = 0; i < 1_005; i++) {
+                calculator.calculate("a++");
+                calculator.calculate("b = a * 2");
+            }
+            calculator.reset();
+            calculator.calculate("c = 7");
+            calculator.calculate("d = c");
+        }
+
+        assertTrue(Files.exists(path.resolve("snapshot")));
+        assertTrue(Files.size(path.resolve("journal")) < 10 * 120, "the journal is emptied by each snapshot");
+        assertEquals("(c=7,d=7)", reopen(path));
+        assertEquals("(c=7,d=7)", reopen(path), "reopening does not change the state");
+    }
+
+    @Test
+    void shouldRecoverBlocksEvaluatedInParallel() throws IOException {
+        properties.setParallelBlockThreshold(16);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            char variable = (char) ('a' + i % 26);
+            lines.add(i < 26 ? variable + " = " + i : variable + " += " + i);
+        }
+
+        Path path = directory.resolve("session");
+        String expected;
+        try (DurableVariableStore store = DurableVariableStore.open(path, properties)) {
+            ExpressionCalculator calculator = calculator(store);
+            calculator.calculateBlock(lines);
+            expected = calculator.getVariablesAsString();
+        }
+
+        assertEquals(expected, reopen(path));
+    }
+
+    @Test
+    void shouldDropTornRecords() throws IOException {
+        Path path = directory.resolve("session");
+        try (DurableVariableStore store = DurableVariableStore.open(path, properties)) {
+            ExpressionCalculator calculator = calculator(store);
+            calculator.calculate("a = 1");
+            calculator.calculate("b = 2");
+        }
+        Path journal = path.resolve("journal");
+        long size = Files.size(journal);
+        try (SeekableByteChannel channel = Files.newByteChannel(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 2);
+        }
+        Files.write(journal, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (DurableVariableStore store = DurableVariableStore.open(path, properties)) {
+            assertEquals("(a=1)", store.format());
+            calculator(store).calculate("c = 3");
+        }
+        assertEquals("(a=1,c=3)", reopen(path));
+    }
+
+    @Test
+    void shouldReopenSessionsOnRestart() {
+        SessionManager manager = newManager();
+        String kept = manager.create().getId();
+        String closed = manager.create().getId();
+        manager.execute(kept, calculator -> calculator.calculate("a = 41"));
+        manager.execute(kept, calculator -> calculator.calculate("a++"));
+        manager.execute(closed, calculator -> calculator.calculate("b = 1"));
+        manager.close(closed);
+        manager.shutdown();
+
+        SessionManager restarted = newManager();
+
+        assertEquals(1, restarted.getActiveSessionCount());
+        assertEquals("(a=42)", restarted.execute(kept, ExpressionCalculator::getVariablesAsString));
+        assertFalse(Files.exists(directory.resolve(closed)));
+        restarted.close(kept);
+        assertFalse(Files.exists(directory.resolve(kept)));
+    }
+
+    @Test
+    void shouldWriteTheChangesOfAFailedCommitWithTheNextOne() throws IOException {
+        Path path = directory.resolve("session");
+        FailingChannel[] journal = new FailingChannel[1];
+        try (MockedStatic<FileChannel> channels = mockStatic(FileChannel.class, CALLS_REAL_METHODS)) {
+            channels.when(() -> FileChannel.open(any(Path.class), any(OpenOption[].class))).thenAnswer(invocation -> {
+                journal[0] = new FailingChannel((FileChannel) invocation.callRealMethod());
+                return journal[0];
+            });
+            try (DurableVariableStore store = DurableVariableStore.open(path, properties)) {
+                ExpressionCalculator calculator = calculator(store);
+                calculator.calculate("a = 1");
+                journal[0].failNextWrite = true;
+                assertThrows(UncheckedIOException.class, () -> calculator.calculate("b = 2"));
+                calculator.calculate("c = 3");
+            }
+        }
+
+        assertEquals("(a=1,b=2,c=3)", reopen(path));
+    }
+
+    @Test
+    void shouldReopenEvictedSessionsWhenUsed() {
+        properties.setMaxSessions(1);
+        SessionManager manager = newManager();
+        String evicted = manager.create().getId();
+        manager.execute(evicted, calculator -> calculator.calculate("a = 7"));
+        String other = manager.create().getId();
+
+        assertEquals(1, manager.getStats().evictedSessions());
+        assertTrue(Files.exists(directory.resolve(evicted)));
+        assertEquals("(a=7)", manager.execute(evicted, ExpressionCalculator::getVariablesAsString));
+        assertEquals(2, manager.getStats().evictedSessions(), "reopening the session evicts the other one");
+        manager.close(other);
+        assertFalse(Files.exists(directory.resolve(other)), "evicted sessions can be closed");
+        assertThrows(SessionNotFoundException.class, () -> manager.get(other));
+    }
+
+    @Test
+    void shouldReopenTheMostRecentSessionsOnRestart() throws IOException {
+        properties.setMaxSessions(2);
+        SessionManager manager = newManager();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String id = manager.create().getId();
+            manager.execute(id, calculator -> calculator.calculate("a = 1"));
+            ids.add(id);
+        }
+        manager.shutdown();
+        Instant now = Instant.now();
+        for (int i = 0; i < 3; i++) {
+            Files.setLastModifiedTime(directory.resolve(ids.get(i)).resolve("journal"),
+                    FileTime.from(now.minusSeconds(3 - i)));
+        }
+        Path stale = directory.resolve(UUID.randomUUID().toString());
+        try (DurableVariableStore store = DurableVariableStore.open(stale, properties)) {
+            calculator(store).calculate("b = 2");
+        }
+        Files.setLastModifiedTime(stale.resolve("journal"), FileTime.from(now.minus(Duration.ofHours(1))));
+
+        SessionManager restarted = newManager();
+
+        assertEquals(2, restarted.getActiveSessionCount());
+        assertFalse(Files.exists(stale), "the state of a session idle for too long is deleted");
+        assertEquals("(a=1)", restarted.execute(ids.get(0), ExpressionCalculator::getVariablesAsString));
+        assertThrows(SessionNotFoundException.class, () -> restarted.get(stale.getFileName().toString()));
+    }
+
+    @Test
+    void shouldRejectWorkOnSessionsClosedWhileWaiting() {
+        SessionManager manager = newManager();
+        CalculatorSession session = manager.create();
+        session.execute(calculator -> calculator.calculate("a = 1"));
+
+        manager.close(session.getId());
+
+        assertThrows(SessionNotFoundException.class, () -> session.execute(calculator -> calculator.calculate("a = 2")));
+        assertFalse(Files.exists(directory.resolve(session.getId())));
+    }
+
+    @Test
+    void shouldRejectWideNumericModes() {
+        properties.setNumericMode(NumericMode.LONG);
+
+        assertThrows(IllegalStateException.class, this::newManager);
+    }
+
+    /**
+     * A journal file whose next write can be made to fail, as on a full disk.
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel channel;
+        private boolean failNextWrite;
+
+        FailingChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            if (failNextWrite) {
+                failNextWrite = false;
+                // Writes part of the record before failing
+                source.limit(source.position() + 4);
+                channel.write(source);
+                throw new IOException("No space left on device");
+            }
+            return channel.write(source);
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            return channel.read(destination);
+        }
+
+        @Override
+        public long read(ByteBuffer[] destinations, int offset, int length) throws IOException {
+            return channel.read(destinations, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+            return channel.write(sources, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long position) throws IOException {
+            channel.position(position);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel source, long position, long count) throws IOException {
+            return channel.transferFrom(source, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer destination, long position) throws IOException {
+            return channel.read(destination, position);
+        }
+
+        @Override
+        public int write(ByteBuffer source, long position) throws IOException {
+            return channel.write(source, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+
+    private SessionManager newManager() {
+        Ticker ticker = () -> 0;
+        return new SessionManager(properties, new ExpressionPlanCache(new ExpressionValidator(), properties),
+                new ParallelBlockExecutor(properties), CalculatorMetrics.NOOP, ticker);
+    }
+}
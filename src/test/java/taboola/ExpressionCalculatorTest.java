@@ -4,10 +4,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.taboola.CalculationResult;
 import org.taboola.ExpressionCalculator;
 import org.taboola.ExpressionValidator;
+import org.taboola.enums.CalculationError;
+import org.taboola.enums.InvalidExpressionReason;
+import org.taboola.exceptions.ExpressionCalculatorException;
 import org.taboola.exceptions.InvalidExpression;
 import org.taboola.exceptions.UndefinedVariableException;
 
@@ -55,6 +60,26 @@ public class ExpressionCalculatorTest {
     }
 
 
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "''|EMPTY_EXPRESSION|0",
+            "x = 5 + $|INVALID_CHARACTER|8",
+            "x = (5 + 3|UNBALANCED_PARENTHESES|10",
+            "x = 5 + 3)|UNBALANCED_PARENTHESES|9",
+            "(x + 1) + (1 + 2)|NOT_AN_ASSIGNMENT|0",
+            "x = 6 - + 6|MISSING_OPERAND|8",
+            "x +=|MISSING_OPERAND|4",
+            "x = 5 5|UNEXPECTED_TOKEN|6",
+            "x = ++ y|INVALID_TOKEN|4",
+            "x = 1 = 2|INVALID_ASSIGNMENT_TARGET|6"
+    })
+    void shouldReportInvalidExpressionReasonAndPosition(String expression, InvalidExpressionReason reason, int position) {
+        InvalidExpression exception = assertThrows(InvalidExpression.class, () -> calculator.calculate(expression));
+
+        assertEquals(reason, exception.getReason(), "Unexpected reason for expression: " + expression);
+        assertEquals(position, exception.getPosition(), "Unexpected position for expression: " + expression);
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {
             "x++",
@@ -68,6 +93,43 @@ public class ExpressionCalculatorTest {
         }, "Expected an exception for expression: " + expression);
     }
 
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "x = 1 +|INVALID_EXPRESSION|MISSING_OPERAND|7|",
+            "x = $|INVALID_EXPRESSION|INVALID_CHARACTER|4|",
+            "x = y + 1|UNDEFINED_VARIABLE||-1|y",
+            "z++|UNDEFINED_VARIABLE||-1|z"
+    })
+    void shouldReportFailureWithoutThrowing(String expression, CalculationError error,
+                                            InvalidExpressionReason reason, int position, Character variable) {
+        CalculationResult result = calculator.tryCalculate(expression);
+
+        assertFalse(result.isSuccess());
+        assertEquals(error, result.getError());
+        assertEquals(reason, result.getReason());
+        assertEquals(position, result.getPosition());
+        assertEquals(variable == null ? 0 : variable, result.getVariable());
+        assertThrows(IllegalStateException.class, result::getValue);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"x = 5,5", "x = 70000 * 2,140000"})
+    void shouldReturnValueWithoutThrowing(String expression, int value) {
+        CalculationResult result = calculator.tryCalculate(expression);
+
+        assertTrue(result.isSuccess());
+        assertEquals(value, result.getValue());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"x = = 1", "x = y"})
+    void shouldThrowStacklessExceptions(String expression) {
+        ExpressionCalculatorException exception = assertThrows(ExpressionCalculatorException.class,
+                () -> calculator.calculate(expression));
+
+        assertEquals(0, exception.getStackTrace().length);
+    }
+
     private Stream<Arguments> expressionProvider() {
         return Stream.of(
                 org.junit.jupiter.params.provider.Arguments.of(List.of("x = 1"), List.of(1), Map.of('x', 1)),
@@ -75,7 +137,10 @@ public class ExpressionCalculatorTest {
                 org.junit.jupiter.params.provider.Arguments.of(List.of("z = (2 + 3) * 2"), List.of(10), Map.of('z', 10)),
                 org.junit.jupiter.params.provider.Arguments.of(List.of("a = 5"), List.of(5), Map.of('a', 5)),
                 org.junit.jupiter.params.provider.Arguments.of(List.of("x = 1", "w = x++ + 1"), List.of(1, 2), Map.of('x', 2, 'w', 2)),
-                org.junit.jupiter.params.provider.Arguments.of(List.of("x = 1", "w = 1" , "w += ++x + 1"), List.of(1, 1, 4), Map.of('x', 2, 'w', 4))
+                org.junit.jupiter.params.provider.Arguments.of(List.of("x = 1", "w = 1" , "w += ++x + 1"), List.of(1, 1, 4), Map.of('x', 2, 'w', 4)),
+                org.junit.jupiter.params.provider.Arguments.of(List.of("x = 10 - 2 - 3"), List.of(5), Map.of('x', 5)),
+                org.junit.jupiter.params.provider.Arguments.of(List.of("x = 2 + 3 * 4 - 1 * 2"), List.of(12), Map.of('x', 12)),
+                org.junit.jupiter.params.provider.Arguments.of(List.of("x = y = 3 + 1"), List.of(4), Map.of('x', 4, 'y', 4))
         );
     }
 }
@@ -0,0 +1,97 @@
+package taboola;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.taboola.ExpressionValidator;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.TokenType;
+import org.taboola.parser.ExpressionLexer;
+import org.taboola.parser.TokenBuffer;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionLexerTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "x = 5 + 3|VARIABLE ASSIGN NUMBER ADD NUMBER",
+            "x += (1 + 2) * ++y + z++|VARIABLE ADD_ASSIGN OPENING_PARENTHESIS NUMBER ADD NUMBER CLOSING_PARENTHESIS MULTIPLE PRE_INCREMENT ADD POST_INCREMENT",
+            "z = ((1))|VARIABLE ASSIGN OPENING_PARENTHESIS OPENING_PARENTHESIS NUMBER CLOSING_PARENTHESIS CLOSING_PARENTHESIS",
+            "x = ++ y|VARIABLE ASSIGN INVALID VARIABLE",
+            "x=1|INVALID",
+            "x = 5 + $|VARIABLE ASSIGN NUMBER ADD INVALID",
+            "x = 99999999999|VARIABLE ASSIGN INVALID",
+            "  x\t-  y |VARIABLE SUB VARIABLE"
+    })
+    void shouldTokenizeExpression(String expression, String expectedTypes) {
+        TokenBuffer tokens = ExpressionLexer.tokenize(expression, new TokenBuffer());
+
+        List<String> types = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            types.add(tokens.type(i).name());
+        }
+        assertEquals(expectedTypes, String.join(" ", types));
+    }
+
+    @Test
+    void shouldStoreTokenValuesAndOffsets() {
+        TokenBuffer tokens = ExpressionLexer.tokenize("c += 42 * ++a", new TokenBuffer());
+
+        assertEquals(5, tokens.size());
+        assertEquals('c', tokens.value(0));
+        assertEquals(42, tokens.value(2));
+        assertEquals(5, tokens.start(2));
+        assertEquals(7, tokens.end(2));
+        assertEquals('a', tokens.value(4));
+        assertEquals("++a", tokens.text(4));
+    }
+
+    @Test
+    void shouldReuseBufferAcrossExpressions() {
+        TokenBuffer tokens = new TokenBuffer();
+        StringBuilder longExpression = new StringBuilder("x = 1");
+        for (int i = 0; i < 100; i++) {
+            longExpression.append(" + ").append(i);
+        }
+
+        ExpressionLexer.tokenize(longExpression, tokens);
+        assertEquals(203, tokens.size());
+
+        ExpressionLexer.tokenize("y++", tokens);
+        assertEquals(1, tokens.size());
+        assertEquals(TokenType.POST_INCREMENT, tokens.type(0));
+        assertTrue(tokens.hasNext());
+    }
+
+    @Test
+    void shouldReleaseTheThreadBufferAfterParsing() {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        TokenBuffer tokens = TokenBuffer.forCurrentThread();
+
+        planCache.parse(new StringBuilder("x = 1" + " + 1".repeat(10_000)));
+
+        assertSame(tokens, TokenBuffer.forCurrentThread());
+        assertEquals("", tokens.source().toString());
+        assertEquals(0, tokens.size());
+        assertTrue(tokens.capacity() <= 1024);
+    }
+
+    @Test
+    void shouldNotKeepBuffersOnVirtualThreads() throws InterruptedException {
+        AtomicReference<TokenBuffer> first = new AtomicReference<>();
+        AtomicReference<TokenBuffer> second = new AtomicReference<>();
+
+        Thread.ofVirtual().start(() -> {
+            first.set(TokenBuffer.forCurrentThread());
+            second.set(TokenBuffer.forCurrentThread());
+        }).join();
+
+        assertNotSame(first.get(), second.get());
+    }
+}
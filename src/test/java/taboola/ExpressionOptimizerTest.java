@@ -0,0 +1,86 @@
+package taboola;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.taboola.evaluator.Evaluable;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.optimizer.ExpressionOptimizer;
+import org.taboola.parser.ExpressionLexer;
+import org.taboola.parser.ExpressionParser;
+import org.taboola.parser.TokenBuffer;
+import org.taboola.store.VariableStore;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static taboola.TestFixtures.newStore;
+
+public class ExpressionOptimizerTest {
+
+    private final ExpressionParser parser = new ExpressionParser();
+    private final ExpressionOptimizer optimizer = new ExpressionOptimizer();
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "d = (1 + 2) * 3|AssignmentExpression",
+            "++a|PreIncrementVariableExpression",
+            "a += 1|PreIncrementVariableExpression",
+            "a = a + 1|PreIncrementVariableExpression",
+            "c += a * b|AddAssignmentExpression",
+            "c = c + a|AddAssignmentExpression",
+            "c = a + c|AssignmentExpression"
+    })
+    void shouldFuseAssignments(String expression, String expectedType) {
+        assertEquals(expectedType, optimizer.optimize(parse(expression)).getClass().getSimpleName());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "x = (1 + 2) * 3|x = 9",
+            "x = a * 1 + 0|x = a",
+            "x = 0 + 1 * a - 0|x = a",
+            "x = (2 - 2) * 5 + a|x = a",
+            "x = 2147483647 + 1|x = 0 - 2147483647 - 1"
+    })
+    void shouldFoldConstantsAndIdentities(String expression, String equivalent) {
+        Evaluable optimized = optimizer.optimize(parse(expression));
+        Evaluable expected = parse(equivalent);
+
+        assertEquals(expected.getClass(), optimized.getClass());
+        assertEquals(expected.eval(newStore()), optimized.eval(newStore()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "x = a * 0",
+            "x = z * 0",
+            "x = 0 * a++",
+            "c += c++",
+            "c = c + ++c",
+            "a = 1 + a * 0",
+            "x = (1 + 2) * ++a + (a += 3) * 0 + b++"
+    })
+    void shouldPreserveSideEffectsAndErrors(String expression) {
+        Evaluable parsed = parse(expression);
+        Evaluable optimized = optimizer.optimize(parsed);
+        VariableStore parsedStore = newStore();
+        VariableStore optimizedStore = newStore();
+
+        Object expected = evaluate(parsed, parsedStore);
+        Object actual = evaluate(optimized, optimizedStore);
+
+        assertEquals(expected, actual, "Unexpected result for: " + expression);
+        assertEquals(parsedStore.toMap(), optimizedStore.toMap(), "Unexpected variables for: " + expression);
+    }
+
+    private Object evaluate(Evaluable evaluable, VariableStore store) {
+        try {
+            return evaluable.eval(store);
+        } catch (ExpressionCalculatorException e) {
+            return e.getClass();
+        }
+    }
+
+    private Evaluable parse(String expression) {
+        return parser.parse(ExpressionLexer.tokenize(expression, new TokenBuffer())).root();
+    }
+}
@@ -0,0 +1,61 @@
+package taboola;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.taboola.ExpressionValidator;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.ArrayVariableStore;
+import org.taboola.store.VariableSlots;
+import org.taboola.store.VariableStore;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionPlanCacheTest {
+
+    private ExpressionPlanCache planCache;
+
+    @BeforeEach
+    void setUp() {
+        planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+    }
+
+    @Test
+    void shouldReuseCachedPlan() {
+        ExpressionPlan first = planCache.getPlan("c += a * b");
+        ExpressionPlan second = planCache.getPlan("c += a * b");
+
+        assertSame(first, second);
+        assertEquals(1, planCache.getPlanStats().missCount());
+        assertEquals(1, planCache.getPlanStats().hitCount());
+    }
+
+    @Test
+    void shouldEvaluateSamePlanAgainstDifferentVariables() {
+        ExpressionPlan plan = planCache.getPlan("x = y++ * 2");
+        VariableStore first = new ArrayVariableStore();
+        VariableStore second = new ArrayVariableStore();
+        first.set(VariableSlots.slotOf('y'), 1);
+        second.set(VariableSlots.slotOf('y'), 5);
+
+        assertEquals(2, plan.eval(first));
+        assertEquals(10, plan.eval(second));
+        assertEquals(Map.of('x', 2, 'y', 2), first.toMap());
+        assertEquals(Map.of('x', 10, 'y', 6), second.toMap());
+    }
+
+    @Test
+    void shouldRememberInvalidExpressions() {
+        InvalidExpression first = assertThrows(InvalidExpression.class, () -> planCache.getPlan("x = 5 +"));
+        InvalidExpression second = assertThrows(InvalidExpression.class, () -> planCache.getPlan("x = 5 +"));
+
+        assertSame(first, second);
+        assertEquals(1, planCache.getRejectedStats().hitCount());
+        assertEquals(1, planCache.getPlanStats().missCount(), "a rejected expression is not looked up in the plan cache again");
+        assertEquals(0, planCache.getPlanCount());
+    }
+}
@@ -0,0 +1,173 @@
+package taboola;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.BlockResult;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.InvalidExpressionReason;
+import org.taboola.enums.NumericMode;
+import org.taboola.exceptions.ArithmeticOverflowException;
+import org.taboola.exceptions.CyclicFormulaException;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FormulaTest {
+
+    private ExpressionCalculator calculator;
+
+    @BeforeEach
+    void setUp() {
+        calculator = new ExpressionCalculator(new ExpressionValidator());
+    }
+
+    @Test
+    void shouldRecalculateFormulasWhenInputsChange() {
+        calculator.calculate("a = 1");
+        assertEquals(3, calculator.bind("b = a + 2"));
+        assertEquals(6, calculator.bind("c = b * 2"));
+
+        calculator.calculate("a = 10");
+        assertEquals("(a=10,b=12,c=24)", calculator.getVariablesAsString());
+
+        calculator.calculate("a++");
+        assertEquals("(a=11,b=13,c=26)", calculator.getVariablesAsString());
+
+        calculator.calculate("a += 1");
+        assertEquals("(a=12,b=14,c=28)", calculator.getVariablesAsString());
+    }
+
+    @Test
+    void shouldRecalculateInTopologicalOrder() {
+        calculator.calculate("a = 1");
+        calculator.calculate("x = 0");
+        // d is bound before the formulas it reads, so binding order is not evaluation order
+        calculator.calculate("b = 0");
+        calculator.calculate("c = 0");
+        calculator.bind("d = b + c");
+        calculator.bind("c = b * 10");
+        calculator.bind("b = a + x");
+
+        calculator.calculate("a = 2");
+
+        assertEquals("(a=2,b=2,c=20,d=22,x=0)", calculator.getVariablesAsString());
+        assertEquals(Map.of('b', "b = a + x", 'c', "c = b * 10", 'd', "d = b + c"), calculator.getFormulas());
+    }
+
+    @Test
+    void shouldRecalculateOnlyAffectedFormulas() {
+        calculator.calculate("a = 1");
+        calculator.calculate("z = 5");
+        calculator.bind("b = a + 1");
+        calculator.bind("y = z + 1");
+
+        // y is not recalculated when a changes, so writing it directly is not undone
+        calculator.calculate("q = 0");
+        calculator.calculate("a = 2");
+
+        assertEquals("(a=2,b=3,q=0,y=6,z=5)", calculator.getVariablesAsString());
+    }
+
+    @Test
+    void shouldRemoveFormulaWhenItsVariableIsWritten() {
+        calculator.calculate("a = 1");
+        calculator.bind("b = a + 1");
+        calculator.bind("c = b + 1");
+
+        calculator.calculate("b = 100");
+        calculator.calculate("a = 5");
+
+        assertEquals("(a=5,b=100,c=101)", calculator.getVariablesAsString());
+        assertEquals(Map.of('c', "c = b + 1"), calculator.getFormulas());
+        assertTrue(calculator.unbind('c'));
+        assertFalse(calculator.unbind('c'));
+        assertFalse(calculator.unbind('A'));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"a = a + 1", "a = b + 1", "a = (b + 1) * a"})
+    void shouldRejectCycles(String formula) {
+        calculator.calculate("a = 1");
+        calculator.bind("b = a + 1");
+
+        CyclicFormulaException exception = assertThrows(CyclicFormulaException.class, () -> calculator.bind(formula));
+        assertEquals('a', exception.getVariable());
+        assertEquals(Map.of('b', "b = a + 1"), calculator.getFormulas());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"b = a++", "b = (c = a) + 1", "b = a + ++a", "b = (c = a)", "b++", "++b", "b += 1"})
+    void shouldRejectFormulasWithSideEffects(String formula) {
+        calculator.calculate("a = 1");
+        calculator.calculate("b = 1");
+
+        InvalidExpression exception = assertThrows(InvalidExpression.class, () -> calculator.bind(formula));
+        assertEquals(InvalidExpressionReason.NOT_A_FORMULA, exception.getReason());
+        assertTrue(calculator.getFormulas().isEmpty());
+    }
+
+    @Test
+    void shouldKeepFormulasWhenAnOverwriteFailsBeforeWriting() {
+        calculator.calculate("a = 1");
+        calculator.bind("b = a + 1");
+        calculator.bind("c = a * 3");
+
+        assertThrows(UndefinedVariableException.class, () -> calculator.calculate("b = z"));
+        assertThrows(UndefinedVariableException.class, () -> calculator.calculate("b = c++ + z"));
+        calculator.calculate("a = 2");
+
+        assertEquals(Map.of('b', "b = a + 1"), calculator.getFormulas());
+        assertEquals("(a=2,b=3,c=4)", calculator.getVariablesAsString());
+    }
+
+    @Test
+    void shouldNotBindFormulaThatCannotBeCalculated() {
+        assertThrows(UndefinedVariableException.class, () -> calculator.bind("b = a + 1"));
+        assertTrue(calculator.getFormulas().isEmpty());
+    }
+
+    @Test
+    void shouldRecalculateFormulasWithinBlocks() {
+        calculator.calculate("a = 1");
+        calculator.bind("b = a * 2");
+
+        BlockResult result = calculator.calculateBlock(List.of("a = 5", "c = b + 1", "d = e"));
+
+        assertEquals(11, result.getValue(1));
+        assertInstanceOf(UndefinedVariableException.class, result.getError(2));
+        assertEquals("(a=5,b=10,c=11)", calculator.getVariablesAsString());
+    }
+
+    @Test
+    void shouldReportFormulaFailures() {
+        CalculatorProperties properties = new CalculatorProperties();
+        properties.setNumericMode(NumericMode.CHECKED_INT);
+        ExpressionCalculator checked = new ExpressionCalculator(new ExpressionPlanCache(new ExpressionValidator(), properties));
+        checked.calculate("a = 1");
+        checked.bind("b = a * 65536");
+
+        assertThrows(ArithmeticOverflowException.class, () -> checked.calculate("a = 65536"));
+        assertEquals("(a=65536,b=65536)", checked.getVariablesAsString());
+    }
+
+    @Test
+    void shouldClearFormulasOnReset() {
+        calculator.calculate("a = 1");
+        calculator.bind("b = a + 1");
+
+        calculator.reset();
+        calculator.calculate("a = 1");
+
+        assertEquals("(a=1)", calculator.getVariablesAsString());
+        assertTrue(calculator.getFormulas().isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package taboola;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.taboola.ExpressionValidator;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.io.MappedScriptRunner;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedScriptRunnerTest {
+
+    private static final String SCRIPT = """
+            a = 1
+            b = a + 2
+            c = 0
+            ++a
+            c += a * b
+            c++
+            d = (1 + c) * 2
+
+            x = 5
+            y = x = 1 +
+            y = z
+            x++
+            \r
+            a = 1
+            a += a
+            a += a""";
+
+    @TempDir
+    Path directory;
+
+    private String run(String script, int windowSize, List<String> errors) throws IOException {
+        Path file = Files.writeString(directory.resolve("script.txt"), script, StandardCharsets.US_ASCII);
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        MappedScriptRunner runner = new MappedScriptRunner(planCache, windowSize, (line, e) -> errors.add(line));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        runner.run(file, Channels.newChannel(output));
+        return output.toString(StandardCharsets.US_ASCII);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {32, 64, MappedScriptRunner.DEFAULT_WINDOW_SIZE})
+    void shouldRunBlocksAcrossWindows(int windowSize) throws IOException {
+        List<String> errors = new ArrayList<>();
+
+        String output = run(SCRIPT, windowSize, errors);
+
+        assertEquals("(a=2,b=3,c=7,d=16)\n(x=6)\n(a=4)\n", output);
+        assertEquals(List.of("y = x = 1 +", "y = z"), errors);
+    }
+
+    @Test
+    void shouldReuseRepeatedLines() throws IOException {
+        StringBuilder script = new StringBuilder("i = 0\n");
+        script.append("i++\n".repeat(10_000)).append("\n");
+
+        assertEquals("(i=10000)\n", run(script.toString(), 4096, new ArrayList<>()));
+    }
+
+    @Test
+    void shouldRejectLinesLongerThanWindow() {
+        assertThrows(IOException.class, () -> run("a = 1 + 2 + 3 + 4\nb = 1\n", 8, new ArrayList<>()));
+    }
+}
@@ -0,0 +1,128 @@
+package taboola;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.taboola.ExpressionCalculator;
+import org.taboola.block.BlockResult;
+import org.taboola.enums.CalculationError;
+import org.taboola.enums.NumericMode;
+import org.taboola.exceptions.ArithmeticOverflowException;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.exceptions.UndefinedVariableException;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static taboola.TestFixtures.calculator;
+
+public class NumericModeTest {
+
+    @ParameterizedTest
+    @EnumSource(NumericMode.class)
+    void shouldCalculateSmallValuesAlike(NumericMode mode) {
+        ExpressionCalculator calculator = calculator(mode);
+        for (String expression : List.of("a = 1", "b = a + 2", "c = 0", "++a", "c += a * b", "c++", "d = (1 + c) * 2", "e = d - 20")) {
+            calculator.calculate(expression);
+        }
+
+        assertEquals("(a=2,b=3,c=7,d=16,e=-4)", calculator.getVariablesAsString());
+        assertEquals(5, calculator.getVariableCount());
+        assertEquals(Map.of('a', 2, 'b', 3, 'c', 7, 'd', 16, 'e', -4), calculator.getVariables());
+    }
+
+    @Test
+    void shouldOnlyReturnIntVariablesThatFit() {
+        ExpressionCalculator calculator = calculator(NumericMode.LONG);
+        calculator.calculateNumber("a = 2147483648");
+
+        assertEquals(Map.of('a', 2_147_483_648L), calculator.getNumericVariables());
+        assertThrows(ArithmeticOverflowException.class, calculator::getVariables);
+    }
+
+    @Test
+    void shouldWrapInIntMode() {
+        ExpressionCalculator calculator = calculator(NumericMode.INT);
+
+        assertEquals(Integer.MIN_VALUE, calculator.calculate("x = 2147483647 + 1"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "x = 2147483647 + 1",
+            "x = 0 - 2147483647 - 2",
+            "x = 65536 * 65536",
+    })
+    void shouldFailOnOverflowInCheckedIntMode(String expression) {
+        ExpressionCalculator calculator = calculator(NumericMode.CHECKED_INT);
+
+        ArithmeticOverflowException exception = assertThrows(ArithmeticOverflowException.class,
+                () -> calculator.calculate(expression));
+        assertEquals(NumericMode.CHECKED_INT, exception.getMode());
+        assertEquals(CalculationError.OVERFLOW, calculator.tryCalculate(expression).getError());
+        assertEquals("()", calculator.getVariablesAsString());
+    }
+
+    @Test
+    void shouldRejectWideLiteralsInIntModes() {
+        assertThrows(InvalidExpression.class, () -> calculator(NumericMode.INT).calculate("x = 2147483648"));
+        assertThrows(InvalidExpression.class, () -> calculator(NumericMode.CHECKED_INT).calculate("x = 2147483648"));
+        assertThrows(InvalidExpression.class, () -> calculator(NumericMode.LONG).calculate("x = 9223372036854775808"));
+    }
+
+    @Test
+    void shouldCalculateLongValues() {
+        ExpressionCalculator calculator = calculator(NumericMode.LONG);
+
+        assertEquals(4_294_967_296L, calculator.calculateNumber("x = 65536 * 65536"));
+        assertEquals(9_223_372_036_854_775_806L, calculator.calculateNumber("y = 9223372036854775806"));
+        calculator.calculateNumber("++y");
+        assertEquals("(x=4294967296,y=9223372036854775807)", calculator.getVariablesAsString());
+        assertThrows(ArithmeticOverflowException.class, () -> calculator.calculate("x = 2147483647 + 1"),
+                "a long result does not fit the int returned by calculate");
+        assertThrows(ArithmeticOverflowException.class, () -> calculator.calculateNumber("y++"));
+    }
+
+    @Test
+    void shouldPromoteOverflowingValuesInBigIntegerMode() {
+        ExpressionCalculator calculator = calculator(NumericMode.BIG_INTEGER);
+
+        assertEquals(9_223_372_036_854_775_807L, calculator.calculateNumber("a = 9223372036854775807"));
+        assertEquals(9_223_372_036_854_775_807L, calculator.calculateNumber("a++"));
+        assertEquals(new BigInteger("9223372036854775808"), calculator.calculateNumber("b = a"));
+        assertEquals(new BigInteger("85070591730234615865843651857942052865"), calculator.calculateNumber("c = b * b + 1"));
+        assertEquals(1L, calculator.calculateNumber("d = c - b * b"), "results that fit go back to long");
+        assertEquals(new BigInteger("100000000000000000000"), calculator.calculateNumber("e = 100000000000000000000"));
+        calculator.calculateNumber("e += 0 - 100000000000000000000");
+
+        assertEquals("(a=9223372036854775808,b=9223372036854775808,c=85070591730234615865843651857942052865,d=1,e=0)",
+                calculator.getVariablesAsString());
+        assertEquals(0L, calculator.getNumericVariables().get('e'));
+    }
+
+    @Test
+    void shouldKeepEvaluationOrderAndErrors() {
+        ExpressionCalculator calculator = calculator(NumericMode.BIG_INTEGER);
+        calculator.calculate("x = 1");
+
+        assertEquals(3L, calculator.calculateNumber("y = x++ + x"));
+        assertThrows(UndefinedVariableException.class, () -> calculator.calculateNumber("z = x++ + w"));
+        assertEquals("(x=3,y=3)", calculator.getVariablesAsString());
+    }
+
+    @Test
+    void shouldCalculateWideBlocks() {
+        ExpressionCalculator calculator = calculator(NumericMode.LONG);
+
+        BlockResult result = calculator.calculateBlock(List.of("a = 3000000000", "b = c", "c = a * a * a"));
+
+        assertEquals(3_000_000_000L, result.getNumber(0));
+        assertInstanceOf(UndefinedVariableException.class, result.getError(1));
+        assertInstanceOf(ArithmeticOverflowException.class, result.getError(2));
+        assertThrows(ArithmeticOverflowException.class, () -> result.getValue(0));
+        assertEquals("(a=3000000000)", calculator.getVariablesAsString());
+    }
+}
@@ -0,0 +1,143 @@
+package taboola;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.BlockResult;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.exceptions.InvalidExpression;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.ArrayVariableStore;
+import org.taboola.store.VariableSlots;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelBlockExecutorTest {
+
+    private static final String[] TEMPLATES = {
+            "%s = %d", "%s += %s * %d", "%s = %s++ + %s", "%s = ++%s - %d",
+            "%s = (%s + %d) * %s", "%s++", "++%s", "%s = %s = %d + %s"
+    };
+
+    private ExpressionCalculator newCalculator(int threshold) {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        return new ExpressionCalculator(planCache, new ParallelBlockExecutor(new ForkJoinPool(4), threshold, 0));
+    }
+
+    private List<String> generateBlock(long seed, int size) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (random.nextInt(50) == 0) {
+                lines.add("x = = 1");
+                continue;
+            }
+            String template = TEMPLATES[random.nextInt(TEMPLATES.length)].replace("%d", String.valueOf(random.nextInt(10)));
+            lines.add(String.format(template, variable(random), variable(random), variable(random), variable(random)));
+        }
+        return lines;
+    }
+
+    private String variable(Random random) {
+        return String.valueOf((char) ('a' + random.nextInt(12)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 7, 42, 2024})
+    void shouldMatchSequentialEvaluation(long seed) {
+        List<String> lines = generateBlock(seed, 2_000);
+
+        ExpressionCalculator sequential = newCalculator(Integer.MAX_VALUE);
+        List<Object> expected = new ArrayList<>();
+        for (String line : lines) {
+            try {
+                expected.add(sequential.calculate(line));
+            } catch (ExpressionCalculatorException e) {
+                expected.add(e.getClass());
+            }
+        }
+
+        ExpressionCalculator parallel = newCalculator(0);
+        BlockResult result = parallel.calculateBlock(lines);
+
+        assertEquals(lines.size(), result.size());
+        for (int line = 0; line < lines.size(); line++) {
+            Object actual = result.isSuccess(line) ? (Object) result.getValue(line) : result.getError(line).getClass();
+            assertEquals(expected.get(line), actual, "line " + line + ": " + lines.get(line));
+        }
+        assertEquals(sequential.getVariablesAsString(), parallel.getVariablesAsString());
+    }
+
+    @Test
+    void shouldReportErrorsPerLine() {
+        ExpressionCalculator calculator = newCalculator(0);
+
+        BlockResult result = calculator.calculateBlock(List.of("a = 1", "b = c", "c = a += 2", "d = = 1", "e = c * 2"));
+
+        assertEquals(1, result.getValue(0));
+        assertInstanceOf(UndefinedVariableException.class, result.getError(1));
+        assertEquals(3, result.getValue(2));
+        assertInstanceOf(InvalidExpression.class, result.getError(3));
+        assertThrows(InvalidExpression.class, () -> result.getValue(3));
+        assertEquals(6, result.getValue(4));
+        assertEquals("(a=3,c=3,e=6)", calculator.getVariablesAsString());
+    }
+
+    @Test
+    void shouldRunWideBlockInParallelWithDefaultSettings() {
+        List<String> lines = new ArrayList<>();
+        for (char variable = 'a'; variable <= 'z'; variable++) {
+            lines.add(variable + " = 0");
+        }
+        for (int i = 0; i < 1_000; i++) {
+            for (char variable = 'a'; variable <= 'z'; variable++) {
+                lines.add(variable + " += " + i);
+            }
+        }
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        ExpressionCalculator calculator = new ExpressionCalculator(planCache,
+                new ParallelBlockExecutor(new ForkJoinPool(4), 0));
+
+        BlockResult result = calculator.calculateBlock(lines);
+
+        assertEquals(499_500, result.getValue(lines.size() - 1));
+        assertEquals(499_500, calculator.getVariables().get('m'));
+    }
+
+    @Test
+    void shouldRethrowUnexpectedFailuresInsteadOfWaitingForever() {
+        int failing = VariableSlots.slotOf('z');
+        ArrayVariableStore store = new ArrayVariableStore() {
+            @Override
+            public void set(int slot, int value) {
+                if (slot == failing) {
+                    throw new IllegalStateException("broken store");
+                }
+                super.set(slot, value);
+            }
+        };
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            lines.add((char) ('a' + i % 26) + " = " + i);
+            lines.add("y = y + " + i);
+        }
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        lines.set(0, "y = 0");
+        ParallelBlockExecutor executor = new ParallelBlockExecutor(new ForkJoinPool(4), 0, 0);
+
+        IllegalStateException e = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IllegalStateException.class, () -> executor.execute(lines, planCache, store)));
+        assertEquals("broken store", e.getMessage());
+    }
+}
@@ -0,0 +1,72 @@
+package taboola;
+
+import org.junit.jupiter.api.Test;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.io.ParallelBlockRunner;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelBlockRunnerTest {
+
+    private String run(String input, int maxPendingBlocks, List<String> errors) throws IOException {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            StringWriter output = new StringWriter();
+            new ParallelBlockRunner(planCache, executor, maxPendingBlocks, (line, e) -> errors.add(line))
+                    .run(new BufferedReader(new StringReader(input)), output);
+            return output.toString();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void shouldMatchSequentialOutputInOrder() throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        List<String> expectedErrors = new ArrayList<>();
+        ExpressionCalculator calculator = new ExpressionCalculator(new ExpressionValidator());
+
+        for (int block = 0; block < 500; block++) {
+            List<String> lines = List.of("a = " + block, "b = a * " + (block % 7), "c = b++ + ++a",
+                    block % 10 == 0 ? "d = e" : "d = c += 1", "x = (a + b) * c - d");
+            for (String line : lines) {
+                input.append(line).append('\n');
+                try {
+                    calculator.calculate(line);
+                } catch (ExpressionCalculatorException e) {
+                    expectedErrors.add(line);
+                }
+            }
+            input.append('\n');
+            expected.append(calculator.getVariablesAsString()).append('\n');
+            calculator.reset();
+        }
+
+        List<String> errors = new ArrayList<>();
+        assertEquals(expected.toString(), run(input.toString(), 8, errors));
+        assertEquals(expectedErrors, errors);
+    }
+
+    @Test
+    void shouldWriteLastUnterminatedBlock() throws IOException {
+        List<String> errors = new ArrayList<>();
+
+        assertEquals("(a=1)\n()\n(b=2)\n", run("a = 1\n\n\nb = 2\nb = = 3", 1, errors));
+        assertEquals(List.of("b = = 3"), errors);
+    }
+}
@@ -0,0 +1,169 @@
+package taboola;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.NumericMode;
+import org.taboola.exceptions.ExpressionCalculatorException;
+import org.taboola.io.PipelinedLineRunner;
+import org.taboola.metrics.CalculatorMetrics;
+import org.taboola.metrics.MicrometerCalculatorMetrics;
+import org.taboola.plan.ExpressionPlanCache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelinedLineRunnerTest {
+
+    private static String run(String input, CalculatorProperties properties, int parsers, int capacity,
+                              List<String> errors) throws IOException {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), properties);
+        StringWriter output = new StringWriter();
+        new PipelinedLineRunner(planCache, parsers, capacity, (line, e) -> errors.add(line))
+                .run(new BufferedReader(new StringReader(input)), output);
+        return output.toString();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1, 1", "4, 2", "3, 1024"})
+    void shouldMatchSequentialOutputInOrder(int parsers, int capacity) throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        List<String> expectedErrors = new ArrayList<>();
+        ExpressionCalculator calculator = new ExpressionCalculator(new ExpressionValidator());
+
+        for (int block = 0; block < 300; block++) {
+            List<String> lines = List.of("a = " + block, "b = a * " + (block % 7), "c = b++ + ++a",
+                    block % 10 == 0 ? "d = e" : "d = c += 1", block % 13 == 0 ? "x = = 1" : "x = (a + b) * c - d");
+            for (String line : lines) {
+                input.append(line).append('\n');
+                try {
+                    calculator.calculate(line);
+                } catch (ExpressionCalculatorException e) {
+                    expectedErrors.add(line);
+                }
+            }
+            input.append('\n');
+            expected.append(calculator.getVariablesAsString()).append('\n');
+            calculator.reset();
+        }
+        expected.append("()\n");
+
+        List<String> errors = new ArrayList<>();
+        assertEquals(expected.toString(), run(input.toString(), new CalculatorProperties(), parsers, capacity, errors));
+        assertEquals(expectedErrors, errors);
+    }
+
+    @Test
+    void shouldWriteVariablesAtEndOfInput() throws IOException {
+        List<String> errors = new ArrayList<>();
+
+        assertEquals("(a=1)\n()\n(b=2)\n", run("a = 1\n\n   \nb = 2\nb = = 3", new CalculatorProperties(), 2, 4, errors));
+        assertEquals(List.of("b = = 3"), errors);
+        assertEquals("()\n", run("", new CalculatorProperties(), 2, 4, errors));
+    }
+
+    @Test
+    void shouldEvaluateInWideNumericModes() throws IOException {
+        CalculatorProperties properties = new CalculatorProperties();
+        properties.setNumericMode(NumericMode.BIG_INTEGER);
+        List<String> errors = new ArrayList<>();
+
+        assertEquals("(a=9223372036854775807,b=9223372036854775808)\n",
+                run("a = 9223372036854775807\nb = a + 1", properties, 2, 8, errors));
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    void shouldReportReadFailuresAfterTheLinesRead() {
+        Reader failing = new Reader() {
+            private final Reader lines = new StringReader("a = 1\n");
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = lines.read(buffer, offset, length);
+                if (read < 0) {
+                    throw new IOException("disconnected");
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        StringWriter output = new StringWriter();
+        PipelinedLineRunner runner = new PipelinedLineRunner(planCache, 1, 4, (line, e) -> fail(line));
+
+        IOException e = assertThrows(IOException.class, () -> runner.run(new BufferedReader(failing), output));
+        assertEquals("disconnected", e.getMessage());
+        assertEquals("(a=1)\n", output.toString());
+    }
+
+    @Test
+    void shouldRecordMetricsThroughTheCalculator() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CalculatorMetrics metrics = new MicrometerCalculatorMetrics(registry);
+        CalculatorProperties properties = new CalculatorProperties();
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), properties, metrics);
+        PipelinedLineRunner runner = new PipelinedLineRunner(
+                () -> new ExpressionCalculator(planCache, new ParallelBlockExecutor(properties), metrics), 2, 4, (line, e) -> { });
+
+        runner.run(new BufferedReader(new StringReader("a = 1\nb = c\n\na = 2\n")), new StringWriter());
+
+        assertEquals(3, registry.get("calculator.evaluation").timer().count());
+        assertEquals(1, registry.get("calculator.failures").tag("type", "undefined_variable").counter().count());
+    }
+
+    @Test
+    void shouldSleepWhileTheInputIsIdle() throws Exception {
+        ExpressionPlanCache planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        PipedWriter input = new PipedWriter();
+        BufferedReader reader = new BufferedReader(new PipedReader(input));
+        StringWriter output = new StringWriter();
+        PipelinedLineRunner runner = new PipelinedLineRunner(planCache, 2, 4, (line, e) -> fail(line));
+        CompletableFuture<Void> run = CompletableFuture.runAsync(() -> {
+            try {
+                runner.run(reader, output);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        input.write("a = 1\n");
+        input.flush();
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!parsersWaiting(2) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(parsersWaiting(2), "The parsers should wait without a timeout");
+
+        input.write("b = a + 1\n");
+        input.close();
+        run.get();
+        assertEquals("(a=1,b=2)\n", output.toString());
+    }
+
+    private static boolean parsersWaiting(int parsers) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("calculator-parser-"))
+                .filter(thread -> thread.getState() == Thread.State.WAITING)
+                .count() == parsers;
+    }
+}
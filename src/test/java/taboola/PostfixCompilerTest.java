@@ -0,0 +1,113 @@
+package taboola;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.taboola.ExpressionValidator;
+import org.taboola.compiler.PostfixCompiler;
+import org.taboola.compiler.PostfixProgram;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.ExecutionMode;
+import org.taboola.evaluator.Evaluable;
+import org.taboola.exceptions.UndefinedVariableException;
+import org.taboola.plan.ExpressionPlan;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.ArrayVariableStore;
+import org.taboola.store.VariableSlots;
+import org.taboola.store.VariableStore;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static taboola.TestFixtures.newStore;
+
+public class PostfixCompilerTest {
+
+    private ExpressionPlanCache planCache;
+    private PostfixCompiler compiler;
+
+    @BeforeEach
+    void setUp() {
+        planCache = new ExpressionPlanCache(new ExpressionValidator(), new CalculatorProperties());
+        compiler = new PostfixCompiler();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "x = 1",
+            "x = (a + b) * c - 2",
+            "x = a++ + ++b * c++",
+            "c += a * b",
+            "x = y = a - b - c",
+            "a++",
+            "++b",
+            "a = 1 + a",
+            "x = ((a + 1) * (b + 2) - (c + 3) * (a - 4)) * 5 + b++ * ++c"
+    })
+    void shouldMatchTreeEvaluation(String expression) {
+        Evaluable tree = planCache.getPlan(expression).getRoot();
+        PostfixProgram program = compiler.compile(tree);
+        VariableStore interpretedStore = newStore();
+        VariableStore compiledStore = newStore();
+
+        assertEquals(tree.eval(interpretedStore), program.eval(compiledStore), "Unexpected result for: " + expression);
+        assertEquals(interpretedStore.toMap(), compiledStore.toMap(), "Unexpected variables for: " + expression);
+    }
+
+    @Test
+    void shouldCompileToFlatInstructionStream() {
+        PostfixProgram program = compiler.compile(planCache.getPlan("c += ++a * 2").getRoot());
+
+        int a = VariableSlots.slotOf('a');
+        int c = VariableSlots.slotOf('c');
+        assertArrayEquals(new int[]{
+                PostfixProgram.LOAD, c,
+                PostfixProgram.INC_PRE, a,
+                PostfixProgram.PUSH_CONST, 2,
+                PostfixProgram.MUL,
+                PostfixProgram.ADD_TO, c
+        }, program.getCode());
+        assertEquals(3, program.getMaxStack());
+    }
+
+    @Test
+    void shouldRaiseUndefinedVariable() {
+        PostfixProgram program = compiler.compile(planCache.getPlan("x = y + 1").getRoot());
+
+        assertThrows(UndefinedVariableException.class, () -> program.eval(new ArrayVariableStore()));
+    }
+
+    @Test
+    void shouldRunProgramsDeeperThanTheRetainedStackOnAnyThread() throws InterruptedException {
+        int terms = 5000;
+        int[] code = new int[3 * terms - 1];
+        for (int term = 0; term < terms; term++) {
+            code[2 * term] = PostfixProgram.PUSH_CONST;
+            code[2 * term + 1] = 1;
+        }
+        Arrays.fill(code, 2 * terms, code.length, PostfixProgram.ADD);
+        PostfixProgram deep = new PostfixProgram(code, terms);
+        PostfixProgram shallow = compiler.compile(planCache.getPlan("x = (a + b) * c - 2").getRoot());
+        int[] virtualResults = new int[2];
+
+        Thread.ofVirtual().start(() -> {
+            virtualResults[0] = deep.eval(newStore());
+            virtualResults[1] = shallow.eval(newStore());
+        }).join();
+
+        assertEquals(terms, deep.eval(newStore()));
+        assertEquals(7, shallow.eval(newStore()));
+        assertArrayEquals(new int[]{terms, 7}, virtualResults);
+    }
+
+    @Test
+    void shouldRunPlansAsPostfixInPostfixMode() {
+        CalculatorProperties properties = new CalculatorProperties();
+        properties.setExecutionMode(ExecutionMode.POSTFIX);
+        ExpressionPlan plan = new ExpressionPlanCache(new ExpressionValidator(), properties).getPlan("x = a * 2");
+
+        assertTrue(plan.isCompiled());
+        assertEquals(2, plan.eval(newStore()));
+    }
+}
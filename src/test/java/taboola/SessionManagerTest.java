@@ -0,0 +1,137 @@
+package taboola;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.taboola.ExpressionValidator;
+import org.taboola.block.ParallelBlockExecutor;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.NumericMode;
+import org.taboola.exceptions.SessionNotFoundException;
+import org.taboola.metrics.CalculatorMetrics;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.session.CalculatorSession;
+import org.taboola.session.SessionManager;
+import org.taboola.session.SessionStats;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionManagerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private CalculatorProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CalculatorProperties();
+        properties.setSessionIdleTimeout(Duration.ofMinutes(10));
+        properties.setMaxSessions(3);
+    }
+
+    private SessionManager newManager() {
+        Ticker ticker = nanos::get;
+        return new SessionManager(properties, new ExpressionPlanCache(new ExpressionValidator(), properties),
+                new ParallelBlockExecutor(properties), CalculatorMetrics.NOOP, ticker);
+    }
+
+    @Test
+    void shouldIsolateSessions() {
+        SessionManager manager = newManager();
+        String first = manager.create().getId();
+        String second = manager.create().getId();
+
+        manager.execute(first, calculator -> calculator.calculate("a = 1"));
+        manager.execute(second, calculator -> calculator.calculate("b = 2"));
+
+        assertEquals("(a=1)", manager.execute(first, calculator -> calculator.getVariablesAsString()));
+        assertEquals("(b=2)", manager.execute(second, calculator -> calculator.getVariablesAsString()));
+    }
+
+    @Test
+    void shouldExpireIdleSessions() {
+        SessionManager manager = newManager();
+        String idle = manager.create().getId();
+        String active = manager.create().getId();
+
+        nanos.addAndGet(Duration.ofMinutes(6).toNanos());
+        manager.get(active);
+        nanos.addAndGet(Duration.ofMinutes(6).toNanos());
+
+        assertThrows(SessionNotFoundException.class, () -> manager.get(idle));
+        assertNotNull(manager.get(active));
+        assertEquals(1, manager.getStats().expiredSessions());
+    }
+
+    @Test
+    void shouldEvictBeyondMaxSessions() {
+        SessionManager manager = newManager();
+        for (int i = 0; i < 5; i++) {
+            manager.create();
+        }
+
+        SessionStats stats = manager.getStats();
+        assertEquals(3, stats.activeSessions());
+        assertEquals(5, stats.createdSessions());
+        assertEquals(2, stats.evictedSessions());
+        assertEquals(3 * stats.averageBytesPerSession(), stats.estimatedBytes());
+    }
+
+    @Test
+    void shouldEstimateTheMemoryOfEachSessionFromWhatItHolds() {
+        SessionManager manager = newManager();
+        CalculatorSession empty = manager.create();
+        CalculatorSession full = manager.create();
+        for (char variable = 'a'; variable <= 'z'; variable++) {
+            String expression = variable + " = 1000";
+            full.execute(calculator -> calculator.calculate(expression));
+        }
+
+        SessionStats stats = manager.getStats();
+
+        assertTrue(full.estimateSize() >= empty.estimateSize() + 26 * 16, "each variable has a boxed value in the snapshot");
+        assertEquals(empty.estimateSize() + full.estimateSize(), stats.estimatedBytes());
+        assertEquals(full.estimateSize(), stats.largestSessionBytes());
+        assertEquals(stats.estimatedBytes() / 2, stats.averageBytesPerSession());
+    }
+
+    @Test
+    void shouldEstimateWideValuesByTheirLength() {
+        properties.setNumericMode(NumericMode.BIG_INTEGER);
+        SessionManager manager = newManager();
+        CalculatorSession small = manager.create();
+        CalculatorSession large = manager.create();
+        small.execute(calculator -> calculator.calculateNumber("a = 1"));
+        large.execute(calculator -> calculator.calculateNumber("a = 1" + "0".repeat(1000)));
+
+        // A 1000-digit value takes over 400 bytes, held by the store and by its snapshot
+        assertTrue(large.estimateSize() - small.estimateSize() > 2 * 400);
+    }
+
+    @Test
+    void shouldSerializeWorkOnSession() throws Exception {
+        SessionManager manager = newManager();
+        CalculatorSession session = manager.create();
+        session.execute(calculator -> calculator.calculate("x = 0"));
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            futures.add(executor.submit(() -> manager.execute(session.getId(), calculator -> calculator.calculate("x++"))));
+        }
+        for (Future<Integer> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals("(x=1000)", session.execute(calculator -> calculator.getVariablesAsString()));
+    }
+}
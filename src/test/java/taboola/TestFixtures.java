@@ -0,0 +1,44 @@
+package taboola;
+
+import org.taboola.ExpressionCalculator;
+import org.taboola.ExpressionValidator;
+import org.taboola.config.CalculatorProperties;
+import org.taboola.enums.NumericMode;
+import org.taboola.plan.ExpressionPlanCache;
+import org.taboola.store.ArrayVariableStore;
+import org.taboola.store.VariableSlots;
+import org.taboola.store.VariableStore;
+
+/**
+ * Fixtures shared by the tests that compare evaluation strategies or numeric modes.
+ */
+final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * Returns a new store holding {@code a=1}, {@code b=2} and {@code c=3}.
+     *
+     * @return the new store
+     */
+    static VariableStore newStore() {
+        VariableStore store = new ArrayVariableStore();
+        store.set(VariableSlots.slotOf('a'), 1);
+        store.set(VariableSlots.slotOf('b'), 2);
+        store.set(VariableSlots.slotOf('c'), 3);
+        return store;
+    }
+
+    /**
+     * Returns a new calculator, with its own plan cache, in the given numeric mode.
+     *
+     * @param mode the numeric mode
+     * @return the new calculator
+     */
+    static ExpressionCalculator calculator(NumericMode mode) {
+        CalculatorProperties properties = new CalculatorProperties();
+        properties.setNumericMode(mode);
+        return new ExpressionCalculator(new ExpressionPlanCache(new ExpressionValidator(), properties));
+    }
+}
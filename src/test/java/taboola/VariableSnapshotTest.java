@@ -0,0 +1,97 @@
+package taboola;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.taboola.ExpressionCalculator;
+import org.taboola.enums.NumericMode;
+import org.taboola.store.VariableSnapshot;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static taboola.TestFixtures.calculator;
+
+public class VariableSnapshotTest {
+
+    @ParameterizedTest
+    @EnumSource(NumericMode.class)
+    void shouldKeepSnapshotsImmutable(NumericMode mode) {
+        ExpressionCalculator calculator = calculator(mode);
+        calculator.calculate("b = 2");
+        calculator.calculate("a = 1");
+        VariableSnapshot before = calculator.getSnapshot();
+
+        calculator.calculate("a += 10");
+        calculator.calculate("c = a");
+        VariableSnapshot after = calculator.getSnapshot();
+
+        assertEquals("(a=1,b=2)", before.format());
+        assertEquals(List.of('a', 'b'), List.copyOf(before.toMap().keySet()), "variables are sorted by name");
+        assertEquals("(a=11,b=2,c=11)", after.format());
+        assertEquals(3, after.size());
+        assertNull(after.get('d'));
+        assertEquals(before.getVersion() + 2, after.getVersion());
+        assertThrows(UnsupportedOperationException.class, () -> after.toMap().put('d', 1));
+    }
+
+    @Test
+    void shouldReuseSnapshotsUntilVariablesChange() {
+        ExpressionCalculator calculator = calculator(NumericMode.INT);
+        calculator.calculate("a = 1");
+        VariableSnapshot snapshot = calculator.getSnapshot();
+        String formatted = calculator.getVariablesAsString();
+
+        calculator.calculate("a = 1");
+        calculator.calculate("a += 0");
+        calculator.tryCalculate("a = c");
+
+        assertSame(snapshot, calculator.getSnapshot(), "unchanged variables keep the same snapshot");
+        assertSame(formatted, calculator.getVariablesAsString(), "the formatted string is cached");
+
+        calculator.calculate("a = 2");
+
+        assertNotSame(snapshot, calculator.getSnapshot());
+        assertEquals("(a=1)", snapshot.format());
+    }
+
+    @Test
+    void shouldSnapshotWideValues() {
+        ExpressionCalculator calculator = calculator(NumericMode.BIG_INTEGER);
+        calculator.calculateNumber("a = 9223372036854775807");
+        calculator.calculateNumber("b = a + 1");
+
+        assertEquals(Map.of('a', Long.MAX_VALUE, 'b', new BigInteger("9223372036854775808")), calculator.getSnapshot().toMap());
+    }
+
+    @Test
+    void shouldGiveConsistentSnapshotsToConcurrentReaders() {
+        ExpressionCalculator calculator = calculator(NumericMode.INT);
+        calculator.calculate("a = 0");
+        calculator.calculate("b = 0");
+        AtomicBoolean done = new AtomicBoolean();
+
+        CompletableFuture<Long> reader = CompletableFuture.supplyAsync(() -> {
+            long reads = 0;
+            do {
+                VariableSnapshot snapshot = calculator.getSnapshot();
+                Map<Character, Number> variables = snapshot.toMap();
+                assertEquals(variables.get('a'), variables.get('b'), "a snapshot never sees half of a calculation");
+                assertEquals(snapshot.format(), "(a=" + variables.get('a') + ",b=" + variables.get('b') + ")");
+                reads++;
+            } while (!done.get());
+            return reads;
+        });
+        for (int i = 0; i < 100_000; i++) {
+            calculator.calculateBlock(List.of("a++", "b = a"));
+        }
+        done.set(true);
+
+        assertTrue(reader.join() > 0);
+        assertEquals("(a=100000,b=100000)", calculator.getVariablesAsString());
+    }
+}